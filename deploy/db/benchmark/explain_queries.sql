@@ -0,0 +1,116 @@
+-- Plans of the statements BeaconSummaryDataRepositoryImpl prepares for every QueryShape, with the
+-- sample requests of application-dev.yml. Run by run_benchmark.sh before and after
+-- migrate_partitioned.sql.
+--
+-- The text of every statement is the one the application sends, keep them in sync. The driver
+-- keeps them prepared on the server (prepareThreshold), so they end up running with a generic plan.
+SET plan_cache_mode = force_generic_plan;
+
+\echo '=== exact: Y:2655179 G>A'
+PREPARE exact AS
+SELECT CONCAT(q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants) AS id, q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants FROM (SELECT variants.dataset_id, variants.variant_cnt, variants.call_cnt, variants.sample_cnt, CASE WHEN variants.num_variants > 1 THEN (variants.variant_cnt::decimal/variants.call_cnt)::decimal(10,2) ELSE variants.frequency END AS frequency, variants.num_variants FROM (SELECT bdat.dataset_id, CASE WHEN count(*) > 1 THEN SUM(bdat.variant_cnt)::bigint ELSE max(bdat.variant_cnt) END AS variant_cnt, CASE WHEN count(*) > 1 THEN SUM(bdat.call_cnt)::bigint ELSE max(bdat.call_cnt) END AS call_cnt, CASE WHEN count(*) > 1 THEN COALESCE(NULLIF(public.beacon_sample_count(public.beacon_sample_union(bdat.sample_ids)), 0), max(bdat.matching_sample_cnt)) ELSE max(bdat.matching_sample_cnt) END::bigint AS sample_cnt, max(bdat.frequency) AS frequency, COUNT(*)::integer AS num_variants FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start = $1 AND bdat.variant_key = $2 AND bdat.chromosome = $3 AND bdat.reference = $4 AND bdat.alternate = $5 AND lower(bdataset.reference_genome) = $6 AND bdat.dataset_id = ANY (string_to_array($7, ',')::int[]) GROUP BY bdat.dataset_id) variants ORDER BY variants.dataset_id) q;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE exact('2655179', '6920380005309895383', 'Y', 'G', 'A', 'grch37', '1');
+DEALLOCATE exact;
+
+\echo '=== exact: Y:2655179 G>A (exists)'
+PREPARE exact_exists AS
+SELECT EXISTS (SELECT 1 FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start = $1 AND bdat.variant_key = $2 AND bdat.chromosome = $3 AND bdat.reference = $4 AND bdat.alternate = $5 AND lower(bdataset.reference_genome) = $6 AND bdat.dataset_id = ANY (string_to_array($7, ',')::int[]));
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE exact_exists('2655179', '6920380005309895383', 'Y', 'G', 'A', 'grch37', '1');
+DEALLOCATE exact_exists;
+
+\echo '=== start-end-exact: 21:15399042-15419114 DEL'
+PREPARE start_end_exact AS
+SELECT CONCAT(q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants) AS id, q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants FROM (SELECT variants.dataset_id, variants.variant_cnt, variants.call_cnt, variants.sample_cnt, CASE WHEN variants.num_variants > 1 THEN (variants.variant_cnt::decimal/variants.call_cnt)::decimal(10,2) ELSE variants.frequency END AS frequency, variants.num_variants FROM (SELECT bdat.dataset_id, CASE WHEN count(*) > 1 THEN SUM(bdat.variant_cnt)::bigint ELSE max(bdat.variant_cnt) END AS variant_cnt, CASE WHEN count(*) > 1 THEN SUM(bdat.call_cnt)::bigint ELSE max(bdat.call_cnt) END AS call_cnt, CASE WHEN count(*) > 1 THEN COALESCE(NULLIF(public.beacon_sample_count(public.beacon_sample_union(bdat.sample_ids)), 0), max(bdat.matching_sample_cnt)) ELSE max(bdat.matching_sample_cnt) END::bigint AS sample_cnt, max(bdat.frequency) AS frequency, COUNT(*)::integer AS num_variants FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start = $1 AND bdat.end = $2 AND bdat.chromosome = $3 AND bdat.type = $4 AND bdat.reference = $5 AND lower(bdataset.reference_genome) = $6 AND bdat.dataset_id = ANY (string_to_array($7, ',')::int[]) GROUP BY bdat.dataset_id) variants ORDER BY variants.dataset_id) q;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE start_end_exact('15399042', '15419113', '21', 'DEL', 'G', 'grch37', '1');
+DEALLOCATE start_end_exact;
+
+\echo '=== start-end-exact: 21:15399042-15419114 DEL (exists)'
+PREPARE start_end_exact_exists AS
+SELECT EXISTS (SELECT 1 FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start = $1 AND bdat.end = $2 AND bdat.chromosome = $3 AND bdat.type = $4 AND bdat.reference = $5 AND lower(bdataset.reference_genome) = $6 AND bdat.dataset_id = ANY (string_to_array($7, ',')::int[]));
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE start_end_exact_exists('15399042', '15419113', '21', 'DEL', 'G', 'grch37', '1');
+DEALLOCATE start_end_exact_exists;
+
+\echo '=== start-end-range: 21:15000000-16000000 N'
+PREPARE start_end_range AS
+SELECT bdat.dataset_id, bdat.variant_cnt, bdat.call_cnt, bdat.matching_sample_cnt, bdat.frequency, bdat.sample_ids FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE (bdat.start >= $1 AND bdat.start < $2 OR bdat.end >= $3 AND bdat.end < $4) AND bdat.chromosome = $5 AND lower(bdataset.reference_genome) = $6 AND bdat.dataset_id = ANY (string_to_array($7, ',')::int[]);
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE start_end_range('15000000', '16000000', '15000000', '16000000', '21', 'grch37', '1');
+DEALLOCATE start_end_range;
+
+\echo '=== start-end-range: 21:15000000-16000000 N (exists)'
+PREPARE start_end_range_exists AS
+SELECT EXISTS (SELECT 1 FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE (bdat.start >= $1 AND bdat.start < $2 OR bdat.end >= $3 AND bdat.end < $4) AND bdat.chromosome = $5 AND lower(bdataset.reference_genome) = $6 AND bdat.dataset_id = ANY (string_to_array($7, ',')::int[]));
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE start_end_range_exists('15000000', '16000000', '15000000', '16000000', '21', 'grch37', '1');
+DEALLOCATE start_end_range_exists;
+
+\echo '=== bracket: 21 DUP 45039444-45039445 / 45084561-45084562'
+PREPARE bracket AS
+SELECT CONCAT(q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants) AS id, q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants FROM (SELECT variants.dataset_id, variants.variant_cnt, variants.call_cnt, variants.sample_cnt, CASE WHEN variants.num_variants > 1 THEN (variants.variant_cnt::decimal/variants.call_cnt)::decimal(10,2) ELSE variants.frequency END AS frequency, variants.num_variants FROM (SELECT bdat.dataset_id, CASE WHEN count(*) > 1 THEN SUM(bdat.variant_cnt)::bigint ELSE max(bdat.variant_cnt) END AS variant_cnt, CASE WHEN count(*) > 1 THEN SUM(bdat.call_cnt)::bigint ELSE max(bdat.call_cnt) END AS call_cnt, CASE WHEN count(*) > 1 THEN COALESCE(NULLIF(public.beacon_sample_count(public.beacon_sample_union(bdat.sample_ids)), 0), max(bdat.matching_sample_cnt)) ELSE max(bdat.matching_sample_cnt) END::bigint AS sample_cnt, max(bdat.frequency) AS frequency, COUNT(*)::integer AS num_variants FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start >= $1 AND bdat.start < $2 AND bdat.end >= $3 AND bdat.end < $4 AND int4range(LEAST(bdat.start, bdat."end"), GREATEST(bdat.start, bdat."end"), '[]') <@ int4range($5, $6) AND bdat.chromosome = $7 AND bdat.type = $8 AND bdat.reference = $9 AND lower(bdataset.reference_genome) = $10 AND bdat.dataset_id = ANY (string_to_array($11, ',')::int[]) GROUP BY bdat.dataset_id) variants ORDER BY variants.dataset_id) q;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE bracket('45039444', '45039445', '45084561', '45084562', '45039444', '45084562', '21', 'DUP', 'T', 'grch37', '1');
+DEALLOCATE bracket;
+
+\echo '=== bracket: 21 DUP 45039444-45039445 / 45084561-45084562 (exists)'
+PREPARE bracket_exists AS
+SELECT EXISTS (SELECT 1 FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start >= $1 AND bdat.start < $2 AND bdat.end >= $3 AND bdat.end < $4 AND int4range(LEAST(bdat.start, bdat."end"), GREATEST(bdat.start, bdat."end"), '[]') <@ int4range($5, $6) AND bdat.chromosome = $7 AND bdat.type = $8 AND bdat.reference = $9 AND lower(bdataset.reference_genome) = $10 AND bdat.dataset_id = ANY (string_to_array($11, ',')::int[]));
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE bracket_exists('45039444', '45039445', '45084561', '45084562', '45039444', '45084562', '21', 'DUP', 'T', 'grch37', '1');
+DEALLOCATE bracket_exists;
+
+\echo '=== variant-type: 21:15399042 DEL'
+PREPARE variant_type AS
+SELECT CONCAT(q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants) AS id, q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants FROM (SELECT variants.dataset_id, variants.variant_cnt, variants.call_cnt, variants.sample_cnt, CASE WHEN variants.num_variants > 1 THEN (variants.variant_cnt::decimal/variants.call_cnt)::decimal(10,2) ELSE variants.frequency END AS frequency, variants.num_variants FROM (SELECT bdat.dataset_id, CASE WHEN count(*) > 1 THEN SUM(bdat.variant_cnt)::bigint ELSE max(bdat.variant_cnt) END AS variant_cnt, CASE WHEN count(*) > 1 THEN SUM(bdat.call_cnt)::bigint ELSE max(bdat.call_cnt) END AS call_cnt, CASE WHEN count(*) > 1 THEN COALESCE(NULLIF(public.beacon_sample_count(public.beacon_sample_union(bdat.sample_ids)), 0), max(bdat.matching_sample_cnt)) ELSE max(bdat.matching_sample_cnt) END::bigint AS sample_cnt, max(bdat.frequency) AS frequency, COUNT(*)::integer AS num_variants FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start = $1 AND bdat.chromosome = $2 AND bdat.type = $3 AND bdat.reference = $4 AND lower(bdataset.reference_genome) = $5 AND bdat.dataset_id = ANY (string_to_array($6, ',')::int[]) GROUP BY bdat.dataset_id) variants ORDER BY variants.dataset_id) q;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE variant_type('15399042', '21', 'DEL', 'G', 'grch37', '1');
+DEALLOCATE variant_type;
+
+\echo '=== variant-type: 21:15399042 DEL (exists)'
+PREPARE variant_type_exists AS
+SELECT EXISTS (SELECT 1 FROM public.beacon_data_table bdat INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE bdat.start = $1 AND bdat.chromosome = $2 AND bdat.type = $3 AND bdat.reference = $4 AND lower(bdataset.reference_genome) = $5 AND bdat.dataset_id = ANY (string_to_array($6, ',')::int[]));
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE variant_type_exists('15399042', '21', 'DEL', 'G', 'grch37', '1');
+DEALLOCATE variant_type_exists;
+
+\echo '=== batch: Y:2655179 G>A'
+PREPARE batch AS
+SELECT q.ord, bdat.dataset_id, bdat.variant_cnt, bdat.call_cnt, bdat.matching_sample_cnt, bdat.frequency, bdat.sample_ids FROM unnest(string_to_array($1, ',')::int[], string_to_array($2, ',')::bigint[], string_to_array($3, ',')::int[], string_to_array($4, ','), string_to_array($5, ','), string_to_array($6, ',')) AS q(ord, variant_key, start, reference, alternate, dataset_ids) INNER JOIN public.beacon_data_table bdat ON bdat.variant_key = q.variant_key AND bdat.chromosome = $7 AND bdat.start = q.start AND bdat.reference = q.reference AND bdat.alternate = q.alternate AND bdat.dataset_id = ANY (string_to_array(q.dataset_ids, ';')::int[]) INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id WHERE lower(bdataset.reference_genome) = $8;
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+EXECUTE batch('0', '6920380005309895383', '2655179', 'G', 'A', '1', 'Y', 'grch37');
+DEALLOCATE batch;
+
+-- Not run by the application: how the samples of several matching variants are counted
+
+\echo '=== samples of a range: 21:15000000-16000000 N, maximum of the matching samples'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT bdat.dataset_id, count(*) AS num_variants, max(bdat.matching_sample_cnt) AS sample_cnt
+FROM public.beacon_data_table bdat
+WHERE (bdat.start >= 15000000 AND bdat.start < 16000000 OR bdat.end >= 15000000 AND bdat.end < 16000000)
+	AND bdat.chromosome = '21'
+	AND bdat.dataset_id = ANY (string_to_array('1', ',')::int[])
+GROUP BY bdat.dataset_id;
+
+\echo '=== samples of a range: 21:15000000-16000000 N, distinct samples'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT bdat.dataset_id, count(*) AS num_variants,
+	(SELECT count(DISTINCT ds.sample_id) FROM public.beacon_data_sample_table ds
+		WHERE ds.data_id = ANY (array_agg(bdat.id))) AS sample_cnt
+FROM public.beacon_data_table bdat
+WHERE (bdat.start >= 15000000 AND bdat.start < 16000000 OR bdat.end >= 15000000 AND bdat.end < 16000000)
+	AND bdat.chromosome = '21'
+	AND bdat.dataset_id = ANY (string_to_array('1', ',')::int[])
+GROUP BY bdat.dataset_id;
+
+\echo '=== samples of a range: 21:15000000-16000000 N, union of the sample ids of the variants'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT bdat.dataset_id, count(*) AS num_variants,
+	public.beacon_sample_count(public.beacon_sample_union(bdat.sample_ids)) AS sample_cnt
+FROM public.beacon_data_table bdat
+WHERE (bdat.start >= 15000000 AND bdat.start < 16000000 OR bdat.end >= 15000000 AND bdat.end < 16000000)
+	AND bdat.chromosome = '21'
+	AND bdat.dataset_id = ANY (string_to_array('1', ',')::int[])
+GROUP BY bdat.dataset_id;
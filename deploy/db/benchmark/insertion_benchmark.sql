@@ -0,0 +1,110 @@
+-- Latency of insertion queries (variantType=INS with alternateBases) before and after the
+-- inserted_sequence column: alternate LIKE reference || bases || '%' against inserted_sequence
+-- LIKE bases || '%'. It does not touch beacon_data_table, the variants are generated in a
+-- temporary table with the columns and indexes of db_schema.sql.
+--
+-- Usage: psql -d elixir_beacon_dev -U microaccounts_dev -f insertion_benchmark.sql
+-- The times are printed as notices, then the plans of one query of each kind.
+
+\set variants 2000000
+\set queries 2000
+
+-- Indel-heavy: 10 alleles per position in 200 kb, 80% of them insertions of 1 to 30 bases
+CREATE TEMPORARY TABLE bench_data AS
+SELECT i AS id,
+	'1'::varchar(2) AS chromosome,
+	1000000 + i / 10 AS start,
+	ref AS reference,
+	CASE WHEN random() < 0.8
+		THEN ref || (SELECT string_agg(substr('ACGT', 1 + floor(random() * 4)::int, 1), '')
+			FROM generate_series(1, 1 + floor(random() * 30)::int) WHERE i >= 0)
+		ELSE left(ref, 1) END AS alternate
+FROM (
+	SELECT i, (SELECT string_agg(substr('ACGT', 1 + floor(random() * 4)::int, 1), '')
+		FROM generate_series(1, 1 + floor(random() * 3)::int) WHERE i >= 0) AS ref
+	FROM generate_series(0, :variants - 1) i
+) v;
+
+ALTER TABLE bench_data ADD COLUMN inserted_sequence text COLLATE "C" GENERATED ALWAYS AS (
+	CASE WHEN length(alternate) > length(reference) AND left(alternate, length(reference)) = reference
+	THEN substr(alternate, length(reference) + 1) END) STORED;
+
+CREATE INDEX ON bench_data (chromosome, start, reference, alternate);
+CREATE INDEX ON bench_data (chromosome, start, inserted_sequence) WHERE inserted_sequence IS NOT NULL;
+ANALYZE bench_data;
+
+-- Same probes for both predicates: an existing insertion, its first bases and a 1 kb window
+CREATE TEMPORARY TABLE bench_queries AS
+SELECT start, reference, left(inserted_sequence, 1 + floor(random() * 3)::int) AS bases
+FROM bench_data
+WHERE inserted_sequence IS NOT NULL
+ORDER BY random()
+LIMIT :queries;
+
+DO $$
+DECLARE
+	_probe record;
+	_started timestamptz;
+	_count bigint;
+	_before_exact interval;
+	_after_exact interval;
+	_before_window interval;
+	_after_window interval;
+BEGIN
+	_started = clock_timestamp();
+	FOR _probe IN SELECT * FROM bench_queries LOOP
+		EXECUTE 'SELECT count(*) FROM bench_data bdat WHERE bdat.chromosome = ''1'' AND bdat.start = $1'
+			|| ' AND bdat.reference = $2 AND bdat.alternate LIKE bdat.reference || $3 || ''%'''
+			INTO _count USING _probe.start, _probe.reference, _probe.bases;
+	END LOOP;
+	_before_exact = clock_timestamp() - _started;
+
+	_started = clock_timestamp();
+	FOR _probe IN SELECT * FROM bench_queries LOOP
+		EXECUTE 'SELECT count(*) FROM bench_data bdat WHERE bdat.chromosome = ''1'' AND bdat.start = $1'
+			|| ' AND bdat.reference = $2 AND bdat.inserted_sequence LIKE $3 || ''%'''
+			INTO _count USING _probe.start, _probe.reference, _probe.bases;
+	END LOOP;
+	_after_exact = clock_timestamp() - _started;
+
+	_started = clock_timestamp();
+	FOR _probe IN SELECT * FROM bench_queries LOOP
+		EXECUTE 'SELECT count(*) FROM bench_data bdat WHERE bdat.chromosome = ''1'''
+			|| ' AND bdat.start >= $1 AND bdat.start < $1 + 1000'
+			|| ' AND bdat.alternate LIKE bdat.reference || $2 || ''%'''
+			INTO _count USING _probe.start, _probe.bases;
+	END LOOP;
+	_before_window = clock_timestamp() - _started;
+
+	_started = clock_timestamp();
+	FOR _probe IN SELECT * FROM bench_queries LOOP
+		EXECUTE 'SELECT count(*) FROM bench_data bdat WHERE bdat.chromosome = ''1'''
+			|| ' AND bdat.start >= $1 AND bdat.start < $1 + 1000'
+			|| ' AND bdat.inserted_sequence LIKE $2 || ''%'''
+			INTO _count USING _probe.start, _probe.bases;
+	END LOOP;
+	_after_window = clock_timestamp() - _started;
+
+	RAISE NOTICE 'exact position: % ms before, % ms after, per query',
+		round((extract(epoch FROM _before_exact) * 1000 / (SELECT count(*) FROM bench_queries))::numeric, 3),
+		round((extract(epoch FROM _after_exact) * 1000 / (SELECT count(*) FROM bench_queries))::numeric, 3);
+	RAISE NOTICE '1 kb window: % ms before, % ms after, per query',
+		round((extract(epoch FROM _before_window) * 1000 / (SELECT count(*) FROM bench_queries))::numeric, 3),
+		round((extract(epoch FROM _after_window) * 1000 / (SELECT count(*) FROM bench_queries))::numeric, 3);
+END
+$$;
+
+\echo '=== before: 1 kb window, alternate LIKE reference || bases || %'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT count(*) FROM bench_data bdat
+WHERE bdat.chromosome = '1' AND bdat.start >= 1100000 AND bdat.start < 1101000
+	AND bdat.alternate LIKE bdat.reference || 'AC' || '%';
+
+\echo '=== after: 1 kb window, inserted_sequence LIKE bases || %'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT count(*) FROM bench_data bdat
+WHERE bdat.chromosome = '1' AND bdat.start >= 1100000 AND bdat.start < 1101000
+	AND bdat.inserted_sequence LIKE 'AC' || '%';
+
+DROP TABLE bench_queries;
+DROP TABLE bench_data;
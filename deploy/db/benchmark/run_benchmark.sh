@@ -0,0 +1,24 @@
+#!/usr/bin/env bash
+# Compares the query plans of beacon_data_table before and after migrate_partitioned.sql.
+# Run it against a database created with the unpartitioned, unindexed schema.
+#
+# Usage: run_benchmark.sh [database] [user]
+# The plans are written to plans_before.txt and plans_after.txt in the current directory.
+
+set -e
+
+DB=${1:-elixir_beacon_dev}
+DB_USER=${2:-microaccounts_dev}
+DIR=$(cd "$(dirname "$0")" && pwd)
+PSQL="psql -h localhost -p 5432 -d $DB -U $DB_USER -v ON_ERROR_STOP=1"
+
+$PSQL -c "ANALYZE public.beacon_data_table"
+$PSQL -f "$DIR/explain_queries.sql" > plans_before.txt
+
+$PSQL -f "$DIR/../db/migrate_partitioned.sql"
+
+$PSQL -f "$DIR/explain_queries.sql" > plans_after.txt
+
+echo "Execution times (before / after):"
+paste <(grep -E "^===|Execution Time" plans_before.txt) \
+      <(grep -E "^===|Execution Time" plans_after.txt | sed 's/^===.*//')
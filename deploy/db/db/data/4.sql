@@ -3,10 +3,32 @@ select data_sam_unnested.data_id, s.id AS sample_id
 from (
     select dt.id as data_id, unnest(t.sample_ids) AS sample_stable_id
     from public.tmp_data_sample_table t
-    inner join public.beacon_data_table dt ON dt.dataset_id=t.dataset_id and dt.chromosome=t.chromosome
-        and dt.variant_id=t.variant_id and dt.reference=t.reference and dt.alternate=t.alternate
-        and dt.start=t.start and dt.type=t.type 
+    -- The key finds the variant, the other columns rule out variants sharing it
+    inner join public.beacon_data_table dt ON dt.variant_key=t.variant_key and dt.dataset_id=t.dataset_id
+        and dt.chromosome=t.chromosome and dt.variant_id=t.variant_id and dt.reference=t.reference
+        and dt.alternate=t.alternate and dt.start=t.start and dt.type=t.type
 )data_sam_unnested
 inner join public.beacon_sample_table s on s.stable_id=data_sam_unnested.sample_stable_id
 left join public.beacon_data_sample_table ds ON ds.data_id=data_sam_unnested.data_id and ds.sample_id=s.id
 where ds.data_id is null;
+
+-- Keep the number of matching samples, and their ids, of the variants loaded now up to date,
+-- the queries read them from the variant row instead of joining beacon_data_sample_table
+UPDATE public.beacon_data_table dt
+SET matching_sample_cnt = matching.sample_cnt, sample_ids = matching.sample_ids
+FROM (
+    select ds.data_id, count(*) AS sample_cnt, array_agg(ds.sample_id ORDER BY ds.sample_id) AS sample_ids
+    from public.beacon_data_sample_table ds
+    where ds.data_id in (
+        select dt.id
+        from public.tmp_data_sample_table t
+        inner join public.beacon_data_table dt ON dt.variant_key=t.variant_key and dt.dataset_id=t.dataset_id
+            and dt.chromosome=t.chromosome and dt.variant_id=t.variant_id and dt.reference=t.reference
+            and dt.alternate=t.alternate and dt.start=t.start and dt.type=t.type
+    )
+    group by ds.data_id
+)matching
+WHERE dt.id=matching.data_id;
+
+-- The beacon drops the query results it has cached
+UPDATE public.beacon_data_version_table SET version = version + 1;
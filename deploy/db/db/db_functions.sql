@@ -101,6 +101,12 @@ BEGIN
 	END IF;
 	IF _alternate_bases='N' THEN _alternate_bases='*'; END IF; -- Look for any variant
 
+	-- An empty start or end range matches nothing, and int4range() below would fail if its lower
+	-- bound were greater than the upper one
+	IF _start_min IS NOT NULL AND (_start_min >= _start_max OR _end_min >= _end_max) THEN
+		RETURN;
+	END IF;
+
 	_query = '
 	SELECT
 		CONCAT(q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants) AS id,
@@ -131,22 +137,16 @@ BEGIN
 			CASE WHEN count(*) > 1
 				THEN SUM(bdat.call_cnt)::bigint
 				ELSE max(bdat.call_cnt) END AS call_cnt,
+			-- matching_sample_cnt and sample_ids are kept up to date by the loader (see 4.sql). The
+			-- samples of several matching variants are counted once
 			CASE WHEN count(*) > 1
-				THEN MAX(matching_samples.sample_cnt)::bigint
-				ELSE max(bdat.matching_sample_cnt) END AS sample_cnt,
-			CASE WHEN count(*) > 1
-				THEN SUM(bdat.frequency)
-				ELSE max(bdat.frequency) END AS frequency,
-			COUNT(DISTINCT bdat.id)::integer AS num_variants
+				THEN COALESCE(NULLIF(public.beacon_sample_count(public.beacon_sample_union(
+					bdat.sample_ids)), 0), max(bdat.matching_sample_cnt))
+				ELSE max(bdat.matching_sample_cnt) END::bigint AS sample_cnt,
+			max(bdat.frequency) AS frequency,
+			COUNT(*)::integer AS num_variants
 		FROM public.beacon_data_table bdat
 		INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id
-		INNER JOIN public.beacon_data_sample_table bdat_s on bdat_s.data_id=bdat.id
-		INNER JOIN public.beacon_sample_table s ON s.id=bdat_s.sample_id
-		LEFT JOIN LATERAL (
-			SELECT COALESCE(COUNT(DISTINCT bsam.sample_id), 0)::integer AS sample_cnt
-			FROM public.beacon_data_sample_table bsam
-			WHERE bsam.data_id=bdat.id
-		) matching_samples ON TRUE
 		WHERE';
 	IF _variant_type IN ('DUP','DEL','INS','INV','CNV','DUP:TANDEM','DEL:ME','INS:ME') THEN
 		_query = _query || ' bdat.type=$1 AND';
@@ -158,6 +158,8 @@ BEGIN
 	IF _start_min IS NOT NULL THEN
 		_query = _query || ' bdat.start >= $9 AND bdat.start < $10
 						AND bdat.end >= $11	AND bdat.end < $12 AND
+						int4range(LEAST(bdat.start, bdat."end"), GREATEST(bdat.start, bdat."end"), ''[]'')
+							<@ int4range(LEAST($9, $11), GREATEST($10, $12)) AND
 	     ';
 	ELSIF _alternate_bases != '*' OR (_alternate_bases = '*' AND _end IS NULL)
 		OR (_alternate_bases IS NULL AND _variant_type IS NOT NULL) THEN
@@ -188,10 +190,11 @@ BEGIN
 	END IF;
 
 	-- Alternate bases
-	IF _alternate_bases IS NOT NULL THEN
+	IF _alternate_bases IS NOT NULL AND _alternate_bases NOT IN ('N','*') THEN
 		IF _variant_type='INS' THEN
-			_query = _query || ' bdat.alternate like bdat.reference || $5 || ''%'' AND';
-		ELSIF _alternate_bases NOT IN ('N','*') THEN
+			-- alternate like reference || $5 || '%', with the index of the inserted bases
+			_query = _query || ' bdat.inserted_sequence like $5 || ''%'' AND';
+		ELSE
 			_query = _query || ' bdat.alternate=$5 AND';
 		END IF;
 	END IF;
@@ -6,12 +6,37 @@ DROP TABLE IF EXISTS public.consent_code_table;
 DROP TABLE IF EXISTS public.consent_code_category_table;
 DROP TABLE IF EXISTS public.tmp_data_sample_table;
 DROP TABLE IF EXISTS public.tmp_sample_table;
+DROP TABLE IF EXISTS public.beacon_data_version_table;
 DROP TABLE IF EXISTS public.beacon_data_sample_table CASCADE;
 DROP TABLE IF EXISTS public.beacon_dataset_sample_table CASCADE;
 DROP TABLE IF EXISTS public.beacon_data_table;
 DROP TABLE IF EXISTS public.beacon_sample_table;
 DROP TABLE IF EXISTS public.beacon_dataset_table;
 
+-- Canonical key of an allele, see org.ega_archive.elixirbeacon.index.VariantKey: both must pack
+-- chromosome (5 bits), start (28 bits) and the hash of the bases (30 bits) the same way
+CREATE OR REPLACE FUNCTION public.beacon_variant_key(_chromosome text, _start integer,
+	_reference text, _alternate text)
+RETURNS bigint AS $$
+	SELECT ((CASE c WHEN 'X' THEN 23 WHEN 'Y' THEN 24 WHEN 'M' THEN 25 WHEN 'MT' THEN 25
+			ELSE CASE WHEN c ~ '^([1-9]|1[0-9]|2[0-2])$' THEN c::integer ELSE 0 END END)::bigint << 58)
+		| ((_start::bigint & 268435455) << 30)
+		| (('x' || left(md5(upper(_reference) || '>' || upper(_alternate)), 8))::bit(32)::bigint
+			& 1073741823)
+	FROM (SELECT upper(regexp_replace(_chromosome, '^chr', '', 'i')) AS c) chromosome
+$$ LANGUAGE sql IMMUTABLE STRICT;
+
+-- Samples of several variants (beacon_data_table.sample_ids): the union of their arrays and the
+-- number of distinct samples in it, so that the queries do not join beacon_data_sample_table
+CREATE OR REPLACE AGGREGATE public.beacon_sample_union(integer[]) (
+	SFUNC = array_cat,
+	STYPE = integer[]
+);
+CREATE OR REPLACE FUNCTION public.beacon_sample_count(_sample_ids integer[])
+RETURNS bigint AS $$
+	SELECT count(DISTINCT sample_id) FROM unnest(_sample_ids) AS sample_id
+$$ LANGUAGE sql IMMUTABLE;
+
 CREATE TABLE public.beacon_dataset_table
 (
     id SERIAL NOT NULL PRIMARY KEY,
@@ -40,10 +65,38 @@ CREATE TABLE public.beacon_data_table (
     call_cnt integer,
     sample_cnt integer,
 	matching_sample_cnt integer,
-    frequency decimal
-
+    -- Sorted ids of the samples of beacon_data_sample_table that have the variant, null if none.
+    -- Filled by the loader (see 4.sql)
+    sample_ids integer[],
+    frequency decimal,
+    -- Bases inserted after the reference (alternate = reference || inserted_sequence), null if the
+    -- alternate does not extend the reference. Byte order, so that prefixes can use an index
+    inserted_sequence text COLLATE "C" GENERATED ALWAYS AS (
+        CASE WHEN length(alternate) > length(reference) AND left(alternate, length(reference)) = reference
+        THEN substr(alternate, length(reference) + 1) END) STORED,
+    -- Canonical key of chromosome, start, reference and alternate, see beacon_variant_key()
+    variant_key bigint GENERATED ALWAYS AS (
+        public.beacon_variant_key(chromosome, start, reference, alternate)) STORED
 );
 
+-- Exact lookups (start, start+end)
+CREATE INDEX beacon_data_table_variant_idx
+	ON public.beacon_data_table (chromosome, start, reference, alternate, dataset_id);
+-- Exact alleles and the sample links of the loader: a single column probe
+CREATE INDEX beacon_data_table_variant_key_idx
+	ON public.beacon_data_table (variant_key, dataset_id);
+-- Range queries (start+end with alternateBases=N) also look for variants ending inside the window
+CREATE INDEX beacon_data_table_end_idx
+	ON public.beacon_data_table (chromosome, "end");
+-- Bracket queries (startMin/startMax/endMin/endMax): the variant has to be contained in the window
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+CREATE INDEX beacon_data_table_range_idx
+	ON public.beacon_data_table USING gist (chromosome, int4range(LEAST(start, "end"), GREATEST(start, "end"), '[]'));
+-- Insertions with alternateBases (variantType=INS): prefix of the inserted bases
+CREATE INDEX beacon_data_table_insertion_idx
+	ON public.beacon_data_table (chromosome, start, inserted_sequence)
+	WHERE inserted_sequence IS NOT NULL;
+
 CREATE TABLE public.beacon_sample_table (
 	id serial NOT NULL PRIMARY KEY,
 	stable_id text NOT NULL
@@ -71,8 +124,16 @@ CREATE TABLE public.tmp_data_sample_table (
   alternate text NOT NULL,
   start integer NOT NULL,
   type character varying(10),
-  sample_ids text ARRAY[4] NOT NULL
+  sample_ids text ARRAY[4] NOT NULL,
+  variant_key bigint GENERATED ALWAYS AS (
+      public.beacon_variant_key(chromosome, start, reference, alternate)) STORED
+);
+
+-- Incremented by the loader when it finishes, cached query results of older versions are dropped
+CREATE TABLE public.beacon_data_version_table (
+	version bigint NOT NULL
 );
+INSERT INTO public.beacon_data_version_table (version) VALUES (0);
 
 CREATE TABLE tmp_sample_table (
   id serial NOT NULL,
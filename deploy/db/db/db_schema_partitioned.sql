@@ -0,0 +1,88 @@
+-- Alternative layout of beacon_data_table: one partition per chromosome.
+-- It has to be run after db_schema.sql and before loading any variant.
+--
+-- Every query filters by chromosome, so only one partition (and its indexes) is visited. Indexes
+-- are created on the parent table and inherited by every partition (PostgreSQL 11 or newer).
+--
+-- The primary key of a partitioned table must include the partition key, so beacon_data_sample_table
+-- can not keep its foreign key to beacon_data_table. Ids still come from beacon_data_table_id_seq.
+
+DROP VIEW IF EXISTS public.beacon_data_summary;
+DROP TABLE IF EXISTS public.beacon_data_table CASCADE;
+
+CREATE SEQUENCE IF NOT EXISTS public.beacon_data_table_id_seq;
+
+CREATE TABLE public.beacon_data_table (
+    id integer NOT NULL DEFAULT nextval('public.beacon_data_table_id_seq'),
+    dataset_id integer NOT NULL REFERENCES public.beacon_dataset_table (id),
+    chromosome character varying(2) NOT NULL,
+    variant_id text,
+    reference text NOT NULL,
+    alternate text NOT NULL,
+    start integer NOT NULL,
+    "end" integer,
+    type character varying(10),
+    sv_length integer,
+    variant_cnt integer,
+    call_cnt integer,
+    sample_cnt integer,
+	matching_sample_cnt integer,
+    -- Sorted ids of the samples of beacon_data_sample_table that have the variant, null if none
+    sample_ids integer[],
+    frequency decimal,
+    -- Bases inserted after the reference (alternate = reference || inserted_sequence), null if the
+    -- alternate does not extend the reference. Byte order, so that prefixes can use an index
+    inserted_sequence text COLLATE "C" GENERATED ALWAYS AS (
+        CASE WHEN length(alternate) > length(reference) AND left(alternate, length(reference)) = reference
+        THEN substr(alternate, length(reference) + 1) END) STORED,
+    -- Canonical key of chromosome, start, reference and alternate, see beacon_variant_key()
+    variant_key bigint GENERATED ALWAYS AS (
+        public.beacon_variant_key(chromosome, start, reference, alternate)) STORED,
+    PRIMARY KEY (id, chromosome)
+) PARTITION BY LIST (chromosome);
+
+ALTER SEQUENCE public.beacon_data_table_id_seq OWNED BY public.beacon_data_table.id;
+
+DO $$
+DECLARE
+	_chromosome text;
+BEGIN
+	FOREACH _chromosome IN ARRAY ARRAY['1','2','3','4','5','6','7','8','9','10','11','12','13','14',
+		'15','16','17','18','19','20','21','22','X','Y','MT']
+	LOOP
+		EXECUTE format('CREATE TABLE public.beacon_data_table_chr%s PARTITION OF public.beacon_data_table FOR VALUES IN (%L)',
+			lower(_chromosome), _chromosome);
+	END LOOP;
+END
+$$;
+-- Any other contig
+CREATE TABLE public.beacon_data_table_other PARTITION OF public.beacon_data_table DEFAULT;
+
+-- Exact lookups (start, start+end)
+CREATE INDEX beacon_data_table_variant_idx
+	ON public.beacon_data_table (start, reference, alternate, dataset_id);
+-- Exact alleles and the sample links of the loader: a single column probe
+CREATE INDEX beacon_data_table_variant_key_idx
+	ON public.beacon_data_table (variant_key, dataset_id);
+-- Range queries (start+end with alternateBases=N) also look for variants ending inside the window
+CREATE INDEX beacon_data_table_end_idx
+	ON public.beacon_data_table ("end");
+-- Bracket queries (startMin/startMax/endMin/endMax): the variant has to be contained in the window
+CREATE INDEX beacon_data_table_range_idx
+	ON public.beacon_data_table USING gist (int4range(LEAST(start, "end"), GREATEST(start, "end"), '[]'));
+-- Insertions with alternateBases (variantType=INS): prefix of the inserted bases
+CREATE INDEX beacon_data_table_insertion_idx
+	ON public.beacon_data_table (start, inserted_sequence)
+	WHERE inserted_sequence IS NOT NULL;
+
+CREATE OR REPLACE VIEW public.beacon_data_summary AS
+SELECT dat.id AS dataset_id,
+	d.variant_cnt,
+	d.call_cnt,
+	d.sample_cnt,
+	COALESCE(COUNT(DISTINCT d_sam.sample_id),NULL) AS matching_sample_cnt,
+	d.frequency
+FROM beacon_data_table d
+INNER JOIN beacon_dataset_table dat ON dat.id = d.dataset_id
+LEFT JOIN beacon_data_sample_table d_sam ON d_sam.data_id=d.id
+GROUP BY dat.id, d.variant_cnt, d.call_cnt, d.sample_cnt, d.frequency;
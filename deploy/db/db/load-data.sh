@@ -1,7 +1,8 @@
 #!/usr/bin/env bash
 
+# Demo data of the Docker image. Big datasets load faster with BeaconDataLoader, see the README
+
 # Datasets
-<<<<<<< HEAD
 psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < /beacon/1.sql
 
 # Variants
@@ -31,35 +32,3 @@ psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < /beacon/4.
     
 # Finally
 psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < /beacon/5.sql
-=======
-psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < data/1.sql
-
-# Variants
-psql -h localhost -p 5432 -U microaccounts_dev -c \
-"copy public.beacon_data_table (dataset_id,chromosome,start,variant_id,reference,alternate,\"end\",\"type\",sv_length,variant_cnt,call_cnt,sample_cnt,frequency,matching_sample_cnt) from stdin using delimiters ';' csv header" elixir_beacon_v101_dev < data/1_chrY_subset.variants.csv
-psql -h localhost -p 5432 -U microaccounts_dev -c \
-    "copy public.beacon_data_table (dataset_id,chromosome,start,variant_id,reference,alternate,\"end\",\"type\",sv_length,variant_cnt,call_cnt,sample_cnt,frequency,matching_sample_cnt) from stdin using delimiters ';' csv header" elixir_beacon_v101_dev < data/1_chr21_subset.variants.csv
-
-# Sample list
-psql -h localhost -p 5432 -U microaccounts_dev -c \
-"copy public.tmp_sample_table (sample_stable_id,dataset_id) from stdin using delimiters ';' csv header" elixir_beacon_v101_dev < data/1_chrY_subset.samples.csv
-psql -h localhost -p 5432 -U microaccounts_dev -c \
-"copy public.tmp_sample_table (sample_stable_id,dataset_id) from stdin using delimiters ';' csv header" elixir_beacon_v101_dev < data/1_chr21_subset.samples.csv
-
-psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < data/2.sql
-psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < data/3.sql
-
-# Samples where each variant is found
-psql -h localhost -p 5432 -U microaccounts_dev -c \
-"copy public.tmp_data_sample_table (dataset_id,chromosome,start,variant_id,reference,alternate,\"type\",sample_ids) from stdin using delimiters ';' csv header" elixir_beacon_v101_dev \
-< data/1_chrY_subset.variants.matching.samples.csv
-psql -h localhost -p 5432  -U microaccounts_dev -c \
-"copy public.tmp_data_sample_table (dataset_id,chromosome,start,variant_id,reference,alternate,\"type\",sample_ids) from stdin using delimiters ';' csv header" elixir_beacon_v101_dev \
-< data/1_chr21_subset.variants.matching.samples.csv
-
-psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < data/4.sql
-    
-# Finally
-psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < data/5.sql
-
->>>>>>> v1.1.0_dev
@@ -0,0 +1,15 @@
+-- Adds the beacon_data_version_table of db_schema.sql to an existing database. The loader (4.sql)
+-- increments its version, so that the beacon drops the query results it has cached.
+--
+-- Usage: psql -d elixir_beacon_dev -U microaccounts_dev -f migrate_data_version.sql
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.beacon_data_version_table (
+	version bigint NOT NULL
+);
+INSERT INTO public.beacon_data_version_table (version)
+SELECT 0
+WHERE NOT EXISTS (SELECT 1 FROM public.beacon_data_version_table);
+
+COMMIT;
@@ -0,0 +1,20 @@
+-- Adds the inserted_sequence column of db_schema.sql, and its index, to an existing database.
+-- Works with both layouts of beacon_data_table (db_schema.sql and db_schema_partitioned.sql).
+--
+-- Usage: psql -d elixir_beacon_dev -U microaccounts_dev -f migrate_inserted_sequence.sql
+-- The table is rewritten to store the new column, so it is locked while it runs.
+
+BEGIN;
+
+ALTER TABLE public.beacon_data_table
+	ADD COLUMN IF NOT EXISTS inserted_sequence text COLLATE "C" GENERATED ALWAYS AS (
+        CASE WHEN length(alternate) > length(reference) AND left(alternate, length(reference)) = reference
+        THEN substr(alternate, length(reference) + 1) END) STORED;
+
+CREATE INDEX IF NOT EXISTS beacon_data_table_insertion_idx
+	ON public.beacon_data_table (chromosome, start, inserted_sequence)
+	WHERE inserted_sequence IS NOT NULL;
+
+COMMIT;
+
+ANALYZE public.beacon_data_table;
@@ -0,0 +1,105 @@
+-- Migrates an existing database to the layout of db_schema_partitioned.sql keeping the data:
+-- beacon_data_table partitioned by chromosome, with the indexes used by the queries.
+--
+-- Usage: psql -d elixir_beacon_dev -U microaccounts_dev -f migrate_partitioned.sql
+-- Variant ids are kept, so beacon_data_sample_table does not need to be touched.
+-- It needs the beacon_variant_key function and the sample_ids column: run
+-- migrate_variant_key.sql and migrate_sample_ids.sql first on databases created before them.
+
+BEGIN;
+
+LOCK TABLE public.beacon_data_table IN ACCESS EXCLUSIVE MODE;
+
+DROP VIEW IF EXISTS public.beacon_data_summary;
+ALTER TABLE public.beacon_data_sample_table DROP CONSTRAINT IF EXISTS beacon_data_sample_table_data_id_fkey;
+
+-- Keep the sequence, the new table takes the ids from it
+ALTER SEQUENCE public.beacon_data_table_id_seq OWNED BY NONE;
+ALTER TABLE public.beacon_data_table ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE public.beacon_data_table RENAME TO beacon_data_table_unpartitioned;
+
+CREATE TABLE public.beacon_data_table (
+    id integer NOT NULL DEFAULT nextval('public.beacon_data_table_id_seq'),
+    dataset_id integer NOT NULL REFERENCES public.beacon_dataset_table (id),
+    chromosome character varying(2) NOT NULL,
+    variant_id text,
+    reference text NOT NULL,
+    alternate text NOT NULL,
+    start integer NOT NULL,
+    "end" integer,
+    type character varying(10),
+    sv_length integer,
+    variant_cnt integer,
+    call_cnt integer,
+    sample_cnt integer,
+	matching_sample_cnt integer,
+    -- Sorted ids of the samples of beacon_data_sample_table that have the variant, null if none
+    sample_ids integer[],
+    frequency decimal,
+    -- Bases inserted after the reference (alternate = reference || inserted_sequence), null if the
+    -- alternate does not extend the reference. Byte order, so that prefixes can use an index
+    inserted_sequence text COLLATE "C" GENERATED ALWAYS AS (
+        CASE WHEN length(alternate) > length(reference) AND left(alternate, length(reference)) = reference
+        THEN substr(alternate, length(reference) + 1) END) STORED,
+    -- Canonical key of chromosome, start, reference and alternate, see beacon_variant_key()
+    variant_key bigint GENERATED ALWAYS AS (
+        public.beacon_variant_key(chromosome, start, reference, alternate)) STORED,
+    PRIMARY KEY (id, chromosome)
+) PARTITION BY LIST (chromosome);
+
+ALTER SEQUENCE public.beacon_data_table_id_seq OWNED BY public.beacon_data_table.id;
+
+DO $$
+DECLARE
+	_chromosome text;
+BEGIN
+	FOREACH _chromosome IN ARRAY ARRAY['1','2','3','4','5','6','7','8','9','10','11','12','13','14',
+		'15','16','17','18','19','20','21','22','X','Y','MT']
+	LOOP
+		EXECUTE format('CREATE TABLE public.beacon_data_table_chr%s PARTITION OF public.beacon_data_table FOR VALUES IN (%L)',
+			lower(_chromosome), _chromosome);
+	END LOOP;
+END
+$$;
+CREATE TABLE public.beacon_data_table_other PARTITION OF public.beacon_data_table DEFAULT;
+
+-- Copy before creating the indexes, it is much faster to build them at the end
+INSERT INTO public.beacon_data_table (id, dataset_id, chromosome, variant_id, reference, alternate,
+	start, "end", type, sv_length, variant_cnt, call_cnt, sample_cnt, matching_sample_cnt,
+	sample_ids, frequency)
+SELECT id, dataset_id, chromosome, variant_id, reference, alternate,
+	start, "end", type, sv_length, variant_cnt, call_cnt, sample_cnt, matching_sample_cnt,
+	sample_ids, frequency
+FROM public.beacon_data_table_unpartitioned;
+
+DROP TABLE public.beacon_data_table_unpartitioned;
+
+CREATE INDEX beacon_data_table_variant_idx
+	ON public.beacon_data_table (start, reference, alternate, dataset_id);
+-- Exact alleles and the sample links of the loader: a single column probe
+CREATE INDEX beacon_data_table_variant_key_idx
+	ON public.beacon_data_table (variant_key, dataset_id);
+CREATE INDEX beacon_data_table_end_idx
+	ON public.beacon_data_table ("end");
+CREATE INDEX beacon_data_table_range_idx
+	ON public.beacon_data_table USING gist (int4range(LEAST(start, "end"), GREATEST(start, "end"), '[]'));
+-- Insertions with alternateBases (variantType=INS): prefix of the inserted bases
+CREATE INDEX beacon_data_table_insertion_idx
+	ON public.beacon_data_table (start, inserted_sequence)
+	WHERE inserted_sequence IS NOT NULL;
+
+CREATE OR REPLACE VIEW public.beacon_data_summary AS
+SELECT dat.id AS dataset_id,
+	d.variant_cnt,
+	d.call_cnt,
+	d.sample_cnt,
+	COALESCE(COUNT(DISTINCT d_sam.sample_id),NULL) AS matching_sample_cnt,
+	d.frequency
+FROM beacon_data_table d
+INNER JOIN beacon_dataset_table dat ON dat.id = d.dataset_id
+LEFT JOIN beacon_data_sample_table d_sam ON d_sam.data_id=d.id
+GROUP BY dat.id, d.variant_cnt, d.call_cnt, d.sample_cnt, d.frequency;
+
+COMMIT;
+
+ANALYZE public.beacon_data_table;
@@ -0,0 +1,34 @@
+-- Adds the sample_ids column of db_schema.sql, and the functions that count the samples of several
+-- variants with it, to an existing database. Works with both layouts of beacon_data_table
+-- (db_schema.sql and db_schema_partitioned.sql).
+--
+-- Usage: psql -d elixir_beacon_dev -U microaccounts_dev -f migrate_sample_ids.sql
+-- Every variant with samples is updated, so the table is locked while it runs.
+
+BEGIN;
+
+-- Samples of several variants (beacon_data_table.sample_ids): the union of their arrays and the
+-- number of distinct samples in it, so that the queries do not join beacon_data_sample_table
+CREATE OR REPLACE AGGREGATE public.beacon_sample_union(integer[]) (
+	SFUNC = array_cat,
+	STYPE = integer[]
+);
+CREATE OR REPLACE FUNCTION public.beacon_sample_count(_sample_ids integer[])
+RETURNS bigint AS $$
+	SELECT count(DISTINCT sample_id) FROM unnest(_sample_ids) AS sample_id
+$$ LANGUAGE sql IMMUTABLE;
+
+ALTER TABLE public.beacon_data_table ADD COLUMN IF NOT EXISTS sample_ids integer[];
+
+UPDATE public.beacon_data_table dt
+SET sample_ids = samples.sample_ids
+FROM (
+	SELECT ds.data_id, array_agg(ds.sample_id ORDER BY ds.sample_id) AS sample_ids
+	FROM public.beacon_data_sample_table ds
+	GROUP BY ds.data_id
+) samples
+WHERE dt.id = samples.data_id;
+
+COMMIT;
+
+ANALYZE public.beacon_data_table;
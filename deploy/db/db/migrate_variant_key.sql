@@ -0,0 +1,36 @@
+-- Adds the variant_key column of db_schema.sql, its function and its index to an existing
+-- database. Works with both layouts of beacon_data_table (db_schema.sql and
+-- db_schema_partitioned.sql).
+--
+-- Usage: psql -d elixir_beacon_dev -U microaccounts_dev -f migrate_variant_key.sql
+-- The table is rewritten to store the new column, so it is locked while it runs.
+
+BEGIN;
+
+-- Canonical key of an allele, see org.ega_archive.elixirbeacon.index.VariantKey: both must pack
+-- chromosome (5 bits), start (28 bits) and the hash of the bases (30 bits) the same way
+CREATE OR REPLACE FUNCTION public.beacon_variant_key(_chromosome text, _start integer,
+	_reference text, _alternate text)
+RETURNS bigint AS $$
+	SELECT ((CASE c WHEN 'X' THEN 23 WHEN 'Y' THEN 24 WHEN 'M' THEN 25 WHEN 'MT' THEN 25
+			ELSE CASE WHEN c ~ '^([1-9]|1[0-9]|2[0-2])$' THEN c::integer ELSE 0 END END)::bigint << 58)
+		| ((_start::bigint & 268435455) << 30)
+		| (('x' || left(md5(upper(_reference) || '>' || upper(_alternate)), 8))::bit(32)::bigint
+			& 1073741823)
+	FROM (SELECT upper(regexp_replace(_chromosome, '^chr', '', 'i')) AS c) chromosome
+$$ LANGUAGE sql IMMUTABLE STRICT;
+
+ALTER TABLE public.beacon_data_table
+	ADD COLUMN IF NOT EXISTS variant_key bigint GENERATED ALWAYS AS (
+		public.beacon_variant_key(chromosome, start, reference, alternate)) STORED;
+
+CREATE INDEX IF NOT EXISTS beacon_data_table_variant_key_idx
+	ON public.beacon_data_table (variant_key, dataset_id);
+
+ALTER TABLE public.tmp_data_sample_table
+	ADD COLUMN IF NOT EXISTS variant_key bigint GENERATED ALWAYS AS (
+		public.beacon_variant_key(chromosome, start, reference, alternate)) STORED;
+
+COMMIT;
+
+ANALYZE public.beacon_data_table;
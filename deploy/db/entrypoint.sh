@@ -6,6 +6,11 @@ set -e # exit immediately on any error
     # Wait for DB
     while ! nc -z localhost 5432; do echo "Waiting for DB [1 second]"; sleep 1; done
 
+    # Partition the variant table by chromosome before loading any data
+    if [ "$BEACON_PARTITIONED" = "true" ]; then
+        psql -h localhost -p 5432 -d elixir_beacon_dev -U microaccounts_dev < /beacon/db_schema_partitioned.sql
+    fi
+
     # Load data
     /usr/local/bin/beacon-load-data.sh /beacon
 ) &
@@ -0,0 +1,111 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.ega_archive.elixirbeacon.dto.BeaconAlleleRequest;
+import org.ega_archive.elixirbeacon.dto.BeaconAlleleResponse;
+import org.ega_archive.elixirbeacon.dto.DatasetAlleleResponse;
+import org.ega_archive.elixirbeacon.dto.DatasetFragment;
+import org.ega_archive.elixirbeacon.dto.Handover;
+import org.ega_archive.elixirbeacon.dto.HandoverType;
+import org.ega_archive.elixirbeacon.enums.FilterDatasetResponse;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCode;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCodePK;
+
+/**
+ * Same datasets as {@code /db/beacon_dataset_table.sql} in the test resources, built in memory.
+ */
+public class BenchmarkData {
+
+  public static List<BeaconDataset> datasets() {
+    return Arrays.asList(
+        dataset(1, "EGAD00000000001", "PUBLIC", "grch37"),
+        dataset(2, "EGAD00000000002", "REGISTERED", "grch37"),
+        dataset(3, "EGAD00000000003", "CONTROLLED", "grch38"),
+        dataset(4, "EGAD00000000004", "PUBLIC", "grch37"),
+        dataset(5, "EGAD00000000005", "PUBLIC", "grch37"));
+  }
+
+  public static List<BeaconDatasetConsentCode> consentCodes(int datasetId) {
+    return Arrays.asList(
+        consentCode(datasetId, "NRES", "PRIMARY"),
+        consentCode(datasetId, "GRU(CC)", "SECONDARY"),
+        consentCode(datasetId, "PS", "REQUIREMENT"));
+  }
+
+  public static BeaconAlleleResponse alleleResponse() {
+    BeaconAlleleResponse response = new BeaconAlleleResponse();
+    response.setAlleleRequest(BeaconAlleleRequest.builder()
+        .referenceName("4")
+        .start(4)
+        .referenceBases("C")
+        .alternateBases("G")
+        .assemblyId("grch37")
+        .includeDatasetResponses(FilterDatasetResponse.ALL)
+        .build());
+    response.setExists(true);
+
+    List<DatasetAlleleResponse> datasetResponses = new ArrayList<>();
+    for (BeaconDataset dataset : datasets()) {
+      DatasetAlleleResponse datasetResponse = new DatasetAlleleResponse();
+      datasetResponse.setDatasetId(dataset.getStableId());
+      datasetResponse.setExists(dataset.getId() == 1);
+      datasetResponse.setFrequency(new BigDecimal("0.1"));
+      datasetResponse.setVariantCount(BigInteger.ONE);
+      datasetResponse.setCallCount(BigInteger.valueOf(2));
+      datasetResponse.setSampleCount(BigInteger.ONE);
+      datasetResponse.setDatasetHandover(Collections.singletonList(handover()));
+      datasetResponse.setFragment(new DatasetFragment(datasetResponse.getDatasetId(),
+          datasetResponse.getDatasetHandover()));
+      datasetResponses.add(datasetResponse);
+    }
+    response.setDatasetAlleleResponses(datasetResponses);
+    return response;
+  }
+
+  private static BeaconDataset dataset(int id, String stableId, String accessType,
+      String referenceGenome) {
+
+    BeaconDataset dataset = new BeaconDataset();
+    dataset.setId(id);
+    dataset.setStableId(stableId);
+    dataset.setDescription("Sample variants");
+    dataset.setAccessType(accessType);
+    dataset.setReferenceGenome(referenceGenome);
+    dataset.setVariantCnt(BigInteger.valueOf(3));
+    dataset.setCallCnt(BigInteger.valueOf(6));
+    dataset.setSampleCnt(BigInteger.ONE);
+    return dataset;
+  }
+
+  private static BeaconDatasetConsentCode consentCode(int datasetId, String code,
+      String category) {
+
+    BeaconDatasetConsentCodePK id = new BeaconDatasetConsentCodePK();
+    id.setDatasetId(datasetId);
+    id.setCode(code);
+    BeaconDatasetConsentCode consentCode = new BeaconDatasetConsentCode();
+    consentCode.setId(id);
+    consentCode.setCategory(category);
+    consentCode.setDescription(code);
+    consentCode.setVersion("v1.0");
+    return consentCode;
+  }
+
+  private static Handover handover() {
+    HandoverType handoverType = new HandoverType();
+    handoverType.setId("CUSTOM");
+    handoverType.setLabel("Dataset info");
+
+    Handover handover = new Handover();
+    handover.setHandoverType(handoverType);
+    handover.setUrl("https://ega-archive.org/datasets/EGAD00000000001");
+    return handover;
+  }
+
+}
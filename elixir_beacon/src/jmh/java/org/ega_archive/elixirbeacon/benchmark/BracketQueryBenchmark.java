@@ -0,0 +1,138 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.ega_archive.elixirbeacon.index.ChromosomeIndex;
+import org.ega_archive.elixirbeacon.index.DatasetSummaryAccumulator;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.index.StringDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bracket queries ({@code startMin + startMax + endMin + endMax}) on the structural variants of a
+ * chromosome of 250 Mb: the k-d trees of {@link ChromosomeIndex} against a scan of the variants
+ * whose start is in the bracket, which is all that an index sorted by start can do.
+ * <p>
+ * Variants are deletions, duplications and CNVs of 50 bp to 1 Mb, most of them short, like the
+ * population-scale SV call sets. {@code bracket} is the width of both the start and the end
+ * windows, from an imprecise breakpoint to a large CNV lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class BracketQueryBenchmark {
+
+  private static final int CHROMOSOME_LENGTH = 250000000;
+
+  private static final String[] TYPES = {"DEL", "DUP", "CNV"};
+
+  private static final List<Integer> DATASETS = Arrays.asList(1);
+
+  private static final int QUERIES = 256;
+
+  @Param({"100000", "1000000"})
+  private int variants;
+
+  @Param({"1000", "100000", "10000000"})
+  private int bracket;
+
+  private ChromosomeIndex index;
+
+  // Same variants, sorted by start
+  private int[] starts;
+
+  private int[] ends;
+
+  private int[] types;
+
+  private IndexQuery[] queries;
+
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    long[] packed = new long[variants];
+    for (int i = 0; i < variants; i++) {
+      packed[i] = ((long) random.nextInt(CHROMOSOME_LENGTH) << 32) | i;
+    }
+    Arrays.sort(packed);
+
+    ChromosomeIndex.Builder builder = new ChromosomeIndex.Builder(new StringDictionary());
+    starts = new int[variants];
+    ends = new int[variants];
+    types = new int[variants];
+    for (int i = 0; i < variants; i++) {
+      starts[i] = (int) (packed[i] >> 32);
+      ends[i] = starts[i] + 50 + (int) Math.min(1000000, Math.exp(random.nextDouble() * 14));
+      types[i] = random.nextInt(TYPES.length);
+      builder.add(1, starts[i], ends[i], "N", "<" + TYPES[types[i]] + ">", TYPES[types[i]], 1,
+          5008, 1, new BigDecimal("0.0002"));
+    }
+    index = builder.build();
+
+    queries = new IndexQuery[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      // Around an existing variant, so that most queries have results
+      int variant = random.nextInt(variants);
+      int startMin = Math.max(0, starts[variant] - bracket / 2);
+      int endMin = Math.max(0, ends[variant] - bracket / 2);
+      queries[i] = IndexQuery.of("DEL", null, startMin, startMin + bracket, null, endMin,
+          endMin + bracket, "N", null, DATASETS);
+    }
+  }
+
+  @Benchmark
+  public DatasetSummaryAccumulator kdTree() {
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    index.search(nextQuery(), accumulator);
+    return accumulator;
+  }
+
+  @Benchmark
+  public int startWindowScan() {
+    IndexQuery query = nextQuery();
+    int matches = 0;
+    int row = lowerBound(query.getStartMin());
+    while (row < variants && starts[row] < query.getStartMax()) {
+      if (types[row] == 0 && ends[row] >= query.getEndMin() && ends[row] < query.getEndMax()) {
+        matches++;
+      }
+      row++;
+    }
+    return matches;
+  }
+
+  private IndexQuery nextQuery() {
+    next = (next + 1) % QUERIES;
+    return queries[next];
+  }
+
+  private int lowerBound(int key) {
+    int row = Arrays.binarySearch(starts, key);
+    if (row < 0) {
+      return -row - 1;
+    }
+    while (row > 0 && starts[row - 1] == key) {
+      row--;
+    }
+    return row;
+  }
+
+}
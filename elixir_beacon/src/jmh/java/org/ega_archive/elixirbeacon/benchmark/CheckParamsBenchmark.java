@@ -0,0 +1,57 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.ega_archive.elixirbeacon.dto.BeaconAlleleResponse;
+import org.ega_archive.elixirbeacon.enums.VariantType;
+import org.ega_archive.elixirbeacon.service.ElixirBeaconServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Validation of the allele queries, {@link ElixirBeaconServiceImpl#checkParams}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckParamsBenchmark {
+
+  private ElixirBeaconServiceImpl service;
+
+  @Setup
+  public void setUp() {
+    service = new ElixirBeaconServiceImpl();
+    ReflectionTestUtils.setField(service, "authService", new FakeAuthService());
+  }
+
+  @Benchmark
+  public List<Integer> snp() {
+    return service.checkParams(new BeaconAlleleResponse(), null, null, "G", "C", "4", 4, null,
+        null, null, null, null, null, "grch37");
+  }
+
+  @Benchmark
+  public List<Integer> bracket() {
+    return service.checkParams(new BeaconAlleleResponse(), null, VariantType.DEL, null, "N", "1",
+        null, 2827690, 2827700, null, 2827760, 2827770, null, "grch37");
+  }
+
+  @Benchmark
+  public List<Integer> invalidChromosome() {
+    return service.checkParams(new BeaconAlleleResponse(), null, null, "G", "C", "chr4", 4, null,
+        null, null, null, null, null, "grch37");
+  }
+
+}
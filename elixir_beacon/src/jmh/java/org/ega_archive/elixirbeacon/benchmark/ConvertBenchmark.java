@@ -0,0 +1,48 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javassist.NotFoundException;
+import org.ega_archive.elixirbeacon.convert.Operations;
+import org.ega_archive.elixirbeacon.dto.Dataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of a dataset and its consent codes into the {@link Dataset} listed by
+ * {@code /beacon/}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+  private BeaconDataset dataset;
+
+  private List<BeaconDatasetConsentCode> consentCodes;
+
+  @Setup
+  public void setUp() {
+    dataset = BenchmarkData.datasets().get(0);
+    consentCodes = BenchmarkData.consentCodes(dataset.getId());
+  }
+
+  @Benchmark
+  public Dataset convert() throws NotFoundException {
+    return Operations.convert(dataset, true, consentCodes);
+  }
+
+}
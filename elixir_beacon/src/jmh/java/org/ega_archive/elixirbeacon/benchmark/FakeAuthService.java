@@ -0,0 +1,31 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.ega_archive.elixirbeacon.service.AuthService;
+
+/**
+ * Anonymous user that can only see the PUBLIC datasets, without going to the database or to the
+ * userinfo endpoint.
+ */
+public class FakeAuthService implements AuthService {
+
+  private static final List<Integer> PUBLIC_DATASETS = Arrays.asList(1, 4, 5);
+
+  @Override
+  public String getAuthorizationHeader() {
+    return null;
+  }
+
+  @Override
+  public List<String> findAuthorizedDatasets(String authorizationHeader) {
+    return new ArrayList<>();
+  }
+
+  @Override
+  public List<Integer> checkDatasets(List<String> datasetStableIds, String referenceGenome) {
+    return new ArrayList<>(PUBLIC_DATASETS);
+  }
+
+}
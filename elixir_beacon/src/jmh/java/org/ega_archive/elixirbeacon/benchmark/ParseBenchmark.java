@@ -0,0 +1,45 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.ega_archive.elixirbeacon.enums.FilterDatasetResponse;
+import org.ega_archive.elixirbeacon.enums.VariantType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the {@code variantType} and {@code includeDatasetResponses} parameters. The values
+ * are checked in declaration order, so the last ones are the slowest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+  @Param({"INS", "del", "INS:ME"})
+  private String variantType;
+
+  @Param({"ALL", "none"})
+  private String includeDatasetResponses;
+
+  @Benchmark
+  public VariantType variantType() {
+    return VariantType.parse(variantType);
+  }
+
+  @Benchmark
+  public FilterDatasetResponse filterDatasetResponse() {
+    return FilterDatasetResponse.parse(includeDatasetResponses);
+  }
+
+}
@@ -0,0 +1,115 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.ega_archive.elixirbeacon.index.DatasetSummaryAccumulator;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Peak heap of a range query ({@code start + end} with {@code alternateBases=N}) that folds the
+ * matching variants as they are read, like the cursor of {@code BeaconSummaryDataRepositoryImpl}
+ * does, against reading them all into a list first.
+ * <p>
+ * The windows are 1 Mb, 10 Mb and the whole chromosome 21, with the density of variants of the
+ * 1000 Genomes calls (about 23,000 per Mb). Rows are generated on the fly, so that the heap only
+ * holds what the aggregation keeps. The {@code peakHeapMb} counter is the peak of the heap pools
+ * during the invocation, with a full GC before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class RangeAggregationBenchmark {
+
+  private static final int DATASETS = 4;
+
+  @Param({"23000", "230000", "1100000"})
+  private int variants;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Heap {
+
+    public double peakHeapMb;
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+    @Setup(Level.Invocation)
+    public void reset() {
+      System.gc();
+      pools.clear();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+          pools.add(pool);
+        }
+      }
+    }
+
+    @TearDown(Level.Invocation)
+    public void measure() {
+      long peak = 0;
+      for (MemoryPoolMXBean pool : pools) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+      peakHeapMb = peak / (1024.0 * 1024.0);
+    }
+  }
+
+  @Benchmark
+  public List<BeaconDataSummary> streamed(Heap heap) {
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    for (int row = 0; row < variants; row++) {
+      accumulator.add(row % DATASETS, 1 + row % 7, 5008, 1 + row % 2504, frequency(row));
+    }
+    return accumulator.toSummaries();
+  }
+
+  @Benchmark
+  public List<BeaconDataSummary> materialized(Heap heap) {
+    List<BeaconDataSummary> rows = new ArrayList<>();
+    for (int row = 0; row < variants; row++) {
+      BeaconDataSummary summary = new BeaconDataSummary();
+      summary.setDatasetId(row % DATASETS);
+      summary.setVariantCnt(BigInteger.valueOf(1 + row % 7));
+      summary.setCallCnt(BigInteger.valueOf(5008));
+      summary.setSampleCnt(BigInteger.valueOf(1 + row % 2504));
+      summary.setFrequency(frequency(row));
+      rows.add(summary);
+    }
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    for (BeaconDataSummary summary : rows) {
+      accumulator.add(summary.getDatasetId(), summary.getVariantCnt().intValue(),
+          summary.getCallCnt().intValue(), summary.getSampleCnt().intValue(),
+          summary.getFrequency());
+    }
+    return accumulator.toSummaries();
+  }
+
+  private static BigDecimal frequency(int row) {
+    return BigDecimal.valueOf(1 + row % 7, 4);
+  }
+
+}
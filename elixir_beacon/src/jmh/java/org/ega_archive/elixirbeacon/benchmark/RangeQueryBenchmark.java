@@ -0,0 +1,174 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.ega_archive.elixirbeacon.index.DatasetSummaryAccumulator;
+import org.ega_archive.elixirbeacon.index.SampleBitmap;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Range queries ({@code start + end} with {@code alternateBases=N}) on a loaded database: the
+ * statement {@code BeaconSummaryDataRepositoryImpl} streams through a cursor, with the sample ids
+ * stored with the variants and with the lookup of {@code beacon_data_sample_table} per row it
+ * made before, against {@code query_data_summary_response}, the function the Hibernate stored
+ * procedure query ran. Peak heap is reported as {@code peakHeapMb}, like in
+ * {@link RangeAggregationBenchmark}.
+ * <p>
+ * The statements are copies of the ones of the repository, keep them in sync. Unlike the other
+ * benchmarks it needs the database, e.g. with the chr21 sample data:
+ * {@code -Djmh.args="RangeQuery -p url=jdbc:postgresql://localhost:5432/elixir_beacon_dev"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class RangeQueryBenchmark {
+
+  private static final String STREAM_SELECT = "SELECT bdat.dataset_id, bdat.variant_cnt, "
+      + "bdat.call_cnt, bdat.matching_sample_cnt, bdat.frequency, %s "
+      + "FROM public.beacon_data_table bdat "
+      + "INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id "
+      + "WHERE (bdat.start >= ? AND bdat.start < ? OR bdat.end >= ? AND bdat.end < ?) "
+      + "AND bdat.chromosome = ? AND lower(bdataset.reference_genome) = ? "
+      + "AND bdat.dataset_id = ANY (string_to_array(?, ',')::int[])";
+
+  private static final String STORED_SAMPLE_IDS = "bdat.sample_ids";
+
+  private static final String SAMPLE_TABLE_LOOKUP = "ARRAY(SELECT ds.sample_id "
+      + "FROM public.beacon_data_sample_table ds WHERE ds.data_id = bdat.id) AS sample_ids";
+
+  private static final String FUNCTION = "SELECT * FROM query_data_summary_response("
+      + "CAST(NULL AS text), CAST(? AS integer), CAST(NULL AS integer), CAST(NULL AS integer), "
+      + "CAST(? AS integer), CAST(NULL AS integer), CAST(NULL AS integer), CAST(? AS varchar), "
+      + "CAST('N' AS text), CAST('N' AS text), CAST(? AS text), CAST(? AS text))";
+
+  private static final int FETCH_SIZE = 10000;
+
+  @Param({"jdbc:postgresql://localhost:5432/elixir_beacon_dev"})
+  private String url;
+
+  @Param({"microaccounts_dev"})
+  private String user;
+
+  @Param({"r783qjkldDsiu"})
+  private String password;
+
+  @Param({"21"})
+  private String chromosome;
+
+  @Param({"grch37"})
+  private String referenceGenome;
+
+  @Param({"1"})
+  private String datasetIds;
+
+  @Param({"15000000"})
+  private int start;
+
+  @Param({"1000000", "10000000"})
+  private int window;
+
+  private Connection connection;
+
+  @Setup
+  public void setUp() throws SQLException {
+    connection = DriverManager.getConnection(url, user, password);
+    // The driver only uses a cursor inside a transaction, like the repository
+    connection.setAutoCommit(false);
+    connection.setReadOnly(true);
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.rollback();
+    connection.close();
+  }
+
+  @Benchmark
+  public List<BeaconDataSummary> streamedStoredSampleIds(RangeAggregationBenchmark.Heap heap)
+      throws SQLException {
+
+    return streamed(STORED_SAMPLE_IDS);
+  }
+
+  @Benchmark
+  public List<BeaconDataSummary> streamedSampleTableLookup(RangeAggregationBenchmark.Heap heap)
+      throws SQLException {
+
+    return streamed(SAMPLE_TABLE_LOOKUP);
+  }
+
+  @Benchmark
+  public List<BeaconDataSummary> storedProcedure(RangeAggregationBenchmark.Heap heap)
+      throws SQLException {
+
+    List<BeaconDataSummary> summaries = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement(FUNCTION)) {
+      statement.setInt(1, start);
+      statement.setInt(2, start + window);
+      statement.setString(3, chromosome);
+      statement.setString(4, referenceGenome);
+      statement.setString(5, datasetIds);
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          BeaconDataSummary summary = new BeaconDataSummary();
+          summary.setDatasetId(rs.getInt("dataset_id"));
+          summary.setVariantCnt(rs.getBigDecimal("variant_cnt").toBigInteger());
+          summary.setSampleCnt(rs.getBigDecimal("sample_cnt").toBigInteger());
+          summary.setNumVariants(rs.getInt("num_variants"));
+          summaries.add(summary);
+        }
+      }
+    }
+    return summaries;
+  }
+
+  private List<BeaconDataSummary> streamed(String sampleIds) throws SQLException {
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    try (PreparedStatement statement = connection.prepareStatement(
+        String.format(STREAM_SELECT, sampleIds))) {
+      statement.setFetchSize(FETCH_SIZE);
+      statement.setInt(1, start);
+      statement.setInt(2, start + window);
+      statement.setInt(3, start);
+      statement.setInt(4, start + window);
+      statement.setString(5, chromosome);
+      statement.setString(6, referenceGenome);
+      statement.setString(7, datasetIds);
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          accumulator.add(rs.getInt("dataset_id"), getInt(rs, "variant_cnt"),
+              getInt(rs, "call_cnt"), getInt(rs, "matching_sample_cnt"),
+              rs.getBigDecimal("frequency"), SampleBitmap.read(rs, "sample_ids"));
+        }
+      }
+    }
+    return accumulator.toSummaries();
+  }
+
+  private static int getInt(ResultSet rs, String column) throws SQLException {
+    int value = rs.getInt(column);
+    return rs.wasNull() ? DatasetSummaryAccumulator.NULL_VALUE : value;
+  }
+
+}
@@ -0,0 +1,149 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Number of distinct samples of the variants matched by a range query, on a loaded database: the
+ * union of {@code beacon_data_table.sample_ids} the queries run against the correlated
+ * {@code count(DISTINCT sample_id)} over {@code beacon_data_sample_table} they ran before, and
+ * against the maximum of {@code matching_sample_cnt}, which reads no sample at all.
+ * <p>
+ * Unlike the other benchmarks it needs the database, e.g. with the chr21 sample data:
+ * {@code -Djmh.args="SampleUnion -p url=jdbc:postgresql://localhost:5432/elixir_beacon_dev"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SampleUnionBenchmark {
+
+  private static final String QUERY = "SELECT bdat.dataset_id, count(*) AS num_variants, %s "
+      + "AS sample_cnt FROM public.beacon_data_table bdat "
+      + "WHERE (bdat.start >= ? AND bdat.start < ? OR bdat.end >= ? AND bdat.end < ?) "
+      + "AND bdat.chromosome = ? GROUP BY bdat.dataset_id";
+
+  private static final String MAX = "max(bdat.matching_sample_cnt)";
+
+  private static final String SAMPLE_JOIN = "(SELECT count(DISTINCT ds.sample_id) "
+      + "FROM public.beacon_data_sample_table ds WHERE ds.data_id = ANY (array_agg(bdat.id)))";
+
+  private static final String SAMPLE_IDS_UNION = "public.beacon_sample_count("
+      + "public.beacon_sample_union(bdat.sample_ids))";
+
+  private static final int QUERIES = 64;
+
+  @Param({"jdbc:postgresql://localhost:5432/elixir_beacon_dev"})
+  private String url;
+
+  @Param({"microaccounts_dev"})
+  private String user;
+
+  @Param({"r783qjkldDsiu"})
+  private String password;
+
+  @Param({"21"})
+  private String chromosome;
+
+  @Param({"1000", "100000", "1000000"})
+  private int window;
+
+  private Connection connection;
+
+  private PreparedStatement max;
+
+  private PreparedStatement sampleJoin;
+
+  private PreparedStatement sampleIdsUnion;
+
+  private int[] starts;
+
+  private int next;
+
+  @Setup
+  public void setUp() throws SQLException {
+    connection = DriverManager.getConnection(url, user, password);
+    max = connection.prepareStatement(String.format(QUERY, MAX));
+    sampleJoin = connection.prepareStatement(String.format(QUERY, SAMPLE_JOIN));
+    sampleIdsUnion = connection.prepareStatement(String.format(QUERY, SAMPLE_IDS_UNION));
+
+    int first;
+    int last;
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT min(start), max(start) FROM public.beacon_data_table WHERE chromosome = ?")) {
+      statement.setString(1, chromosome);
+      try (ResultSet rs = statement.executeQuery()) {
+        rs.next();
+        first = rs.getInt(1);
+        last = rs.getInt(2);
+      }
+    }
+    if (last <= first) {
+      throw new IllegalStateException("No variants in chromosome " + chromosome);
+    }
+
+    // Same windows for every statement
+    Random random = new Random(42);
+    starts = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      starts[i] = first + random.nextInt(Math.max(last - first - window, 1));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  @Benchmark
+  public long maxMatchingSamples() throws SQLException {
+    return run(max);
+  }
+
+  @Benchmark
+  public long sampleTableJoin() throws SQLException {
+    return run(sampleJoin);
+  }
+
+  @Benchmark
+  public long sampleIdsUnion() throws SQLException {
+    return run(sampleIdsUnion);
+  }
+
+  private long run(PreparedStatement statement) throws SQLException {
+    next = (next + 1) % QUERIES;
+    int start = starts[next];
+    statement.setInt(1, start);
+    statement.setInt(2, start + window);
+    statement.setInt(3, start);
+    statement.setInt(4, start + window);
+    statement.setString(5, chromosome);
+    long samples = 0;
+    try (ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        samples += rs.getLong("sample_cnt");
+      }
+    }
+    return samples;
+  }
+
+}
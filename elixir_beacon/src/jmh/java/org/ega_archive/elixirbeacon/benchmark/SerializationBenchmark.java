@@ -0,0 +1,74 @@
+package org.ega_archive.elixirbeacon.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javassist.NotFoundException;
+import org.ega_archive.elixirbeacon.convert.Operations;
+import org.ega_archive.elixirbeacon.dto.Beacon;
+import org.ega_archive.elixirbeacon.dto.BeaconAlleleResponse;
+import org.ega_archive.elixirbeacon.dto.Dataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of the responses returned by {@code /beacon/} and {@code /beacon/query}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  private ObjectMapper objectMapper;
+
+  private BeaconAlleleResponse alleleResponse;
+
+  private Beacon beacon;
+
+  @Setup
+  public void setUp() throws NotFoundException {
+    // Same configuration as App.objectMapper() but without the JodaModule: the joda module does
+    // not load with the version of jackson-databind used by this module, and the date fields of
+    // Beacon are not set anyway
+    objectMapper = new ObjectMapper();
+    objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    objectMapper.configure(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN, true);
+
+    alleleResponse = BenchmarkData.alleleResponse();
+
+    List<Dataset> datasets = new ArrayList<>();
+    for (BeaconDataset dataset : BenchmarkData.datasets()) {
+      datasets.add(Operations.convert(dataset, true,
+          BenchmarkData.consentCodes(dataset.getId())));
+    }
+    beacon = new Beacon();
+    beacon.setDatasets(datasets);
+  }
+
+  @Benchmark
+  public String alleleResponse() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(alleleResponse);
+  }
+
+  @Benchmark
+  public String beacon() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(beacon);
+  }
+
+}
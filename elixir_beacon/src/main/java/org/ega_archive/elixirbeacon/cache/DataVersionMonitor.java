@@ -0,0 +1,131 @@
+package org.ega_archive.elixirbeacon.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Version of the loaded data, {@code beacon_data_version_table.version}, that the loader
+ * increments when it finishes (see {@code 4.sql} and {@code BeaconDataLoader}).
+ * <p>
+ * The version is read from the primary database every
+ * {@code elixirbeacon.data.version.check.interval} milliseconds and the listeners are told when it
+ * changes, so that everything built from the data (query results, dataset registry, allele
+ * filters) is dropped or rebuilt.
+ */
+@Slf4j
+@Component
+public class DataVersionMonitor implements DisposableBean {
+
+  public static final long UNKNOWN = -1;
+
+  static final String VERSION_QUERY = "SELECT max(version) FROM public.beacon_data_version_table";
+
+  // Milliseconds, the version is not checked if it is not positive
+  @Value("${elixirbeacon.data.version.check.interval:10000}")
+  private long checkInterval;
+
+  @Autowired
+  @Qualifier("elixirbeaconJdbcTemplate")
+  private JdbcTemplate jdbcTemplate;
+
+  private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile long version = UNKNOWN;
+
+  private volatile boolean unavailable;
+
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  public void init() {
+    // The version the application starts with is not a change
+    try {
+      version = readVersion();
+    } catch (DataAccessException e) {
+      log.warn("Could not read the data version on startup: {}", e.getMessage());
+      unavailable = true;
+    }
+    if (checkInterval > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-version-monitor");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(this::checkVersion, checkInterval, checkInterval,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Last version read from the primary, {@link #UNKNOWN} if it could not be read yet.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * {@code listener} is called with the new version, on the thread that checks it.
+   */
+  public void addListener(LongConsumer listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Reads the version on the connection of the current transaction, if any. Inside a read-only
+   * transaction it is the version of the replica that runs the other statements of the
+   * transaction.
+   */
+  public long readVersion() {
+    Long current = jdbcTemplate.queryForObject(VERSION_QUERY, Long.class);
+    return current == null ? UNKNOWN : current;
+  }
+
+  void checkVersion() {
+    long current;
+    try {
+      current = readVersion();
+      unavailable = false;
+    } catch (DataAccessException e) {
+      // The next checks must run anyway
+      if (!unavailable) {
+        log.warn("Could not read the data version, what was built from the data is kept until "
+            + "it can be read", e);
+        unavailable = true;
+      }
+      return;
+    }
+    if (current == UNKNOWN || current == version) {
+      return;
+    }
+    log.info("Data version changed from {} to {}", version, current);
+    version = current;
+    for (LongConsumer listener : listeners) {
+      try {
+        listener.accept(current);
+      } catch (RuntimeException e) {
+        log.error("Data version listener failed", e);
+      }
+    }
+  }
+
+}
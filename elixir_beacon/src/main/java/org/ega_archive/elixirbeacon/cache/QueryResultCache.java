@@ -0,0 +1,309 @@
+package org.ega_archive.elixirbeacon.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of the results of allele queries, by normalized query and authorized datasets.
+ * The same popular alleles are asked over and over, and their answer only changes when new data
+ * is loaded.
+ * <p>
+ * Every result is kept with the data version it was loaded with, and it is dropped when the
+ * {@link DataVersionMonitor} sees another one. The queries may run on a replica that has not
+ * replayed the last load yet: the repository calls {@link #observeVersion()} in the transaction of
+ * every query, and results that were read from another version than the primary's are not kept.
+ * The in-memory stores are not used until they have caught up with a new version either, see
+ * {@link org.ega_archive.elixirbeacon.store.VariantStore#isReady()}.
+ * {@code DELETE /cache} with {@code cachetype=query_result} empties the cache at once.
+ */
+@Slf4j
+@Component
+public class QueryResultCache {
+
+  public static final String HIT_METRIC = "beacon.query.cache.hit";
+
+  public static final String MISS_METRIC = "beacon.query.cache.miss";
+
+  public static final String HIT_RATIO_METRIC = "beacon.query.cache.hit.ratio";
+
+  public static final String SIZE_METRIC = "beacon.query.cache.size";
+
+  // Number of queries, the cache is disabled if it is not positive
+  @Value("${elixirbeacon.query.cache.size:10000}")
+  private long maximumSize;
+
+  @Autowired
+  private DataVersionMonitor dataVersionMonitor;
+
+  @Autowired
+  private CounterService counterService;
+
+  @Autowired
+  private GaugeService gaugeService;
+
+  private Cache<Key, Result> cache;
+
+  // Load running on the current thread, if any
+  private final ThreadLocal<Load> loads = new ThreadLocal<>();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  @PostConstruct
+  public void init() {
+    cache = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maximumSize, 0))
+        .build();
+    dataVersionMonitor.addListener(version -> invalidateAll());
+  }
+
+  public boolean isEnabled() {
+    return maximumSize > 0;
+  }
+
+  /**
+   * Matching variants of {@code key}, from the cache or from {@code loader}.
+   */
+  public List<BeaconDataSummary> search(Key key, Supplier<List<BeaconDataSummary>> loader) {
+    if (!isEnabled()) {
+      return loader.get();
+    }
+    Result cached = get(key);
+    if (cached != null && cached.summaries != null) {
+      record(true);
+      return cached.summaries;
+    }
+    record(false);
+    Load load = new Load(dataVersionMonitor.getVersion());
+    List<BeaconDataSummary> summaries =
+        Collections.unmodifiableList(new ArrayList<>(load(load, loader)));
+    put(key, load, summaries, !summaries.isEmpty());
+    return summaries;
+  }
+
+  /**
+   * Matching variants of every key, in the same order. The keys that are not cached are loaded
+   * together: {@code loader} gets their positions and returns their results in that order.
+   */
+  public List<List<BeaconDataSummary>> searchAll(List<Key> keys,
+      Function<List<Integer>, List<List<BeaconDataSummary>>> loader) {
+
+    if (!isEnabled()) {
+      return loader.apply(IntStream.range(0, keys.size()).boxed().collect(Collectors.toList()));
+    }
+    List<List<BeaconDataSummary>> result = new ArrayList<>(keys.size());
+    List<Integer> missing = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      Result cached = get(keys.get(i));
+      boolean hit = cached != null && cached.summaries != null;
+      record(hit);
+      result.add(hit ? cached.summaries : null);
+      if (!hit) {
+        missing.add(i);
+      }
+    }
+    if (missing.isEmpty()) {
+      return result;
+    }
+    Load load = new Load(dataVersionMonitor.getVersion());
+    List<List<BeaconDataSummary>> loaded = load(load, () -> loader.apply(missing));
+    for (int i = 0; i < missing.size(); i++) {
+      List<BeaconDataSummary> summaries =
+          Collections.unmodifiableList(new ArrayList<>(loaded.get(i)));
+      result.set(missing.get(i), summaries);
+      put(keys.get(missing.get(i)), load, summaries, !summaries.isEmpty());
+    }
+    return result;
+  }
+
+  /**
+   * Whether any variant matches {@code key}, from the cache or from {@code loader}. The results
+   * of {@link #search} answer it too.
+   */
+  public boolean exists(Key key, BooleanSupplier loader) {
+    if (!isEnabled()) {
+      return loader.getAsBoolean();
+    }
+    Result cached = get(key);
+    if (cached != null) {
+      record(true);
+      return cached.exists;
+    }
+    record(false);
+    Load load = new Load(dataVersionMonitor.getVersion());
+    boolean exists = load(load, loader::getAsBoolean);
+    put(key, load, null, exists);
+    return exists;
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+    gaugeService.submit(SIZE_METRIC, 0);
+    log.info("Query result cache emptied");
+  }
+
+  /**
+   * Reads the data version in the current transaction, before its queries, and keeps the result
+   * of the load running on this thread only if it is the version of the primary. The loader
+   * commits the variants before it increments the version, so the queries that follow see at
+   * least the data of the version read.
+   */
+  public void observeVersion() {
+    Load load = loads.get();
+    if (load == null || load.stale) {
+      return;
+    }
+    long observed = dataVersionMonitor.readVersion();
+    if (observed != load.version) {
+      log.debug("Query read data version {} instead of {}, its result is not cached", observed,
+          load.version);
+      load.stale = true;
+    }
+  }
+
+  /**
+   * The load running on this thread, to bind it to the threads that run parts of it.
+   */
+  public Load getLoad() {
+    return loads.get();
+  }
+
+  public void bindLoad(Load load) {
+    loads.set(load);
+  }
+
+  public void unbindLoad() {
+    loads.remove();
+  }
+
+  private <T> T load(Load load, Supplier<T> loader) {
+    Load outer = loads.get();
+    loads.set(load);
+    try {
+      return loader.get();
+    } finally {
+      loads.set(outer);
+    }
+  }
+
+  private Result get(Key key) {
+    Result cached = cache.getIfPresent(key);
+    if (cached != null && cached.version != dataVersionMonitor.getVersion()) {
+      cache.invalidate(key);
+      return null;
+    }
+    return cached;
+  }
+
+  private void put(Key key, Load load, List<BeaconDataSummary> summaries, boolean exists) {
+    // Read from a lagging replica, or loaded while the data was changing: it could be stale
+    if (!load.stale && load.version == dataVersionMonitor.getVersion()) {
+      cache.put(key, new Result(load.version, summaries, exists));
+    }
+  }
+
+  private void record(boolean hit) {
+    long hitCount = hit ? hits.incrementAndGet() : hits.get();
+    long missCount = hit ? misses.get() : misses.incrementAndGet();
+    counterService.increment(hit ? HIT_METRIC : MISS_METRIC);
+    gaugeService.submit(HIT_RATIO_METRIC, (double) hitCount / (hitCount + missCount));
+    gaugeService.submit(SIZE_METRIC, cache.size());
+  }
+
+  /**
+   * Normalized query: the assembly is case insensitive, the reference {@code N} is no reference
+   * at all and the datasets are sorted.
+   */
+  @ToString
+  @EqualsAndHashCode
+  @AllArgsConstructor(access = AccessLevel.PRIVATE)
+  public static final class Key {
+
+    private final String referenceGenome;
+
+    private final String chromosome;
+
+    private final String variantType;
+
+    private final Integer start;
+
+    private final Integer startMin;
+
+    private final Integer startMax;
+
+    private final Integer end;
+
+    private final Integer endMin;
+
+    private final Integer endMax;
+
+    private final String referenceBases;
+
+    private final String alternateBases;
+
+    private final int[] datasetIds;
+
+    /**
+     * @param query with the datasets the user is authorized to see
+     */
+    public static Key of(String chromosome, String referenceGenome, IndexQuery query) {
+      int[] datasetIds = query.getDatasetIds().clone();
+      Arrays.sort(datasetIds);
+      return new Key(StringUtils.lowerCase(referenceGenome), chromosome, query.getVariantType(),
+          query.getStart(), query.getStartMin(), query.getStartMax(), query.getEnd(),
+          query.getEndMin(), query.getEndMax(), query.getReferenceBases(),
+          query.getAlternateBases(), datasetIds);
+    }
+  }
+
+  /**
+   * Data version a result is loaded for, and whether any of its queries read another one.
+   */
+  public static final class Load {
+
+    private final long version;
+
+    private volatile boolean stale;
+
+    private Load(long version) {
+      this.version = version;
+    }
+  }
+
+  @AllArgsConstructor
+  private static final class Result {
+
+    private final long version;
+
+    // Only set if the query was a search, shared by all the requests
+    private final List<BeaconDataSummary> summaries;
+
+    private final boolean exists;
+  }
+
+}
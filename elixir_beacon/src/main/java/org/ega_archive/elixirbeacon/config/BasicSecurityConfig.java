@@ -2,6 +2,7 @@ package org.ega_archive.elixirbeacon.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
@@ -35,6 +36,7 @@ public class BasicSecurityConfig extends WebSecurityConfigurerAdapter {
         .antMatchers("/v1/beans").authenticated()
         .antMatchers("/v1/health").authenticated()
         .antMatchers("/v1/configprops").authenticated()
+        .antMatchers(HttpMethod.PUT, "/datasets/registry", "/variants/filter").authenticated()
         .antMatchers("/v1/login").permitAll();
   }
   //END CONFIGURATION
@@ -1,14 +1,29 @@
 package org.ega_archive.elixirbeacon.config;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.datasource.ReplicaRoutingDataSource;
 import org.ega_archive.elixircore.repository.CustomQuerydslJpaRepositoryImpl;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.boot.bind.PropertySourcesPropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
@@ -23,12 +38,70 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @EnableTransactionManagement
 public class ElixirBeaconDBConfig {
 
+  private static final String DATASOURCE_PREFIX = "datasource.elixirbeacon";
+
+  // Read-only transactions are sent to these databases
+  @Value("${datasource.elixirbeacon.replicas:}")
+  private String[] replicaUrls;
+
+  // Milliseconds
+  @Value("${datasource.elixirbeacon.replicaHealthCheckInterval:10000}")
+  private long replicaHealthCheckInterval;
+
+  // Seconds
+  @Value("${datasource.elixirbeacon.replicaHealthCheckTimeout:2}")
+  private int replicaHealthCheckTimeout;
+
+  @Autowired
+  private ConfigurableEnvironment environment;
+
+  @Autowired(required = false)
+  private Collection<DataSourcePoolMetadataProvider> poolMetadataProviders;
+
   @Bean
-  @ConfigurationProperties(prefix = "datasource.elixirbeacon")
-  public DataSource elixirbeaconDataSource() {
+  @ConfigurationProperties(prefix = DATASOURCE_PREFIX)
+  public DataSource elixirbeaconPrimaryDataSource() {
     return DataSourceBuilder.create().build();
   }
 
+  @Bean
+  public ReplicaRoutingDataSource elixirbeaconRoutingDataSource() {
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    for (String url : replicaUrls) {
+      if (StringUtils.isNotBlank(url)) {
+        replicas.put("replica" + (replicas.size() + 1), createReplica(url.trim()));
+      }
+    }
+    ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+        elixirbeaconPrimaryDataSource(), replicas, replicaHealthCheckInterval,
+        replicaHealthCheckTimeout);
+    if (poolMetadataProviders != null) {
+      dataSource.setPoolMetadataProviders(poolMetadataProviders);
+    }
+    return dataSource;
+  }
+
+  /**
+   * The physical connection is requested on the first statement, once the transaction manager
+   * has marked the transaction as read-only, so the routing data source can pick a replica.
+   */
+  @Bean
+  @Primary
+  public DataSource elixirbeaconDataSource() {
+    return new LazyConnectionDataSourceProxy(elixirbeaconRoutingDataSource());
+  }
+
+  /**
+   * Same pool settings and credentials as the primary, only the url changes.
+   */
+  private DataSource createReplica(String url) {
+    DataSource replica = DataSourceBuilder.create().build();
+    new RelaxedDataBinder(replica, DATASOURCE_PREFIX)
+        .bind(new PropertySourcesPropertyValues(environment.getPropertySources()));
+    new BeanWrapperImpl(replica).setPropertyValue("url", url);
+    return replica;
+  }
+
   @Bean
   public EntityManagerFactory elixirbeaconEntityManagerFactory() {
     HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
@@ -53,4 +126,9 @@ public class ElixirBeaconDBConfig {
     return transactionManager;
   }
 
+  @Bean
+  public JdbcTemplate elixirbeaconJdbcTemplate() {
+    return new JdbcTemplate(elixirbeaconDataSource());
+  }
+
 }
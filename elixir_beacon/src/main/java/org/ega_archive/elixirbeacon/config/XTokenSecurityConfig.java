@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationDetailsSource;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -93,6 +94,8 @@ public class XTokenSecurityConfig extends WebSecurityConfigurerAdapter {
         .antMatchers("/v1/beans").hasAnyRole("ADMIN", "SYSTEM", "SYSTEM_BASIC")
         .antMatchers("/v1/health").hasAnyRole("ADMIN", "SYSTEM", "SYSTEM_BASIC")
         .antMatchers("/v1/configprops").hasAnyRole("ADMIN", "SYSTEM", "SYSTEM_BASIC")
+        .antMatchers(HttpMethod.PUT, "/datasets/registry", "/variants/filter")
+            .hasAnyRole("ADMIN", "SYSTEM", "SYSTEM_BASIC")
         .antMatchers("/v1/login").permitAll();
 
     http.addFilterBefore(restTokenPreAuthenticatedProcessingFilter(authenticationManagerBean()),
@@ -1,9 +1,64 @@
 package org.ega_archive.elixirbeacon.controller;
 
+import org.ega_archive.elixirbeacon.cache.QueryResultCache;
+import org.ega_archive.elixirbeacon.index.AlleleFilter;
+import org.ega_archive.elixirbeacon.service.DatasetRegistryService;
+import org.ega_archive.elixircore.constant.CoreConstants;
+import org.ega_archive.elixircore.constant.ParamName;
 import org.ega_archive.elixircore.controller.BaseController;
+import org.ega_archive.elixircore.dto.Base;
+import org.ega_archive.elixircore.enums.CacheTypes;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 @Controller
 public class ElixirBeaconBaseController extends BaseController {
 
+  @Autowired
+  private DatasetRegistryService datasetRegistryService;
+
+  @Autowired
+  private AlleleFilter alleleFilter;
+
+  @Autowired
+  private QueryResultCache queryResultCache;
+
+  /**
+   * Adds the beacon caches to the ones of {@link BaseController}.
+   */
+  @Override
+  @ResponseBody
+  @RequestMapping(value = "/cache", method = RequestMethod.DELETE)
+  public Base<String> deleteCache(
+      @RequestParam(value = ParamName.CACHE_TYPE, required = true) String cacheName) {
+    if (CacheTypes.parse(cacheName) == CacheTypes.QUERY_RESULT) {
+      queryResultCache.invalidateAll();
+      return new Base<>(CoreConstants.OK);
+    }
+    return super.deleteCache(cacheName);
+  }
+
+  /**
+   * Reloads the datasets, consent codes and handovers at once. They are reloaded anyway when the
+   * data version changes, this is for changes that do not increment it.
+   */
+  @ResponseBody
+  @RequestMapping(value = "/datasets/registry", method = RequestMethod.PUT)
+  public Base<Long> refreshDatasetRegistry() {
+    return new Base<>(datasetRegistryService.refresh().getVersion());
+  }
+
+  /**
+   * Rebuilds the allele filters at once. They are rebuilt anyway when the data version changes.
+   */
+  @ResponseBody
+  @RequestMapping(value = "/variants/filter", method = RequestMethod.PUT)
+  public Base<Boolean> rebuildAlleleFilter() {
+    return new Base<>(alleleFilter.reload());
+  }
+
 }
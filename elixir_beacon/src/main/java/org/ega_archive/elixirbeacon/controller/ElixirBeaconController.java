@@ -3,20 +3,24 @@ package org.ega_archive.elixirbeacon.controller;
 import java.util.List;
 import java.util.Map;
 import javassist.NotFoundException;
+import javax.servlet.http.HttpServletResponse;
 import org.ega_archive.elixirbeacon.dto.Beacon;
 import org.ega_archive.elixirbeacon.dto.BeaconAlleleResponse;
 import org.ega_archive.elixirbeacon.dto.BeaconRequest;
 import org.ega_archive.elixirbeacon.service.ElixirBeaconService;
 import org.ega_archive.elixircore.constant.ParamName;
+import org.ega_archive.elixircore.helper.CommonQuery;
 import org.ega_archive.elixircore.helper.CommonQueryHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/beacon")
@@ -28,9 +32,17 @@ public class ElixirBeaconController {
   @GetMapping(value = "/")
   public Beacon listDatasets(
       Sort sort, 
-      @RequestParam(required = false) Map<String, String> params) throws NotFoundException {
+      @RequestParam(required = false) Map<String, String> params,
+      WebRequest webRequest, HttpServletResponse response) throws NotFoundException {
 
-    return elixirBeaconService.listDatasets(CommonQueryHelper.parseQuery(params, sort), null);
+    CommonQuery commonQuery = CommonQueryHelper.parseQuery(params, sort);
+    // The response depends on who is asking
+    response.addHeader(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION);
+    if (webRequest.checkNotModified(elixirBeaconService.getDatasetsEtag(commonQuery, null))) {
+      // 304 Not Modified
+      return null;
+    }
+    return elixirBeaconService.listDatasets(commonQuery, null);
   }
 
   @GetMapping(value = "/query")
@@ -61,4 +73,10 @@ public class ElixirBeaconController {
     return elixirBeaconService.queryBeacon(request);
   }
 
+  @PostMapping(value = "/query/batch")
+  public List<BeaconAlleleResponse> queryBeaconBatch(@RequestBody List<BeaconRequest> requests) {
+
+    return elixirBeaconService.queryBeaconBatch(requests);
+  }
+
 }
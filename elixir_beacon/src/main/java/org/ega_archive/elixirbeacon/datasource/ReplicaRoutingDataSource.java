@@ -0,0 +1,265 @@
+package org.ega_archive.elixirbeacon.datasource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadata;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProviders;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends the connections of read-only transactions to the replica with the fewest connections in
+ * use, everything else goes to the primary.
+ * <p>
+ * The transaction is only known to be read-only after the connection has been requested, so this
+ * data source has to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ * <p>
+ * Replicas are checked periodically. A replica that fails a check, or that fails to give a
+ * connection, is not used until it passes a check again and in the meantime its queries go to the
+ * primary. The replica pools are owned by this data source and closed with it.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource
+    implements PublicMetrics, DisposableBean {
+
+  public static final String PRIMARY = "primary";
+
+  private static final String METRIC_PREFIX = "datasource.elixirbeacon.";
+
+  private final Target primary;
+
+  private final List<Target> replicas = new ArrayList<>();
+
+  private final Map<String, Target> targets = new LinkedHashMap<>();
+
+  // Seconds to wait for Connection.isValid()
+  private final int healthCheckTimeout;
+
+  private final ScheduledExecutorService healthChecker;
+
+  private DataSourcePoolMetadataProvider poolMetadataProvider;
+
+  // Spreads the requests among replicas with the same number of connections in use
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  /**
+   * @param primary receives all the read-write work and the read-only work if no replica is up
+   * @param replicas by name
+   * @param healthCheckInterval milliseconds between checks, no checks if it is not positive
+   * @param healthCheckTimeout seconds to wait for the answer of a replica
+   */
+  public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+      long healthCheckInterval, int healthCheckTimeout) {
+
+    this.primary = new Target(PRIMARY, primary);
+    this.targets.put(PRIMARY, this.primary);
+    for (Entry<String, DataSource> entry : replicas.entrySet()) {
+      Target replica = new Target(entry.getKey(), entry.getValue());
+      this.replicas.add(replica);
+      this.targets.put(replica.name, replica);
+    }
+    this.healthCheckTimeout = healthCheckTimeout;
+
+    Map<Object, Object> targetDataSources = new HashMap<>();
+    for (Target target : targets.values()) {
+      targetDataSources.put(target.name, target.dataSource);
+    }
+    setTargetDataSources(targetDataSources);
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false);
+
+    if (!this.replicas.isEmpty() && healthCheckInterval > 0) {
+      healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-health-check");
+        thread.setDaemon(true);
+        return thread;
+      });
+      healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckInterval,
+          healthCheckInterval, TimeUnit.MILLISECONDS);
+    } else {
+      healthChecker = null;
+    }
+    log.info("Routing read-only transactions to {} replica(s): {}", this.replicas.size(),
+        replicas.keySet());
+  }
+
+  public void setPoolMetadataProviders(Collection<DataSourcePoolMetadataProvider> providers) {
+    this.poolMetadataProvider = new DataSourcePoolMetadataProviders(providers);
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return PRIMARY;
+    }
+    Target replica = leastOutstandingReplica();
+    return replica != null ? replica.name : PRIMARY;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    Target target = targets.get((String) determineCurrentLookupKey());
+    if (target != primary) {
+      try {
+        return target.getConnection();
+      } catch (SQLException e) {
+        target.markDown(e);
+      }
+    }
+    return primary.getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    // Credentials are only known by the pools
+    return getConnection();
+  }
+
+  private Target leastOutstandingReplica() {
+    int size = replicas.size();
+    if (size == 0) {
+      return null;
+    }
+    int offset = Math.abs(nextReplica.getAndIncrement() % size);
+    Target selected = null;
+    for (int i = 0; i < size; i++) {
+      Target replica = replicas.get((offset + i) % size);
+      if (replica.healthy && (selected == null
+          || replica.outstanding.get() < selected.outstanding.get())) {
+        selected = replica;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Validates a connection of every replica and updates its state.
+   */
+  public void checkHealth() {
+    for (Target replica : replicas) {
+      try (Connection connection = replica.dataSource.getConnection()) {
+        if (connection.isValid(healthCheckTimeout)) {
+          replica.markUp();
+        } else {
+          replica.markDown(null);
+        }
+      } catch (SQLException e) {
+        replica.markDown(e);
+      }
+    }
+  }
+
+  public Map<String, Boolean> getHealth() {
+    Map<String, Boolean> health = new LinkedHashMap<>();
+    for (Target target : targets.values()) {
+      health.put(target.name, target.healthy);
+    }
+    return Collections.unmodifiableMap(health);
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    for (Target target : targets.values()) {
+      String prefix = METRIC_PREFIX + target.name + ".";
+      metrics.add(new Metric<>(prefix + "outstanding", target.outstanding.get()));
+      metrics.add(new Metric<>(prefix + "healthy", target.healthy ? 1 : 0));
+      DataSourcePoolMetadata pool = poolMetadataProvider != null
+          ? poolMetadataProvider.getDataSourcePoolMetadata(target.dataSource) : null;
+      if (pool != null) {
+        if (pool.getActive() != null) {
+          metrics.add(new Metric<>(prefix + "active", pool.getActive()));
+        }
+        if (pool.getUsage() != null) {
+          metrics.add(new Metric<>(prefix + "usage", pool.getUsage()));
+        }
+      }
+    }
+    return metrics;
+  }
+
+  @Override
+  public void destroy() {
+    if (healthChecker != null) {
+      healthChecker.shutdownNow();
+    }
+    for (Target replica : replicas) {
+      if (replica.dataSource instanceof DataSourceProxy) {
+        ((DataSourceProxy) replica.dataSource).close();
+      }
+    }
+  }
+
+  private static class Target {
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    // Connections given and not closed yet
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private volatile boolean healthy = true;
+
+    Target(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+
+    Connection getConnection() throws SQLException {
+      Connection connection = dataSource.getConnection();
+      outstanding.incrementAndGet();
+      AtomicBoolean closed = new AtomicBoolean();
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+          new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+              outstanding.decrementAndGet();
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+              throw e.getTargetException();
+            }
+          });
+    }
+
+    void markUp() {
+      if (!healthy) {
+        log.info("Replica {} is up", name);
+      }
+      healthy = true;
+    }
+
+    void markDown(SQLException e) {
+      if (healthy) {
+        log.warn("Replica {} is down, using the primary instead: {}", name,
+            e != null ? e.getMessage() : "connection is not valid");
+      }
+      healthy = false;
+    }
+  }
+
+}
@@ -1,5 +1,7 @@
 package org.ega_archive.elixirbeacon.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.List;
@@ -14,6 +16,7 @@ import org.ega_archive.elixircore.constant.CoreConstants;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonSerialize(using = DatasetAlleleResponseSerializer.class)
 public class DatasetAlleleResponse {
 
   // Identifier of the dataset, as defined in `BeaconDataset`
@@ -51,4 +54,9 @@ public class DatasetAlleleResponse {
 
   private List<Handover> datasetHandover;
 
+  // Same dataset id and handovers, already serialized. Transient fields are not part of
+  // equals() and hashCode().
+  @JsonIgnore
+  private transient DatasetFragment fragment;
+
 }
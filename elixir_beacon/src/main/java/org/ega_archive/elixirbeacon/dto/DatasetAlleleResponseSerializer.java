@@ -0,0 +1,83 @@
+package org.ega_archive.elixirbeacon.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+/**
+ * Writes the same properties, in the same order, as the default bean serializer. If the response
+ * has a {@link DatasetFragment} the dataset id and the handovers are copied from it instead of
+ * being encoded again.
+ */
+public class DatasetAlleleResponseSerializer extends StdSerializer<DatasetAlleleResponse> {
+
+  private static final SerializedString DATASET_ID = new SerializedString("datasetId");
+
+  private static final SerializedString EXISTS = new SerializedString("exists");
+
+  private static final SerializedString ERROR = new SerializedString("error");
+
+  private static final SerializedString FREQUENCY = new SerializedString("frequency");
+
+  private static final SerializedString VARIANT_COUNT = new SerializedString("variantCount");
+
+  private static final SerializedString CALL_COUNT = new SerializedString("callCount");
+
+  private static final SerializedString SAMPLE_COUNT = new SerializedString("sampleCount");
+
+  private static final SerializedString NOTE = new SerializedString("note");
+
+  private static final SerializedString EXTERNAL_URL = new SerializedString("externalUrl");
+
+  private static final SerializedString INFO = new SerializedString("info");
+
+  private static final SerializedString DATASET_HANDOVER = new SerializedString("datasetHandover");
+
+  public DatasetAlleleResponseSerializer() {
+    super(DatasetAlleleResponse.class);
+  }
+
+  @Override
+  public void serialize(DatasetAlleleResponse value, JsonGenerator gen,
+      SerializerProvider provider) throws IOException {
+
+    DatasetFragment fragment = value.getFragment();
+
+    gen.writeStartObject();
+    gen.writeFieldName(DATASET_ID);
+    if (fragment != null) {
+      gen.writeString(fragment.getDatasetId());
+    } else {
+      provider.defaultSerializeValue(value.getDatasetId(), gen);
+    }
+    gen.writeFieldName(EXISTS);
+    gen.writeBoolean(value.isExists());
+    writeField(ERROR, value.getError(), gen, provider);
+    writeField(FREQUENCY, value.getFrequency(), gen, provider);
+    writeField(VARIANT_COUNT, value.getVariantCount(), gen, provider);
+    writeField(CALL_COUNT, value.getCallCount(), gen, provider);
+    writeField(SAMPLE_COUNT, value.getSampleCount(), gen, provider);
+    writeField(NOTE, value.getNote(), gen, provider);
+    writeField(EXTERNAL_URL, value.getExternalUrl(), gen, provider);
+    writeField(INFO, value.getInfo(), gen, provider);
+    gen.writeFieldName(DATASET_HANDOVER);
+    if (fragment != null) {
+      gen.writeRawValue(fragment.getDatasetHandover());
+    } else {
+      provider.defaultSerializeValue(value.getDatasetHandover(), gen);
+    }
+    gen.writeEndObject();
+  }
+
+  private static void writeField(SerializableString name, Object value, JsonGenerator gen,
+      SerializerProvider provider) throws IOException {
+
+    gen.writeFieldName(name);
+    // Also writes null values, like the default serializer
+    provider.defaultSerializeValue(value, gen);
+  }
+
+}
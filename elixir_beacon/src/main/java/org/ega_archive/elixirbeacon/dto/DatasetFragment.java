@@ -0,0 +1,38 @@
+package org.ega_archive.elixirbeacon.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * The parts of a {@link DatasetAlleleResponse} that only depend on the dataset, already encoded as
+ * UTF-8 JSON. They are built once per registry refresh and written as they are by
+ * {@link DatasetAlleleResponseSerializer}.
+ */
+@Getter
+public class DatasetFragment {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // String value, escaped but without quotes
+  private final SerializedString datasetId;
+
+  // JSON array
+  private final SerializedString datasetHandover;
+
+  public DatasetFragment(String datasetId, List<Handover> datasetHandover) {
+    this.datasetId = new SerializedString(datasetId);
+    try {
+      this.datasetHandover = new SerializedString(MAPPER.writeValueAsString(datasetHandover));
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Handovers of " + datasetId + " cannot be serialized", e);
+    }
+    // The encoded bytes are cached by SerializedString, compute them now instead of on the first
+    // request
+    this.datasetId.asQuotedUTF8();
+    this.datasetHandover.asUnquotedUTF8();
+  }
+
+}
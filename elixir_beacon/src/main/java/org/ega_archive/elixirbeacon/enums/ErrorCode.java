@@ -8,7 +8,8 @@ import lombok.Getter;
 public enum ErrorCode {
   GENERIC_ERROR(0), // HTTP error code 400. To be used when the error is not among below.
   UNAUTHORIZED(1), // HTTP error code 401
-  NOT_FOUND(2); // HTTP error code 404
+  NOT_FOUND(2), // HTTP error code 404
+  TIMEOUT(3); // HTTP error code 504. The query was cancelled before it finished
 
   private int code;
 
@@ -0,0 +1,37 @@
+package org.ega_archive.elixirbeacon.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+
+@AllArgsConstructor
+@Getter
+public enum QueryShape {
+
+  EXACT("exact"), // start + referenceBases + alternateBases (SNVs and small indels)
+  START_END_EXACT("start-end-exact"), // start + end, exactly determined structural variant
+  START_END_RANGE("start-end-range"), // start + end + alternateBases=N, any variant in the window
+  BRACKET("bracket"), // startMin + startMax + endMin + endMax, imprecise positions
+  VARIANT_TYPE("variant-type"); // start + variantType without alternateBases
+
+  private String name;
+
+  public String getMetricName() {
+    return "beacon.query." + name;
+  }
+
+  public static QueryShape of(IndexQuery query) {
+    if (query.isBracket()) {
+      return BRACKET;
+    }
+    if (query.getEnd() != null) {
+      return query.isAnyAlternate() ? START_END_RANGE : START_END_EXACT;
+    }
+    if (query.getVariantType() != null
+        && (query.getAlternateBases() == null || query.isAnyAlternate())) {
+      return VARIANT_TYPE;
+    }
+    return EXACT;
+  }
+
+}
@@ -0,0 +1,47 @@
+package org.ega_archive.elixirbeacon.index;
+
+/**
+ * Variant type, reference and alternate of an {@link IndexQuery} translated to the codes of a
+ * {@link StringDictionary}. {@link ChromosomeIndex#NULL_VALUE} means that any value matches.
+ */
+class AlleleCodes {
+
+  private static final int ANY = ChromosomeIndex.NULL_VALUE;
+
+  private final int type;
+
+  private final int reference;
+
+  private final int alternate;
+
+  AlleleCodes(IndexQuery query, StringDictionary dictionary) {
+    this.type = query.getVariantType() == null ? ANY : dictionary.lookup(query.getVariantType());
+    this.reference = query.getReferenceBases() == null ? ANY
+        : dictionary.lookup(query.getReferenceBases());
+    boolean exactAlternate = query.getAlternateBases() != null && !query.isAnyAlternate()
+        && !query.isInsertion();
+    this.alternate = exactAlternate ? dictionary.lookup(query.getAlternateBases()) : ANY;
+  }
+
+  /**
+   * Code of the variant type, {@link ChromosomeIndex#NULL_VALUE} if any type matches.
+   */
+  int getType() {
+    return type;
+  }
+
+  /**
+   * {@code false} if any of the values is not in the dictionary, so no variant can match.
+   */
+  boolean isSatisfiable() {
+    return type != StringDictionary.NOT_FOUND && reference != StringDictionary.NOT_FOUND
+        && alternate != StringDictionary.NOT_FOUND;
+  }
+
+  boolean matches(int type, int reference, int alternate) {
+    return (this.type == ANY || this.type == type)
+        && (this.reference == ANY || this.reference == reference)
+        && (this.alternate == ANY || this.alternate == alternate);
+  }
+
+}
@@ -0,0 +1,272 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tells which datasets certainly do not have an allele, so that they are not queried.
+ * <p>
+ * It is only loaded if {@code elixirbeacon.allele.filter.enabled} is {@code true}. If
+ * {@code elixirbeacon.allele.filter.file} is set, that file is memory-mapped on startup instead of
+ * reading the whole variant table, and it is written every time the filters are rebuilt.
+ * <p>
+ * The filters belong to the data version they were built from. When the
+ * {@link DataVersionMonitor} sees another version they are dropped and rebuilt in the background,
+ * and until then every dataset might have any allele. A file of another version is not mapped.
+ */
+@Slf4j
+@Component
+public class AlleleFilter implements DisposableBean {
+
+  private static final String METRIC = "beacon.allele.filter.negative";
+
+  private static final int FETCH_SIZE = 10000;
+
+  // Milliseconds to wait for the replica to replay the load before building again
+  private static final long RETRY_DELAY = 10000;
+
+  private static final String DATASET_QUERY = "SELECT id FROM public.beacon_dataset_table";
+
+  private static final String COUNT_QUERY = "SELECT dataset_id, chromosome, count(*) AS cnt "
+      + "FROM public.beacon_data_table GROUP BY dataset_id, chromosome";
+
+  private static final String LOAD_QUERY = "SELECT dataset_id, chromosome, start, reference, "
+      + "alternate FROM public.beacon_data_table";
+
+  @Value("${elixirbeacon.allele.filter.enabled:false}")
+  private boolean enabled;
+
+  @Value("${elixirbeacon.allele.filter.fpp:0.01}")
+  private double falsePositiveProbability;
+
+  @Value("${elixirbeacon.allele.filter.file:}")
+  private String file;
+
+  @Autowired
+  @Qualifier("elixirbeaconJdbcTemplate")
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  @Qualifier("elixirbeaconTransactionManager")
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private DataVersionMonitor dataVersionMonitor;
+
+  @Autowired
+  private CounterService counterService;
+
+  // Replaced as a whole on every reload, null until the filters of the data version are built
+  private volatile AlleleFilterSet filters;
+
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "allele-filter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    dataVersionMonitor.addListener(this::dataVersionChanged);
+  }
+
+  @Override
+  public void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() {
+    if (!enabled) {
+      return;
+    }
+    if (StringUtils.isNotBlank(file) && Files.exists(Paths.get(file))) {
+      long startTime = System.currentTimeMillis();
+      try {
+        AlleleFilterSet mapped = AlleleFilterSet.map(Paths.get(file),
+            dataVersionMonitor.getVersion());
+        if (install(mapped)) {
+          log.info("Allele filters mapped from {}: {} filters, {} bytes in {} ms", file,
+              mapped.size(), mapped.bitsSize(), System.currentTimeMillis() - startTime);
+          return;
+        }
+      } catch (IOException e) {
+        log.warn("Allele filters could not be read from {}, rebuilding them: {}", file,
+            e.getMessage());
+      }
+    }
+    reload();
+  }
+
+  /**
+   * Rebuilds the filters from the variant table, swaps them with the current ones and writes them
+   * to the file, if any. Returns whether they were swapped: if the replica has not replayed the
+   * last load yet, it is tried again later.
+   */
+  public boolean reload() {
+    long startTime = System.currentTimeMillis();
+    long expectedVersion = dataVersionMonitor.getVersion();
+    AlleleFilterSet.Builder builder = new AlleleFilterSet.Builder(falsePositiveProbability);
+
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+    boolean built = transaction.execute(status -> {
+      // Read first: the loader commits the variants before it increments the version
+      long version = dataVersionMonitor.readVersion();
+      if (expectedVersion != DataVersionMonitor.UNKNOWN && version != expectedVersion) {
+        log.info("Allele filters not built: the data is at version {} instead of {}", version,
+            expectedVersion);
+        return false;
+      }
+      builder.dataVersion(version);
+      jdbcTemplate.query(DATASET_QUERY, (ResultSet rs) -> {
+        builder.dataset(rs.getInt("id"));
+      });
+      jdbcTemplate.query(COUNT_QUERY, (ResultSet rs) -> {
+        builder.expect(rs.getInt("dataset_id"), rs.getString("chromosome"), rs.getLong("cnt"));
+      });
+      // A fetch size inside a transaction makes the driver stream the rows with a cursor
+      jdbcTemplate.query(con -> {
+        PreparedStatement statement = con.prepareStatement(LOAD_QUERY);
+        statement.setFetchSize(FETCH_SIZE);
+        return statement;
+      }, (ResultSet rs) -> {
+        builder.add(rs.getInt("dataset_id"), rs.getString("chromosome"), rs.getInt("start"),
+            rs.getString("reference"), rs.getString("alternate"));
+      });
+      return true;
+    });
+    if (!built) {
+      scheduler.schedule(this::rebuild, RETRY_DELAY, TimeUnit.MILLISECONDS);
+      return false;
+    }
+
+    AlleleFilterSet loaded = builder.build();
+    if (!install(loaded)) {
+      // The version changed while building, the filters of the new one are on their way
+      return false;
+    }
+    log.info("Allele filters built for data version {}: {} filters, {} bytes in {} ms",
+        loaded.getDataVersion(), loaded.size(), loaded.bitsSize(),
+        System.currentTimeMillis() - startTime);
+
+    if (StringUtils.isNotBlank(file)) {
+      write(loaded);
+    }
+    return true;
+  }
+
+  public boolean isReady() {
+    return filters != null;
+  }
+
+  /**
+   * Returns the datasets of the query that might have the allele, sorted by id. All of them if the
+   * filters of the current data version are not loaded or if the query is not for a single
+   * allele.
+   */
+  public List<Integer> filterDatasets(String chromosome, IndexQuery query) {
+    AlleleFilterSet current = filters;
+    if (current == null || current.getDataVersion() != dataVersionMonitor.getVersion()
+        || !query.isExactAllele()) {
+      return toList(IntStream.of(query.getDatasetIds()));
+    }
+    List<Integer> datasetIds = toList(IntStream.of(query.getDatasetIds())
+        .filter(datasetId -> current.mightContain(datasetId, chromosome, query.getStart(),
+            query.getReferenceBases(), query.getAlternateBases())));
+    if (datasetIds.isEmpty() && query.getDatasetIds().length > 0) {
+      counterService.increment(METRIC);
+    }
+    return datasetIds;
+  }
+
+  private void dataVersionChanged(long version) {
+    synchronized (this) {
+      filters = null;
+    }
+    if (enabled) {
+      log.info("Allele filters dropped, rebuilding them for data version {}", version);
+      scheduler.execute(this::rebuild);
+    }
+  }
+
+  private void rebuild() {
+    AlleleFilterSet current = filters;
+    if (current != null && current.getDataVersion() == dataVersionMonitor.getVersion()) {
+      return;
+    }
+    try {
+      reload();
+    } catch (RuntimeException e) {
+      // Every dataset is queried meanwhile
+      log.error("Allele filters could not be rebuilt, retrying in " + RETRY_DELAY + " ms", e);
+      scheduler.schedule(this::rebuild, RETRY_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Swaps the filters if they are of the current data version.
+   */
+  private synchronized boolean install(AlleleFilterSet loaded) {
+    long version = dataVersionMonitor.getVersion();
+    if (version != DataVersionMonitor.UNKNOWN && loaded.getDataVersion() != version) {
+      return false;
+    }
+    filters = loaded;
+    return true;
+  }
+
+  private void write(AlleleFilterSet loaded) {
+    Path path = Paths.get(file);
+    try {
+      // Readers of the file never see it half written
+      Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName()
+          .toString(), ".tmp");
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+        loaded.writeTo(out);
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // The filters in memory are still valid
+      log.error("Allele filters could not be written to {}: {}", file, e.getMessage());
+    }
+  }
+
+  private static List<Integer> toList(IntStream datasetIds) {
+    List<Integer> result = new ArrayList<>();
+    datasetIds.forEach(result::add);
+    return result;
+  }
+
+}
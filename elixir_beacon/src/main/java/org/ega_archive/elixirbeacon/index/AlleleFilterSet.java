@@ -0,0 +1,314 @@
+package org.ega_archive.elixirbeacon.index;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Immutable set of Bloom filters, one per (dataset, chromosome), with the alleles
+ * ({@code start}, {@code reference}, {@code alternate}) of {@code beacon_data_table}.
+ * <p>
+ * {@link #mightContain} never returns {@code false} for an allele that was added, so a dataset can
+ * be skipped when it returns {@code false}. Datasets that were not known when the set was built
+ * always might contain the allele.
+ * <p>
+ * The bits of all the filters are kept outside of the heap: in a direct buffer when the set is
+ * built and in a memory-mapped file when it is read with {@link #map(Path, long)}.
+ * <p>
+ * A set only holds the alleles of the data version it was built from, see
+ * {@link #getDataVersion()}.
+ */
+public class AlleleFilterSet {
+
+  public static final long UNKNOWN_DATA_VERSION = -1;
+
+  private static final int FORMAT_VERSION = 2;
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final Set<Integer> datasetIds;
+
+  // Key: dataset id + chromosome
+  private final Map<String, Filter> filters;
+
+  private final ByteBuffer bits;
+
+  private final long dataVersion;
+
+  private AlleleFilterSet(long dataVersion, Set<Integer> datasetIds, Map<String, Filter> filters,
+      ByteBuffer bits) {
+    this.dataVersion = dataVersion;
+    this.datasetIds = Collections.unmodifiableSet(datasetIds);
+    this.filters = Collections.unmodifiableMap(filters);
+    this.bits = bits;
+  }
+
+  public boolean mightContain(int datasetId, String chromosome, int start, String reference,
+      String alternate) {
+
+    if (!datasetIds.contains(datasetId)) {
+      return true;
+    }
+    Filter filter = filters.get(key(datasetId, chromosome));
+    if (filter == null) {
+      return false;
+    }
+    long[] hash = hash(start, reference, alternate);
+    long combined = hash[0];
+    for (int i = 0; i < filter.hashes; i++) {
+      long bit = (combined & Long.MAX_VALUE) % filter.bitSize();
+      if ((bits.getLong(filter.offset + (int) (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+        return false;
+      }
+      combined += hash[1];
+    }
+    return true;
+  }
+
+  /**
+   * Value of {@code beacon_data_version_table.version} when the alleles were read.
+   */
+  public long getDataVersion() {
+    return dataVersion;
+  }
+
+  public int size() {
+    return filters.size();
+  }
+
+  /**
+   * Bytes used by the bits of the filters.
+   */
+  public long bitsSize() {
+    return bits.capacity();
+  }
+
+  /**
+   * Writes a small header, that is read into the heap by {@link #map(Path, long)}, followed by
+   * the bits of all the filters.
+   */
+  public void writeTo(OutputStream outputStream) throws IOException {
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(headerBytes);
+    header.writeLong(dataVersion);
+    header.writeInt(datasetIds.size());
+    for (Integer datasetId : datasetIds) {
+      header.writeInt(datasetId);
+    }
+    header.writeInt(filters.size());
+    for (Entry<String, Filter> entry : filters.entrySet()) {
+      header.writeUTF(entry.getKey());
+      header.writeInt(entry.getValue().offset);
+      header.writeInt(entry.getValue().longs);
+      header.writeInt(entry.getValue().hashes);
+    }
+    header.flush();
+
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(headerBytes.size());
+    headerBytes.writeTo(out);
+    out.flush();
+    WritableByteChannel channel = Channels.newChannel(outputStream);
+    ByteBuffer source = bits.duplicate();
+    source.clear();
+    while (source.hasRemaining()) {
+      channel.write(source);
+    }
+    outputStream.flush();
+  }
+
+  /**
+   * Reads a file written by {@link #writeTo(OutputStream)}. The bits are not read, the file is
+   * mapped into memory instead.
+   *
+   * @param expectedDataVersion the file is refused if it was written for another data version,
+   *     any version is accepted if it is {@link #UNKNOWN_DATA_VERSION}
+   */
+  public static AlleleFilterSet map(Path file, long expectedDataVersion) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer prefix = ByteBuffer.allocate(2 * Integer.BYTES);
+      readFully(channel, prefix);
+      prefix.flip();
+      int version = prefix.getInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported allele filter format version: " + version);
+      }
+      ByteBuffer headerBytes = ByteBuffer.allocate(prefix.getInt());
+      readFully(channel, headerBytes);
+
+      DataInputStream header = new DataInputStream(
+          new ByteArrayInputStream(headerBytes.array()));
+      long dataVersion = header.readLong();
+      if (expectedDataVersion != UNKNOWN_DATA_VERSION && dataVersion != expectedDataVersion) {
+        throw new IOException("Allele filters of data version " + dataVersion
+            + ", the data is at version " + expectedDataVersion);
+      }
+      Set<Integer> datasetIds = new HashSet<>();
+      for (int i = header.readInt(); i > 0; i--) {
+        datasetIds.add(header.readInt());
+      }
+      Map<String, Filter> filters = new HashMap<>();
+      for (int i = header.readInt(); i > 0; i--) {
+        filters.put(header.readUTF(),
+            new Filter(header.readInt(), header.readInt(), header.readInt()));
+      }
+
+      long position = channel.position();
+      // The mapping stays valid after the channel is closed
+      ByteBuffer bits = channel.map(MapMode.READ_ONLY, position, channel.size() - position);
+      return new AlleleFilterSet(dataVersion, datasetIds, filters, bits);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Unexpected end of the allele filter file");
+      }
+    }
+  }
+
+  private static String key(int datasetId, String chromosome) {
+    return datasetId + ":" + StringUtils.upperCase(chromosome);
+  }
+
+  private static long[] hash(int start, String reference, String alternate) {
+    byte[] bytes = HASH.newHasher()
+        .putInt(start)
+        .putString(StringUtils.upperCase(reference), StandardCharsets.UTF_8)
+        .putByte((byte) '>')
+        .putString(StringUtils.upperCase(alternate), StandardCharsets.UTF_8)
+        .hash()
+        .asBytes();
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    return new long[]{buffer.getLong(), buffer.getLong()};
+  }
+
+  private static class Filter {
+
+    // Position of the first byte in the bits of the set
+    private final int offset;
+
+    private final int longs;
+
+    private final int hashes;
+
+    Filter(int offset, int longs, int hashes) {
+      this.offset = offset;
+      this.longs = longs;
+      this.hashes = hashes;
+    }
+
+    long bitSize() {
+      return (long) longs * Long.SIZE;
+    }
+  }
+
+  /**
+   * The number of alleles of every (dataset, chromosome) has to be known before adding them, so
+   * that each filter is sized for the requested false positive probability.
+   */
+  public static class Builder {
+
+    private final double falsePositiveProbability;
+
+    private final Set<Integer> datasetIds = new HashSet<>();
+
+    private final Map<String, long[]> filters = new HashMap<>();
+
+    private final Map<String, Integer> hashes = new HashMap<>();
+
+    private long dataVersion = UNKNOWN_DATA_VERSION;
+
+    public Builder(double falsePositiveProbability) {
+      this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    public Builder dataVersion(long dataVersion) {
+      this.dataVersion = dataVersion;
+      return this;
+    }
+
+    /**
+     * Declares a dataset, even if it has no variants.
+     */
+    public Builder dataset(int datasetId) {
+      datasetIds.add(datasetId);
+      return this;
+    }
+
+    public Builder expect(int datasetId, String chromosome, long alleles) {
+      datasetIds.add(datasetId);
+      long expected = Math.max(1, alleles);
+      // Optimal number of bits and of hash functions for the expected number of alleles
+      double bits = -expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+      int longs = (int) Math.max(1, Math.min(Integer.MAX_VALUE / Long.BYTES,
+          Math.ceil(bits / Long.SIZE)));
+      String key = key(datasetId, chromosome);
+      filters.put(key, new long[longs]);
+      hashes.put(key, (int) Math.max(1, Math.round((double) longs * Long.SIZE / expected
+          * Math.log(2))));
+      return this;
+    }
+
+    public Builder add(int datasetId, String chromosome, int start, String reference,
+        String alternate) {
+
+      String key = key(datasetId, chromosome);
+      long[] filter = filters.get(key);
+      if (filter == null) {
+        throw new IllegalStateException("No alleles were expected for " + key);
+      }
+      long bitSize = (long) filter.length * Long.SIZE;
+      long[] hash = hash(start, reference, alternate);
+      long combined = hash[0];
+      for (int i = hashes.get(key); i > 0; i--) {
+        long bit = (combined & Long.MAX_VALUE) % bitSize;
+        filter[(int) (bit >>> 6)] |= 1L << bit;
+        combined += hash[1];
+      }
+      return this;
+    }
+
+    public AlleleFilterSet build() {
+      long size = filters.values().stream().mapToLong(filter -> filter.length).sum() * Long.BYTES;
+      if (size > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Allele filters are too big: " + size + " bytes, use a "
+            + "higher false positive probability");
+      }
+      ByteBuffer bits = ByteBuffer.allocateDirect((int) size);
+      Map<String, Filter> built = new HashMap<>();
+      for (Entry<String, long[]> entry : filters.entrySet()) {
+        built.put(entry.getKey(), new Filter(bits.position(), entry.getValue().length,
+            hashes.get(entry.getKey())));
+        bits.asLongBuffer().put(entry.getValue());
+        bits.position(bits.position() + entry.getValue().length * Long.BYTES);
+      }
+      bits.clear();
+      return new AlleleFilterSet(dataVersion, new HashSet<>(datasetIds), built, bits);
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Static k-d trees of the {@code (start, end)} points of the variants of a chromosome, one per
+ * variant type, to answer bracket queries ({@code startMin + startMax + endMin + endMax}).
+ * <p>
+ * A bracket query is a rectangle in the {@code (start, end)} plane. Sorting by {@code start} only
+ * narrows the first side of the rectangle: with population-scale structural variant calls, the
+ * start window of an imprecise deletion can hold thousands of variants whose ends are nowhere
+ * near. Each tree splits its points by the median of {@code start} and {@code end} alternately,
+ * in place in primitive arrays, so that it takes no memory besides the points themselves and only
+ * leaves of {@value #LEAF_SIZE} points are scanned.
+ * <p>
+ * Variants without end never match a bracket query and are not included.
+ */
+final class BracketIndex {
+
+  static final int LEAF_SIZE = 64;
+
+  private static final int ANY = ChromosomeIndex.NULL_VALUE;
+
+  // Sorted variant type codes, the type of the variants without type is NULL_VALUE
+  private final int[] types;
+
+  // The tree of types[i] is [offsets[i], offsets[i + 1]) of the following arrays
+  private final int[] offsets;
+
+  private final int[] starts;
+
+  private final int[] ends;
+
+  private final int[] rows;
+
+  /**
+   * @param starts of every row
+   * @param ends of every row, {@link ChromosomeIndex#NULL_VALUE} if the variant has no end
+   * @param types of every row
+   */
+  BracketIndex(int[] starts, int[] ends, int[] types) {
+    int size = 0;
+    for (int end : ends) {
+      if (end != ChromosomeIndex.NULL_VALUE) {
+        size++;
+      }
+    }
+    // Grouped by type, rows keep their order inside each group
+    long[] packed = new long[size];
+    int i = 0;
+    for (int row = 0; row < ends.length; row++) {
+      if (ends[row] != ChromosomeIndex.NULL_VALUE) {
+        packed[i++] = ((long) types[row] << 32) | row;
+      }
+    }
+    Arrays.sort(packed);
+
+    this.starts = new int[size];
+    this.ends = new int[size];
+    this.rows = new int[size];
+    int groups = 0;
+    for (i = 0; i < size; i++) {
+      int row = (int) packed[i];
+      this.starts[i] = starts[row];
+      this.ends[i] = ends[row];
+      this.rows[i] = row;
+      if (i == 0 || (int) (packed[i] >> 32) != (int) (packed[i - 1] >> 32)) {
+        groups++;
+      }
+    }
+    this.types = new int[groups];
+    this.offsets = new int[groups + 1];
+    int group = 0;
+    for (i = 0; i < size; i++) {
+      int type = (int) (packed[i] >> 32);
+      if (i == 0 || type != this.types[group - 1]) {
+        this.types[group] = type;
+        this.offsets[group] = i;
+        group++;
+      }
+    }
+    this.offsets[groups] = size;
+
+    for (group = 0; group < groups; group++) {
+      build(offsets[group], offsets[group + 1] - 1, 0);
+    }
+  }
+
+  int size() {
+    return rows.length;
+  }
+
+  /**
+   * Calls {@code visitor} with the rows of type {@code type} ({@link ChromosomeIndex#NULL_VALUE}
+   * for any type) with {@code startMin <= start < startMax} and {@code endMin <= end < endMax},
+   * until it returns {@code false}. Rows are not visited in any particular order.
+   *
+   * @return {@code false} if the search was stopped by the visitor
+   */
+  boolean search(int type, int startMin, int startMax, int endMin, int endMax,
+      IntPredicate visitor) {
+
+    if (startMin >= startMax || endMin >= endMax) {
+      return true;
+    }
+    if (type != ANY) {
+      int group = Arrays.binarySearch(types, type);
+      return group < 0 || searchTree(group, startMin, startMax - 1, endMin, endMax - 1, visitor);
+    }
+    for (int group = 0; group < types.length; group++) {
+      if (!searchTree(group, startMin, startMax - 1, endMin, endMax - 1, visitor)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Bounds are inclusive
+  private boolean searchTree(int group, int minStart, int maxStart, int minEnd, int maxEnd,
+      IntPredicate visitor) {
+
+    // left, right and axis of the subtrees still to visit. Every level adds two of them at most
+    int[] stack = new int[6 * 32];
+    int top = 0;
+    stack[top++] = offsets[group];
+    stack[top++] = offsets[group + 1] - 1;
+    stack[top++] = 0;
+    while (top > 0) {
+      int axis = stack[--top];
+      int right = stack[--top];
+      int left = stack[--top];
+
+      if (right - left <= LEAF_SIZE) {
+        for (int i = left; i <= right; i++) {
+          if (contains(i, minStart, maxStart, minEnd, maxEnd) && !visitor.test(rows[i])) {
+            return false;
+          }
+        }
+        continue;
+      }
+
+      int middle = (left + right) >>> 1;
+      if (contains(middle, minStart, maxStart, minEnd, maxEnd) && !visitor.test(rows[middle])) {
+        return false;
+      }
+      int value = axis == 0 ? starts[middle] : ends[middle];
+      if ((axis == 0 ? minStart : minEnd) <= value) {
+        stack[top++] = left;
+        stack[top++] = middle - 1;
+        stack[top++] = 1 - axis;
+      }
+      if ((axis == 0 ? maxStart : maxEnd) >= value) {
+        stack[top++] = middle + 1;
+        stack[top++] = right;
+        stack[top++] = 1 - axis;
+      }
+    }
+    return true;
+  }
+
+  private boolean contains(int i, int minStart, int maxStart, int minEnd, int maxEnd) {
+    return starts[i] >= minStart && starts[i] <= maxStart && ends[i] >= minEnd
+        && ends[i] <= maxEnd;
+  }
+
+  /**
+   * Puts the median of [left, right] by the axis in the middle, the smaller points before it and
+   * the bigger ones after it, and does the same with both halves by the other axis.
+   */
+  private void build(int left, int right, int axis) {
+    if (right - left <= LEAF_SIZE) {
+      return;
+    }
+    int middle = (left + right) >>> 1;
+    select(middle, left, right, axis == 0 ? starts : ends);
+    build(left, middle - 1, 1 - axis);
+    build(middle + 1, right, 1 - axis);
+  }
+
+  /**
+   * Quickselect: the k-th smallest value of [left, right] ends up at k.
+   */
+  private void select(int k, int left, int right, int[] values) {
+    while (right > left) {
+      int pivot = values[(left + right) >>> 1];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (values[i] < pivot) {
+          i++;
+        }
+        while (values[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swap(int i, int j) {
+    int start = starts[i];
+    starts[i] = starts[j];
+    starts[j] = start;
+    int end = ends[i];
+    ends[i] = ends[j];
+    ends[j] = end;
+    int row = rows[i];
+    rows[i] = rows[j];
+    rows[j] = row;
+  }
+
+}
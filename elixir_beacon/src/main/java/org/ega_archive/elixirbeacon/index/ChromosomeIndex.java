@@ -0,0 +1,323 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable index of the variants of one chromosome of one assembly.
+ * <p>
+ * Variants are stored column-wise in primitive arrays sorted by {@code start}, so that exact
+ * queries are a binary search followed by a short scan. A second array keeps the rows sorted by
+ * {@code end} to answer range queries ({@code start + end} with {@code alternateBases=N}) that
+ * match variants by either of their ends, and a {@link BracketIndex} answers bracket queries,
+ * which bound both ends at once. Alleles and variant types
+ * are dictionary-encoded with a {@link StringDictionary} shared by the whole index. Variants can
+ * have the {@link SampleBitmap} of the samples where they are found, to count the distinct samples
+ * of several matching variants.
+ */
+public class ChromosomeIndex {
+
+  public static final int NULL_VALUE = DatasetSummaryAccumulator.NULL_VALUE;
+
+  private final StringDictionary dictionary;
+
+  // Sorted
+  private final int[] starts;
+
+  private final int[] ends;
+
+  // Row numbers sorted by end (rows without end are not included)
+  private final int[] endOrder;
+
+  // Sorted, endOrder[i] is the row whose end is sortedEnds[i]
+  private final int[] sortedEnds;
+
+  private final int[] datasetIds;
+
+  private final int[] references;
+
+  private final int[] alternates;
+
+  private final int[] types;
+
+  private final int[] variantCnts;
+
+  private final int[] callCnts;
+
+  private final int[] sampleCnts;
+
+  private final BigDecimal[] frequencies;
+
+  // null if the samples of the variant are unknown
+  private final SampleBitmap[] samples;
+
+  private final BracketIndex brackets;
+
+  private ChromosomeIndex(Builder builder, int[] order) {
+    int size = order.length;
+    this.dictionary = builder.dictionary;
+    this.starts = new int[size];
+    this.ends = new int[size];
+    this.datasetIds = new int[size];
+    this.references = new int[size];
+    this.alternates = new int[size];
+    this.types = new int[size];
+    this.variantCnts = new int[size];
+    this.callCnts = new int[size];
+    this.sampleCnts = new int[size];
+    this.frequencies = new BigDecimal[size];
+    this.samples = new SampleBitmap[size];
+
+    int withEnd = 0;
+    for (int row = 0; row < size; row++) {
+      int source = order[row];
+      starts[row] = builder.starts[source];
+      ends[row] = builder.ends[source];
+      datasetIds[row] = builder.datasetIds[source];
+      references[row] = builder.references[source];
+      alternates[row] = builder.alternates[source];
+      types[row] = builder.types[source];
+      variantCnts[row] = builder.variantCnts[source];
+      callCnts[row] = builder.callCnts[source];
+      sampleCnts[row] = builder.sampleCnts[source];
+      frequencies[row] = builder.frequencies.get(source);
+      samples[row] = builder.samples.get(source);
+      if (ends[row] != NULL_VALUE) {
+        withEnd++;
+      }
+    }
+
+    long[] packed = new long[withEnd];
+    int i = 0;
+    for (int row = 0; row < size; row++) {
+      if (ends[row] != NULL_VALUE) {
+        packed[i++] = pack(ends[row], row);
+      }
+    }
+    Arrays.sort(packed);
+    this.endOrder = new int[withEnd];
+    this.sortedEnds = new int[withEnd];
+    for (i = 0; i < withEnd; i++) {
+      sortedEnds[i] = (int) (packed[i] >> 32);
+      endOrder[i] = (int) packed[i];
+    }
+    this.brackets = new BracketIndex(starts, ends, types);
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * Adds all the variants matching the query to the accumulator.
+   */
+  public void search(IndexQuery query, DatasetSummaryAccumulator accumulator) {
+    scan(query, row -> {
+      add(row, accumulator);
+      return true;
+    });
+  }
+
+  /**
+   * Whether any variant matches the query. It stops at the first match.
+   */
+  public boolean exists(IndexQuery query) {
+    return !scan(query, row -> false);
+  }
+
+  /**
+   * Calls {@code visitor} with every row matching the query until it returns {@code false}.
+   * Returns {@code false} if the scan was stopped by the visitor.
+   */
+  private boolean scan(IndexQuery query, IntPredicate visitor) {
+    Criteria criteria = new Criteria(query);
+    if (!criteria.satisfiable) {
+      return true;
+    }
+
+    if (query.isBracket()) {
+      return brackets.search(criteria.codes.getType(), query.getStartMin(), query.getStartMax(),
+          query.getEndMin(), query.getEndMax(),
+          row -> !criteria.matches(row) || visitor.test(row));
+    } else if (query.isExactStart()) {
+      return scanStarts(lowerBound(starts, query.getStart()),
+          lowerBound(starts, query.getStart() + 1), criteria, visitor);
+    } else if (query.isRange()) {
+      int from = query.getStart();
+      int to = query.getEnd();
+      if (!scanStarts(lowerBound(starts, from), lowerBound(starts, to), criteria, visitor)) {
+        return false;
+      }
+      // Variants ending inside the window but starting outside of it
+      for (int i = lowerBound(sortedEnds, from); i < lowerBound(sortedEnds, to); i++) {
+        int row = endOrder[i];
+        if ((starts[row] < from || starts[row] >= to) && criteria.matches(row)
+            && !visitor.test(row)) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      return scanStarts(0, starts.length, criteria, visitor);
+    }
+  }
+
+  private boolean scanStarts(int from, int to, Criteria criteria, IntPredicate visitor) {
+    for (int row = from; row < to; row++) {
+      if (criteria.matches(row) && !visitor.test(row)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void add(int row, DatasetSummaryAccumulator accumulator) {
+    accumulator.add(datasetIds[row], variantCnts[row], callCnts[row], sampleCnts[row],
+        frequencies[row], samples[row]);
+  }
+
+  /**
+   * Index of the first element that is greater or equal than the key.
+   */
+  static int lowerBound(int[] sorted, int key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static long pack(int key, int row) {
+    return ((long) key << 32) | (row & 0xFFFFFFFFL);
+  }
+
+  /**
+   * The query translated to dictionary codes.
+   */
+  private class Criteria {
+
+    private final IndexQuery query;
+
+    private final AlleleCodes codes;
+
+    private final boolean satisfiable;
+
+    Criteria(IndexQuery query) {
+      this.query = query;
+      this.codes = new AlleleCodes(query, dictionary);
+      this.satisfiable = codes.isSatisfiable();
+    }
+
+    boolean matches(int row) {
+      if (!query.includesDataset(datasetIds[row])) {
+        return false;
+      }
+      if (!codes.matches(types[row], references[row], alternates[row])) {
+        return false;
+      }
+      if (query.isInsertedBases() && !query.matchesInsertedBases(
+          dictionary.decode(references[row]), dictionary.decode(alternates[row]))) {
+        return false;
+      }
+      return query.matchesPosition(starts[row], ends[row]);
+    }
+  }
+
+  /**
+   * Collects the variants of one chromosome in any order. The builder shares the dictionary with
+   * the rest of the chromosomes of the index.
+   */
+  public static class Builder {
+
+    private final StringDictionary dictionary;
+
+    private int size;
+
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private int[] datasetIds = new int[1024];
+    private int[] references = new int[1024];
+    private int[] alternates = new int[1024];
+    private int[] types = new int[1024];
+    private int[] variantCnts = new int[1024];
+    private int[] callCnts = new int[1024];
+    private int[] sampleCnts = new int[1024];
+    private List<BigDecimal> frequencies = new ArrayList<>();
+    private List<SampleBitmap> samples = new ArrayList<>();
+
+    public Builder(StringDictionary dictionary) {
+      this.dictionary = dictionary;
+    }
+
+    /**
+     * Adds a variant. Use {@link ChromosomeIndex#NULL_VALUE} for the missing numeric values.
+     */
+    public Builder add(int datasetId, int start, int end, String reference, String alternate,
+        String type, int variantCnt, int callCnt, int sampleCnt, BigDecimal frequency) {
+
+      return add(datasetId, start, end, reference, alternate, type, variantCnt, callCnt,
+          sampleCnt, frequency, null);
+    }
+
+    /**
+     * Adds a variant with the samples where it is found, {@code null} if they are unknown.
+     */
+    public Builder add(int datasetId, int start, int end, String reference, String alternate,
+        String type, int variantCnt, int callCnt, int sampleCnt, BigDecimal frequency,
+        SampleBitmap samples) {
+
+      if (size == starts.length) {
+        grow();
+      }
+      starts[size] = start;
+      ends[size] = end;
+      datasetIds[size] = datasetId;
+      references[size] = dictionary.encode(reference);
+      alternates[size] = dictionary.encode(alternate);
+      types[size] = type == null ? NULL_VALUE : dictionary.encode(type);
+      variantCnts[size] = variantCnt;
+      callCnts[size] = callCnt;
+      sampleCnts[size] = sampleCnt;
+      frequencies.add(frequency);
+      this.samples.add(samples);
+      size++;
+      return this;
+    }
+
+    private void grow() {
+      int capacity = starts.length * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      datasetIds = Arrays.copyOf(datasetIds, capacity);
+      references = Arrays.copyOf(references, capacity);
+      alternates = Arrays.copyOf(alternates, capacity);
+      types = Arrays.copyOf(types, capacity);
+      variantCnts = Arrays.copyOf(variantCnts, capacity);
+      callCnts = Arrays.copyOf(callCnts, capacity);
+      sampleCnts = Arrays.copyOf(sampleCnts, capacity);
+    }
+
+    public ChromosomeIndex build() {
+      long[] packed = new long[size];
+      for (int row = 0; row < size; row++) {
+        packed[row] = pack(starts[row], row);
+      }
+      Arrays.sort(packed);
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = (int) packed[i];
+      }
+      return new ChromosomeIndex(this, order);
+    }
+  }
+
+}
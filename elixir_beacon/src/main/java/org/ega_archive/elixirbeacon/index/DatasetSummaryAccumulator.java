@@ -0,0 +1,161 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+
+/**
+ * Folds matching variants into one {@link BeaconDataSummary} per dataset, following the same rules
+ * as the aggregation done by the {@code query_data_summary_response} function:
+ * <ul>
+ * <li>If only one variant matches, its own counts and frequency are returned.</li>
+ * <li>If several variants match, variant and call counts are added up and the frequency is
+ * {@code variantCount / callCount} rounded to two decimals. The sample count is the number of
+ * distinct samples of the variants, or the maximum of the matching sample counts if the samples
+ * of the variants are unknown.</li>
+ * </ul>
+ * Counts that are {@code null} in the database are represented by {@link #NULL_VALUE} and ignored,
+ * like SQL aggregate functions do.
+ */
+public class DatasetSummaryAccumulator {
+
+  public static final int NULL_VALUE = Integer.MIN_VALUE;
+
+  private final Map<Integer, Summary> summaries = new TreeMap<>();
+
+  public void add(int datasetId, int variantCnt, int callCnt, int sampleCnt,
+      BigDecimal frequency) {
+
+    add(datasetId, variantCnt, callCnt, sampleCnt, frequency, null);
+  }
+
+  /**
+   * @param samples samples where the variant is found, {@code null} if they are unknown
+   */
+  public void add(int datasetId, int variantCnt, int callCnt, int sampleCnt,
+      BigDecimal frequency, SampleBitmap samples) {
+
+    Summary summary = summaries.get(datasetId);
+    if (summary == null) {
+      summary = new Summary();
+      summaries.put(datasetId, summary);
+    }
+    summary.add(variantCnt, callCnt, sampleCnt, frequency, samples);
+  }
+
+  public boolean isEmpty() {
+    return summaries.isEmpty();
+  }
+
+  /**
+   * Returns the summaries sorted by dataset id.
+   */
+  public List<BeaconDataSummary> toSummaries() {
+    List<BeaconDataSummary> result = new ArrayList<>(summaries.size());
+    for (Map.Entry<Integer, Summary> entry : summaries.entrySet()) {
+      result.add(entry.getValue().toBeaconDataSummary(entry.getKey()));
+    }
+    return result;
+  }
+
+  private static class Summary {
+
+    private int numVariants;
+
+    private long variantCnt;
+    private boolean variantCntPresent;
+
+    private long callCnt;
+    private boolean callCntPresent;
+
+    private int maxSampleCnt = NULL_VALUE;
+
+    private BigDecimal frequency;
+
+    // Samples of the first variant, the union is only needed if a second one matches
+    private SampleBitmap firstSamples;
+
+    private SampleBitmap.Union samples;
+
+    void add(int variantCnt, int callCnt, int sampleCnt, BigDecimal frequency,
+        SampleBitmap variantSamples) {
+      numVariants++;
+      if (variantCnt != NULL_VALUE) {
+        this.variantCnt += variantCnt;
+        this.variantCntPresent = true;
+      }
+      if (callCnt != NULL_VALUE) {
+        this.callCnt += callCnt;
+        this.callCntPresent = true;
+      }
+      if (sampleCnt != NULL_VALUE && sampleCnt > maxSampleCnt) {
+        this.maxSampleCnt = sampleCnt;
+      }
+      // Only used when a single variant matches
+      this.frequency = frequency;
+
+      if (variantSamples != null && !variantSamples.isEmpty()) {
+        if (samples != null) {
+          samples.or(variantSamples);
+        } else if (firstSamples != null) {
+          samples = new SampleBitmap.Union().or(firstSamples).or(variantSamples);
+        } else {
+          firstSamples = variantSamples;
+        }
+      }
+    }
+
+    private int distinctSamples() {
+      if (samples != null) {
+        return samples.cardinality();
+      }
+      return firstSamples != null ? firstSamples.cardinality() : 0;
+    }
+
+    BeaconDataSummary toBeaconDataSummary(int datasetId) {
+      BigInteger variants = variantCntPresent ? BigInteger.valueOf(variantCnt) : null;
+      BigInteger calls = callCntPresent ? BigInteger.valueOf(callCnt) : null;
+      BigInteger samples = maxSampleCnt != NULL_VALUE ? BigInteger.valueOf(maxSampleCnt) : null;
+      int distinctSamples = numVariants > 1 ? distinctSamples() : 0;
+      if (distinctSamples > 0) {
+        samples = BigInteger.valueOf(distinctSamples);
+      }
+
+      BigDecimal freq = frequency;
+      if (numVariants > 1) {
+        freq = variants != null && calls != null && callCnt != 0
+            ? new BigDecimal(variants).divide(new BigDecimal(calls), 2, RoundingMode.HALF_UP)
+            : null;
+      }
+
+      BeaconDataSummary summary = new BeaconDataSummary();
+      summary.setId(buildId(datasetId, variants, calls, samples, freq, numVariants));
+      summary.setDatasetId(datasetId);
+      summary.setVariantCnt(variants);
+      summary.setCallCnt(calls);
+      summary.setSampleCnt(samples);
+      summary.setFrequency(freq);
+      summary.setNumVariants(numVariants);
+      return summary;
+    }
+
+    // Same as CONCAT(dataset_id, variant_cnt, call_cnt, sample_cnt, frequency, num_variants)
+    private static String buildId(Object... values) {
+      StringBuilder id = new StringBuilder();
+      for (Object value : values) {
+        if (value instanceof BigDecimal) {
+          id.append(((BigDecimal) value).toPlainString());
+        } else if (value != null) {
+          id.append(value);
+        }
+      }
+      return id.toString();
+    }
+  }
+
+}
@@ -0,0 +1,170 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Allele query already normalized the same way the {@code query_data_summary_response} function
+ * does it: upper case bases, {@code alternateBases=N} meaning "any variant" and
+ * {@code referenceBases=N} meaning "any reference".
+ */
+@Getter
+public class IndexQuery {
+
+  public static final String ANY_ALTERNATE = "*";
+
+  private static final String ANY_BASE = "N";
+
+  private static final String INSERTION = "INS";
+
+  private final String variantType;
+
+  private final Integer start;
+
+  private final Integer startMin;
+
+  private final Integer startMax;
+
+  private final Integer end;
+
+  private final Integer endMin;
+
+  private final Integer endMax;
+
+  private final String referenceBases;
+
+  private final String alternateBases;
+
+  // Sorted, to be able to use binary search
+  private final int[] datasetIds;
+
+  private IndexQuery(String variantType, Integer start, Integer startMin, Integer startMax,
+      Integer end, Integer endMin, Integer endMax, String referenceBases, String alternateBases,
+      List<Integer> datasetIds) {
+
+    this.variantType = StringUtils.upperCase(StringUtils.defaultIfBlank(variantType, null));
+    this.start = start;
+    this.startMin = startMin;
+    this.startMax = startMax;
+    this.end = end;
+    this.endMin = endMin;
+    this.endMax = endMax;
+
+    String reference = StringUtils.upperCase(StringUtils.defaultIfBlank(referenceBases, null));
+    this.referenceBases = StringUtils.equals(reference, ANY_BASE) ? null : reference;
+
+    String alternate = StringUtils.upperCase(StringUtils.defaultIfBlank(alternateBases, null));
+    this.alternateBases = StringUtils.equals(alternate, ANY_BASE) ? ANY_ALTERNATE : alternate;
+
+    this.datasetIds = datasetIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+  }
+
+  public static IndexQuery of(String variantType, Integer start, Integer startMin,
+      Integer startMax, Integer end, Integer endMin, Integer endMax, String referenceBases,
+      String alternateBases, List<Integer> datasetIds) {
+
+    return new IndexQuery(variantType, start, startMin, startMax, end, endMin, endMax,
+        referenceBases, alternateBases, datasetIds);
+  }
+
+  /**
+   * Same query on other datasets.
+   */
+  public IndexQuery withDatasetIds(List<Integer> datasetIds) {
+    return new IndexQuery(variantType, start, startMin, startMax, end, endMin, endMax,
+        referenceBases, alternateBases, datasetIds);
+  }
+
+  /**
+   * start + referenceBases + alternateBases, without variantType: a single allele.
+   */
+  public boolean isExactAllele() {
+    return !isBracket() && end == null && variantType == null && referenceBases != null
+        && alternateBases != null && !isAnyAlternate();
+  }
+
+  /**
+   * startMin + startMax + endMin + endMax: imprecise positions.
+   */
+  public boolean isBracket() {
+    return startMin != null;
+  }
+
+  /**
+   * start + end with {@code alternateBases=N}: any variant overlapping the window.
+   */
+  public boolean isRange() {
+    return !isBracket() && end != null && isAnyAlternate();
+  }
+
+  /**
+   * The variant has to start exactly at {@code start}.
+   */
+  public boolean isExactStart() {
+    if (isBracket()) {
+      return false;
+    }
+    if (alternateBases != null) {
+      return !isAnyAlternate() || end == null;
+    }
+    return variantType != null;
+  }
+
+  public boolean isAnyAlternate() {
+    return ANY_ALTERNATE.equals(alternateBases);
+  }
+
+  public boolean isInsertion() {
+    return INSERTION.equals(variantType);
+  }
+
+  /**
+   * An insertion that starts with the given alternate bases.
+   */
+  public boolean isInsertedBases() {
+    return isInsertion() && alternateBases != null && !isAnyAlternate();
+  }
+
+  /**
+   * Whether a variant starting at {@code start} and ending at {@code end} (or
+   * {@link DatasetSummaryAccumulator#NULL_VALUE} if it has no end) is in the queried positions.
+   */
+  public boolean matchesPosition(int start, int end) {
+    int nullValue = DatasetSummaryAccumulator.NULL_VALUE;
+    if (isBracket()) {
+      return start >= startMin && start < startMax
+          && end != nullValue && end >= endMin && end < endMax;
+    }
+    if (isExactStart() && start != this.start) {
+      return false;
+    }
+    if (this.end != null) {
+      // Remember that end is exclusive
+      if (isAnyAlternate()) {
+        return (start >= this.start && start < this.end)
+            || (end != nullValue && end >= this.start && end < this.end);
+      }
+      return end != nullValue && end == this.end - 1;
+    }
+    return true;
+  }
+
+  /**
+   * Insertions with alternate bases: the alternate allele of the variant has to be its reference
+   * followed by the inserted bases. Always {@code true} for other queries, and for insertions of
+   * any bases ({@code alternateBases=N}).
+   */
+  public boolean matchesInsertedBases(String reference, String alternate) {
+    if (!isInsertedBases()) {
+      return true;
+    }
+    return StringUtils.startsWith(alternate, reference + alternateBases);
+  }
+
+  public boolean includesDataset(int datasetId) {
+    return Arrays.binarySearch(datasetIds, datasetId) >= 0;
+  }
+
+}
@@ -0,0 +1,213 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Immutable, compressed set of sample ids: the samples where a variant is found.
+ * <p>
+ * Ids are split by their 16 high bits, like Roaring bitmaps do. The low bits of each group are
+ * stored as a sorted {@code char[]} while there are at most {@value #MAX_ARRAY_SIZE} of them and
+ * as a 65536-bit bitset otherwise, so a variant found in a few samples takes a few bytes and one
+ * found in most samples of a big dataset takes at most 8 KB per group. {@link Union} adds up
+ * bitmaps to count the distinct samples of several variants.
+ */
+public final class SampleBitmap {
+
+  static final int MAX_ARRAY_SIZE = 4096;
+
+  private static final int WORDS = 1 << 10;
+
+  private static final SampleBitmap EMPTY = new SampleBitmap(new char[0], new Object[0], 0);
+
+  // High 16 bits of the ids, sorted
+  private final char[] keys;
+
+  // Low 16 bits of the ids of each key: sorted char[] or long[WORDS]
+  private final Object[] containers;
+
+  private final int cardinality;
+
+  private SampleBitmap(char[] keys, Object[] containers, int cardinality) {
+    this.keys = keys;
+    this.containers = containers;
+    this.cardinality = cardinality;
+  }
+
+  /**
+   * Ids can be in any order and repeated. Negative ids are not allowed.
+   */
+  public static SampleBitmap of(int... sampleIds) {
+    if (sampleIds.length == 0) {
+      return EMPTY;
+    }
+    int[] ids = sampleIds.clone();
+    Arrays.sort(ids);
+    if (ids[0] < 0) {
+      throw new IllegalArgumentException("Invalid sample id: " + ids[0]);
+    }
+
+    int groups = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (i == 0 || high(ids[i]) != high(ids[i - 1])) {
+        groups++;
+      }
+    }
+    char[] keys = new char[groups];
+    Object[] containers = new Object[groups];
+    int cardinality = 0;
+    int group = 0;
+    int from = 0;
+    while (from < ids.length) {
+      int to = from;
+      while (to < ids.length && high(ids[to]) == high(ids[from])) {
+        to++;
+      }
+      char[] values = distinctLowBits(ids, from, to);
+      keys[group] = high(ids[from]);
+      containers[group] = values.length <= MAX_ARRAY_SIZE ? values : toBitset(values);
+      cardinality += values.length;
+      group++;
+      from = to;
+    }
+    return new SampleBitmap(keys, containers, cardinality);
+  }
+
+  /**
+   * Reads an {@code int[]} column with the ids of the samples of a variant.
+   *
+   * @return {@code null} if the column is null or empty: the samples of the variant are unknown
+   */
+  public static SampleBitmap read(ResultSet rs, String column) throws SQLException {
+    Array array = rs.getArray(column);
+    if (array == null) {
+      return null;
+    }
+    try {
+      Object[] ids = (Object[]) array.getArray();
+      if (ids.length == 0) {
+        return null;
+      }
+      int[] sampleIds = new int[ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        sampleIds[i] = ((Number) ids[i]).intValue();
+      }
+      return of(sampleIds);
+    } finally {
+      array.free();
+    }
+  }
+
+  public int cardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  public boolean contains(int sampleId) {
+    if (sampleId < 0) {
+      return false;
+    }
+    int group = Arrays.binarySearch(keys, high(sampleId));
+    if (group < 0) {
+      return false;
+    }
+    Object container = containers[group];
+    if (container instanceof char[]) {
+      return Arrays.binarySearch((char[]) container, low(sampleId)) >= 0;
+    }
+    int value = low(sampleId);
+    return (((long[]) container)[value >>> 6] & (1L << value)) != 0;
+  }
+
+  private static char high(int id) {
+    return (char) (id >>> 16);
+  }
+
+  private static char low(int id) {
+    return (char) id;
+  }
+
+  private static char[] distinctLowBits(int[] sortedIds, int from, int to) {
+    char[] values = new char[to - from];
+    int size = 0;
+    for (int i = from; i < to; i++) {
+      if (i == from || sortedIds[i] != sortedIds[i - 1]) {
+        values[size++] = low(sortedIds[i]);
+      }
+    }
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static long[] toBitset(char[] values) {
+    long[] words = new long[WORDS];
+    for (char value : values) {
+      words[value >>> 6] |= 1L << value;
+    }
+    return words;
+  }
+
+  /**
+   * Mutable union of bitmaps. Every group is kept as a bitset, so adding a bitmap is an OR of its
+   * containers whatever their type.
+   */
+  public static class Union {
+
+    private char[] keys = new char[0];
+
+    private long[][] words = new long[0][];
+
+    public Union or(SampleBitmap bitmap) {
+      for (int i = 0; i < bitmap.keys.length; i++) {
+        long[] target = words(bitmap.keys[i]);
+        Object container = bitmap.containers[i];
+        if (container instanceof char[]) {
+          for (char value : (char[]) container) {
+            target[value >>> 6] |= 1L << value;
+          }
+        } else {
+          long[] source = (long[]) container;
+          for (int word = 0; word < WORDS; word++) {
+            target[word] |= source[word];
+          }
+        }
+      }
+      return this;
+    }
+
+    public int cardinality() {
+      int cardinality = 0;
+      for (long[] group : words) {
+        for (long word : group) {
+          cardinality += Long.bitCount(word);
+        }
+      }
+      return cardinality;
+    }
+
+    private long[] words(char key) {
+      int group = Arrays.binarySearch(keys, key);
+      if (group >= 0) {
+        return words[group];
+      }
+      // Sample ids of a beacon rarely need more than a few groups
+      int position = -group - 1;
+      char[] newKeys = new char[keys.length + 1];
+      long[][] newWords = new long[keys.length + 1][];
+      System.arraycopy(keys, 0, newKeys, 0, position);
+      System.arraycopy(words, 0, newWords, 0, position);
+      newKeys[position] = key;
+      newWords[position] = new long[WORDS];
+      System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+      System.arraycopy(words, position, newWords, position + 1, keys.length - position);
+      keys = newKeys;
+      words = newWords;
+      return newWords[position];
+    }
+  }
+
+}
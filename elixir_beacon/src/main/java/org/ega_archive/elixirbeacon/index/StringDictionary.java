@@ -0,0 +1,50 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the strings stored in the variant index (alleles, variant types) to dense integer codes so
+ * that the index can keep them in primitive arrays. Codes start at 0, {@link #NOT_FOUND} is
+ * returned for strings that were never added.
+ */
+public class StringDictionary {
+
+  public static final int NOT_FOUND = -1;
+
+  private final Map<String, Integer> codes = new HashMap<>();
+
+  private final List<String> values = new ArrayList<>();
+
+  /**
+   * Returns the code of the value, adding it to the dictionary if it is not present yet.
+   */
+  public int encode(String value) {
+    Integer code = codes.get(value);
+    if (code == null) {
+      code = values.size();
+      codes.put(value, code);
+      values.add(value);
+    }
+    return code;
+  }
+
+  /**
+   * Returns the code of the value or {@link #NOT_FOUND} if it has never been encoded.
+   */
+  public int lookup(String value) {
+    Integer code = codes.get(value);
+    return code == null ? NOT_FOUND : code;
+  }
+
+  public String decode(int code) {
+    return values.get(code);
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+}
@@ -0,0 +1,147 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Converts the {@code *.variants.csv} files loaded into {@code beacon_data_table} by
+ * {@code load-data.sh} into one {@link VariantFile} per dataset, named
+ * {@code <datasetId>}{@value #EXTENSION}.
+ * <p>
+ * Usage: {@code VariantCsvConverter <output directory> <csv file or directory>...}
+ */
+@Slf4j
+public class VariantCsvConverter {
+
+  public static final String EXTENSION = ".variants.bvf";
+
+  private static final String CSV_SUFFIX = ".variants.csv";
+
+  private static final String DELIMITER = ";";
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: VariantCsvConverter <output directory> "
+          + "<csv file or directory>...");
+      System.exit(1);
+    }
+    List<Path> inputs = new ArrayList<>();
+    for (String arg : Arrays.asList(args).subList(1, args.length)) {
+      Path input = Paths.get(arg);
+      if (Files.isDirectory(input)) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(input, "*" + CSV_SUFFIX)) {
+          files.forEach(inputs::add);
+        }
+      } else {
+        inputs.add(input);
+      }
+    }
+    convert(inputs, Paths.get(args[0]));
+  }
+
+  /**
+   * Returns the written files by dataset id. Variants of the same dataset can be split in several
+   * input files.
+   */
+  public static Map<Integer, Path> convert(List<Path> csvFiles, Path outputDirectory)
+      throws IOException {
+
+    Map<Integer, VariantFileWriter> writers = new TreeMap<>();
+    for (Path csvFile : csvFiles) {
+      long startTime = System.currentTimeMillis();
+      try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+        read(reader, writers);
+      }
+      log.info("Read {} in {} ms", csvFile, System.currentTimeMillis() - startTime);
+    }
+
+    Files.createDirectories(outputDirectory);
+    Map<Integer, Path> written = new TreeMap<>();
+    for (Entry<Integer, VariantFileWriter> entry : writers.entrySet()) {
+      Path file = outputDirectory.resolve(entry.getKey() + EXTENSION);
+      entry.getValue().writeTo(file);
+      written.put(entry.getKey(), file);
+      log.info("Written {}: {} variants", file, entry.getValue().size());
+    }
+    return written;
+  }
+
+  /**
+   * Reads a CSV file with the columns of {@code beacon_data_table} and a header, in the format
+   * expected by {@code COPY ... USING DELIMITERS ';' CSV HEADER}.
+   */
+  static void read(BufferedReader reader, Map<Integer, VariantFileWriter> writers)
+      throws IOException {
+
+    String headerLine = reader.readLine();
+    if (headerLine == null) {
+      return;
+    }
+    List<String> header = Arrays.asList(headerLine.split(DELIMITER, -1));
+    int datasetId = column(header, "datasetId");
+    int chromosome = column(header, "chromosome");
+    int position = column(header, "position");
+    int reference = column(header, "reference");
+    int alternate = column(header, "alternate");
+    int end = column(header, "end");
+    int svType = column(header, "svType");
+    int variantCount = column(header, "variantCount");
+    int callCount = column(header, "callCount");
+    int sampleMatchingCount = column(header, "sampleMatchingCount");
+    int frequency = column(header, "frequency");
+
+    String line;
+    int lineNumber = 1;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] values = line.split(DELIMITER, -1);
+      try {
+        int dataset = Integer.parseInt(values[datasetId]);
+        writers.computeIfAbsent(dataset, VariantFileWriter::new)
+            .add(values[chromosome], Integer.parseInt(values[position]), toInt(values[end]),
+                value(values[reference]), value(values[alternate]), value(values[svType]),
+                toInt(values[variantCount]), toInt(values[callCount]),
+                toInt(values[sampleMatchingCount]),
+                StringUtils.isEmpty(values[frequency]) ? null
+                    : new BigDecimal(values[frequency]));
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Invalid variant at line " + lineNumber + ": " + line,
+            e);
+      }
+    }
+  }
+
+  private static int column(List<String> header, String name) {
+    int column = header.indexOf(name);
+    if (column < 0) {
+      throw new IllegalArgumentException("Missing column " + name + " in the header: " + header);
+    }
+    return column;
+  }
+
+  private static String value(String value) {
+    return StringUtils.isEmpty(value) ? null : value;
+  }
+
+  private static int toInt(String value) {
+    return StringUtils.isEmpty(value) ? ChromosomeIndex.NULL_VALUE : Integer.parseInt(value);
+  }
+
+}
@@ -0,0 +1,380 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Read-only, memory-mapped file with the variants of one dataset, written by
+ * {@link VariantFileWriter}.
+ * <p>
+ * The file has a small header, that is read into the heap, followed by one block per chromosome.
+ * Blocks are never copied: every value is read from the mapped pages when it is needed, so mapping
+ * a file is almost instantaneous and the memory used is the page cache of the operating system.
+ * Inside a block the variants are sorted by {@code start} and stored column-wise:
+ * <ul>
+ * <li>Starts are split in chunks of {@value #CHUNK} rows. Each chunk keeps the start of its first
+ * row and the difference of every row to it in 1, 2 or 4 bytes, so any start can still be read
+ * directly and found with a binary search.</li>
+ * <li>Alleles and variant types are codes of a dictionary stored in the header.</li>
+ * <li>Ends and counts are fixed-width integers, {@link ChromosomeIndex#NULL_VALUE} if null.</li>
+ * <li>Frequencies are an unscaled long and a scale, {@link #NULL_SCALE} if null.</li>
+ * <li>Row numbers sorted by end, to find the variants that end inside a range.</li>
+ * </ul>
+ * All the values are little-endian.
+ */
+public class VariantFile {
+
+  static final int MAGIC = 0x31465642; // "BVF1" in little-endian
+
+  static final int FORMAT_VERSION = 1;
+
+  static final int CHUNK = 128;
+
+  static final byte NULL_SCALE = Byte.MIN_VALUE;
+
+  private final int datasetId;
+
+  // Key: upper case chromosome
+  private final Map<String, Block> blocks;
+
+  private VariantFile(int datasetId, Map<String, Block> blocks) {
+    this.datasetId = datasetId;
+    this.blocks = Collections.unmodifiableMap(blocks);
+  }
+
+  public int getDatasetId() {
+    return datasetId;
+  }
+
+  public Set<String> getChromosomes() {
+    return blocks.keySet();
+  }
+
+  public long size() {
+    return blocks.values().stream().mapToLong(block -> block.layout.rows).sum();
+  }
+
+  /**
+   * Adds the variants of the chromosome matching the query to the accumulator.
+   */
+  public void search(String chromosome, IndexQuery query, DatasetSummaryAccumulator accumulator) {
+    Block block = blocks.get(StringUtils.upperCase(chromosome));
+    if (block != null && query.includesDataset(datasetId)) {
+      block.scan(query, row -> {
+        block.add(datasetId, row, accumulator);
+        return true;
+      });
+    }
+  }
+
+  /**
+   * Whether any variant of the chromosome matches the query. It stops at the first match.
+   */
+  public boolean exists(String chromosome, IndexQuery query) {
+    Block block = blocks.get(StringUtils.upperCase(chromosome));
+    return block != null && query.includesDataset(datasetId) && !block.scan(query, row -> false);
+  }
+
+  /**
+   * Reads the header of the file and maps its blocks into memory.
+   */
+  public static VariantFile map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer prefix = read(channel, 0, 3 * Integer.BYTES);
+      if (prefix.getInt() != MAGIC) {
+        throw new IOException(file + " is not a variant file");
+      }
+      int version = prefix.getInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported variant file format version: " + version);
+      }
+      ByteBuffer header = read(channel, prefix.capacity(), prefix.getInt());
+
+      int datasetId = header.getInt();
+      StringDictionary dictionary = new StringDictionary();
+      for (int i = header.getInt(); i > 0; i--) {
+        dictionary.encode(readString(header));
+      }
+      Map<String, Block> blocks = new HashMap<>();
+      for (int i = header.getInt(); i > 0; i--) {
+        String chromosome = readString(header);
+        Layout layout = new Layout(header.getInt(), header.getInt(), header.getInt());
+        long offset = header.getLong();
+        // The mapping stays valid after the channel is closed
+        ByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset, layout.size)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        blocks.put(StringUtils.upperCase(chromosome), new Block(dictionary, layout, buffer));
+      }
+      return new VariantFile(datasetId, blocks);
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length)
+      throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of the variant file");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Position of every column inside a block. It only depends on the number of rows, the number of
+   * rows with end and the length of the start differences, which are stored in the header.
+   */
+  static class Layout {
+
+    final int rows;
+
+    final int withEnd;
+
+    final int deltasLength;
+
+    final int chunks;
+
+    final int anchors;
+
+    final int deltaOffsets;
+
+    final int widths;
+
+    final int deltas;
+
+    final int unscaledFrequencies;
+
+    final int ends;
+
+    final int references;
+
+    final int alternates;
+
+    final int types;
+
+    final int variantCnts;
+
+    final int callCnts;
+
+    final int sampleCnts;
+
+    final int sortedEnds;
+
+    final int endOrder;
+
+    final int frequencyScales;
+
+    final int size;
+
+    Layout(int rows, int withEnd, int deltasLength) {
+      this.rows = rows;
+      this.withEnd = withEnd;
+      this.deltasLength = deltasLength;
+      this.chunks = (rows + CHUNK - 1) / CHUNK;
+
+      long position = 0;
+      anchors = (int) position;
+      position += (long) chunks * Integer.BYTES;
+      deltaOffsets = (int) position;
+      position += (long) chunks * Integer.BYTES;
+      widths = (int) position;
+      position = align(position + chunks);
+      deltas = (int) position;
+      position = align(position + deltasLength);
+      unscaledFrequencies = (int) position;
+      position += (long) rows * Long.BYTES;
+      ends = (int) position;
+      position += (long) rows * Integer.BYTES;
+      references = (int) position;
+      position += (long) rows * Integer.BYTES;
+      alternates = (int) position;
+      position += (long) rows * Integer.BYTES;
+      types = (int) position;
+      position += (long) rows * Integer.BYTES;
+      variantCnts = (int) position;
+      position += (long) rows * Integer.BYTES;
+      callCnts = (int) position;
+      position += (long) rows * Integer.BYTES;
+      sampleCnts = (int) position;
+      position += (long) rows * Integer.BYTES;
+      sortedEnds = (int) position;
+      position += (long) withEnd * Integer.BYTES;
+      endOrder = (int) position;
+      position += (long) withEnd * Integer.BYTES;
+      frequencyScales = (int) position;
+      position = align(position + rows);
+      if (position > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many variants in one chromosome: " + rows);
+      }
+      size = (int) position;
+    }
+
+    private static long align(long position) {
+      return (position + Long.BYTES - 1) & -Long.BYTES;
+    }
+  }
+
+  private static class Block {
+
+    private final StringDictionary dictionary;
+
+    private final Layout layout;
+
+    private final ByteBuffer buffer;
+
+    Block(StringDictionary dictionary, Layout layout, ByteBuffer buffer) {
+      this.dictionary = dictionary;
+      this.layout = layout;
+      this.buffer = buffer;
+    }
+
+    int start(int row) {
+      int chunk = row / CHUNK;
+      int anchor = buffer.getInt(layout.anchors + chunk * Integer.BYTES);
+      int deltas = layout.deltas + buffer.getInt(layout.deltaOffsets + chunk * Integer.BYTES);
+      int index = row % CHUNK;
+      switch (buffer.get(layout.widths + chunk)) {
+        case 1:
+          return anchor + (buffer.get(deltas + index) & 0xFF);
+        case 2:
+          return anchor + (buffer.getShort(deltas + index * Short.BYTES) & 0xFFFF);
+        default:
+          return anchor + buffer.getInt(deltas + index * Integer.BYTES);
+      }
+    }
+
+    int end(int row) {
+      return buffer.getInt(layout.ends + row * Integer.BYTES);
+    }
+
+    private int getInt(int column, int row) {
+      return buffer.getInt(column + row * Integer.BYTES);
+    }
+
+    BigDecimal frequency(int row) {
+      byte scale = buffer.get(layout.frequencyScales + row);
+      if (scale == NULL_SCALE) {
+        return null;
+      }
+      return BigDecimal.valueOf(buffer.getLong(layout.unscaledFrequencies + row * Long.BYTES),
+          scale);
+    }
+
+    void add(int datasetId, int row, DatasetSummaryAccumulator accumulator) {
+      accumulator.add(datasetId, getInt(layout.variantCnts, row), getInt(layout.callCnts, row),
+          getInt(layout.sampleCnts, row), frequency(row));
+    }
+
+    /**
+     * Same as the scan of {@link ChromosomeIndex}. Returns {@code false} if it was stopped by the
+     * visitor.
+     */
+    boolean scan(IndexQuery query, IntPredicate visitor) {
+      AlleleCodes codes = new AlleleCodes(query, dictionary);
+      if (!codes.isSatisfiable()) {
+        return true;
+      }
+      IntPredicate matches = row -> codes.matches(getInt(layout.types, row),
+          getInt(layout.references, row), getInt(layout.alternates, row))
+          && matchesInsertedBases(query, row)
+          && query.matchesPosition(start(row), end(row));
+
+      if (query.isBracket()) {
+        return scanStarts(lowerBoundStart(query.getStartMin()),
+            lowerBoundStart(query.getStartMax()), matches, visitor);
+      } else if (query.isExactStart()) {
+        return scanStarts(lowerBoundStart(query.getStart()),
+            lowerBoundStart(query.getStart() + 1), matches, visitor);
+      } else if (query.isRange()) {
+        int from = query.getStart();
+        int to = query.getEnd();
+        if (!scanStarts(lowerBoundStart(from), lowerBoundStart(to), matches, visitor)) {
+          return false;
+        }
+        // Variants ending inside the window but starting outside of it
+        for (int i = lowerBoundEnd(from); i < lowerBoundEnd(to); i++) {
+          int row = getInt(layout.endOrder, i);
+          int start = start(row);
+          if ((start < from || start >= to) && matches.test(row) && !visitor.test(row)) {
+            return false;
+          }
+        }
+        return true;
+      } else {
+        return scanStarts(0, layout.rows, matches, visitor);
+      }
+    }
+
+    private boolean matchesInsertedBases(IndexQuery query, int row) {
+      if (!query.isInsertedBases()) {
+        return true;
+      }
+      return query.matchesInsertedBases(dictionary.decode(getInt(layout.references, row)),
+          dictionary.decode(getInt(layout.alternates, row)));
+    }
+
+    private static boolean scanStarts(int from, int to, IntPredicate matches,
+        IntPredicate visitor) {
+
+      for (int row = from; row < to; row++) {
+        if (matches.test(row) && !visitor.test(row)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * First row whose start is greater or equal than the key.
+     */
+    private int lowerBoundStart(int key) {
+      int low = 0;
+      int high = layout.rows;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (start(mid) < key) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private int lowerBoundEnd(int key) {
+      int low = 0;
+      int high = layout.withEnd;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (getInt(layout.sortedEnds, mid) < key) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+}
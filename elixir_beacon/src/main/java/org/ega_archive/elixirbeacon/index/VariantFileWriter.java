@@ -0,0 +1,302 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.ega_archive.elixirbeacon.index.VariantFile.Layout;
+
+/**
+ * Collects the variants of one dataset, in any order, and writes them in the format read by
+ * {@link VariantFile}.
+ */
+public class VariantFileWriter {
+
+  private static final int NULL_VALUE = ChromosomeIndex.NULL_VALUE;
+
+  private final int datasetId;
+
+  private final StringDictionary dictionary = new StringDictionary();
+
+  private final Map<String, Columns> chromosomes = new LinkedHashMap<>();
+
+  public VariantFileWriter(int datasetId) {
+    this.datasetId = datasetId;
+  }
+
+  /**
+   * Adds a variant. Use {@link ChromosomeIndex#NULL_VALUE} for the missing numeric values.
+   */
+  public VariantFileWriter add(String chromosome, int start, int end, String reference,
+      String alternate, String type, int variantCnt, int callCnt, int sampleCnt,
+      BigDecimal frequency) {
+
+    if (start < 0) {
+      throw new IllegalArgumentException("Invalid start: " + start);
+    }
+    if (reference == null || alternate == null) {
+      throw new IllegalArgumentException("Reference and alternate bases are required");
+    }
+    Columns columns = chromosomes.computeIfAbsent(chromosome.toUpperCase(), k -> new Columns());
+    columns.add(start, end, dictionary.encode(reference), dictionary.encode(alternate),
+        type == null ? NULL_VALUE : dictionary.encode(type), variantCnt, callCnt, sampleCnt,
+        frequency);
+    return this;
+  }
+
+  public long size() {
+    return chromosomes.values().stream().mapToLong(columns -> columns.size).sum();
+  }
+
+  public void writeTo(Path file) throws IOException {
+    List<String> names = new ArrayList<>(chromosomes.keySet());
+    List<SortedBlock> blocks = new ArrayList<>(names.size());
+    for (String name : names) {
+      blocks.add(new SortedBlock(chromosomes.get(name)));
+    }
+
+    List<byte[]> dictionaryValues = new ArrayList<>(dictionary.size());
+    int headerLength = 3 * Integer.BYTES;
+    for (int code = 0; code < dictionary.size(); code++) {
+      byte[] bytes = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+      dictionaryValues.add(bytes);
+      headerLength += Integer.BYTES + bytes.length;
+    }
+    for (String name : names) {
+      headerLength += Integer.BYTES + name.getBytes(StandardCharsets.UTF_8).length
+          + 3 * Integer.BYTES + Long.BYTES;
+    }
+    // The first block starts aligned
+    long offset = align(3 * Integer.BYTES + headerLength);
+
+    ByteBuffer header = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(VariantFile.MAGIC);
+    header.putInt(VariantFile.FORMAT_VERSION);
+    header.putInt(headerLength);
+    header.putInt(datasetId);
+    header.putInt(dictionaryValues.size());
+    for (byte[] bytes : dictionaryValues) {
+      header.putInt(bytes.length).put(bytes);
+    }
+    header.putInt(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+      Layout layout = blocks.get(i).layout;
+      header.putInt(name.length).put(name);
+      header.putInt(layout.rows).putInt(layout.withEnd).putInt(layout.deltasLength);
+      header.putLong(offset);
+      offset += layout.size;
+    }
+    header.clear();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      for (SortedBlock block : blocks) {
+        MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, channel.size(),
+            block.layout.size);
+        block.writeTo(buffer.order(ByteOrder.LITTLE_ENDIAN));
+        buffer.force();
+      }
+    }
+  }
+
+  private static long align(long position) {
+    return (position + Long.BYTES - 1) & -Long.BYTES;
+  }
+
+  /**
+   * The variants of one chromosome in insertion order.
+   */
+  private static class Columns {
+
+    private int size;
+
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private int[] references = new int[1024];
+    private int[] alternates = new int[1024];
+    private int[] types = new int[1024];
+    private int[] variantCnts = new int[1024];
+    private int[] callCnts = new int[1024];
+    private int[] sampleCnts = new int[1024];
+    private long[] unscaledFrequencies = new long[1024];
+    private byte[] frequencyScales = new byte[1024];
+
+    void add(int start, int end, int reference, int alternate, int type, int variantCnt,
+        int callCnt, int sampleCnt, BigDecimal frequency) {
+
+      if (size == starts.length) {
+        grow();
+      }
+      starts[size] = start;
+      ends[size] = end;
+      references[size] = reference;
+      alternates[size] = alternate;
+      types[size] = type;
+      variantCnts[size] = variantCnt;
+      callCnts[size] = callCnt;
+      sampleCnts[size] = sampleCnt;
+      if (frequency == null) {
+        frequencyScales[size] = VariantFile.NULL_SCALE;
+      } else {
+        if (frequency.scale() <= VariantFile.NULL_SCALE || frequency.scale() > Byte.MAX_VALUE) {
+          throw new IllegalArgumentException("Frequency scale out of range: " + frequency);
+        }
+        // Throws if it does not fit in a long
+        unscaledFrequencies[size] = frequency.unscaledValue().longValueExact();
+        frequencyScales[size] = (byte) frequency.scale();
+      }
+      size++;
+    }
+
+    private void grow() {
+      int capacity = starts.length * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      references = Arrays.copyOf(references, capacity);
+      alternates = Arrays.copyOf(alternates, capacity);
+      types = Arrays.copyOf(types, capacity);
+      variantCnts = Arrays.copyOf(variantCnts, capacity);
+      callCnts = Arrays.copyOf(callCnts, capacity);
+      sampleCnts = Arrays.copyOf(sampleCnts, capacity);
+      unscaledFrequencies = Arrays.copyOf(unscaledFrequencies, capacity);
+      frequencyScales = Arrays.copyOf(frequencyScales, capacity);
+    }
+  }
+
+  /**
+   * Row order of one chromosome sorted by start and the layout of its block.
+   */
+  private static class SortedBlock {
+
+    private final Columns columns;
+
+    // order[row] is the position of the row in the columns
+    private final int[] order;
+
+    // Row numbers sorted by end
+    private final int[] endOrder;
+
+    private final byte[] widths;
+
+    private final Layout layout;
+
+    SortedBlock(Columns columns) {
+      this.columns = columns;
+      this.order = sort(columns.starts, columns.size);
+
+      int withEnd = 0;
+      for (int i = 0; i < columns.size; i++) {
+        if (columns.ends[i] != NULL_VALUE) {
+          withEnd++;
+        }
+      }
+      long[] packed = new long[withEnd];
+      int i = 0;
+      for (int row = 0; row < order.length; row++) {
+        int end = columns.ends[order[row]];
+        if (end != NULL_VALUE) {
+          packed[i++] = ((long) end << 32) | row;
+        }
+      }
+      Arrays.sort(packed);
+      this.endOrder = new int[withEnd];
+      for (i = 0; i < withEnd; i++) {
+        endOrder[i] = (int) packed[i];
+      }
+
+      int chunks = (order.length + VariantFile.CHUNK - 1) / VariantFile.CHUNK;
+      this.widths = new byte[chunks];
+      long deltasLength = 0;
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        int first = chunk * VariantFile.CHUNK;
+        int last = Math.min(order.length, first + VariantFile.CHUNK) - 1;
+        // Sorted, the last one has the biggest difference
+        long delta = (long) start(last) - start(first);
+        widths[chunk] = (byte) (delta <= 0xFF ? 1 : delta <= 0xFFFF ? 2 : 4);
+        deltasLength = align(deltasLength) + (long) (last - first + 1) * widths[chunk];
+      }
+      if (deltasLength > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many variants in one chromosome: " + columns.size);
+      }
+      this.layout = new Layout(order.length, withEnd, (int) deltasLength);
+    }
+
+    private int start(int row) {
+      return columns.starts[order[row]];
+    }
+
+    void writeTo(ByteBuffer buffer) {
+      int deltaOffset = 0;
+      for (int chunk = 0; chunk < layout.chunks; chunk++) {
+        int first = chunk * VariantFile.CHUNK;
+        int last = Math.min(order.length, first + VariantFile.CHUNK);
+        int anchor = start(first);
+        // Every chunk is aligned, so that wider differences are aligned too
+        deltaOffset = (int) align(deltaOffset);
+        buffer.putInt(layout.anchors + chunk * Integer.BYTES, anchor);
+        buffer.putInt(layout.deltaOffsets + chunk * Integer.BYTES, deltaOffset);
+        buffer.put(layout.widths + chunk, widths[chunk]);
+        for (int row = first; row < last; row++) {
+          int delta = start(row) - anchor;
+          int position = layout.deltas + deltaOffset;
+          if (widths[chunk] == 1) {
+            buffer.put(position, (byte) delta);
+          } else if (widths[chunk] == 2) {
+            buffer.putShort(position, (short) delta);
+          } else {
+            buffer.putInt(position, delta);
+          }
+          deltaOffset += widths[chunk];
+        }
+      }
+
+      for (int row = 0; row < order.length; row++) {
+        int source = order[row];
+        buffer.putLong(layout.unscaledFrequencies + row * Long.BYTES,
+            columns.unscaledFrequencies[source]);
+        buffer.putInt(layout.ends + row * Integer.BYTES, columns.ends[source]);
+        buffer.putInt(layout.references + row * Integer.BYTES, columns.references[source]);
+        buffer.putInt(layout.alternates + row * Integer.BYTES, columns.alternates[source]);
+        buffer.putInt(layout.types + row * Integer.BYTES, columns.types[source]);
+        buffer.putInt(layout.variantCnts + row * Integer.BYTES, columns.variantCnts[source]);
+        buffer.putInt(layout.callCnts + row * Integer.BYTES, columns.callCnts[source]);
+        buffer.putInt(layout.sampleCnts + row * Integer.BYTES, columns.sampleCnts[source]);
+        buffer.put(layout.frequencyScales + row, columns.frequencyScales[source]);
+      }
+      for (int i = 0; i < endOrder.length; i++) {
+        buffer.putInt(layout.sortedEnds + i * Integer.BYTES, columns.ends[order[endOrder[i]]]);
+        buffer.putInt(layout.endOrder + i * Integer.BYTES, endOrder[i]);
+      }
+    }
+
+    private static int[] sort(int[] starts, int size) {
+      long[] packed = new long[size];
+      for (int i = 0; i < size; i++) {
+        packed[i] = ((long) starts[i] << 32) | i;
+      }
+      Arrays.sort(packed);
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = (int) packed[i];
+      }
+      return order;
+    }
+  }
+
+}
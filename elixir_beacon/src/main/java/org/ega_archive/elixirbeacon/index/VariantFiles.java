@@ -0,0 +1,175 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixirbeacon.store.VariantStore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Answers allele queries from the {@link VariantFile}s of a directory, written by
+ * {@link VariantCsvConverter}, instead of the database.
+ * <p>
+ * The files are only mapped if {@code elixirbeacon.variant.files.directory} is set. Once they are
+ * mapped, datasets without a file have no variants. The query must only include datasets of the
+ * requested assembly: the files do not know the assembly of their dataset.
+ * <p>
+ * The files do not know their data version either: they are taken to be of the version that is
+ * current when they are mapped. When the {@link DataVersionMonitor} sees another version they are
+ * mapped again, and until then the store is not ready. The files of a new load have to be in the
+ * directory before the loader increments the version.
+ */
+@Slf4j
+@Component
+public class VariantFiles implements VariantStore, DisposableBean {
+
+  public static final String NAME = "files";
+
+  // Milliseconds to wait before mapping the files again after a failure
+  private static final long RETRY_DELAY = 10000;
+
+  @Value("${elixirbeacon.variant.files.directory:}")
+  private String directory;
+
+  @Autowired
+  private DataVersionMonitor dataVersionMonitor;
+
+  // Key: dataset id. Replaced as a whole on every reload
+  private volatile Map<Integer, VariantFile> files;
+
+  // Data version that was current when the files were mapped
+  private volatile long dataVersion = DataVersionMonitor.UNKNOWN;
+
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "variant-files");
+      thread.setDaemon(true);
+      return thread;
+    });
+    dataVersionMonitor.addListener(this::dataVersionChanged);
+  }
+
+  @Override
+  public void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() throws IOException {
+    if (StringUtils.isNotBlank(directory)) {
+      reload();
+    }
+  }
+
+  /**
+   * Maps all the files of the directory and swaps them with the current ones.
+   */
+  public void reload() throws IOException {
+    long startTime = System.currentTimeMillis();
+    long version = dataVersionMonitor.getVersion();
+    Map<Integer, VariantFile> mapped = new TreeMap<>();
+    long variants = 0;
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get(directory),
+        "*" + VariantCsvConverter.EXTENSION)) {
+      for (Path path : paths) {
+        VariantFile file = VariantFile.map(path);
+        if (mapped.put(file.getDatasetId(), file) != null) {
+          throw new IOException("More than one file for dataset " + file.getDatasetId());
+        }
+        variants += file.size();
+      }
+    }
+    synchronized (this) {
+      this.files = Collections.unmodifiableMap(mapped);
+      this.dataVersion = version;
+    }
+
+    log.info("Variant files mapped for data version {}: {} datasets, {} variants in {} ms",
+        version, mapped.size(), variants, System.currentTimeMillis() - startTime);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /**
+   * Whether the files are mapped for the current data version: results of an older one would be
+   * cached under the new version and disagree with the {@link AlleleFilter}.
+   */
+  @Override
+  public boolean isReady() {
+    long version = dataVersionMonitor.getVersion();
+    return files != null && (version == DataVersionMonitor.UNKNOWN || dataVersion == version);
+  }
+
+  @Override
+  public List<BeaconDataSummary> search(String chromosome, String referenceGenome,
+      IndexQuery query) {
+
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    for (int datasetId : query.getDatasetIds()) {
+      VariantFile file = files.get(datasetId);
+      if (file != null) {
+        file.search(chromosome, query, accumulator);
+      }
+    }
+    return accumulator.toSummaries();
+  }
+
+  @Override
+  public boolean exists(String chromosome, String referenceGenome, IndexQuery query) {
+    for (int datasetId : query.getDatasetIds()) {
+      VariantFile file = files.get(datasetId);
+      if (file != null && file.exists(chromosome, query)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void dataVersionChanged(long version) {
+    if (StringUtils.isNotBlank(directory)) {
+      log.info("Variant files out of date, mapping them again for data version {}", version);
+      scheduler.execute(this::remap);
+    }
+  }
+
+  private void remap() {
+    if (isReady()) {
+      return;
+    }
+    try {
+      reload();
+    } catch (IOException | RuntimeException e) {
+      // The database answers the queries meanwhile
+      log.error("Variant files could not be mapped, retrying in " + RETRY_DELAY + " ms", e);
+      scheduler.schedule(this::remap, RETRY_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+}
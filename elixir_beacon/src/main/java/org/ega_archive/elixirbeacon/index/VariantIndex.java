@@ -0,0 +1,269 @@
+package org.ega_archive.elixirbeacon.index;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixirbeacon.store.VariantStore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory copy of {@code beacon_data_table} that answers allele queries without going to the
+ * database. It keeps one {@link ChromosomeIndex} per (assembly, chromosome).
+ * <p>
+ * It is only loaded if {@code elixirbeacon.variant.index.enabled} is {@code true} or
+ * {@code elixirbeacon.variant.store} is {@value #NAME}. Until it has been loaded
+ * {@link #isReady()} returns {@code false} and queries have to be answered by the database.
+ * <p>
+ * The index belongs to the data version it was read from. When the {@link DataVersionMonitor}
+ * sees another version it is reloaded in the background, and until then it is not ready either.
+ * The old index is kept meanwhile, so a reload needs room for two of them.
+ */
+@Slf4j
+@Component
+public class VariantIndex implements VariantStore, DisposableBean {
+
+  public static final String NAME = "index";
+
+  private static final int FETCH_SIZE = 10000;
+
+  // Milliseconds to wait for the replica to replay the load before reading again
+  private static final long RETRY_DELAY = 10000;
+
+  private static final String LOAD_QUERY = "SELECT lower(bdataset.reference_genome) AS assembly, "
+      + "bdat.chromosome, bdat.dataset_id, bdat.start, bdat.\"end\", bdat.reference, "
+      + "bdat.alternate, bdat.type, bdat.variant_cnt, bdat.call_cnt, bdat.matching_sample_cnt, "
+      // Set with matching_sample_cnt by the loader, see 4.sql
+      + "bdat.frequency, bdat.sample_ids "
+      + "FROM public.beacon_data_table bdat "
+      + "INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id";
+
+  @Value("${elixirbeacon.variant.index.enabled:false}")
+  private boolean enabled;
+
+  @Value("${elixirbeacon.variant.store:}")
+  private String store;
+
+  @Autowired
+  @Qualifier("elixirbeaconJdbcTemplate")
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  @Qualifier("elixirbeaconTransactionManager")
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private DataVersionMonitor dataVersionMonitor;
+
+  // Replaced as a whole on every reload
+  private volatile Map<String, ChromosomeIndex> chromosomes;
+
+  // Data version the chromosomes were read from
+  private volatile long dataVersion = DataVersionMonitor.UNKNOWN;
+
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "variant-index");
+      thread.setDaemon(true);
+      return thread;
+    });
+    dataVersionMonitor.addListener(this::dataVersionChanged);
+  }
+
+  @Override
+  public void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() {
+    if (isEnabled()) {
+      reload();
+    }
+  }
+
+  /**
+   * Reads the whole variant table and swaps the current index with the new one. Returns whether
+   * it was swapped: if the replica has not replayed the last load yet, it is tried again later.
+   */
+  public boolean reload() {
+    long startTime = System.currentTimeMillis();
+    long expectedVersion = dataVersionMonitor.getVersion();
+    StringDictionary dictionary = new StringDictionary();
+    Map<String, ChromosomeIndex.Builder> builders = new HashMap<>();
+
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+    Long version = transaction.execute(status -> {
+      // Read first: the loader commits the variants before it increments the version
+      long read = dataVersionMonitor.readVersion();
+      if (expectedVersion != DataVersionMonitor.UNKNOWN && read != expectedVersion) {
+        log.info("Variant index not loaded: the data is at version {} instead of {}", read,
+            expectedVersion);
+        return null;
+      }
+      // A fetch size inside a transaction makes the driver stream the rows with a cursor
+      jdbcTemplate.query(con -> {
+        PreparedStatement statement = con.prepareStatement(LOAD_QUERY);
+        statement.setFetchSize(FETCH_SIZE);
+        return statement;
+      }, (ResultSet rs) -> {
+        String key = key(rs.getString("assembly"), rs.getString("chromosome"));
+        ChromosomeIndex.Builder builder = builders.get(key);
+        if (builder == null) {
+          builder = new ChromosomeIndex.Builder(dictionary);
+          builders.put(key, builder);
+        }
+        builder.add(rs.getInt("dataset_id"), rs.getInt("start"), getInt(rs, "end"),
+            rs.getString("reference"), rs.getString("alternate"), rs.getString("type"),
+            getInt(rs, "variant_cnt"), getInt(rs, "call_cnt"), getInt(rs, "matching_sample_cnt"),
+            rs.getBigDecimal("frequency"), SampleBitmap.read(rs, "sample_ids"));
+      });
+      return read;
+    });
+    if (version == null) {
+      scheduler.schedule(this::rebuild, RETRY_DELAY, TimeUnit.MILLISECONDS);
+      return false;
+    }
+    long variants = load(builders, version);
+
+    log.info("Variant index loaded for data version {}: {} variants, {} chromosomes, "
+        + "{} distinct alleles in {} ms", version, variants, builders.size(), dictionary.size(),
+        System.currentTimeMillis() - startTime);
+    // If the version changed while reading, the index of the new one is on its way
+    return isReady();
+  }
+
+  /**
+   * Builds the index of every chromosome, by {@link #key(String, String)}, and swaps the current
+   * index with them. Returns the number of variants.
+   */
+  long load(Map<String, ChromosomeIndex.Builder> builders, long dataVersion) {
+    Map<String, ChromosomeIndex> loaded = new HashMap<>();
+    long variants = 0;
+    for (Entry<String, ChromosomeIndex.Builder> entry : builders.entrySet()) {
+      ChromosomeIndex index = entry.getValue().build();
+      loaded.put(entry.getKey(), index);
+      variants += index.size();
+    }
+    synchronized (this) {
+      this.chromosomes = Collections.unmodifiableMap(loaded);
+      this.dataVersion = dataVersion;
+    }
+    return variants;
+  }
+
+  /**
+   * Whether the index is loaded and of the current data version: results of an older one would
+   * be cached under the new version and disagree with the {@link AlleleFilter}.
+   */
+  @Override
+  public boolean isReady() {
+    long version = dataVersionMonitor.getVersion();
+    return chromosomes != null
+        && (version == DataVersionMonitor.UNKNOWN || dataVersion == version);
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<BeaconDataSummary> search(String chromosome, String referenceGenome,
+      IndexQuery query) {
+
+    ChromosomeIndex index = chromosomes.get(key(referenceGenome, chromosome));
+    if (index == null) {
+      return Collections.emptyList();
+    }
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    index.search(query, accumulator);
+    return accumulator.toSummaries();
+  }
+
+  @Override
+  public List<List<BeaconDataSummary>> search(String chromosome, String referenceGenome,
+      List<IndexQuery> queries) {
+
+    ChromosomeIndex index = chromosomes.get(key(referenceGenome, chromosome));
+    List<List<BeaconDataSummary>> result = new ArrayList<>(queries.size());
+    for (IndexQuery query : queries) {
+      if (index == null) {
+        result.add(Collections.emptyList());
+        continue;
+      }
+      DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+      index.search(query, accumulator);
+      result.add(accumulator.toSummaries());
+    }
+    return result;
+  }
+
+  @Override
+  public boolean exists(String chromosome, String referenceGenome, IndexQuery query) {
+    ChromosomeIndex index = chromosomes.get(key(referenceGenome, chromosome));
+    return index != null && index.exists(query);
+  }
+
+  private boolean isEnabled() {
+    return enabled || NAME.equalsIgnoreCase(StringUtils.trim(store));
+  }
+
+  private void dataVersionChanged(long version) {
+    if (isEnabled()) {
+      log.info("Variant index out of date, reloading it for data version {}", version);
+      scheduler.execute(this::rebuild);
+    }
+  }
+
+  private void rebuild() {
+    if (isReady()) {
+      return;
+    }
+    try {
+      reload();
+    } catch (RuntimeException e) {
+      // The database answers the queries meanwhile
+      log.error("Variant index could not be reloaded, retrying in " + RETRY_DELAY + " ms", e);
+      scheduler.schedule(this::rebuild, RETRY_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  static String key(String assembly, String chromosome) {
+    return StringUtils.lowerCase(assembly) + ":" + StringUtils.upperCase(chromosome);
+  }
+
+  private static int getInt(ResultSet rs, String column) throws SQLException {
+    int value = rs.getInt(column);
+    return rs.wasNull() ? ChromosomeIndex.NULL_VALUE : value;
+  }
+
+}
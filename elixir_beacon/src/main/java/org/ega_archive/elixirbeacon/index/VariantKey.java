@@ -0,0 +1,69 @@
+package org.ega_archive.elixirbeacon.index;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Canonical 64-bit key of an allele: chromosome, position and a hash of the reference and
+ * alternate bases, packed into a {@code long}. It is the {@code variant_key} column of
+ * {@code beacon_data_table}, which the database computes with the {@code beacon_variant_key}
+ * function of {@code db_schema.sql}. Both must keep the same layout:
+ * <pre>
+ * bit 63       0
+ * bits 58-62   chromosome: 1-22, X = 23, Y = 24, M/MT = 25, 0 for any other contig
+ * bits 30-57   start, lowest 28 bits
+ * bits 0-29    lowest 30 bits of the first 4 bytes (big-endian) of MD5(REFERENCE>ALTERNATE)
+ * </pre>
+ * The {@code chr} prefix of the chromosome and the case of the bases are ignored. Different
+ * alleles can share a key (other contigs, positions past 2^28 or a collision of the hash), so the
+ * key narrows a lookup to a few rows but the columns still have to be compared.
+ */
+public final class VariantKey {
+
+  static final int CHROMOSOME_SHIFT = 58;
+
+  static final int START_SHIFT = 30;
+
+  private static final long START_MASK = (1L << (CHROMOSOME_SHIFT - START_SHIFT)) - 1;
+
+  private static final long HASH_MASK = (1L << START_SHIFT) - 1;
+
+  private static final Pattern AUTOSOME = Pattern.compile("[1-9]|1[0-9]|2[0-2]");
+
+  private static final HashFunction HASH = Hashing.md5();
+
+  private VariantKey() {
+  }
+
+  public static long of(String chromosome, int start, String reference, String alternate) {
+    byte[] hash = HASH.hashString(StringUtils.upperCase(reference) + ">"
+        + StringUtils.upperCase(alternate), StandardCharsets.UTF_8).asBytes();
+    long bases = ((hash[0] & 0xFFL) << 24) | ((hash[1] & 0xFFL) << 16) | ((hash[2] & 0xFFL) << 8)
+        | (hash[3] & 0xFFL);
+    return ((long) chromosomeCode(chromosome) << CHROMOSOME_SHIFT)
+        | ((start & START_MASK) << START_SHIFT)
+        | (bases & HASH_MASK);
+  }
+
+  static int chromosomeCode(String chromosome) {
+    String name = StringUtils.upperCase(StringUtils.removeStartIgnoreCase(chromosome, "chr"));
+    if (name == null) {
+      return 0;
+    }
+    switch (name) {
+      case "X":
+        return 23;
+      case "Y":
+        return 24;
+      case "M":
+      case "MT":
+        return 25;
+      default:
+        return AUTOSOME.matcher(name).matches() ? Integer.parseInt(name) : 0;
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Variants of one chromosome by 64-bit hash of the columns {@code 4.sql} joins on, with where
+ * their matching sample rows are in the spooled files and the ids they were loaded with. Open
+ * addressing on primitive arrays, a few tens of bytes per variant, so that the biggest
+ * chromosomes fit in memory.
+ * <p>
+ * Rows with the same columns share the hash, like they share the join in {@code 4.sql}. Two
+ * different rows with the same hash are not told apart: with 64 bits the odds are negligible.
+ */
+class AlleleTable {
+
+  static final int NO_ID = 0;
+
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] hashes;
+
+  // Slot in use, the hash can be anything
+  private boolean[] used;
+
+  // Row + 1, so that 0 is no row
+  private long[] rows;
+
+  private int[] ids;
+
+  // More rows and ids of the same hash, only for duplicated rows
+  private final Map<Long, long[]> moreRows = new HashMap<>();
+
+  private final Map<Long, int[]> moreIds = new HashMap<>();
+
+  private int size;
+
+  AlleleTable() {
+    allocate(1 << 10);
+  }
+
+  static long hash(String datasetId, String chromosome, String start, String variantId,
+      String reference, String alternate, String type) {
+
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (String value : new String[]{datasetId, chromosome, start, variantId, reference,
+        alternate, type}) {
+      // The length keeps the values apart, -1 is an empty (null) column
+      hasher.putInt(value == null || value.isEmpty() ? -1 : value.length());
+      if (value != null) {
+        hasher.putString(value, StandardCharsets.UTF_8);
+      }
+    }
+    return hasher.hash().asLong();
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Adds a matching sample row, {@code row} is any non-negative number that finds it again.
+   */
+  void addRow(long hash, long row) {
+    // The arrays can grow while the slot is found
+    int slot = slot(hash);
+    if (rows[slot] == 0) {
+      rows[slot] = row + 1;
+    } else {
+      long[] more = moreRows.get(hash);
+      more = more == null ? new long[]{row} : append(more, row);
+      moreRows.put(hash, more);
+    }
+  }
+
+  /**
+   * Every matching sample row added with {@code hash}, in the order they were added, empty if
+   * there is none.
+   */
+  long[] getRows(long hash) {
+    int slot = find(hash);
+    if (slot < 0 || rows[slot] == 0) {
+      return new long[0];
+    }
+    long[] more = moreRows.get(hash);
+    long[] all = new long[more == null ? 1 : more.length + 1];
+    all[0] = rows[slot] - 1;
+    if (more != null) {
+      System.arraycopy(more, 0, all, 1, more.length);
+    }
+    return all;
+  }
+
+  void addId(long hash, int id) {
+    int slot = slot(hash);
+    if (ids[slot] == NO_ID) {
+      ids[slot] = id;
+    } else {
+      int[] more = moreIds.get(hash);
+      more = more == null ? new int[]{id} : append(more, id);
+      moreIds.put(hash, more);
+    }
+  }
+
+  /**
+   * Every id added with {@code hash}, empty if there is none.
+   */
+  int[] getIds(long hash) {
+    int slot = find(hash);
+    if (slot < 0 || ids[slot] == NO_ID) {
+      return new int[0];
+    }
+    int[] more = moreIds.get(hash);
+    return more == null ? new int[]{ids[slot]} : append(more, ids[slot]);
+  }
+
+  private int find(long hash) {
+    int mask = hashes.length - 1;
+    for (int slot = index(hash, mask); used[slot]; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private int slot(long hash) {
+    int slot = find(hash);
+    if (slot >= 0) {
+      return slot;
+    }
+    if (size + 1 > hashes.length * LOAD_FACTOR) {
+      grow();
+    }
+    int mask = hashes.length - 1;
+    slot = index(hash, mask);
+    while (used[slot]) {
+      slot = (slot + 1) & mask;
+    }
+    used[slot] = true;
+    hashes[slot] = hash;
+    size++;
+    return slot;
+  }
+
+  private void grow() {
+    long[] oldHashes = hashes;
+    boolean[] oldUsed = used;
+    long[] oldRows = rows;
+    int[] oldIds = ids;
+    allocate(oldHashes.length * 2);
+    int mask = hashes.length - 1;
+    for (int i = 0; i < oldHashes.length; i++) {
+      if (oldUsed[i]) {
+        int slot = index(oldHashes[i], mask);
+        while (used[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        hashes[slot] = oldHashes[i];
+        rows[slot] = oldRows[i];
+        ids[slot] = oldIds[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    hashes = new long[capacity];
+    used = new boolean[capacity];
+    rows = new long[capacity];
+    ids = new int[capacity];
+  }
+
+  private static int index(long hash, int mask) {
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private static int[] append(int[] values, int value) {
+    int[] appended = Arrays.copyOf(values, values.length + 1);
+    appended[values.length] = value;
+    return appended;
+  }
+
+  private static long[] append(long[] values, long value) {
+    long[] appended = Arrays.copyOf(values, values.length + 1);
+    appended[values.length] = value;
+    return appended;
+  }
+
+}
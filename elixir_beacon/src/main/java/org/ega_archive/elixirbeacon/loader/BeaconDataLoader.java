@@ -0,0 +1,415 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * Loads the CSV files written by {@code vcf_parser.sh} straight into the final tables with
+ * {@code COPY}, instead of {@code load-data.sh} and the temporary tables of {@code 2.sql} to
+ * {@code 4.sql}:
+ * <ol>
+ * <li>The samples are read into memory and the new ones are copied into
+ * {@code beacon_sample_table} and {@code beacon_dataset_sample_table}, while the variant and
+ * matching sample files are split by chromosome into a temporary directory.</li>
+ * <li>Every chromosome is loaded by its own {@link ChromosomeLoader}, with its own connection
+ * and transaction, {@code beacon.loader.workers} chromosomes at the same time.</li>
+ * <li>The tables are analyzed and the data version is incremented, so that the beacons drop
+ * their cached query results.</li>
+ * </ol>
+ * The progress is logged every {@code beacon.loader.progress.interval} seconds. A chromosome
+ * that fails is rolled back and the others are kept: the exit status is 1 and the rows of the
+ * failed chromosomes must be loaded again.
+ * <p>
+ * Usage: {@code BeaconDataLoader <jdbc url> <csv file or directory>...}, with the user and the
+ * password in the url or in {@code PGUSER} and {@code PGPASSWORD}. The datasets must be in
+ * {@code beacon_dataset_table} already (see {@code 1.sql}).
+ */
+@Slf4j
+public class BeaconDataLoader {
+
+  static final String DELIMITER = ";";
+
+  static final String VARIANT_SUFFIX = ".variants.csv";
+
+  static final String MATCHING_SAMPLE_SUFFIX = ".variants.matching.samples.csv";
+
+  static final String SAMPLE_SUFFIX = ".samples.csv";
+
+  private static final String SAMPLE_COPY = "COPY public.beacon_sample_table (id,stable_id) "
+      + "FROM STDIN WITH (FORMAT csv, DELIMITER ';')";
+
+  private static final String DATASET_SAMPLE_COPY = "COPY public.beacon_dataset_sample_table "
+      + "(dataset_id,sample_id) FROM STDIN WITH (FORMAT csv, DELIMITER ';')";
+
+  private static final String SAMPLE_ID_SEQUENCE = "public.beacon_sample_table_id_seq";
+
+  private static final int SAMPLE_ID_BLOCK_SIZE = 1000;
+
+  interface Connector {
+
+    Connection connect() throws SQLException;
+  }
+
+  private final Connector connector;
+
+  private final int workers;
+
+  // Seconds, the progress is only logged at the end if it is not positive
+  private final long progressInterval;
+
+  public BeaconDataLoader(Connector connector, int workers, long progressInterval) {
+    this.connector = connector;
+    this.workers = Math.max(workers, 1);
+    this.progressInterval = progressInterval;
+  }
+
+  public static void main(String[] args)
+      throws IOException, SQLException, InterruptedException {
+
+    if (args.length < 2) {
+      System.err.println("Usage: BeaconDataLoader <jdbc url> <csv file or directory>...");
+      System.exit(1);
+    }
+    List<Path> inputs = new ArrayList<>();
+    for (String arg : Arrays.asList(args).subList(1, args.length)) {
+      Path input = Paths.get(arg);
+      if (Files.isDirectory(input)) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(input, "*.csv")) {
+          files.forEach(inputs::add);
+        }
+      } else {
+        inputs.add(input);
+      }
+    }
+
+    String url = args[0];
+    Properties properties = new Properties();
+    if (System.getenv("PGUSER") != null) {
+      properties.setProperty("user", System.getenv("PGUSER"));
+    }
+    if (System.getenv("PGPASSWORD") != null) {
+      properties.setProperty("password", System.getenv("PGPASSWORD"));
+    }
+    BeaconDataLoader loader = new BeaconDataLoader(
+        () -> DriverManager.getConnection(url, properties),
+        Integer.getInteger("beacon.loader.workers", Runtime.getRuntime().availableProcessors()),
+        Long.getLong("beacon.loader.progress.interval", 10L));
+    System.exit(loader.load(inputs) ? 0 : 1);
+  }
+
+  /**
+   * Returns whether every chromosome was loaded. Files that are not variants, samples or matching
+   * samples by their name are skipped.
+   */
+  public boolean load(List<Path> files) throws IOException, SQLException, InterruptedException {
+    List<Path> variantFiles = new ArrayList<>();
+    List<Path> matchingSampleFiles = new ArrayList<>();
+    List<Path> sampleFiles = new ArrayList<>();
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      // The matching samples end like the samples
+      if (name.endsWith(MATCHING_SAMPLE_SUFFIX)) {
+        matchingSampleFiles.add(file);
+      } else if (name.endsWith(VARIANT_SUFFIX)) {
+        variantFiles.add(file);
+      } else if (name.endsWith(SAMPLE_SUFFIX)) {
+        sampleFiles.add(file);
+      } else {
+        log.warn("Skipped {}: not a variant, sample or matching sample file", file);
+      }
+    }
+
+    AtomicInteger threads = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "beacon-loader-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    Path spoolDirectory = Files.createTempDirectory("beacon-loader");
+    try (LoadProgress progress = new LoadProgress()) {
+      progress.report(progressInterval);
+
+      // The rows are split by chromosome while the samples are loaded
+      List<Future<Map<String, Path>>> variantSpools = new ArrayList<>();
+      for (Path file : variantFiles) {
+        variantSpools.add(executor.submit(() -> spool(file, ChromosomeLoader.VARIANT_COLUMNS,
+            spoolDirectory, progress)));
+      }
+      List<Future<Map<String, Path>>> matchingSampleSpools = new ArrayList<>();
+      for (Path file : matchingSampleFiles) {
+        matchingSampleSpools.add(executor.submit(() -> spool(file,
+            ChromosomeLoader.MATCHING_SAMPLE_COLUMNS, spoolDirectory, progress)));
+      }
+      Map<String, Integer> sampleIds = loadSamples(sampleFiles);
+      Map<String, List<Path>> variantsByChromosome = byChromosome(variantSpools);
+      Map<String, List<Path>> matchingSamplesByChromosome = byChromosome(matchingSampleSpools);
+
+      Set<String> chromosomes = new TreeSet<>(variantsByChromosome.keySet());
+      chromosomes.addAll(matchingSamplesByChromosome.keySet());
+      progress.setChromosomes(chromosomes.size());
+      // The biggest chromosomes first, so that the small ones fill the gaps at the end
+      List<String> order = new ArrayList<>(chromosomes);
+      order.sort(Comparator.comparingLong(
+          (String chromosome) -> size(variantsByChromosome.get(chromosome))).reversed());
+
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (String chromosome : order) {
+        results.add(executor.submit(new ChromosomeLoader(chromosome,
+            variantsByChromosome.getOrDefault(chromosome, new ArrayList<>()),
+            matchingSamplesByChromosome.getOrDefault(chromosome, new ArrayList<>()), sampleIds,
+            connector, progress)));
+      }
+      int loaded = 0;
+      for (Future<Boolean> result : results) {
+        if (getResult(result)) {
+          loaded++;
+        }
+      }
+
+      if (loaded > 0 || !sampleFiles.isEmpty()) {
+        finish();
+      }
+      log.info("Load finished: {}", progress.summary());
+      return loaded == chromosomes.size();
+    } finally {
+      executor.shutdownNow();
+      delete(spoolDirectory);
+    }
+  }
+
+  /**
+   * Writes the rows of a CSV file with a header into one file per chromosome, without the
+   * header, and returns them by chromosome.
+   */
+  static Map<String, Path> spool(Path csvFile, int columns, Path directory, LoadProgress progress)
+      throws IOException {
+
+    Map<String, Path> spooled = new TreeMap<>();
+    Map<String, BufferedWriter> writers = new HashMap<>();
+    long startTime = System.currentTimeMillis();
+    try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+      // The header
+      reader.readLine();
+      String line;
+      int lineNumber = 1;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.isEmpty()) {
+          continue;
+        }
+        int start = line.indexOf(DELIMITER) + 1;
+        int end = line.indexOf(DELIMITER, start);
+        if (start == 0 || end <= start
+            || StringUtils.countMatches(line, DELIMITER) != columns - 1) {
+          throw new IllegalArgumentException("Invalid row at line " + lineNumber + " of "
+              + csvFile + ": " + line);
+        }
+        String chromosome = line.substring(start, end);
+        BufferedWriter writer = writers.get(chromosome);
+        if (writer == null) {
+          Path file = Files.createTempFile(directory, "chr", ".csv");
+          writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+          writers.put(chromosome, writer);
+          spooled.put(chromosome, file);
+        }
+        writer.write(line);
+        writer.newLine();
+        progress.getRowsSpooled().incrementAndGet();
+      }
+    } finally {
+      for (BufferedWriter writer : writers.values()) {
+        writer.close();
+      }
+    }
+    log.info("Split {} in {} chromosomes in {} ms", csvFile, spooled.size(),
+        System.currentTimeMillis() - startTime);
+    return spooled;
+  }
+
+  /**
+   * Copies the samples and the samples of every dataset that are not in the database yet, like
+   * {@code 2.sql} and {@code 3.sql}, and returns the ids of all the samples by stable id.
+   */
+  Map<String, Integer> loadSamples(List<Path> sampleFiles) throws IOException, SQLException {
+    try (Connection connection = connector.connect()) {
+      connection.setAutoCommit(false);
+      try {
+        Map<String, Integer> sampleIds = new HashMap<>();
+        Set<Long> datasetSamples = new HashSet<>();
+        try (Statement statement = connection.createStatement()) {
+          try (ResultSet resultSet = statement.executeQuery(
+              "SELECT id, stable_id FROM public.beacon_sample_table")) {
+            while (resultSet.next()) {
+              sampleIds.put(resultSet.getString(2), resultSet.getInt(1));
+            }
+          }
+          try (ResultSet resultSet = statement.executeQuery(
+              "SELECT dataset_id, sample_id FROM public.beacon_dataset_sample_table")) {
+            while (resultSet.next()) {
+              datasetSamples.add(datasetSample(resultSet.getInt(1), resultSet.getInt(2)));
+            }
+          }
+        }
+
+        SequenceIds ids = new SequenceIds(connection, SAMPLE_ID_SEQUENCE, SAMPLE_ID_BLOCK_SIZE);
+        List<String> newSamples = new ArrayList<>();
+        List<String> newDatasetSamples = new ArrayList<>();
+        for (Path file : sampleFiles) {
+          try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // The header
+            reader.readLine();
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+              lineNumber++;
+              if (line.isEmpty()) {
+                continue;
+              }
+              String[] values = line.split(DELIMITER, -1);
+              if (values.length != 2 || !StringUtils.isNumeric(values[1])) {
+                throw new IllegalArgumentException("Invalid sample at line " + lineNumber + " of "
+                    + file + ": " + line);
+              }
+              Integer id = sampleIds.get(values[0]);
+              if (id == null) {
+                id = ids.next();
+                sampleIds.put(values[0], id);
+                newSamples.add(id + DELIMITER + values[0]);
+              }
+              int datasetId = Integer.parseInt(values[1]);
+              if (datasetSamples.add(datasetSample(datasetId, id))) {
+                newDatasetSamples.add(datasetId + DELIMITER + id);
+              }
+            }
+          }
+        }
+
+        CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+        copy(copyManager, SAMPLE_COPY, newSamples);
+        copy(copyManager, DATASET_SAMPLE_COPY, newDatasetSamples);
+        connection.commit();
+        log.info("{} samples, {} new, and {} new samples of datasets", sampleIds.size(),
+            newSamples.size(), newDatasetSamples.size());
+        return sampleIds;
+      } catch (IOException | SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Refreshes the statistics of the planner and increments the data version, see {@code 4.sql}.
+   */
+  private void finish() throws SQLException {
+    try (Connection connection = connector.connect();
+        Statement statement = connection.createStatement()) {
+      statement.execute("ANALYZE public.beacon_data_table");
+      statement.execute("ANALYZE public.beacon_data_sample_table");
+      statement.execute("UPDATE public.beacon_data_version_table SET version = version + 1");
+    }
+  }
+
+  private static void copy(CopyManager copyManager, String sql, List<String> rows)
+      throws SQLException {
+
+    if (rows.isEmpty()) {
+      return;
+    }
+    try (CopyWriter writer = new CopyWriter(copyManager, sql)) {
+      for (String row : rows) {
+        writer.write(row);
+      }
+      writer.end();
+    }
+  }
+
+  private static long datasetSample(int datasetId, int sampleId) {
+    return ((long) datasetId << 32) | (sampleId & 0xFFFFFFFFL);
+  }
+
+  private static Map<String, List<Path>> byChromosome(List<Future<Map<String, Path>>> spools)
+      throws IOException, InterruptedException {
+
+    Map<String, List<Path>> byChromosome = new HashMap<>();
+    for (Future<Map<String, Path>> spool : spools) {
+      getResult(spool).forEach((chromosome, file) ->
+          byChromosome.computeIfAbsent(chromosome, key -> new ArrayList<>()).add(file));
+    }
+    return byChromosome;
+  }
+
+  private static long size(List<Path> files) {
+    long size = 0;
+    if (files != null) {
+      for (Path file : files) {
+        size += file.toFile().length();
+      }
+    }
+    return size;
+  }
+
+  private static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static void delete(Path directory) {
+    try {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+        for (Path file : files) {
+          Files.deleteIfExists(file);
+        }
+      }
+      Files.deleteIfExists(directory);
+    } catch (IOException e) {
+      // Not worth hiding the result of the load
+      log.warn("Could not delete " + directory, e);
+    }
+  }
+
+}
@@ -0,0 +1,292 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * Loads the spooled rows of one chromosome in a single transaction: the variants into
+ * {@code beacon_data_table} and their samples into {@code beacon_data_sample_table}, both with
+ * {@code COPY}. Same result as {@code 4.sql} without the temporary table and the joins:
+ * <ol>
+ * <li>The matching sample rows are read to find where the rows of every variant are.</li>
+ * <li>The variants are copied with ids of the sequence and their final
+ * {@code matching_sample_cnt} and {@code sample_ids}, read from their matching sample rows, so
+ * they are never updated.</li>
+ * <li>The matching sample rows are read again and copied with the ids of their variants.</li>
+ * </ol>
+ */
+@Slf4j
+class ChromosomeLoader implements Callable<Boolean> {
+
+  static final String VARIANT_COPY = "COPY public.beacon_data_table (id,dataset_id,chromosome,"
+      + "start,variant_id,reference,alternate,\"end\",\"type\",sv_length,variant_cnt,call_cnt,"
+      + "sample_cnt,frequency,matching_sample_cnt,sample_ids) "
+      + "FROM STDIN WITH (FORMAT csv, DELIMITER ';')";
+
+  static final String SAMPLE_COPY = "COPY public.beacon_data_sample_table (data_id,sample_id) "
+      + "FROM STDIN WITH (FORMAT csv, DELIMITER ';')";
+
+  static final int VARIANT_COLUMNS = 14;
+
+  static final int MATCHING_SAMPLE_COLUMNS = 8;
+
+  private static final String ID_SEQUENCE = "public.beacon_data_table_id_seq";
+
+  private static final int ID_BLOCK_SIZE = 10000;
+
+  // Matching sample rows are kept in the AlleleTable as the file index and the line offset
+  private static final int OFFSET_BITS = 48;
+
+  // Added to the shared counters every so many rows
+  private static final int PROGRESS_STEP = 1000;
+
+  private final String chromosome;
+
+  private final List<Path> variantFiles;
+
+  private final List<Path> matchingSampleFiles;
+
+  private final Map<String, Integer> sampleIds;
+
+  private final BeaconDataLoader.Connector connector;
+
+  private final LoadProgress progress;
+
+  private final AlleleTable alleles = new AlleleTable();
+
+  ChromosomeLoader(String chromosome, List<Path> variantFiles, List<Path> matchingSampleFiles,
+      Map<String, Integer> sampleIds, BeaconDataLoader.Connector connector,
+      LoadProgress progress) {
+
+    this.chromosome = chromosome;
+    this.variantFiles = variantFiles;
+    this.matchingSampleFiles = matchingSampleFiles;
+    this.sampleIds = sampleIds;
+    this.connector = connector;
+    this.progress = progress;
+  }
+
+  /**
+   * Returns whether the chromosome was committed, it is rolled back on any error.
+   */
+  @Override
+  public Boolean call() {
+    long startTime = System.currentTimeMillis();
+    try (Connection connection = connector.connect()) {
+      connection.setAutoCommit(false);
+      try {
+        long[] counts = load(connection);
+        connection.commit();
+        long millis = Math.max(System.currentTimeMillis() - startTime, 1);
+        log.info("Chromosome {} loaded: {} variants and {} sample links in {} ms ({} variants/s)",
+            chromosome, counts[0], counts[1], millis, counts[0] * 1000 / millis);
+        return true;
+      } catch (IOException | SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      }
+    } catch (IOException | SQLException | RuntimeException e) {
+      progress.getChromosomesFailed().incrementAndGet();
+      log.error("Chromosome " + chromosome + " rolled back, load its variants again", e);
+      return false;
+    } finally {
+      progress.getChromosomesDone().incrementAndGet();
+    }
+  }
+
+  private long[] load(Connection connection) throws IOException, SQLException {
+    CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+
+    for (int i = 0; i < matchingSampleFiles.size(); i++) {
+      long fileBits = (long) i << OFFSET_BITS;
+      read(matchingSampleFiles.get(i), MATCHING_SAMPLE_COLUMNS, (values, lineOffset) -> {
+        if (resolveSamples(values[7], true).length > 0) {
+          alleles.addRow(hash(values), fileBits | lineOffset);
+        }
+      });
+    }
+
+    SequenceIds ids = new SequenceIds(connection, ID_SEQUENCE, ID_BLOCK_SIZE);
+    long variants;
+    List<RowFile> sampleRows = new ArrayList<>();
+    try (CopyWriter writer = new CopyWriter(copyManager, VARIANT_COPY)) {
+      for (Path file : matchingSampleFiles) {
+        sampleRows.add(new RowFile(file));
+      }
+      StringBuilder row = new StringBuilder();
+      for (Path file : variantFiles) {
+        read(file, VARIANT_COLUMNS, (values, lineOffset) -> {
+          long hash = hash(values);
+          int id = ids.next();
+          alleles.addId(hash, id);
+          writer.write(variantRow(row, id, values, matchingSamples(sampleRows, hash)));
+          count(writer, progress.getVariants());
+        });
+      }
+      variants = writer.end();
+      progress.getVariants().addAndGet(variants % PROGRESS_STEP);
+    } finally {
+      for (RowFile rowFile : sampleRows) {
+        rowFile.close();
+      }
+    }
+
+    long links;
+    try (CopyWriter writer = new CopyWriter(copyManager, SAMPLE_COPY)) {
+      StringBuilder row = new StringBuilder();
+      for (Path file : matchingSampleFiles) {
+        read(file, MATCHING_SAMPLE_COLUMNS, (values, lineOffset) -> {
+          int[] dataIds = alleles.getIds(hash(values));
+          if (dataIds.length == 0) {
+            progress.getUnmatchedRows().incrementAndGet();
+            return;
+          }
+          int[] samples = resolveSamples(values[7], false);
+          for (int dataId : dataIds) {
+            for (int sample : samples) {
+              row.setLength(0);
+              writer.write(row.append(dataId).append(';').append(sample));
+              count(writer, progress.getSampleLinks());
+            }
+          }
+        });
+      }
+      links = writer.end();
+      progress.getSampleLinks().addAndGet(links % PROGRESS_STEP);
+    }
+    return new long[]{variants, links};
+  }
+
+  /**
+   * The row of {@code beacon_data_table} with its {@code id}, and the number and ids of the
+   * samples found in the matching sample rows, if any, like {@code 4.sql} sets them.
+   */
+  static CharSequence variantRow(StringBuilder row, int id, String[] values, int[] samples) {
+    row.setLength(0);
+    row.append(id);
+    for (int i = 0; i < VARIANT_COLUMNS - 1; i++) {
+      row.append(';').append(values[i]);
+    }
+    if (samples.length == 0) {
+      // Null sample_ids
+      return row.append(';').append(values[VARIANT_COLUMNS - 1]).append(';');
+    }
+    row.append(';').append(samples.length).append(";{");
+    for (int i = 0; i < samples.length; i++) {
+      row.append(i == 0 ? "" : ",").append(samples[i]);
+    }
+    return row.append('}');
+  }
+
+  /**
+   * Sorted ids of the known samples of every matching sample row of the variant.
+   */
+  private int[] matchingSamples(List<RowFile> sampleRows, long hash) throws IOException {
+    long[] rows = alleles.getRows(hash);
+    if (rows.length == 0) {
+      return new int[0];
+    }
+    int[][] samples = new int[rows.length][];
+    for (int i = 0; i < rows.length; i++) {
+      String line = sampleRows.get((int) (rows[i] >>> OFFSET_BITS))
+          .readLine(rows[i] & ((1L << OFFSET_BITS) - 1));
+      samples[i] = resolveSamples(split(line, MATCHING_SAMPLE_COLUMNS)[7], false);
+    }
+    return Arrays.stream(samples).flatMapToInt(Arrays::stream).distinct().sorted().toArray();
+  }
+
+  /**
+   * Distinct ids of the known samples of an array literal such as {@code {HG00096,HG00101}}.
+   */
+  int[] resolveSamples(String array, boolean countUnknown) {
+    String[] stableIds = parseArray(array);
+    int[] resolved = new int[stableIds.length];
+    int count = 0;
+    for (String stableId : stableIds) {
+      Integer id = sampleIds.get(stableId);
+      if (id == null) {
+        if (countUnknown) {
+          progress.getUnknownSamples().incrementAndGet();
+        }
+      } else {
+        resolved[count++] = id;
+      }
+    }
+    return Arrays.stream(resolved, 0, count).distinct().toArray();
+  }
+
+  static String[] parseArray(String array) {
+    String content = array.trim();
+    if (content.startsWith("\"") && content.endsWith("\"") && content.length() > 1) {
+      content = content.substring(1, content.length() - 1);
+    }
+    if (content.startsWith("{") && content.endsWith("}")) {
+      content = content.substring(1, content.length() - 1);
+    }
+    if (content.trim().isEmpty()) {
+      return new String[0];
+    }
+    String[] values = content.split(",", -1);
+    for (int i = 0; i < values.length; i++) {
+      String value = values[i].trim();
+      if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+        value = value.substring(1, value.length() - 1);
+      }
+      values[i] = value;
+    }
+    return values;
+  }
+
+  /**
+   * Hash of the columns {@code 4.sql} joins on, both files start with them. The type is the
+   * eighth column of the variants and the seventh of the matching samples.
+   */
+  static long hash(String[] values) {
+    String type = values.length == VARIANT_COLUMNS ? values[7] : values[6];
+    return AlleleTable.hash(values[0], values[1], values[2], values[3], values[4], values[5],
+        type);
+  }
+
+  private void read(Path file, int columns, RowConsumer consumer)
+      throws IOException, SQLException {
+
+    try (RowFile rowFile = new RowFile(file)) {
+      String line;
+      while ((line = rowFile.readLine()) != null) {
+        consumer.accept(split(line, columns), rowFile.getLineOffset());
+      }
+    }
+  }
+
+  private String[] split(String line, int columns) {
+    String[] values = line.split(BeaconDataLoader.DELIMITER, -1);
+    if (values.length != columns) {
+      throw new IllegalArgumentException("Expected " + columns + " columns in chromosome "
+          + chromosome + ": " + line);
+    }
+    return values;
+  }
+
+  private static void count(CopyWriter writer, AtomicLong counter) {
+    if (writer.getRows() % PROGRESS_STEP == 0) {
+      counter.addAndGet(PROGRESS_STEP);
+    }
+  }
+
+  private interface RowConsumer {
+
+    void accept(String[] values, long lineOffset) throws IOException, SQLException;
+  }
+
+}
@@ -0,0 +1,71 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Rows streamed to a {@code COPY ... FROM STDIN} in chunks of {@value #BUFFER_SIZE} characters.
+ * Nothing is visible until the transaction of the connection is committed.
+ */
+class CopyWriter implements AutoCloseable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final CopyIn copyIn;
+
+  private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 1024);
+
+  private long rows;
+
+  private boolean ended;
+
+  CopyWriter(CopyManager copyManager, String sql) throws SQLException {
+    copyIn = copyManager.copyIn(sql);
+  }
+
+  /**
+   * Appends a row in the format of the {@code COPY} statement, without the line break.
+   */
+  void write(CharSequence row) throws SQLException {
+    buffer.append(row).append('\n');
+    rows++;
+    if (buffer.length() >= BUFFER_SIZE) {
+      flush();
+    }
+  }
+
+  long getRows() {
+    return rows;
+  }
+
+  /**
+   * Sends the rows left and returns the number of rows copied.
+   */
+  long end() throws SQLException {
+    flush();
+    ended = true;
+    copyIn.endCopy();
+    return rows;
+  }
+
+  /**
+   * Cancels the copy if it has not ended, the transaction must be rolled back anyway.
+   */
+  @Override
+  public void close() throws SQLException {
+    if (!ended && copyIn.isActive()) {
+      copyIn.cancelCopy();
+    }
+  }
+
+  private void flush() throws SQLException {
+    if (buffer.length() > 0) {
+      byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+      copyIn.writeToCopy(bytes, 0, bytes.length);
+      buffer.setLength(0);
+    }
+  }
+
+}
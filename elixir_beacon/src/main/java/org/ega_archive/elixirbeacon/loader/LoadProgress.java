@@ -0,0 +1,76 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counters of a load, shared by the workers, and their throughput logged every few seconds.
+ */
+@Slf4j
+@Getter
+class LoadProgress implements AutoCloseable {
+
+  private final long startTime = System.currentTimeMillis();
+
+  private final AtomicLong rowsSpooled = new AtomicLong();
+
+  private final AtomicLong variants = new AtomicLong();
+
+  private final AtomicLong sampleLinks = new AtomicLong();
+
+  // Matching sample rows without any variant, like the rows 4.sql does not join
+  private final AtomicLong unmatchedRows = new AtomicLong();
+
+  private final AtomicLong unknownSamples = new AtomicLong();
+
+  private final AtomicInteger chromosomesDone = new AtomicInteger();
+
+  private final AtomicInteger chromosomesFailed = new AtomicInteger();
+
+  private volatile int chromosomes;
+
+  private ScheduledExecutorService scheduler;
+
+  void setChromosomes(int chromosomes) {
+    this.chromosomes = chromosomes;
+  }
+
+  /**
+   * Logs the progress every {@code interval} seconds until it is closed.
+   */
+  void report(long interval) {
+    if (interval <= 0) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "loader-progress");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(() -> log.info(summary()), interval, interval,
+        TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  String summary() {
+    double seconds = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+    return String.format("%d rows spooled, %d variants (%.0f/s), %d sample links (%.0f/s), "
+            + "%d/%d chromosomes done (%d failed), %d matching rows without variant, "
+            + "%d unknown samples, %.1f s",
+        rowsSpooled.get(), variants.get(), variants.get() / seconds, sampleLinks.get(),
+        sampleLinks.get() / seconds, chromosomesDone.get(), chromosomes,
+        chromosomesFailed.get(), unmatchedRows.get(), unknownSamples.get(), seconds);
+  }
+
+}
@@ -0,0 +1,121 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lines of a spooled file with the byte offset each one starts at, so that a line can be read
+ * again later without reading the file up to it. Lines end with {@code \n} or {@code \r\n}.
+ */
+class RowFile implements AutoCloseable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+
+  private byte[] bytes = new byte[BUFFER_SIZE];
+
+  // Offset in the file of bytes[0]
+  private long offset;
+
+  // Next byte to read and end of the bytes read from the file
+  private int start;
+
+  private int end;
+
+  private long lineOffset;
+
+  RowFile(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+  }
+
+  /**
+   * Next line without the line break, null at the end of the file.
+   */
+  String readLine() throws IOException {
+    int scan = start;
+    while (true) {
+      for (; scan < end; scan++) {
+        if (bytes[scan] == '\n') {
+          String line = decode(start, scan);
+          lineOffset = offset + start;
+          start = scan + 1;
+          return line;
+        }
+      }
+      int scanned = scan - start;
+      if (!fill()) {
+        if (start == end) {
+          return null;
+        }
+        String line = decode(start, end);
+        lineOffset = offset + start;
+        start = end;
+        return line;
+      }
+      scan = start + scanned;
+    }
+  }
+
+  /**
+   * Offset of the line last returned by {@link #readLine()}.
+   */
+  long getLineOffset() {
+    return lineOffset;
+  }
+
+  /**
+   * Line starting at {@code lineOffset}, reading on from there. Lines near the last one read are
+   * still buffered.
+   */
+  String readLine(long lineOffset) throws IOException {
+    if (lineOffset >= offset && lineOffset < offset + end) {
+      start = (int) (lineOffset - offset);
+    } else {
+      channel.position(lineOffset);
+      offset = lineOffset;
+      start = 0;
+      end = 0;
+    }
+    return readLine();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // Keeps the bytes not read yet and reads more after them, false at the end of the file
+  private boolean fill() throws IOException {
+    int pending = end - start;
+    if (start > 0) {
+      System.arraycopy(bytes, start, bytes, 0, pending);
+      offset += start;
+      start = 0;
+      end = pending;
+    }
+    if (end == bytes.length) {
+      // A line longer than the buffer
+      bytes = Arrays.copyOf(bytes, bytes.length * 2);
+    }
+    int read = channel.read(ByteBuffer.wrap(bytes, end, bytes.length - end));
+    if (read < 0) {
+      return false;
+    }
+    end += read;
+    return true;
+  }
+
+  private String decode(int from, int to) {
+    if (to > from && bytes[to - 1] == '\r') {
+      to--;
+    }
+    return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,57 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Ids of a serial column taken from its sequence in blocks, so that the rows can be copied with
+ * their id and referenced right away. {@code nextval} is not transactional: the ids of a rolled
+ * back load are lost, as with {@code INSERT}.
+ */
+class SequenceIds {
+
+  private static final String NEXT_IDS =
+      "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+
+  private final Connection connection;
+
+  private final String sequence;
+
+  private final int blockSize;
+
+  private int[] block = new int[0];
+
+  private int next;
+
+  SequenceIds(Connection connection, String sequence, int blockSize) {
+    this.connection = connection;
+    this.sequence = sequence;
+    this.blockSize = blockSize;
+  }
+
+  int next() throws SQLException {
+    if (next == block.length) {
+      block = fetch();
+      next = 0;
+    }
+    return block[next++];
+  }
+
+  private int[] fetch() throws SQLException {
+    int[] ids = new int[blockSize];
+    int count = 0;
+    try (PreparedStatement statement = connection.prepareStatement(NEXT_IDS)) {
+      statement.setString(1, sequence);
+      statement.setInt(2, blockSize);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          ids[count++] = resultSet.getInt(1);
+        }
+      }
+    }
+    return ids;
+  }
+
+}
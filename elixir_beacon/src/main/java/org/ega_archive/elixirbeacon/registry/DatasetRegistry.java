@@ -0,0 +1,183 @@
+package org.ega_archive.elixirbeacon.registry;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.dto.DatasetFragment;
+import org.ega_archive.elixirbeacon.dto.Handover;
+import org.ega_archive.elixirbeacon.dto.HandoverType;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCode;
+import org.ega_archive.elixirbeacon.properties.HandoverConfig.HandoverProperty;
+
+/**
+ * Immutable snapshot of the datasets, their consent codes and their handovers, indexed by id and
+ * by stable id. A new instance is built on every refresh, so readers never see a half-loaded
+ * registry.
+ * <p>
+ * The entities are shared by all the requests and must not be modified.
+ */
+public class DatasetRegistry {
+
+  @Getter
+  private final long version;
+
+  // Changes only if the datasets, the consent codes or the handovers change
+  @Getter
+  private final String contentHash;
+
+  // Sorted by id
+  @Getter
+  private final List<BeaconDataset> datasets;
+
+  private final Map<Integer, BeaconDataset> datasetsById;
+
+  private final Map<String, BeaconDataset> datasetsByStableId;
+
+  private final Map<Integer, List<BeaconDatasetConsentCode>> consentCodes;
+
+  // Key: lower case stable id
+  private final Map<String, List<Handover>> handovers;
+
+  private final Map<Integer, DatasetFragment> fragments;
+
+  public DatasetRegistry(long version, List<BeaconDataset> datasets,
+      List<BeaconDatasetConsentCode> consentCodes, List<HandoverProperty> handovers) {
+
+    this.version = version;
+
+    List<BeaconDataset> sorted = new ArrayList<>(datasets);
+    sorted.sort(Comparator.comparing(BeaconDataset::getId));
+    this.datasets = Collections.unmodifiableList(sorted);
+
+    Map<Integer, BeaconDataset> byId = new HashMap<>();
+    Map<String, BeaconDataset> byStableId = new HashMap<>();
+    for (BeaconDataset dataset : sorted) {
+      byId.put(dataset.getId(), dataset);
+      byStableId.put(dataset.getStableId(), dataset);
+    }
+    this.datasetsById = byId;
+    this.datasetsByStableId = byStableId;
+
+    // Keep the order in which the consent codes were read
+    Map<Integer, List<BeaconDatasetConsentCode>> codes = consentCodes.stream()
+        .collect(Collectors.groupingBy(code -> code.getId().getDatasetId(), LinkedHashMap::new,
+            Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)));
+    this.consentCodes = codes;
+
+    Map<String, List<Handover>> handoversByStableId = handovers.stream()
+        .collect(Collectors.groupingBy(prop -> StringUtils.lowerCase(prop.getStableId()),
+            Collectors.mapping(DatasetRegistry::toHandover,
+                Collectors.collectingAndThen(Collectors.toList(),
+                    Collections::unmodifiableList))));
+    this.handovers = handoversByStableId;
+
+    Map<Integer, DatasetFragment> fragmentsById = new HashMap<>();
+    for (BeaconDataset dataset : sorted) {
+      fragmentsById.put(dataset.getId(),
+          new DatasetFragment(dataset.getStableId(), getHandovers(dataset.getStableId())));
+    }
+    this.fragments = fragmentsById;
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (BeaconDataset dataset : sorted) {
+      // toString() of the dataset has all its columns
+      hasher.putString(dataset.toString(), StandardCharsets.UTF_8);
+      for (BeaconDatasetConsentCode code : getConsentCodes(dataset.getId())) {
+        // The primary key has no toString()
+        hasher.putString(code.getId().getCode() + "|" + code.getCategory() + "|"
+            + code.getDescription() + "|" + code.getAdditionalConstraint() + "|"
+            + code.getAdditionalDescription() + "|" + code.getVersion(), StandardCharsets.UTF_8);
+      }
+      hasher.putString(fragmentsById.get(dataset.getId()).getDatasetHandover().getValue(),
+          StandardCharsets.UTF_8);
+    }
+    this.contentHash = hasher.hash().toString();
+  }
+
+  public BeaconDataset findById(Integer id) {
+    return datasetsById.get(id);
+  }
+
+  public BeaconDataset findByStableId(String stableId) {
+    return datasetsByStableId.get(stableId);
+  }
+
+  public List<BeaconDatasetConsentCode> getConsentCodes(Integer datasetId) {
+    return consentCodes.getOrDefault(datasetId, Collections.emptyList());
+  }
+
+  public List<Handover> getHandovers(String stableId) {
+    return handovers.getOrDefault(StringUtils.lowerCase(stableId), Collections.emptyList());
+  }
+
+  /**
+   * The stable id and the handovers of the dataset, already serialized.
+   */
+  public DatasetFragment getFragment(Integer datasetId) {
+    return fragments.get(datasetId);
+  }
+
+  /**
+   * Same as {@code BeaconDatasetRepository.findByReferenceGenome}, sorted by id.
+   */
+  public List<BeaconDataset> findByReferenceGenome(String referenceGenome) {
+    return datasets.stream()
+        .filter(d -> StringUtils.equalsIgnoreCase(d.getReferenceGenome(), referenceGenome))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Same as {@code BeaconDatasetRepository.findIdsByReferenceGenomeAndAccessType}.
+   */
+  public List<Integer> findIdsByReferenceGenomeAndAccessType(String referenceGenome,
+      String accessType) {
+
+    return datasets.stream()
+        .filter(d -> StringUtils.equalsIgnoreCase(d.getReferenceGenome(), referenceGenome))
+        .filter(d -> StringUtils.equalsIgnoreCase(d.getAccessType(), accessType))
+        .map(BeaconDataset::getId)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Same as {@code BeaconDatasetRepository.findIdsByStableIdInAndReferenceGenome}.
+   */
+  public List<Integer> findIdsByStableIdInAndReferenceGenome(List<String> stableIds,
+      String referenceGenome) {
+
+    if (stableIds == null) {
+      return new ArrayList<>();
+    }
+    return stableIds.stream()
+        .distinct()
+        .map(datasetsByStableId::get)
+        .filter(d -> d != null)
+        .filter(d -> StringUtils.equalsIgnoreCase(d.getReferenceGenome(), referenceGenome))
+        .map(BeaconDataset::getId)
+        .collect(Collectors.toList());
+  }
+
+  private static Handover toHandover(HandoverProperty prop) {
+    HandoverType handoverType = new HandoverType();
+    handoverType.setId(prop.getId());
+    handoverType.setLabel(prop.getLabel());
+
+    Handover handover = new Handover();
+    handover.setHandoverType(handoverType);
+    handover.setUrl(prop.getUrl());
+    handover.setNote(prop.getNote());
+    return handover;
+  }
+
+}
@@ -10,7 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface BeaconSummaryDataRepository extends
-    CustomQuerydslJpaRepository<BeaconDataSummary, Integer> {
+    CustomQuerydslJpaRepository<BeaconDataSummary, Integer>, BeaconSummaryDataRepositoryCustom {
 
   @Query(value = "SELECT * FROM query_data_summary_response("
       + "CAST(:_variant_type AS text), "
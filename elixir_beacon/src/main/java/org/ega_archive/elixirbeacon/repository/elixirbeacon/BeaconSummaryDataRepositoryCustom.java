@@ -0,0 +1,41 @@
+package org.ega_archive.elixirbeacon.repository.elixirbeacon;
+
+import java.util.List;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+
+public interface BeaconSummaryDataRepositoryCustom {
+
+  /**
+   * Same result as {@link BeaconSummaryDataRepository#searchForVariantsQuery} but, instead of
+   * calling the {@code query_data_summary_response} function, the request is mapped to one of the
+   * {@link org.ega_archive.elixirbeacon.enums.QueryShape}s and run as a prepared statement whose
+   * text only depends on that shape, so the server can reuse its plan.
+   */
+  List<BeaconDataSummary> searchForVariants(String variantType, Integer start, Integer startMin,
+      Integer startMax, Integer end, Integer endMin, Integer endMax, String chromosome,
+      String referenceBases, String alternateBases, String referenceGenome,
+      List<Integer> datasetIds);
+
+  /**
+   * Same as {@link #searchForVariants(String, Integer, Integer, Integer, Integer, Integer, Integer,
+   * String, String, String, String, List)} with the request already normalized.
+   */
+  List<BeaconDataSummary> searchForVariants(String chromosome, String referenceGenome,
+      IndexQuery query);
+
+  /**
+   * Runs several queries on the same chromosome and assembly. Returns one list per query, in the
+   * same order as {@code queries}, with the same content {@link #searchForVariants} would return
+   * for each of them. Queries on a single allele are resolved together by one statement.
+   */
+  List<List<BeaconDataSummary>> searchForVariantsBatch(String chromosome,
+      String referenceGenome, List<IndexQuery> queries);
+
+  /**
+   * Whether any variant of the datasets of the query matches it. Nothing is aggregated and the
+   * database stops at the first matching variant.
+   */
+  boolean existsVariant(String chromosome, String referenceGenome, IndexQuery query);
+
+}
@@ -0,0 +1,494 @@
+package org.ega_archive.elixirbeacon.repository.elixirbeacon;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.cache.QueryResultCache;
+import org.ega_archive.elixirbeacon.enums.QueryShape;
+import org.ega_archive.elixirbeacon.index.DatasetSummaryAccumulator;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.index.SampleBitmap;
+import org.ega_archive.elixirbeacon.index.VariantKey;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixirbeacon.watchdog.QueryWatchdog;
+import org.ega_archive.elixircore.util.StoredProcedureUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Query planner behind {@link BeaconSummaryDataRepository}. It builds the same query as the
+ * {@code query_data_summary_response} function but, since the text of the statement only depends
+ * on the {@link QueryShape} and on which optional filters are present, there is a small fixed set
+ * of statements. The driver keeps them prepared on the server (see {@code prepareThreshold} in the
+ * datasource properties) instead of planning the query on every call.
+ * <p>
+ * Every statement runs under the {@link QueryWatchdog}, with the deadline of its shape. Every
+ * transaction reads the data version first, for the {@link QueryResultCache}.
+ */
+@Slf4j
+public class BeaconSummaryDataRepositoryImpl implements BeaconSummaryDataRepositoryCustom {
+
+  private static final String SELECT = "SELECT "
+      + "CONCAT(q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants) AS id, "
+      + "q.dataset_id, q.variant_cnt, q.call_cnt, q.sample_cnt, q.frequency, q.num_variants "
+      + "FROM ("
+      + "SELECT variants.dataset_id, variants.variant_cnt, variants.call_cnt, variants.sample_cnt, "
+      + "CASE WHEN variants.num_variants > 1 "
+      + "THEN (variants.variant_cnt::decimal/variants.call_cnt)::decimal(10,2) "
+      + "ELSE variants.frequency END AS frequency, "
+      + "variants.num_variants "
+      + "FROM ("
+      + "SELECT bdat.dataset_id, "
+      + "CASE WHEN count(*) > 1 THEN SUM(bdat.variant_cnt)::bigint ELSE max(bdat.variant_cnt) END AS variant_cnt, "
+      + "CASE WHEN count(*) > 1 THEN SUM(bdat.call_cnt)::bigint ELSE max(bdat.call_cnt) END AS call_cnt, "
+      // matching_sample_cnt and sample_ids are kept up to date by the loader. The samples of
+      // several matching variants are counted once from the union of their sample_ids
+      + "CASE WHEN count(*) > 1 THEN COALESCE(NULLIF(public.beacon_sample_count("
+      + "public.beacon_sample_union(bdat.sample_ids)), 0), max(bdat.matching_sample_cnt)) "
+      + "ELSE max(bdat.matching_sample_cnt) END::bigint AS sample_cnt, "
+      + "max(bdat.frequency) AS frequency, "
+      + "COUNT(*)::integer AS num_variants "
+      + "FROM public.beacon_data_table bdat "
+      + "INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id "
+      + "WHERE ";
+
+  private static final String EXISTS_SELECT = "SELECT EXISTS (SELECT 1 "
+      + "FROM public.beacon_data_table bdat "
+      + "INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id "
+      + "WHERE ";
+
+  // Stored with the variant by the loader: no lookup of beacon_data_sample_table per row. The
+  // accumulators only union them when a dataset has more than one matching variant
+  private static final String SAMPLE_IDS = "bdat.sample_ids ";
+
+  // Range queries can match millions of variants: instead of grouping them on the server, they
+  // are read with a cursor and folded as they arrive, so memory does not depend on the window
+  private static final String STREAM_SELECT = "SELECT bdat.dataset_id, bdat.variant_cnt, "
+      + "bdat.call_cnt, bdat.matching_sample_cnt, bdat.frequency, " + SAMPLE_IDS
+      + "FROM public.beacon_data_table bdat "
+      + "INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id "
+      + "WHERE ";
+
+  private static final int STREAM_FETCH_SIZE = 10000;
+
+  private static final String GROUP_BY = " GROUP BY bdat.dataset_id"
+      + ") variants "
+      + "ORDER BY variants.dataset_id"
+      + ") q";
+
+  // Single allele queries (see isBatchable()) are joined to the variant table at once. Each query
+  // has its own list of datasets, separated by ';' since the arrays are sent separated by ','.
+  private static final String BATCH_SELECT = "SELECT q.ord, bdat.dataset_id, bdat.variant_cnt, "
+      + "bdat.call_cnt, bdat.matching_sample_cnt, bdat.frequency, " + SAMPLE_IDS
+      + "FROM unnest(string_to_array(?, ',')::int[], string_to_array(?, ',')::bigint[], "
+      + "string_to_array(?, ',')::int[], string_to_array(?, ','), string_to_array(?, ','), "
+      + "string_to_array(?, ',')) "
+      + "AS q(ord, variant_key, start, reference, alternate, dataset_ids) "
+      + "INNER JOIN public.beacon_data_table bdat ON bdat.variant_key = q.variant_key "
+      + "AND bdat.chromosome = ? AND bdat.start = q.start AND bdat.reference = q.reference "
+      + "AND bdat.alternate = q.alternate "
+      + "AND bdat.dataset_id = ANY (string_to_array(q.dataset_ids, ';')::int[]) "
+      + "INNER JOIN public.beacon_dataset_table bdataset ON bdataset.id=bdat.dataset_id "
+      + "WHERE lower(bdataset.reference_genome) = ?";
+
+  // Keeps the size of the arrays sent in a single statement bounded
+  private static final int BATCH_SIZE = 1000;
+
+  private static final String BATCH_METRIC = "beacon.query.batch";
+
+  private static final String BATCH_QUERY = "batch";
+
+  private static final String EXISTS_METRIC_SUFFIX = ".exists";
+
+  private static final RowMapper<BeaconDataSummary> ROW_MAPPER = (ResultSet rs, int rowNum) -> {
+    BeaconDataSummary summary = new BeaconDataSummary();
+    summary.setId(rs.getString("id"));
+    summary.setDatasetId(rs.getInt("dataset_id"));
+    summary.setVariantCnt(getBigInteger(rs, "variant_cnt"));
+    summary.setCallCnt(getBigInteger(rs, "call_cnt"));
+    summary.setSampleCnt(getBigInteger(rs, "sample_cnt"));
+    summary.setFrequency(rs.getBigDecimal("frequency"));
+    summary.setNumVariants(rs.getInt("num_variants"));
+    return summary;
+  };
+
+  // Key: shape + optional filters, value: text of the statement
+  private final ConcurrentMap<String, String> statements = new ConcurrentHashMap<>();
+
+  @Autowired
+  @Qualifier("elixirbeaconJdbcTemplate")
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private QueryWatchdog queryWatchdog;
+
+  @Autowired
+  private QueryResultCache queryResultCache;
+
+  @Autowired
+  private CounterService counterService;
+
+  @Autowired
+  private GaugeService gaugeService;
+
+  @Override
+  @Transactional(transactionManager = "elixirbeaconTransactionManager", readOnly = true)
+  public List<BeaconDataSummary> searchForVariants(String variantType, Integer start,
+      Integer startMin, Integer startMax, Integer end, Integer endMin, Integer endMax,
+      String chromosome, String referenceBases, String alternateBases, String referenceGenome,
+      List<Integer> datasetIds) {
+
+    IndexQuery query = IndexQuery.of(variantType, start, startMin, startMax, end, endMin, endMax,
+        referenceBases, alternateBases, datasetIds);
+    queryResultCache.observeVersion();
+    return search(query, chromosome, referenceGenome, datasetIds);
+  }
+
+  @Override
+  @Transactional(transactionManager = "elixirbeaconTransactionManager", readOnly = true)
+  public List<BeaconDataSummary> searchForVariants(String chromosome, String referenceGenome,
+      IndexQuery query) {
+
+    List<Integer> datasetIds = IntStream.of(query.getDatasetIds()).boxed()
+        .collect(Collectors.toList());
+    queryResultCache.observeVersion();
+    return search(query, chromosome, referenceGenome, datasetIds);
+  }
+
+  @Override
+  @Transactional(transactionManager = "elixirbeaconTransactionManager", readOnly = true)
+  public List<List<BeaconDataSummary>> searchForVariantsBatch(String chromosome,
+      String referenceGenome, List<IndexQuery> queries) {
+
+    queryResultCache.observeVersion();
+    List<List<BeaconDataSummary>> result = new ArrayList<>(queries.size());
+    List<Integer> batchable = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      IndexQuery query = queries.get(i);
+      if (isBatchable(query)) {
+        batchable.add(i);
+        result.add(null);
+      } else {
+        List<Integer> datasetIds = IntStream.of(query.getDatasetIds()).boxed()
+            .collect(Collectors.toList());
+        result.add(search(query, chromosome, referenceGenome, datasetIds));
+      }
+    }
+
+    for (int from = 0; from < batchable.size(); from += BATCH_SIZE) {
+      List<Integer> positions = batchable.subList(from,
+          Math.min(from + BATCH_SIZE, batchable.size()));
+      List<DatasetSummaryAccumulator> accumulators = searchBatch(positions, queries, chromosome,
+          referenceGenome);
+      for (int i = 0; i < positions.size(); i++) {
+        result.set(positions.get(i), accumulators.get(i).toSummaries());
+      }
+    }
+    return result;
+  }
+
+  private List<BeaconDataSummary> search(IndexQuery query, String chromosome,
+      String referenceGenome, List<Integer> datasetIds) {
+
+    QueryShape shape = QueryShape.of(query);
+    if (matchesNothing(shape, query)) {
+      return Collections.emptyList();
+    }
+    Filters filters = new Filters(query);
+    List<Object> args = buildArguments(shape, filters, query, chromosome, referenceGenome,
+        datasetIds);
+
+    long startTime = System.currentTimeMillis();
+    List<BeaconDataSummary> result;
+    if (shape == QueryShape.START_END_RANGE) {
+      String sql = statements.computeIfAbsent("STREAM|" + shape.name() + filters.key(),
+          key -> STREAM_SELECT + buildPredicates(shape, filters));
+      result = queryWatchdog.run(shape.getMetricName(),
+          watch -> searchStreamed(watch, sql, args));
+    } else {
+      String sql = statements.computeIfAbsent(shape.name() + filters.key(),
+          key -> buildStatement(shape, filters));
+      result = queryWatchdog.run(shape.getMetricName(),
+          watch -> jdbcTemplate.query(watch.statement(sql, args.toArray()), ROW_MAPPER));
+    }
+    long elapsed = System.currentTimeMillis() - startTime;
+
+    counterService.increment(shape.getMetricName());
+    gaugeService.submit("timer." + shape.getMetricName(), elapsed);
+    log.debug("Query shape {} returned {} rows in {} ms", shape, result.size(), elapsed);
+    return result;
+  }
+
+  /**
+   * Must run inside a transaction: otherwise the driver ignores the fetch size and reads all the
+   * rows at once.
+   */
+  private List<BeaconDataSummary> searchStreamed(QueryWatchdog.Watch watch, String sql,
+      List<Object> args) {
+
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    jdbcTemplate.query(watch.statement(sql, args.toArray(), STREAM_FETCH_SIZE),
+        (ResultSet rs) -> {
+          accumulator.add(rs.getInt("dataset_id"), getInt(rs, "variant_cnt"),
+              getInt(rs, "call_cnt"), getInt(rs, "matching_sample_cnt"),
+              rs.getBigDecimal("frequency"), SampleBitmap.read(rs, "sample_ids"));
+        });
+    return accumulator.toSummaries();
+  }
+
+  @Override
+  @Transactional(transactionManager = "elixirbeaconTransactionManager", readOnly = true)
+  public boolean existsVariant(String chromosome, String referenceGenome, IndexQuery query) {
+    queryResultCache.observeVersion();
+    QueryShape shape = QueryShape.of(query);
+    if (matchesNothing(shape, query)) {
+      return false;
+    }
+    Filters filters = new Filters(query);
+
+    String sql = statements.computeIfAbsent("EXISTS|" + shape.name() + filters.key(),
+        key -> EXISTS_SELECT + buildPredicates(shape, filters) + ")");
+    List<Integer> datasetIds = IntStream.of(query.getDatasetIds()).boxed()
+        .collect(Collectors.toList());
+    List<Object> args = buildArguments(shape, filters, query, chromosome, referenceGenome,
+        datasetIds);
+
+    long startTime = System.currentTimeMillis();
+    boolean exists = queryWatchdog.run(shape.getMetricName(),
+        watch -> jdbcTemplate.query(watch.statement(sql, args.toArray()),
+            (ResultSet rs) -> rs.next() && rs.getBoolean(1)));
+    long elapsed = System.currentTimeMillis() - startTime;
+
+    String metricName = shape.getMetricName() + EXISTS_METRIC_SUFFIX;
+    counterService.increment(metricName);
+    gaugeService.submit("timer." + metricName, elapsed);
+    log.debug("Exists query shape {} returned {} in {} ms", shape, exists, elapsed);
+    return exists;
+  }
+
+  private List<DatasetSummaryAccumulator> searchBatch(List<Integer> positions,
+      List<IndexQuery> queries, String chromosome, String referenceGenome) {
+
+    List<DatasetSummaryAccumulator> accumulators = new ArrayList<>(positions.size());
+    StringJoiner ordinals = new StringJoiner(",");
+    StringJoiner keys = new StringJoiner(",");
+    StringJoiner starts = new StringJoiner(",");
+    StringJoiner references = new StringJoiner(",");
+    StringJoiner alternates = new StringJoiner(",");
+    StringJoiner datasets = new StringJoiner(",");
+    for (int i = 0; i < positions.size(); i++) {
+      IndexQuery query = queries.get(positions.get(i));
+      accumulators.add(new DatasetSummaryAccumulator());
+      ordinals.add(String.valueOf(i));
+      keys.add(String.valueOf(VariantKey.of(chromosome, query.getStart(),
+          query.getReferenceBases(), query.getAlternateBases())));
+      starts.add(String.valueOf(query.getStart()));
+      references.add(query.getReferenceBases());
+      alternates.add(query.getAlternateBases());
+      datasets.add(IntStream.of(query.getDatasetIds()).mapToObj(String::valueOf)
+          .collect(Collectors.joining(";")));
+    }
+
+    long startTime = System.currentTimeMillis();
+    Object[] args = {ordinals.toString(), keys.toString(), starts.toString(), references.toString(),
+        alternates.toString(), datasets.toString(), chromosome,
+        StringUtils.lowerCase(referenceGenome)};
+    queryWatchdog.run(BATCH_QUERY, watch -> {
+      jdbcTemplate.query(watch.statement(BATCH_SELECT, args), (ResultSet rs) -> {
+        accumulators.get(rs.getInt("ord")).add(rs.getInt("dataset_id"),
+            getInt(rs, "variant_cnt"), getInt(rs, "call_cnt"),
+            getInt(rs, "matching_sample_cnt"), rs.getBigDecimal("frequency"),
+            SampleBitmap.read(rs, "sample_ids"));
+      });
+      return accumulators;
+    });
+    long elapsed = System.currentTimeMillis() - startTime;
+
+    counterService.increment(BATCH_METRIC);
+    gaugeService.submit("timer." + BATCH_METRIC, elapsed);
+    log.debug("Batch of {} queries resolved in {} ms", positions.size(), elapsed);
+    return accumulators;
+  }
+
+  /**
+   * Brackets with an empty start or end range. {@code int4range(?, ?)} fails if its lower bound
+   * is greater than the upper one, and the other predicates match nothing anyway.
+   */
+  static boolean matchesNothing(QueryShape shape, IndexQuery query) {
+    return shape == QueryShape.BRACKET && (query.getStartMin() >= query.getStartMax()
+        || query.getEndMin() >= query.getEndMax());
+  }
+
+  /**
+   * Exact SNVs and small indels: a single start, reference and alternate allele.
+   */
+  private static boolean isBatchable(IndexQuery query) {
+    return query.isExactAllele() && query.getDatasetIds().length > 0;
+  }
+
+  private static String buildStatement(QueryShape shape, Filters filters) {
+    return SELECT + buildPredicates(shape, filters) + GROUP_BY;
+  }
+
+  private static String buildPredicates(QueryShape shape, Filters filters) {
+    StringBuilder sql = new StringBuilder();
+    switch (shape) {
+      case BRACKET:
+        sql.append("bdat.start >= ? AND bdat.start < ? AND bdat.end >= ? AND bdat.end < ?");
+        // Implied by the previous predicates, but it can be answered by the GiST range index
+        sql.append(" AND int4range(LEAST(bdat.start, bdat.\"end\"), GREATEST(bdat.start, bdat.\"end\"), '[]')"
+            + " <@ int4range(?, ?)");
+        break;
+      case START_END_EXACT:
+        // Remember that end is exclusive
+        sql.append("bdat.start = ? AND bdat.end = ?");
+        break;
+      case START_END_RANGE:
+        sql.append("(bdat.start >= ? AND bdat.start < ? OR bdat.end >= ? AND bdat.end < ?)");
+        break;
+      case EXACT:
+      case VARIANT_TYPE:
+      default:
+        sql.append("bdat.start = ?");
+        break;
+    }
+    if (filters.key) {
+      // Narrows the lookup to the allele, the columns below rule out other alleles with its key
+      sql.append(" AND bdat.variant_key = ?");
+    }
+    sql.append(" AND bdat.chromosome = ?");
+    if (filters.type) {
+      sql.append(" AND bdat.type = ?");
+    }
+    if (filters.reference) {
+      sql.append(" AND bdat.reference = ?");
+    }
+    if (filters.insertion) {
+      // Same as alternate LIKE reference || ? || '%', written as a range of the inserted bases so
+      // that the generic plan of the statement can use the index
+      sql.append(" AND bdat.inserted_sequence >= ? AND bdat.inserted_sequence < ?");
+    } else if (filters.alternate) {
+      sql.append(" AND bdat.alternate = ?");
+    }
+    sql.append(" AND lower(bdataset.reference_genome) = ?");
+    sql.append(" AND bdat.dataset_id = ANY (string_to_array(?, ',')::int[])");
+    return sql.toString();
+  }
+
+  // Same order as the placeholders added by buildPredicates()
+  private static List<Object> buildArguments(QueryShape shape, Filters filters,
+      IndexQuery query, String chromosome, String referenceGenome, List<Integer> datasetIds) {
+
+    List<Object> args = new ArrayList<>();
+    switch (shape) {
+      case BRACKET:
+        args.add(query.getStartMin());
+        args.add(query.getStartMax());
+        args.add(query.getEndMin());
+        args.add(query.getEndMax());
+        args.add(Math.min(query.getStartMin(), query.getEndMin()));
+        args.add(Math.max(query.getStartMax(), query.getEndMax()));
+        break;
+      case START_END_EXACT:
+        args.add(query.getStart());
+        args.add(query.getEnd() - 1);
+        break;
+      case START_END_RANGE:
+        args.add(query.getStart());
+        args.add(query.getEnd());
+        args.add(query.getStart());
+        args.add(query.getEnd());
+        break;
+      case EXACT:
+      case VARIANT_TYPE:
+      default:
+        args.add(query.getStart());
+        break;
+    }
+    if (filters.key) {
+      args.add(VariantKey.of(chromosome, query.getStart(), query.getReferenceBases(),
+          query.getAlternateBases()));
+    }
+    args.add(chromosome);
+    if (filters.type) {
+      args.add(query.getVariantType());
+    }
+    if (filters.reference) {
+      args.add(query.getReferenceBases());
+    }
+    if (filters.insertion) {
+      args.add(query.getAlternateBases());
+      args.add(prefixUpperBound(query.getAlternateBases()));
+    } else if (filters.alternate) {
+      args.add(query.getAlternateBases());
+    }
+    args.add(StringUtils.lowerCase(referenceGenome));
+    args.add(StoredProcedureUtils.joinArrayOfInteger(datasetIds));
+    return args;
+  }
+
+  /**
+   * First string after all the strings starting with {@code prefix}, in byte order (the collation
+   * of {@code inserted_sequence}). Bases are ASCII, so the last character is never the greatest.
+   */
+  static String prefixUpperBound(String prefix) {
+    int last = prefix.length() - 1;
+    return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+  }
+
+  private static int getInt(ResultSet rs, String column) throws SQLException {
+    int value = rs.getInt(column);
+    return rs.wasNull() ? DatasetSummaryAccumulator.NULL_VALUE : value;
+  }
+
+  private static BigInteger getBigInteger(ResultSet rs, String column) throws SQLException {
+    long value = rs.getLong(column);
+    return rs.wasNull() ? null : BigInteger.valueOf(value);
+  }
+
+  /**
+   * Optional filters of the query, each of them changes the text of the statement.
+   */
+  private static class Filters {
+
+    private final boolean type;
+
+    private final boolean reference;
+
+    private final boolean insertion;
+
+    private final boolean alternate;
+
+    // A single allele at a single position, see VariantKey
+    private final boolean key;
+
+    Filters(IndexQuery query) {
+      this.type = query.getVariantType() != null;
+      this.reference = query.getReferenceBases() != null;
+      this.insertion = query.isInsertedBases();
+      this.alternate = query.getAlternateBases() != null && !query.isAnyAlternate();
+      this.key = query.getStart() != null && reference && alternate && !insertion;
+    }
+
+    String key() {
+      return (type ? "|type" : "") + (reference ? "|ref" : "") + (insertion ? "|ins" : "")
+          + (alternate ? "|alt" : "") + (key ? "|key" : "");
+    }
+  }
+
+}
@@ -0,0 +1,18 @@
+package org.ega_archive.elixirbeacon.service;
+
+import org.ega_archive.elixirbeacon.registry.DatasetRegistry;
+
+public interface DatasetRegistryService {
+
+  /**
+   * Returns the current snapshot, loading it the first time it is requested.
+   */
+  DatasetRegistry getRegistry();
+
+  /**
+   * Reloads the datasets, consent codes and handovers and replaces the current snapshot. It is
+   * called when the data version changes, and on demand with {@code PUT /datasets/registry}.
+   */
+  DatasetRegistry refresh();
+
+}
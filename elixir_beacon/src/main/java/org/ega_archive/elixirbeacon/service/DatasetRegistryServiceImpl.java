@@ -0,0 +1,81 @@
+package org.ega_archive.elixirbeacon.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCode;
+import org.ega_archive.elixirbeacon.properties.HandoverConfig;
+import org.ega_archive.elixirbeacon.registry.DatasetRegistry;
+import org.ega_archive.elixirbeacon.repository.elixirbeacon.BeaconDatasetConsentCodeRepository;
+import org.ega_archive.elixirbeacon.repository.elixirbeacon.BeaconDatasetRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Slf4j
+@Service
+public class DatasetRegistryServiceImpl implements DatasetRegistryService {
+
+  @Autowired
+  private BeaconDatasetRepository beaconDatasetRepository;
+
+  @Autowired
+  private BeaconDatasetConsentCodeRepository beaconDatasetConsentCodeRepository;
+
+  @Autowired
+  private HandoverConfig handoverConfig;
+
+  @Autowired
+  private DataVersionMonitor dataVersionMonitor;
+
+  @Autowired
+  @Qualifier("elixirbeaconTransactionManager")
+  private PlatformTransactionManager transactionManager;
+
+  private final AtomicLong versions = new AtomicLong();
+
+  private volatile DatasetRegistry registry;
+
+  @PostConstruct
+  public void init() {
+    // The loader may have added datasets or changed their counts
+    dataVersionMonitor.addListener(version -> refresh());
+  }
+
+  @Override
+  public DatasetRegistry getRegistry() {
+    DatasetRegistry current = registry;
+    if (current == null) {
+      synchronized (this) {
+        current = registry;
+        if (current == null) {
+          current = refresh();
+        }
+      }
+    }
+    return current;
+  }
+
+  @Override
+  public synchronized DatasetRegistry refresh() {
+    // On the primary: a replica may not have replayed the load that changed the version yet
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    DatasetRegistry loaded = transaction.execute(status -> {
+      List<BeaconDataset> datasets = beaconDatasetRepository.findAll();
+      List<BeaconDatasetConsentCode> consentCodes = beaconDatasetConsentCodeRepository.findAll();
+      DatasetRegistry built = new DatasetRegistry(versions.incrementAndGet(), datasets,
+          consentCodes, handoverConfig.getDatasetHandover());
+      log.info("Dataset registry loaded: version={}, datasets={}, consent codes={}",
+          built.getVersion(), datasets.size(), consentCodes.size());
+      return built;
+    });
+    registry = loaded;
+    return loaded;
+  }
+
+}
@@ -25,6 +25,18 @@ public interface ElixirBeaconService {
    */
   Beacon listDatasets(CommonQuery commonQuery, String referenceGenome) throws NotFoundException;
 
+  /**
+   * Strong entity tag of the response of {@link #listDatasets(CommonQuery, String)} for the
+   * current user. It only changes when the data version or the datasets change, when the
+   * authorization level of the user changes or when other datasets or another page are requested.
+   * The database is not queried.
+   * 
+   * @param commonQuery
+   * @param referenceGenome
+   * @return
+   */
+  String getDatasetsEtag(CommonQuery commonQuery, String referenceGenome);
+
   /**
    * Executes the query against the beacon and basically answers yes or no.
    * 
@@ -69,4 +81,17 @@ public interface ElixirBeaconService {
 
   BeaconAlleleResponse queryBeacon(BeaconRequest request);
 
+  /**
+   * Executes several queries at once. Each request is validated like in
+   * {@link #queryBeacon(BeaconRequest)} and the valid ones are grouped by assembly and chromosome
+   * and resolved together. A request that is not valid, or asks for datasets that do not exist or
+   * can not be accessed, gets the error in its response and does not fail the others.
+   * 
+   * @param requests
+   * @return one response per request, in the same order
+   * @throws IllegalArgumentException if there are more than
+   *         {@code elixirbeacon.query.batch.max.size} requests
+   */
+  List<BeaconAlleleResponse> queryBeaconBatch(List<BeaconRequest> requests);
+
 }
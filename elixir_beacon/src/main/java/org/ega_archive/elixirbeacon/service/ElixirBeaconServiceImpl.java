@@ -1,12 +1,18 @@
 package org.ega_archive.elixirbeacon.service;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javassist.NotFoundException;
@@ -14,6 +20,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.ega_archive.elixirbeacon.cache.QueryResultCache;
 import org.ega_archive.elixirbeacon.constant.BeaconConstants;
 import org.ega_archive.elixirbeacon.convert.Operations;
 import org.ega_archive.elixirbeacon.dto.Beacon;
@@ -23,24 +31,25 @@ import org.ega_archive.elixirbeacon.dto.BeaconRequest;
 import org.ega_archive.elixirbeacon.dto.Dataset;
 import org.ega_archive.elixirbeacon.dto.DatasetAlleleResponse;
 import org.ega_archive.elixirbeacon.dto.Error;
-import org.ega_archive.elixirbeacon.dto.Handover;
-import org.ega_archive.elixirbeacon.dto.HandoverType;
 import org.ega_archive.elixirbeacon.enums.ErrorCode;
 import org.ega_archive.elixirbeacon.enums.FilterDatasetResponse;
 import org.ega_archive.elixirbeacon.enums.VariantType;
+import org.ega_archive.elixirbeacon.index.AlleleFilter;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
 import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
 import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
 import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCode;
-import org.ega_archive.elixirbeacon.properties.HandoverConfig;
 import org.ega_archive.elixirbeacon.properties.SampleRequests;
-import org.ega_archive.elixirbeacon.repository.elixirbeacon.BeaconDatasetConsentCodeRepository;
-import org.ega_archive.elixirbeacon.repository.elixirbeacon.BeaconDatasetRepository;
-import org.ega_archive.elixirbeacon.repository.elixirbeacon.BeaconSummaryDataRepository;
+import org.ega_archive.elixirbeacon.registry.DatasetRegistry;
+import org.ega_archive.elixirbeacon.store.VariantStores;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException;
 import org.ega_archive.elixircore.enums.DatasetAccessType;
+import org.ega_archive.elixircore.exception.PreConditionFailed;
+import org.ega_archive.elixircore.exception.UnauthorizedException;
 import org.ega_archive.elixircore.helper.CommonQuery;
-import org.ega_archive.elixircore.util.StoredProcedureUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
@@ -54,19 +63,27 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
   private SampleRequests sampleRequests;
 
   @Autowired
-  private HandoverConfig handoverConfig;
+  private VariantStores variantStores;
 
   @Autowired
-  private BeaconDatasetRepository beaconDatasetRepository;
-  
+  private DatasetRegistryService datasetRegistryService;
+
+  @Autowired
+  private AuthService authService;
+
   @Autowired
-  private BeaconSummaryDataRepository beaconDataRepository;
-  
+  private AlleleFilter alleleFilter;
+
   @Autowired
-  private BeaconDatasetConsentCodeRepository beaconDatasetConsentCodeRepository;
+  private QueryResultCache queryResultCache;
 
   @Autowired
-  private AuthService authService;
+  private DataVersionMonitor dataVersionMonitor;
+
+  @Value("${elixirbeacon.query.batch.max.size:100}")
+  private int maxBatchSize;
+
+  private volatile List<BeaconAlleleRequest> sampleAlleleRequests;
 
   @Override
   public Beacon listDatasets(CommonQuery commonQuery, String referenceGenome)
@@ -82,20 +99,19 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
     }
 
     commonQuery.setSort(new Sort(new Order(Direction.ASC, "id")));
+    DatasetRegistry registry = datasetRegistryService.getRegistry();
 
     List<Dataset> convertedDatasets = new ArrayList<>();
-    Page<BeaconDataset> allDatasets = null;
+    List<BeaconDataset> allDatasets = null;
 
     if (StringUtils.isNotBlank(referenceGenome)) {
-      referenceGenome = StringUtils.lowerCase(referenceGenome);
-      allDatasets =
-          beaconDatasetRepository.findByReferenceGenome(referenceGenome, commonQuery.getPageable());
+      allDatasets = registry.findByReferenceGenome(referenceGenome);
     } else {
-      allDatasets = beaconDatasetRepository.findAll(commonQuery);
+      allDatasets = registry.getDatasets();
     }
 
     BigInteger size = BigInteger.valueOf(0L);
-    for (BeaconDataset dataset : allDatasets) {
+    for (BeaconDataset dataset : page(allDatasets, commonQuery)) {
       DatasetAccessType accessType = DatasetAccessType.parse(dataset.getAccessType());
       boolean authorized = false;
       if (accessType == DatasetAccessType.PUBLIC
@@ -104,7 +120,7 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
         authorized = true;
       }
       List<BeaconDatasetConsentCode> ccDataUseConditions =
-          beaconDatasetConsentCodeRepository.findByDatasetId(dataset.getId());
+          registry.getConsentCodes(dataset.getId());
 
       convertedDatasets.add(Operations.convert(dataset, authorized, ccDataUseConditions));
 
@@ -121,7 +137,77 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
     return response;
   }
 
+  @Override
+  public String getDatasetsEtag(CommonQuery commonQuery, String referenceGenome) {
+    String authorizationHeader = authService.getAuthorizationHeader();
+    boolean isAuthenticated = StringUtils.isNotBlank(authorizationHeader);
+    List<String> authorizedDatasets = isAuthenticated
+        ? authService.findAuthorizedDatasets(authorizationHeader) : new ArrayList<>();
+
+    Hasher hasher = Hashing.sha256().newHasher()
+        // A load changes the counts of the datasets, even before the registry is reloaded
+        .putLong(dataVersionMonitor.getVersion())
+        .putString(datasetRegistryService.getRegistry().getContentHash(), StandardCharsets.UTF_8)
+        .putString(getSampleAlleleRequests().toString(), StandardCharsets.UTF_8)
+        .putString(StringUtils.lowerCase(StringUtils.defaultString(referenceGenome)),
+            StandardCharsets.UTF_8)
+        .putString(commonQuery.getSkip() + "|" + commonQuery.getLimit() + "|"
+            + StringUtils.defaultString(commonQuery.getAfter()), StandardCharsets.UTF_8)
+        // Authorization level
+        .putBoolean(isAuthenticated);
+    for (String stableId : new TreeSet<>(authorizedDatasets)) {
+      hasher.putString(stableId, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * The datasets are sorted by id, so {@code after} is a keyset cursor: the page starts with the
+   * first dataset whose id is greater, and {@code skip} is ignored.
+   */
+  private static List<BeaconDataset> page(List<BeaconDataset> datasets, CommonQuery commonQuery) {
+    if (commonQuery.getAfter() == null) {
+      return page(datasets, commonQuery.getPageable());
+    }
+    int after;
+    try {
+      after = Integer.parseInt(commonQuery.getAfter());
+    } catch (NumberFormatException e) {
+      throw new PreConditionFailed("Invalid value of parameter 'after': "
+          + commonQuery.getAfter());
+    }
+    int from = 0;
+    int to = datasets.size();
+    while (from < to) {
+      int middle = (from + to) >>> 1;
+      if (datasets.get(middle).getId() <= after) {
+        from = middle + 1;
+      } else {
+        to = middle;
+      }
+    }
+    int limit = commonQuery.getLimit();
+    to = limit == 0 ? datasets.size() : (int) Math.min(datasets.size(), (long) from + limit);
+    return datasets.subList(from, to);
+  }
+
+  private static <T> List<T> page(List<T> list, Pageable pageable) {
+    int from = (int) Math.min(list.size(), (long) pageable.getPageNumber() * pageable.getPageSize());
+    int to = (int) Math.min(list.size(), (long) from + pageable.getPageSize());
+    return list.subList(from, to);
+  }
+
   private List<BeaconAlleleRequest> getSampleAlleleRequests() {
+    // They only depend on the configuration
+    List<BeaconAlleleRequest> sampleAlleleRequests = this.sampleAlleleRequests;
+    if (sampleAlleleRequests == null) {
+      sampleAlleleRequests = Collections.unmodifiableList(buildSampleAlleleRequests());
+      this.sampleAlleleRequests = sampleAlleleRequests;
+    }
+    return sampleAlleleRequests;
+  }
+
+  private List<BeaconAlleleRequest> buildSampleAlleleRequests() {
     List<BeaconAlleleRequest> sampleAlleleRequests = new ArrayList<BeaconAlleleRequest>();
     sampleAlleleRequests.add(BeaconAlleleRequest.builder()
         .assemblyId(sampleRequests.getAssemblyId1())
@@ -172,7 +258,140 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
       String mateName, String referenceGenome, String includeDatasetResponses) {
 
     BeaconAlleleResponse result = new BeaconAlleleResponse();
-    
+
+    List<Integer> datasetIds = prepareQuery(result, datasetStableIds, variantType, alternateBases,
+        referenceBases, chromosome, start, startMin, startMax, end, endMin, endMax, mateName,
+        referenceGenome, includeDatasetResponses);
+
+    boolean globalExists = false;
+    if (result.getError() == null) {
+      VariantType type = VariantType.parse(variantType);
+      BeaconAlleleRequest request = result.getAlleleRequest();
+      try {
+        globalExists = queryDatabase(datasetIds, type, request.getReferenceBases(),
+            request.getAlternateBases(), chromosome, start, startMin, startMax, end, endMin,
+            endMax, referenceGenome, result);
+      } catch (QueryCancelledException e) {
+        result.setError(buildCancelledError(e));
+      }
+    }
+    result.setExists(globalExists);
+    return result;
+  }
+
+  @Override
+  public List<BeaconAlleleResponse> queryBeaconBatch(List<BeaconRequest> requests) {
+
+    List<BeaconAlleleResponse> results = new ArrayList<>(requests.size());
+    List<List<Integer>> datasetIds = new ArrayList<>(requests.size());
+    // Key: assembly + chromosome, value: positions of the valid requests in the input list
+    Map<String, List<Integer>> groups = new LinkedHashMap<>();
+
+    if (requests.size() > maxBatchSize) {
+      throw new IllegalArgumentException(
+          "A batch cannot have more than " + maxBatchSize + " requests");
+    }
+
+    for (int i = 0; i < requests.size(); i++) {
+      BeaconRequest request = requests.get(i);
+      BeaconAlleleResponse result = new BeaconAlleleResponse();
+      // What a single query would fail with only fails this request
+      List<Integer> ids;
+      try {
+        ids = prepareQuery(result, request.getDatasetIds(), request.getVariantType(),
+            request.getAlternateBases(), request.getReferenceBases(), request.getReferenceName(),
+            request.getStart(), request.getStartMin(), request.getStartMax(), request.getEnd(),
+            request.getEndMin(), request.getEndMax(), request.getMateName(),
+            request.getAssemblyId(), request.getIncludeDatasetResponses());
+      } catch (org.ega_archive.elixircore.exception.NotFoundException e) {
+        ids = null;
+        result.setError(buildError(ErrorCode.NOT_FOUND, e));
+      } catch (UnauthorizedException e) {
+        ids = null;
+        result.setError(buildError(ErrorCode.UNAUTHORIZED, e));
+      } catch (PreConditionFailed | NotImplementedException e) {
+        ids = null;
+        result.setError(buildError(ErrorCode.GENERIC_ERROR, e));
+      }
+      datasetIds.add(ids);
+      result.setExists(false);
+      results.add(result);
+
+      if (result.getError() == null) {
+        String key = StringUtils.lowerCase(request.getAssemblyId()) + ":"
+            + request.getReferenceName();
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+      }
+    }
+
+    for (List<Integer> group : groups.values()) {
+      BeaconAlleleRequest first = results.get(group.get(0)).getAlleleRequest();
+      List<IndexQuery> queries = new ArrayList<>(group.size());
+      List<QueryResultCache.Key> keys = new ArrayList<>(group.size());
+      for (Integer position : group) {
+        IndexQuery query = toIndexQuery(results.get(position).getAlleleRequest(),
+            datasetIds.get(position));
+        queries.add(query);
+        keys.add(QueryResultCache.Key.of(first.getReferenceName(), first.getAssemblyId(), query));
+      }
+
+      List<List<BeaconDataSummary>> dataLists;
+      try {
+        dataLists = queryResultCache.searchAll(keys, missing -> searchCandidates(
+            first.getReferenceName(), first.getAssemblyId(),
+            missing.stream().map(queries::get).collect(Collectors.toList())));
+      } catch (QueryCancelledException e) {
+        // The other groups can still be answered
+        for (Integer position : group) {
+          results.get(position).setError(buildCancelledError(e));
+        }
+        continue;
+      }
+      for (int i = 0; i < group.size(); i++) {
+        BeaconAlleleResponse result = results.get(group.get(i));
+        result.setExists(addDatasetResponses(datasetIds.get(group.get(i)), dataLists.get(i),
+            result));
+      }
+    }
+    return results;
+  }
+
+  private static Error buildCancelledError(QueryCancelledException e) {
+    return buildError(ErrorCode.TIMEOUT, e);
+  }
+
+  private static Error buildError(ErrorCode errorCode, RuntimeException e) {
+    String message = e.getMessage();
+    if (e instanceof org.ega_archive.elixircore.exception.NotFoundException) {
+      String resourceId = ((org.ega_archive.elixircore.exception.NotFoundException) e)
+          .getResourceId();
+      if (StringUtils.isNotBlank(resourceId)) {
+        message += ": " + resourceId;
+      }
+    }
+    return Error.builder()
+        .errorCode(errorCode)
+        .message(message)
+        .build();
+  }
+
+  private static IndexQuery toIndexQuery(BeaconAlleleRequest request, List<Integer> datasetIds) {
+    VariantType type = VariantType.parse(request.getVariantType());
+    return IndexQuery.of(type != null ? type.getType() : null, request.getStart(),
+        request.getStartMin(), request.getStartMax(), request.getEnd(), request.getEndMin(),
+        request.getEndMax(), request.getReferenceBases(), request.getAlternateBases(),
+        datasetIds);
+  }
+
+  /**
+   * Sets the normalized request in {@code result} and validates it. If it is not valid the error
+   * is set in {@code result}.
+   */
+  private List<Integer> prepareQuery(BeaconAlleleResponse result, List<String> datasetStableIds,
+      String variantType, String alternateBases, String referenceBases, String chromosome,
+      Integer start, Integer startMin, Integer startMax, Integer end, Integer endMin,
+      Integer endMax, String mateName, String referenceGenome, String includeDatasetResponses) {
+
     alternateBases = StringUtils.upperCase(alternateBases);
     referenceBases = StringUtils.upperCase(referenceBases);
     
@@ -196,17 +415,8 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
     
     VariantType type = VariantType.parse(variantType);
 
-    List<Integer> datasetIds =
-        checkParams(result, datasetStableIds, type, alternateBases, referenceBases, chromosome,
-            start, startMin, startMax, end, endMin, endMax, mateName, referenceGenome);
-
-    boolean globalExists = false;
-    if (result.getError() == null) {
-      globalExists = queryDatabase(datasetIds, type, referenceBases, alternateBases, chromosome,
-          start, startMin, startMax, end, endMin, endMax, referenceGenome, result);
-    }
-    result.setExists(globalExists);
-    return result;
+    return checkParams(result, datasetStableIds, type, alternateBases, referenceBases, chromosome,
+        start, startMin, startMax, end, endMin, endMax, mateName, referenceGenome);
   }
 
   @Override
@@ -252,8 +462,9 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
           .message("Either 'alternateBases' or 'variantType' is required")
           .build();
       result.setError(error);
-    } else if (type != null && StringUtils.isNotBlank(alternateBases)
+    } else if (type != null && type != VariantType.INS && StringUtils.isNotBlank(alternateBases)
         && !StringUtils.equalsIgnoreCase(alternateBases, "N")) {
+      // Insertions may give the bases that are inserted after the reference
       Error error = Error.builder().errorCode(ErrorCode.GENERIC_ERROR)
           .message(
               "If 'variantType' is provided then 'alternateBases' must be empty or equal to 'N'")
@@ -348,12 +559,39 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
     return datasetIds;
   }
 
+  /**
+   * Runs the queries of one chromosome together, only with the datasets that might have the
+   * allele. The results are in the order of the queries.
+   */
+  private List<List<BeaconDataSummary>> searchCandidates(String chromosome,
+      String referenceGenome, List<IndexQuery> queries) {
+
+    List<List<BeaconDataSummary>> result =
+        new ArrayList<>(Collections.nCopies(queries.size(), Collections.emptyList()));
+    List<Integer> queried = new ArrayList<>(queries.size());
+    List<IndexQuery> candidates = new ArrayList<>(queries.size());
+    for (int i = 0; i < queries.size(); i++) {
+      List<Integer> candidateDatasetIds =
+          alleleFilter.filterDatasets(chromosome, queries.get(i));
+      if (!candidateDatasetIds.isEmpty()) {
+        queried.add(i);
+        candidates.add(queries.get(i).withDatasetIds(candidateDatasetIds));
+      }
+    }
+    if (!candidates.isEmpty()) {
+      List<List<BeaconDataSummary>> found =
+          variantStores.getStore().search(chromosome, referenceGenome, candidates);
+      for (int i = 0; i < queried.size(); i++) {
+        result.set(queried.get(i), found.get(i));
+      }
+    }
+    return result;
+  }
+
   private boolean queryDatabase(List<Integer> datasetIds, VariantType type, String referenceBases,
       String alternateBases, String chromosome, Integer start, Integer startMin, Integer startMax,
       Integer end, Integer endMin, Integer endMax, String referenceGenome, BeaconAlleleResponse result) {
 
-    long numResults = 0L;
-    boolean globalExists = false;
     String variantType = type != null ? type.getType() : null;
     log.debug(
         "Calling query with params: variantType={}, start={}, startMin={}, startMax={}, end={}, "
@@ -361,25 +599,55 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
             + "datasetIds={}", variantType, start, startMin, startMax, end, endMin, endMax,
         chromosome, referenceBases, alternateBases, referenceGenome, datasetIds);
 
-    List<BeaconDataSummary> dataList = beaconDataRepository
-        .searchForVariantsQuery(variantType, start,
-            startMin, startMax, end, endMin, endMax, chromosome, referenceBases, alternateBases,
-            referenceGenome, StoredProcedureUtils.joinArrayOfInteger(datasetIds));
-    numResults = dataList.size();
-    globalExists = numResults > 0;
+    IndexQuery query = IndexQuery.of(variantType, start, startMin, startMax, end, endMin, endMax,
+        referenceBases, alternateBases, datasetIds);
+    QueryResultCache.Key key = QueryResultCache.Key.of(chromosome, referenceGenome, query);
+
+    if (!result.getAlleleRequest().getIncludeDatasetResponses().isIncludeDatasets()) {
+      // Only 'exists' is returned: stop at the first matching variant, nothing to aggregate
+      return queryResultCache.exists(key, () -> {
+        List<Integer> candidateDatasetIds = alleleFilter.filterDatasets(chromosome, query);
+        return !candidateDatasetIds.isEmpty() && variantStores.getStore().exists(chromosome,
+            referenceGenome, query.withDatasetIds(candidateDatasetIds));
+      });
+    }
+
+    List<BeaconDataSummary> dataList = queryResultCache.search(key, () -> {
+      List<Integer> candidateDatasetIds = alleleFilter.filterDatasets(chromosome, query);
+      if (candidateDatasetIds.isEmpty()) {
+        // None of the datasets has the allele
+        return Collections.emptyList();
+      }
+      return variantStores.getStore().search(chromosome, referenceGenome,
+          query.withDatasetIds(candidateDatasetIds));
+    });
+    return addDatasetResponses(datasetIds, dataList, result);
+  }
+
+  /**
+   * Adds the dataset responses requested by {@code includeDatasetResponses} and returns whether
+   * any of the datasets has the variant.
+   */
+  private boolean addDatasetResponses(List<Integer> datasetIds, List<BeaconDataSummary> dataList,
+      BeaconAlleleResponse result) {
+
+    boolean globalExists = !dataList.isEmpty();
+
+    DatasetRegistry registry = datasetRegistryService.getRegistry();
 
     for (BeaconDataSummary data : dataList) {
       if (result.getAlleleRequest().getIncludeDatasetResponses() == FilterDatasetResponse.ALL
           || result.getAlleleRequest().getIncludeDatasetResponses() == FilterDatasetResponse.HIT) {
         DatasetAlleleResponse datasetResponse = new DatasetAlleleResponse();
-        BeaconDataset dataset = beaconDatasetRepository.findOne(data.getDatasetId());
+        BeaconDataset dataset = registry.findById(data.getDatasetId());
         datasetResponse.setDatasetId(dataset.getStableId());
         datasetResponse.setExists(true);
         datasetResponse.setFrequency(data.getFrequency());
         datasetResponse.setVariantCount(data.getVariantCnt());
         datasetResponse.setCallCount(data.getCallCnt());
         datasetResponse.setSampleCount(data.getSampleCnt());
-        datasetResponse.setDatasetHandover(addDatasetHandovers(dataset.getStableId()));
+        datasetResponse.setDatasetHandover(registry.getHandovers(dataset.getStableId()));
+        datasetResponse.setFragment(registry.getFragment(dataset.getId()));
         result.addDatasetAlleleResponse(datasetResponse);
       }
     }
@@ -398,34 +666,17 @@ public class ElixirBeaconServiceImpl implements ElixirBeaconService {
         || result.getAlleleRequest().getIncludeDatasetResponses() == FilterDatasetResponse.ALL)) {
       for (Integer datasetId : missingDatasets) {
         DatasetAlleleResponse datasetResponse = new DatasetAlleleResponse();
-        BeaconDataset dataset = beaconDatasetRepository.findOne(datasetId);
+        BeaconDataset dataset = registry.findById(datasetId);
         datasetResponse.setDatasetId(dataset.getStableId());
         datasetResponse.setExists(false);
-        datasetResponse.setDatasetHandover(addDatasetHandovers(dataset.getStableId()));
+        datasetResponse.setDatasetHandover(registry.getHandovers(dataset.getStableId()));
+        datasetResponse.setFragment(registry.getFragment(dataset.getId()));
         result.addDatasetAlleleResponse(datasetResponse);
       }
     }
     return globalExists;
   }
 
-  private List<Handover> addDatasetHandovers(String stableId) {
-    List<Handover> datasetHandovers = new ArrayList<>();
-
-    handoverConfig.getDatasetHandover().stream()
-        .filter(p -> StringUtils.equalsIgnoreCase(p.getStableId(), stableId))
-        .forEach(prop -> {
-          Handover handover = new Handover();
-          HandoverType handoverType = new HandoverType();
-          handoverType.setId(prop.getId());
-          handoverType.setLabel(prop.getLabel());
-          handover.setHandoverType(handoverType);
-          handover.setUrl(prop.getUrl());
-          handover.setNote(prop.getNote());
-          datasetHandovers.add(handover);
-        });
-    return datasetHandovers;
-  }
-
   @Override
   public BeaconAlleleResponse queryBeacon(BeaconRequest request) {
 
@@ -0,0 +1,16 @@
+package org.ega_archive.elixirbeacon.service;
+
+import java.util.List;
+
+public interface UserInfoService {
+
+  /**
+   * Returns the stable ids of the datasets listed in the {@code ControlledAccessGrants} of the
+   * ELIXIR userinfo response for this token. The answer is cached until the token expires.
+   *
+   * @param authorizationHeader value of the {@code Authorization} header
+   * @return
+   */
+  List<String> findGrantedDatasets(String authorizationHeader);
+
+}
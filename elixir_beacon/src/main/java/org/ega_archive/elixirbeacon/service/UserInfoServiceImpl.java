@@ -0,0 +1,222 @@
+package org.ega_archive.elixirbeacon.service;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.ega_archive.elixircore.exception.RestRuntimeException;
+import org.ega_archive.elixircore.exception.ServiceUnavailableException;
+import org.ega_archive.elixircore.exception.UnauthorizedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Calls the ELIXIR userinfo endpoint and caches the granted datasets by the SHA-256 of the token,
+ * so the token itself is never kept in memory.
+ * <p>
+ * An entry lives until the token expires (the {@code exp} claim if the token is a JWT) but never
+ * longer than {@code elixir.userinfo.cache.ttl} seconds. Concurrent requests with the same token
+ * wait for a single call to the endpoint. Errors are not cached.
+ */
+@Slf4j
+@Service
+public class UserInfoServiceImpl implements UserInfoService {
+
+  private static final String AUTHORIZATION = "Authorization";
+
+  private static final String CACHE_HIT_METRIC = "beacon.userinfo.cache.hit";
+
+  private static final String CACHE_MISS_METRIC = "beacon.userinfo.cache.miss";
+
+  // Jackson is not used to read the response: jackson-databind and jackson-core have different
+  // versions in this module and reading JSON fails with NoClassDefFoundError
+  private static final Gson GSON = new Gson();
+
+  @Value("${elixir.userinfo.url}")
+  private String userInfoUrl;
+
+  @Value("${elixir.userinfo.cache.size:10000}")
+  private long cacheSize;
+
+  // Seconds
+  @Value("${elixir.userinfo.cache.ttl:300}")
+  private long cacheTtl;
+
+  @Value("${elixir.userinfo.pool.size:20}")
+  private int poolSize;
+
+  // Milliseconds
+  @Value("${elixir.userinfo.timeout:5000}")
+  private int timeout;
+
+  @Autowired
+  private CounterService counterService;
+
+  private CloseableHttpClient httpClient;
+
+  private RestTemplate restTemplate;
+
+  // Key: SHA-256 of the Authorization header
+  private Cache<String, Grants> cache;
+
+  @PostConstruct
+  public void init() {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(poolSize);
+    connectionManager.setDefaultMaxPerRoute(poolSize);
+    httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .build();
+
+    HttpComponentsClientHttpRequestFactory requestFactory =
+        new HttpComponentsClientHttpRequestFactory(httpClient);
+    requestFactory.setConnectTimeout(timeout);
+    requestFactory.setReadTimeout(timeout);
+    // The response is read as a String, no need for the default converters
+    restTemplate = new RestTemplate(
+        Collections.singletonList(new StringHttpMessageConverter(StandardCharsets.UTF_8)));
+    restTemplate.setRequestFactory(requestFactory);
+
+    cache = CacheBuilder.newBuilder()
+        .maximumSize(cacheSize)
+        .expireAfterWrite(cacheTtl, TimeUnit.SECONDS)
+        .build();
+  }
+
+  @PreDestroy
+  public void destroy() throws IOException {
+    httpClient.close();
+  }
+
+  @Override
+  public List<String> findGrantedDatasets(String authorizationHeader) {
+    String key = Hashing.sha256().hashString(authorizationHeader, StandardCharsets.UTF_8)
+        .toString();
+
+    Grants grants = cache.getIfPresent(key);
+    if (grants != null && grants.isExpired()) {
+      cache.invalidate(key);
+    }
+
+    AtomicBoolean loaded = new AtomicBoolean();
+    try {
+      grants = cache.get(key, () -> {
+        loaded.set(true);
+        return new Grants(callUserInfo(authorizationHeader), expiresAt(authorizationHeader));
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+    counterService.increment(loaded.get() ? CACHE_MISS_METRIC : CACHE_HIT_METRIC);
+    return grants.datasetStableIds;
+  }
+
+  private List<String> callUserInfo(String authorizationHeader) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add(AUTHORIZATION, authorizationHeader);
+
+    try {
+      ResponseEntity<String> response = restTemplate.exchange(userInfoUrl, HttpMethod.GET,
+          new HttpEntity<>(null, headers), String.class);
+
+      // Parse the response
+      JsonObject result = GSON.fromJson(response.getBody(), JsonObject.class);
+      JsonArray controlledAccessGrants = result.getAsJsonObject("ga4gh")
+          .getAsJsonArray("ControlledAccessGrants");
+      List<String> datasetStableIds = new ArrayList<>(controlledAccessGrants.size());
+      for (JsonElement entry : controlledAccessGrants) {
+        datasetStableIds.add(entry.getAsJsonObject().get("value").getAsString()
+            .replaceFirst("https://www.ebi.ac.uk/ega/", ""));
+      }
+      return Collections.unmodifiableList(datasetStableIds);
+
+    } catch(HttpServerErrorException e) {
+      log.error("Service unavailable: {}", e);
+      throw new ServiceUnavailableException("Service unavailable");
+    } catch(HttpClientErrorException e) {
+      String msg = "Token is not valid or user is not authorized to access this dataset";
+      log.error(msg + ": {}", e);
+      throw new UnauthorizedException(msg);
+    } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+      String msg = "Unexpected exception: ";
+      log.error(msg + "{}", e);
+      throw new RestRuntimeException("500", msg + e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * Returns when the cached grants must be discarded: the expiration of the token if it can be
+   * read from it, otherwise the maximum TTL of the cache.
+   */
+  private long expiresAt(String authorizationHeader) {
+    long maxExpiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cacheTtl);
+
+    // Bearer header.payload.signature
+    String[] parts = StringUtils.split(StringUtils.substringAfterLast(authorizationHeader, " "),
+        '.');
+    if (parts == null || parts.length != 3) {
+      return maxExpiresAt;
+    }
+    try {
+      String payload = new String(Base64.getUrlDecoder().decode(parts[1]),
+          StandardCharsets.UTF_8);
+      JsonElement exp = GSON.fromJson(payload, JsonObject.class).get("exp");
+      if (exp != null && exp.isJsonPrimitive() && exp.getAsJsonPrimitive().isNumber()) {
+        return Math.min(maxExpiresAt, TimeUnit.SECONDS.toMillis(exp.getAsLong()));
+      }
+    } catch (JsonParseException | IllegalArgumentException e) {
+      log.debug("Token is not a JWT, using the default expiration: {}", e.getMessage());
+    }
+    return maxExpiresAt;
+  }
+
+  private static class Grants {
+
+    private final List<String> datasetStableIds;
+
+    private final long expiresAt;
+
+    Grants(List<String> datasetStableIds, long expiresAt) {
+      this.datasetStableIds = datasetStableIds;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package org.ega_archive.elixirbeacon.store;
+
+import java.util.List;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixirbeacon.repository.elixirbeacon.BeaconSummaryDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default engine: {@code beacon_data_table} in PostgreSQL.
+ */
+@Component
+public class DatabaseVariantStore implements VariantStore {
+
+  public static final String NAME = "database";
+
+  @Autowired
+  private BeaconSummaryDataRepository beaconDataRepository;
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+
+  @Override
+  public List<BeaconDataSummary> search(String chromosome, String referenceGenome,
+      IndexQuery query) {
+
+    return beaconDataRepository.searchForVariants(chromosome, referenceGenome, query);
+  }
+
+  @Override
+  public List<List<BeaconDataSummary>> search(String chromosome, String referenceGenome,
+      List<IndexQuery> queries) {
+
+    return beaconDataRepository.searchForVariantsBatch(chromosome, referenceGenome, queries);
+  }
+
+  @Override
+  public boolean exists(String chromosome, String referenceGenome, IndexQuery query) {
+    return beaconDataRepository.existsVariant(chromosome, referenceGenome, query);
+  }
+
+}
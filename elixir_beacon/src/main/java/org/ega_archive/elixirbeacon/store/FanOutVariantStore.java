@@ -0,0 +1,294 @@
+package org.ega_archive.elixirbeacon.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.ega_archive.elixirbeacon.cache.QueryResultCache;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException.Reason;
+import org.ega_archive.elixirbeacon.watchdog.QueryWatchdog;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code beacon_data_table} queried by shards of datasets at the same time: users authorized to
+ * see many datasets would otherwise wait for a single backend to scan all of them.
+ * <p>
+ * The datasets of a query are split in shards of
+ * {@code elixirbeacon.variant.store.fanout.shard.size} datasets. Every shard is a query of the
+ * {@link DatabaseVariantStore}, with its own transaction and connection, run by a pool of
+ * {@code elixirbeacon.variant.store.fanout.threads} threads that is shared by all the requests
+ * (the connection pool must be at least as big). A summary only depends on the variants of its
+ * dataset, so the summaries of the shards are simply put together.
+ * <p>
+ * The whole query fails with a {@link QueryCancelledException} if it does not finish in
+ * {@code elixirbeacon.variant.store.fanout.timeout} milliseconds. Every shard keeps its own
+ * deadline in the {@link QueryWatchdog} too.
+ */
+@Slf4j
+@Component
+public class FanOutVariantStore implements VariantStore, DisposableBean {
+
+  public static final String NAME = "fanout";
+
+  private static final Comparator<BeaconDataSummary> BY_DATASET =
+      Comparator.comparing(BeaconDataSummary::getDatasetId);
+
+  @Value("${elixirbeacon.variant.store.fanout.threads:4}")
+  private int threads;
+
+  @Value("${elixirbeacon.variant.store.fanout.shard.size:1}")
+  private int shardSize;
+
+  // Milliseconds, no deadline if it is not positive
+  @Value("${elixirbeacon.variant.store.fanout.timeout:30000}")
+  private long timeout;
+
+  @Autowired
+  private DatabaseVariantStore databaseStore;
+
+  @Autowired
+  private QueryWatchdog queryWatchdog;
+
+  @Autowired
+  private QueryResultCache queryResultCache;
+
+  @Autowired
+  private CounterService counterService;
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  public void init() {
+    AtomicInteger count = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(Math.max(threads, 1), runnable -> {
+      Thread thread = new Thread(runnable, "variant-store-fanout-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+
+  @Override
+  public List<BeaconDataSummary> search(String chromosome, String referenceGenome,
+      IndexQuery query) {
+
+    List<List<Integer>> shards = shard(query.getDatasetIds());
+    if (shards.size() <= 1) {
+      return databaseStore.search(chromosome, referenceGenome, query);
+    }
+    List<List<BeaconDataSummary>> results = fanOut(shards.size(),
+        shard -> databaseStore.search(chromosome, referenceGenome,
+            query.withDatasetIds(shards.get(shard))), null);
+    return merge(results);
+  }
+
+  @Override
+  public List<List<BeaconDataSummary>> search(String chromosome, String referenceGenome,
+      List<IndexQuery> queries) {
+
+    int[] datasetIds = queries.stream()
+        .flatMapToInt(query -> IntStream.of(query.getDatasetIds()))
+        .distinct()
+        .toArray();
+    List<List<Integer>> shards = shard(datasetIds);
+    if (shards.size() <= 1) {
+      return databaseStore.search(chromosome, referenceGenome, queries);
+    }
+    List<List<List<BeaconDataSummary>>> results = fanOut(shards.size(),
+        shard -> searchShard(chromosome, referenceGenome, queries, shards.get(shard)), null);
+
+    List<List<BeaconDataSummary>> merged = new ArrayList<>(queries.size());
+    for (int i = 0; i < queries.size(); i++) {
+      int query = i;
+      merged.add(merge(results.stream().map(result -> result.get(query))
+          .collect(Collectors.toList())));
+    }
+    return merged;
+  }
+
+  @Override
+  public boolean exists(String chromosome, String referenceGenome, IndexQuery query) {
+    List<List<Integer>> shards = shard(query.getDatasetIds());
+    if (shards.size() <= 1) {
+      return databaseStore.exists(chromosome, referenceGenome, query);
+    }
+    // The first shard with a match is enough
+    List<Boolean> results = fanOut(shards.size(),
+        shard -> databaseStore.exists(chromosome, referenceGenome,
+            query.withDatasetIds(shards.get(shard))), Boolean.TRUE::equals);
+    return results.contains(Boolean.TRUE);
+  }
+
+  List<List<Integer>> shard(int[] datasetIds) {
+    int[] sorted = datasetIds.clone();
+    Arrays.sort(sorted);
+    int size = Math.max(shardSize, 1);
+    List<List<Integer>> shards = new ArrayList<>();
+    for (int from = 0; from < sorted.length; from += size) {
+      shards.add(IntStream.of(Arrays.copyOfRange(sorted, from, Math.min(from + size,
+          sorted.length))).boxed().collect(Collectors.toList()));
+    }
+    return shards;
+  }
+
+  /**
+   * One list per query, empty for the queries without any dataset of the shard.
+   */
+  private List<List<BeaconDataSummary>> searchShard(String chromosome, String referenceGenome,
+      List<IndexQuery> queries, List<Integer> shard) {
+
+    List<Integer> positions = new ArrayList<>();
+    List<IndexQuery> shardQueries = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      IndexQuery query = queries.get(i);
+      List<Integer> datasetIds = IntStream.of(query.getDatasetIds()).filter(shard::contains)
+          .boxed().collect(Collectors.toList());
+      if (!datasetIds.isEmpty()) {
+        positions.add(i);
+        shardQueries.add(query.withDatasetIds(datasetIds));
+      }
+    }
+
+    List<List<BeaconDataSummary>> result =
+        new ArrayList<>(Collections.nCopies(queries.size(), Collections.emptyList()));
+    if (!shardQueries.isEmpty()) {
+      List<List<BeaconDataSummary>> found =
+          databaseStore.search(chromosome, referenceGenome, shardQueries);
+      for (int j = 0; j < positions.size(); j++) {
+        result.set(positions.get(j), found.get(j));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs {@code work} for every shard in the pool and returns the results by shard. If
+   * {@code enough} accepts a result, the shards that have not finished are abandoned and their
+   * results are {@code null}.
+   */
+  private <T> List<T> fanOut(int shards, IntFunction<T> work, Predicate<T> enough) {
+    // The shards are cancelled by the watchdog when the client is gone or the query is abandoned
+    BooleanSupplier client = queryWatchdog.getClient();
+    // The data version read by the shards decides whether the result is cached
+    QueryResultCache.Load load = queryResultCache.getLoad();
+    AtomicBoolean abandoned = new AtomicBoolean();
+    BooleanSupplier shardClient = () -> !abandoned.get()
+        && (client == null || client.getAsBoolean());
+
+    AtomicReferenceArray<T> results = new AtomicReferenceArray<>(shards);
+    CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+    List<Future<Integer>> futures = new ArrayList<>(shards);
+    long deadline = System.currentTimeMillis() + timeout;
+    try {
+      for (int i = 0; i < shards; i++) {
+        int shard = i;
+        futures.add(completion.submit(() -> {
+          queryWatchdog.bindClient(shardClient);
+          queryResultCache.bindLoad(load);
+          try {
+            results.set(shard, work.apply(shard));
+            return shard;
+          } finally {
+            queryWatchdog.unbindClient();
+            queryResultCache.unbindLoad();
+          }
+        }));
+      }
+
+      for (int done = 0; done < shards; done++) {
+        Future<Integer> future;
+        if (timeout > 0) {
+          long remaining = deadline - System.currentTimeMillis();
+          future = remaining > 0 ? completion.poll(remaining, TimeUnit.MILLISECONDS) : null;
+        } else {
+          future = completion.take();
+        }
+        if (future == null) {
+          counterService.increment(QueryWatchdog.TIMEOUT_METRIC);
+          throw new QueryCancelledException(NAME, Reason.TIMEOUT, timeout, null);
+        }
+        T result = results.get(getShard(future));
+        if (enough != null && enough.test(result)) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the shards of a query", e);
+    } finally {
+      abandoned.set(true);
+      // Shards still in the queue are skipped, the running ones are cancelled by the watchdog
+      futures.forEach(future -> future.cancel(false));
+    }
+
+    List<T> list = new ArrayList<>(shards);
+    for (int i = 0; i < shards; i++) {
+      list.add(results.get(i));
+    }
+    return list;
+  }
+
+  private static int getShard(Future<Integer> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static List<BeaconDataSummary> merge(List<List<BeaconDataSummary>> results) {
+    List<BeaconDataSummary> merged = new ArrayList<>();
+    results.forEach(merged::addAll);
+    merged.sort(BY_DATASET);
+    return merged;
+  }
+
+}
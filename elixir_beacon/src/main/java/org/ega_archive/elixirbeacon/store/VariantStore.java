@@ -0,0 +1,53 @@
+package org.ega_archive.elixirbeacon.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+
+/**
+ * Storage engine of the variants. The engine used by the service is chosen with the
+ * {@code elixirbeacon.variant.store} property, see {@link VariantStores}.
+ * <p>
+ * The datasets of the query are the ones the user is authorized to see and they all belong to the
+ * requested assembly, implementations do not have to check it again.
+ */
+public interface VariantStore {
+
+  /**
+   * Value of {@code elixirbeacon.variant.store} that selects this engine.
+   */
+  String getName();
+
+  /**
+   * {@code false} while the engine cannot answer queries yet, for instance while it is loading or
+   * while its copy of the data is older than the current data version.
+   */
+  boolean isReady();
+
+  /**
+   * One summary per dataset with matching variants, sorted by dataset id. The summaries follow the
+   * rules of {@link org.ega_archive.elixirbeacon.index.DatasetSummaryAccumulator}.
+   */
+  List<BeaconDataSummary> search(String chromosome, String referenceGenome, IndexQuery query);
+
+  /**
+   * Runs several queries on the same chromosome and assembly. Returns one list per query, in the
+   * same order as {@code queries}.
+   */
+  default List<List<BeaconDataSummary>> search(String chromosome, String referenceGenome,
+      List<IndexQuery> queries) {
+
+    List<List<BeaconDataSummary>> result = new ArrayList<>(queries.size());
+    for (IndexQuery query : queries) {
+      result.add(search(chromosome, referenceGenome, query));
+    }
+    return result;
+  }
+
+  /**
+   * Whether any variant matches the query. Implementations should stop at the first match.
+   */
+  boolean exists(String chromosome, String referenceGenome, IndexQuery query);
+
+}
@@ -0,0 +1,67 @@
+package org.ega_archive.elixirbeacon.store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chooses the {@link VariantStore} that answers the queries.
+ * <p>
+ * If {@code elixirbeacon.variant.store} is set, that store is used once it is ready. If it is not
+ * set, the first ready store of {@link #AUTO_ORDER} is used, so that enabling the in-memory index
+ * or the variant files is enough to use them. Until then the database answers the queries.
+ */
+@Slf4j
+@Component
+public class VariantStores {
+
+  static final List<String> AUTO_ORDER = Arrays.asList("files", "index");
+
+  @Value("${elixirbeacon.variant.store:}")
+  private String name;
+
+  @Autowired
+  private List<VariantStore> stores;
+
+  @Autowired
+  private DatabaseVariantStore databaseStore;
+
+  @PostConstruct
+  public void checkName() {
+    if (StringUtils.isNotBlank(name) && find(name) == null) {
+      throw new IllegalStateException("Unknown variant store '" + name + "', available: "
+          + stores.stream().map(VariantStore::getName).collect(Collectors.toList()));
+    }
+    log.info("Variant store: {}", StringUtils.defaultIfBlank(name, "auto"));
+  }
+
+  public VariantStore getStore() {
+    if (StringUtils.isNotBlank(name)) {
+      VariantStore store = find(name);
+      return store.isReady() ? store : databaseStore;
+    }
+    for (String candidate : AUTO_ORDER) {
+      VariantStore store = find(candidate);
+      if (store != null && store.isReady()) {
+        return store;
+      }
+    }
+    return databaseStore;
+  }
+
+  private VariantStore find(String name) {
+    for (VariantStore store : stores) {
+      if (store.getName().equalsIgnoreCase(name.trim())) {
+        return store;
+      }
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,51 @@
+package org.ega_archive.elixirbeacon.watchdog;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Tells the {@link QueryWatchdog} how to know whether the client of the request is still
+ * connected: the connection is gone once Jetty has closed it or has read its end.
+ * <p>
+ * The connection is not read here: the bytes that follow the request may be the next request of a
+ * keep-alive or pipelined client, and only Jetty may consume them. While the servlet waits for the
+ * database Jetty does not read either, so a client that goes away meanwhile is not noticed until
+ * the response is written: the deadline of the query is what bounds the wasted work.
+ */
+@Component
+public class ClientConnectionFilter extends OncePerRequestFilter {
+
+  @Autowired
+  private QueryWatchdog queryWatchdog;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+
+    Request baseRequest = Request.getBaseRequest(request);
+    HttpChannel channel = baseRequest != null ? baseRequest.getHttpChannel() : null;
+    if (channel == null) {
+      // Not served by Jetty
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    EndPoint endPoint = channel.getEndPoint();
+    queryWatchdog.bindClient(() -> endPoint.isOpen() && !endPoint.isInputShutdown());
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      queryWatchdog.unbindClient();
+    }
+  }
+
+}
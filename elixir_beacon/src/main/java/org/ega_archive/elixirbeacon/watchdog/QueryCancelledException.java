@@ -0,0 +1,31 @@
+package org.ega_archive.elixirbeacon.watchdog;
+
+import lombok.Getter;
+
+/**
+ * A query was cancelled by the {@link QueryWatchdog} before it finished.
+ */
+@Getter
+public class QueryCancelledException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Reason {
+    TIMEOUT, // The deadline of the query passed
+    CLIENT_DISCONNECTED // Nobody is waiting for the answer
+  }
+
+  private final Reason reason;
+
+  // Deadline of the query, in milliseconds
+  private final long timeout;
+
+  public QueryCancelledException(String query, Reason reason, long timeout, Throwable cause) {
+    super(reason == Reason.TIMEOUT
+        ? "Query " + query + " took longer than " + timeout + " ms and was cancelled"
+        : "Query " + query + " was cancelled because the client disconnected", cause);
+    this.reason = reason;
+    this.timeout = timeout;
+  }
+
+}
@@ -0,0 +1,249 @@
+package org.ega_archive.elixirbeacon.watchdog;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException.Reason;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cancels the statements of a query when its deadline passes or when the client that sent the
+ * request is gone, so that a slow query does not keep a connection of the pool and a Jetty thread
+ * busy for nothing.
+ * <p>
+ * The deadline of every kind of query is {@code elixirbeacon.query.timeout.<query>} (for example
+ * {@code elixirbeacon.query.timeout.bracket}), or {@code elixirbeacon.query.timeout} if it is not
+ * set. The client is only known if the request went through {@link ClientConnectionFilter}.
+ */
+@Slf4j
+@Component
+public class QueryWatchdog implements DisposableBean {
+
+  public static final String TIMEOUT_METRIC = "beacon.query.timeout";
+
+  public static final String CANCELLED_METRIC = "beacon.query.cancelled";
+
+  private static final String TIMEOUT_PROPERTY = "elixirbeacon.query.timeout";
+
+  // SQLState of a statement cancelled by the user
+  private static final String QUERY_CANCELED = "57014";
+
+  // Milliseconds, no deadline if it is not positive
+  @Value("${elixirbeacon.query.timeout:30000}")
+  private long defaultTimeout;
+
+  // Milliseconds, clients are not checked if it is not positive
+  @Value("${elixirbeacon.query.disconnect.check.interval:500}")
+  private long disconnectCheckInterval;
+
+  @Autowired
+  private Environment environment;
+
+  @Autowired
+  private CounterService counterService;
+
+  // Whether the client of the request handled by the thread is still connected
+  private final ThreadLocal<BooleanSupplier> client = new ThreadLocal<>();
+
+  private final Set<Watch> running = ConcurrentHashMap.newKeySet();
+
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "query-watchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (disconnectCheckInterval > 0) {
+      scheduler.scheduleWithFixedDelay(this::checkClients, disconnectCheckInterval,
+          disconnectCheckInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Deadline of a kind of query, in milliseconds.
+   */
+  public long getTimeout(String query) {
+    return environment.getProperty(TIMEOUT_PROPERTY + "." + query, Long.class, defaultTimeout);
+  }
+
+  /**
+   * The queries run by the current thread are cancelled when {@code connected} turns false.
+   */
+  public void bindClient(BooleanSupplier connected) {
+    client.set(connected);
+  }
+
+  public void unbindClient() {
+    client.remove();
+  }
+
+  /**
+   * Client bound to the current thread, {@code null} if there is none. Work handed over to other
+   * threads binds it there too.
+   */
+  public BooleanSupplier getClient() {
+    return client.get();
+  }
+
+  /**
+   * Runs {@code work} with the deadline of {@code query}. The statements must be created with
+   * {@link Watch#statement}.
+   *
+   * @throws QueryCancelledException if the statements were cancelled
+   */
+  public <T> T run(String query, Function<Watch, T> work) {
+    Watch watch = new Watch(query, getTimeout(query), client.get());
+    running.add(watch);
+    try {
+      return work.apply(watch);
+    } catch (RuntimeException e) {
+      if (watch.reason == null && watch.isExpired()) {
+        // Stopped by the query timeout of the driver
+        watch.cancel(Reason.TIMEOUT);
+      }
+      if (watch.reason != null) {
+        throw new QueryCancelledException(query, watch.reason, watch.timeout, e);
+      }
+      throw e;
+    } finally {
+      watch.close();
+      running.remove(watch);
+    }
+  }
+
+  void checkClients() {
+    for (Watch watch : running) {
+      try {
+        if (watch.client != null && !watch.client.getAsBoolean()) {
+          watch.cancel(Reason.CLIENT_DISCONNECTED);
+        }
+      } catch (RuntimeException e) {
+        // The next checks must run anyway
+        log.warn("Could not check the client of query {}", watch.query, e);
+      }
+    }
+  }
+
+  /**
+   * Statements of a query run by {@link #run}.
+   */
+  public class Watch {
+
+    private final String query;
+
+    private final long timeout;
+
+    private final BooleanSupplier client;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final ScheduledFuture<?> deadline;
+
+    // Statement being executed, guarded by this
+    private PreparedStatement statement;
+
+    private boolean closed;
+
+    private volatile Reason reason;
+
+    Watch(String query, long timeout, BooleanSupplier client) {
+      this.query = query;
+      this.timeout = timeout;
+      this.client = client;
+      this.deadline = timeout > 0
+          ? scheduler.schedule(() -> cancel(Reason.TIMEOUT), timeout, TimeUnit.MILLISECONDS)
+          : null;
+    }
+
+    public PreparedStatementCreator statement(String sql, Object[] args) {
+      return statement(sql, args, 0);
+    }
+
+    public PreparedStatementCreator statement(String sql, Object[] args, int fetchSize) {
+      return con -> {
+        PreparedStatement statement = con.prepareStatement(sql);
+        try {
+          if (fetchSize > 0) {
+            statement.setFetchSize(fetchSize);
+          }
+          new ArgumentPreparedStatementSetter(args).setValues(statement);
+          watch(statement);
+        } catch (SQLException e) {
+          statement.close();
+          throw e;
+        }
+        return statement;
+      };
+    }
+
+    private synchronized void watch(PreparedStatement statement) throws SQLException {
+      if (reason != null) {
+        throw new SQLException("Query " + query + " was cancelled before it started",
+            QUERY_CANCELED);
+      }
+      this.statement = statement;
+      if (timeout > 0) {
+        // A cancel is ignored by the driver until the statement is executed: in case the deadline
+        // passes in the meantime, the driver stops it a bit later
+        long remaining = timeout - (System.currentTimeMillis() - startTime);
+        statement.setQueryTimeout((int) Math.max(1, (remaining + 999) / 1000));
+      }
+    }
+
+    private boolean isExpired() {
+      return timeout > 0 && System.currentTimeMillis() - startTime >= timeout;
+    }
+
+    synchronized void cancel(Reason reason) {
+      if (closed || this.reason != null) {
+        return;
+      }
+      this.reason = reason;
+      counterService.increment(reason == Reason.TIMEOUT ? TIMEOUT_METRIC : CANCELLED_METRIC);
+      log.warn("Cancelling query {} after {} ms: {}", query,
+          System.currentTimeMillis() - startTime, reason);
+      if (statement != null) {
+        try {
+          statement.cancel();
+        } catch (SQLException e) {
+          log.warn("Could not cancel query {}", query, e);
+        }
+      }
+    }
+
+    private synchronized void close() {
+      closed = true;
+      statement = null;
+      if (deadline != null) {
+        deadline.cancel(false);
+      }
+    }
+  }
+
+}
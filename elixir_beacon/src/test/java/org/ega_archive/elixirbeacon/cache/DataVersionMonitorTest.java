@@ -0,0 +1,74 @@
+package org.ega_archive.elixirbeacon.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DataVersionMonitorTest {
+
+  private DataVersionMonitor monitor;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private List<Long> changes;
+
+  @Before
+  public void setUp() {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    changes = new ArrayList<>();
+  }
+
+  @Test
+  public void startupVersionIsNotAChange() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(3L, 3L, 4L);
+    newMonitor();
+
+    monitor.checkVersion();
+    monitor.checkVersion();
+    assertThat(monitor.getVersion(), equalTo(4L));
+    assertThat(changes, equalTo(Arrays.asList(4L)));
+  }
+
+  @Test
+  public void unavailableVersionIsKept() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(3L)
+        .thenThrow(new CannotGetJdbcConnectionException("down", null));
+    newMonitor();
+
+    monitor.checkVersion();
+    assertThat(monitor.getVersion(), equalTo(3L));
+    assertThat(changes.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void versionIsReadWhenTheDatabaseIsBack() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+        .thenThrow(new CannotGetJdbcConnectionException("down", null)).thenReturn(3L);
+    newMonitor();
+    assertThat(monitor.getVersion(), equalTo(DataVersionMonitor.UNKNOWN));
+
+    monitor.checkVersion();
+    assertThat(changes, equalTo(Arrays.asList(3L)));
+  }
+
+  private void newMonitor() {
+    monitor = new DataVersionMonitor();
+    ReflectionTestUtils.setField(monitor, "jdbcTemplate", jdbcTemplate);
+    ReflectionTestUtils.setField(monitor, "checkInterval", 0L);
+    monitor.init();
+    monitor.addListener(changes::add);
+  }
+
+}
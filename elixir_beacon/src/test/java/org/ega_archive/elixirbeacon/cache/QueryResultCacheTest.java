@@ -0,0 +1,214 @@
+package org.ega_archive.elixirbeacon.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class QueryResultCacheTest {
+
+  private static final QueryResultCache.Key KEY = key("grch37", 1, 2);
+
+  private QueryResultCache cache;
+
+  private DataVersionMonitor monitor;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private CounterService counterService;
+
+  private GaugeService gaugeService;
+
+  private AtomicInteger loads;
+
+  @Before
+  public void setUp() {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    counterService = mock(CounterService.class);
+    gaugeService = mock(GaugeService.class);
+    cache = newCache(100);
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  public void resultsAreLoadedOnce() {
+    List<BeaconDataSummary> first = cache.search(KEY, this::load);
+    List<BeaconDataSummary> second = cache.search(KEY, this::load);
+
+    assertThat(loads.get(), equalTo(1));
+    assertThat(second, equalTo(first));
+    verify(counterService).increment(QueryResultCache.MISS_METRIC);
+    verify(counterService).increment(QueryResultCache.HIT_METRIC);
+    verify(gaugeService).submit(QueryResultCache.HIT_RATIO_METRIC, 0.5);
+  }
+
+  @Test
+  public void keysAreNormalized() {
+    cache.search(KEY, this::load);
+    cache.search(key("GRCh37", 2, 1), this::load);
+
+    assertThat(loads.get(), equalTo(1));
+    assertThat(key("grch37", 1), not(equalTo(KEY)));
+    assertThat(key("grch38", 1, 2), not(equalTo(KEY)));
+  }
+
+  @Test
+  public void searchResultsAnswerExists() {
+    cache.search(KEY, this::load);
+
+    assertThat(cache.exists(KEY, () -> {
+      loads.incrementAndGet();
+      return false;
+    }), equalTo(true));
+    assertThat(loads.get(), equalTo(1));
+  }
+
+  @Test
+  public void existsResultsDoNotAnswerSearch() {
+    assertThat(cache.exists(KEY, () -> true), equalTo(true));
+
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(1));
+  }
+
+  @Test
+  public void newDataVersionDropsTheResults() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L, 1L, 2L);
+    monitor.checkVersion();
+    cache.search(KEY, this::load);
+
+    monitor.checkVersion();
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(1));
+
+    monitor.checkVersion();
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(2));
+  }
+
+  @Test
+  public void resultsLoadedWhileTheVersionChangesAreNotKept() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(1L);
+    cache.search(KEY, () -> {
+      monitor.checkVersion();
+      return load();
+    });
+
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(2));
+  }
+
+  @Test
+  public void unavailableVersionKeepsTheResults() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+        .thenThrow(new CannotGetJdbcConnectionException("down", null));
+    cache.search(KEY, this::load);
+
+    monitor.checkVersion();
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(1));
+  }
+
+  @Test
+  public void resultsReadFromAnotherVersionAreNotKept() {
+    // The replica of the query has not replayed the last load yet
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(2L, 1L, 2L, 2L);
+    monitor.checkVersion();
+    cache.search(KEY, () -> {
+      cache.observeVersion();
+      return load();
+    });
+
+    cache.search(KEY, () -> {
+      cache.observeVersion();
+      return load();
+    });
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(2));
+  }
+
+  @Test
+  public void searchAllLoadsTheMissingResultsTogether() {
+    QueryResultCache.Key other = key("grch37", 3);
+    cache.search(KEY, this::load);
+
+    List<List<Integer>> loaded = new ArrayList<>();
+    List<List<BeaconDataSummary>> results = cache.searchAll(Arrays.asList(other, KEY, other),
+        positions -> {
+          loaded.add(positions);
+          return positions.stream().map(position -> load()).collect(Collectors.toList());
+        });
+
+    assertThat(loaded, equalTo(Collections.singletonList(Arrays.asList(0, 2))));
+    assertThat(results.size(), equalTo(3));
+    cache.search(other, this::load);
+    assertThat(loads.get(), equalTo(3));
+  }
+
+  @Test
+  public void invalidateAllDropsTheResults() {
+    cache.search(KEY, this::load);
+
+    cache.invalidateAll();
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(2));
+  }
+
+  @Test
+  public void disabledCacheAlwaysLoads() {
+    cache = newCache(0);
+
+    cache.search(KEY, this::load);
+    cache.search(KEY, this::load);
+    assertThat(loads.get(), equalTo(2));
+  }
+
+  private QueryResultCache newCache(long size) {
+    monitor = new DataVersionMonitor();
+    ReflectionTestUtils.setField(monitor, "jdbcTemplate", jdbcTemplate);
+    // Checked by the tests
+    ReflectionTestUtils.setField(monitor, "checkInterval", 0L);
+    monitor.init();
+
+    QueryResultCache cache = new QueryResultCache();
+    ReflectionTestUtils.setField(cache, "dataVersionMonitor", monitor);
+    ReflectionTestUtils.setField(cache, "counterService", counterService);
+    ReflectionTestUtils.setField(cache, "gaugeService", gaugeService);
+    ReflectionTestUtils.setField(cache, "maximumSize", size);
+    cache.init();
+    return cache;
+  }
+
+  private List<BeaconDataSummary> load() {
+    loads.incrementAndGet();
+    BeaconDataSummary summary = new BeaconDataSummary();
+    summary.setDatasetId(1);
+    return Collections.singletonList(summary);
+  }
+
+  private static QueryResultCache.Key key(String referenceGenome, Integer... datasetIds) {
+    return QueryResultCache.Key.of("1", referenceGenome, IndexQuery.of(null, 100, null, null,
+        null, null, null, "C", "G", Arrays.asList(datasetIds)));
+  }
+
+}
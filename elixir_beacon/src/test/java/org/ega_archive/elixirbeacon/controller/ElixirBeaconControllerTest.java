@@ -1,21 +1,33 @@
 package org.ega_archive.elixirbeacon.controller;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.sql.SQLException;
+import java.util.Collections;
 import javax.annotation.Resource;
 import javax.sql.DataSource;
 import org.ega_archive.elixirbeacon.Application;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
 import org.ega_archive.elixirbeacon.dto.BeaconAlleleRequest;
 import org.ega_archive.elixirbeacon.dto.BeaconAlleleResponse;
+import org.ega_archive.elixirbeacon.dto.BeaconRequest;
 import org.ega_archive.elixirbeacon.enums.VariantType;
+import org.ega_archive.elixirbeacon.service.AuthService;
+import org.ega_archive.elixirbeacon.service.DatasetRegistryService;
+import org.ega_archive.elixirbeacon.service.UserInfoService;
 import org.ega_archive.elixircore.constant.ParamName;
 import org.ega_archive.elixircore.test.util.TestUtils;
 import org.ega_archive.elixircore.util.JsonUtils;
@@ -25,13 +37,19 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -55,6 +73,21 @@ public class ElixirBeaconControllerTest {
   
   @Autowired
   private WebApplicationContext wac;
+
+  @Autowired
+  private DatasetRegistryService datasetRegistryService;
+
+  @Autowired
+  private DataVersionMonitor dataVersionMonitor;
+
+  @Autowired
+  private AuthService authService;
+
+  // Replaced while a test calls with a token, restored after it
+  private UserInfoService userInfoService;
+
+  @Value("${elixirbeacon.query.batch.max.size}")
+  private int maxBatchSize;
   
   @Before
   public void setUp() throws SQLException {
@@ -71,6 +104,7 @@ public class ElixirBeaconControllerTest {
         "/db/consent_code_table.sql",
         // Beacon->CC
         "/db/beacon_dataset_consent_code_table.sql");
+    datasetRegistryService.refresh();
     
     mockMvc = MockMvcBuilders.webAppContextSetup(wac)
         .alwaysExpect(status().isOk())
@@ -80,6 +114,10 @@ public class ElixirBeaconControllerTest {
   
   @After
   public void tearDown() throws SQLException {
+    if (userInfoService != null) {
+      ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(authService),
+          "userInfoService", userInfoService);
+    }
     // TestUtils.populateDatabase(dataSource, "/db/truncate_tables.sql");
   }
   
@@ -138,5 +176,101 @@ public class ElixirBeaconControllerTest {
     assertThat(response, notNullValue());
     assertThat(response.getError(), nullValue());
   }
-  
+
+  @Test
+  public void callQueryBatchWithTooManyRequests() throws Exception {
+    BeaconRequest request = BeaconRequest.builder()
+        .referenceName("19")
+        .start(1234)
+        .referenceBases("C")
+        .alternateBases("A")
+        .assemblyId("grch37")
+        .build();
+
+    MockMvcBuilders.webAppContextSetup(wac).build()
+        .perform(post("/beacon/query/batch")
+            .content(JsonUtils.objectToJson(Collections.nCopies(maxBatchSize + 1, request),
+                objectMapper))
+            .contentType(MediaType.APPLICATION_JSON_UTF8)
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void callRootWithCurrentEtagIsNotModified() throws Exception {
+    String etag = getDatasetsEtag(null);
+
+    MockMvcBuilders.webAppContextSetup(wac).build()
+        .perform(get("/beacon/")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, etag))
+        .andExpect(content().string(""));
+  }
+
+  @Test
+  public void callRootVariesByAuthorization() throws Exception {
+    mockMvc.perform(get("/beacon/")
+        .accept(MediaType.APPLICATION_JSON))
+        .andExpect(header().string(HttpHeaders.VARY,
+            containsString(HttpHeaders.AUTHORIZATION)));
+  }
+
+  @Test
+  public void callRootEtagChangesWithTheDataVersion() throws Exception {
+    String etag = getDatasetsEtag(null);
+
+    new JdbcTemplate(dataSource)
+        .update("UPDATE public.beacon_data_version_table SET version = version + 1");
+    ReflectionTestUtils.invokeMethod(dataVersionMonitor, "checkVersion");
+
+    assertThat(getDatasetsEtag(null), not(equalTo(etag)));
+  }
+
+  @Test
+  public void callRootEtagChangesWhenTheRegistryIsRefreshed() throws Exception {
+    String etag = getDatasetsEtag(null);
+    // Not seen until the registry is refreshed
+    new JdbcTemplate(dataSource).update(
+        "UPDATE public.beacon_dataset_table SET description = 'Updated' WHERE id = 1");
+    assertThat(getDatasetsEtag(null), equalTo(etag));
+
+    datasetRegistryService.refresh();
+
+    assertThat(getDatasetsEtag(null), not(equalTo(etag)));
+  }
+
+  @Test
+  public void callRootEtagDependsOnTheCaller() throws Exception {
+    Object target = AopTestUtils.getUltimateTargetObject(authService);
+    userInfoService = (UserInfoService) ReflectionTestUtils.getField(target, "userInfoService");
+    UserInfoService grants = mock(UserInfoService.class);
+    when(grants.findGrantedDatasets("Bearer token"))
+        .thenReturn(Collections.singletonList("EGAD00000000003"));
+    when(grants.findGrantedDatasets("Bearer other"))
+        .thenReturn(Collections.emptyList());
+    ReflectionTestUtils.setField(target, "userInfoService", grants);
+
+    String anonymous = getDatasetsEtag(null);
+    String authenticated = getDatasetsEtag("Bearer other");
+    String authorized = getDatasetsEtag("Bearer token");
+
+    assertThat(authenticated, not(equalTo(anonymous)));
+    assertThat(authorized, not(equalTo(anonymous)));
+    assertThat(authorized, not(equalTo(authenticated)));
+  }
+
+  private String getDatasetsEtag(String authorization) throws Exception {
+    MockHttpServletRequestBuilder request = get("/beacon/")
+        .accept(MediaType.APPLICATION_JSON);
+    if (authorization != null) {
+      request.header(HttpHeaders.AUTHORIZATION, authorization);
+    }
+    String etag = mockMvc.perform(request).andReturn().getResponse()
+        .getHeader(HttpHeaders.ETAG);
+    assertThat(etag, notNullValue());
+    return etag;
+  }
+
 }
@@ -0,0 +1,127 @@
+package org.ega_archive.elixirbeacon.datasource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ReplicaRoutingDataSourceTest {
+
+  private DataSource primary;
+
+  private DataSource replica1;
+
+  private DataSource replica2;
+
+  private Connection primaryConnection;
+
+  private Connection replica1Connection;
+
+  private Connection replica2Connection;
+
+  private ReplicaRoutingDataSource dataSource;
+
+  @Before
+  public void setUp() throws SQLException {
+    primaryConnection = mock(Connection.class);
+    replica1Connection = mock(Connection.class);
+    replica2Connection = mock(Connection.class);
+    primary = dataSource(primaryConnection);
+    replica1 = dataSource(replica1Connection);
+    replica2 = dataSource(replica2Connection);
+
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    replicas.put("replica1", replica1);
+    replicas.put("replica2", replica2);
+    dataSource = new ReplicaRoutingDataSource(primary, replicas, 0, 1);
+    dataSource.afterPropertiesSet();
+  }
+
+  @After
+  public void tearDown() {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    dataSource.destroy();
+  }
+
+  @Test
+  public void readWriteWorkGoesToPrimary() throws SQLException {
+    Connection connection = dataSource.getConnection();
+
+    connection.getAutoCommit();
+    verify(primaryConnection).getAutoCommit();
+  }
+
+  @Test
+  public void readOnlyWorkGoesToLeastBusyReplica() throws SQLException {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    Connection first = dataSource.getConnection();
+    Connection second = dataSource.getConnection();
+    first.getAutoCommit();
+    second.getAutoCommit();
+    verify(replica1Connection).getAutoCommit();
+    verify(replica2Connection).getAutoCommit();
+    assertThat(metric("datasource.elixirbeacon.replica1.outstanding"), equalTo(1));
+
+    // replica1 has no connections in use again
+    first.close();
+    first.close();
+    assertThat(metric("datasource.elixirbeacon.replica1.outstanding"), equalTo(0));
+    Connection third = dataSource.getConnection();
+    third.isReadOnly();
+    verify(replica1Connection).isReadOnly();
+  }
+
+  @Test
+  public void failsOverToPrimaryUntilReplicaIsHealthy() throws SQLException {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+    when(replica2.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+    dataSource.getConnection().getAutoCommit();
+    dataSource.getConnection().getAutoCommit();
+
+    verify(primaryConnection, times(2)).getAutoCommit();
+    assertThat(dataSource.getHealth().get("replica1"), equalTo(false));
+    assertThat(dataSource.getHealth().get("replica2"), equalTo(false));
+    assertThat(metric("datasource.elixirbeacon.replica2.healthy"), equalTo(0));
+
+    // replica2 comes back
+    doReturn(replica2Connection).when(replica2).getConnection();
+    when(replica2Connection.isValid(anyInt())).thenReturn(true);
+    dataSource.checkHealth();
+
+    assertThat(dataSource.getHealth().get("replica2"), equalTo(true));
+    dataSource.getConnection().getAutoCommit();
+    verify(replica2Connection).getAutoCommit();
+  }
+
+  private static DataSource dataSource(Connection connection) throws SQLException {
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getConnection()).thenReturn(connection);
+    return dataSource;
+  }
+
+  private Integer metric(String name) {
+    Map<String, Number> metrics = dataSource.metrics().stream()
+        .collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    return metrics.get(name).intValue();
+  }
+
+}
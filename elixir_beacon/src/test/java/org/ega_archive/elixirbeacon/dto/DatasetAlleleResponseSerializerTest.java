@@ -0,0 +1,92 @@
+package org.ega_archive.elixirbeacon.dto;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetAlleleResponseSerializerTest {
+
+  private ObjectMapper mapper;
+
+  // Serializes the responses with the default bean serializer
+  private ObjectMapper defaultMapper;
+
+  @Before
+  public void setUp() {
+    mapper = new ObjectMapper();
+    mapper.configure(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN, true);
+    defaultMapper = new ObjectMapper();
+    defaultMapper.configure(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN, true);
+    defaultMapper.addMixIn(DatasetAlleleResponse.class, DefaultSerializer.class);
+  }
+
+  @Test
+  public void sameOutputAsBeanSerializer() throws Exception {
+    DatasetAlleleResponse response = response("EGAD\"00000000001", handovers());
+
+    assertThat(mapper.writeValueAsString(response),
+        equalTo(defaultMapper.writeValueAsString(response)));
+  }
+
+  @Test
+  public void sameOutputWithFragment() throws Exception {
+    DatasetAlleleResponse response = response("EGAD\"00000000001", handovers());
+    String expected = defaultMapper.writeValueAsString(response);
+
+    response.setFragment(new DatasetFragment(response.getDatasetId(),
+        response.getDatasetHandover()));
+
+    assertThat(mapper.writeValueAsString(response), equalTo(expected));
+  }
+
+  @Test
+  public void missWithoutHandovers() throws Exception {
+    DatasetAlleleResponse response = new DatasetAlleleResponse();
+    response.setDatasetId("EGAD00000000002");
+    response.setExists(false);
+    response.setDatasetHandover(Collections.emptyList());
+    String expected = defaultMapper.writeValueAsString(response);
+
+    response.setFragment(new DatasetFragment(response.getDatasetId(),
+        response.getDatasetHandover()));
+
+    assertThat(mapper.writeValueAsString(response), equalTo(expected));
+  }
+
+  private static DatasetAlleleResponse response(String datasetId, List<Handover> handovers) {
+    DatasetAlleleResponse response = new DatasetAlleleResponse();
+    response.setDatasetId(datasetId);
+    response.setExists(true);
+    response.setFrequency(new BigDecimal("1E-7"));
+    response.setVariantCount(BigInteger.ONE);
+    response.setCallCount(BigInteger.valueOf(2));
+    response.setSampleCount(BigInteger.ONE);
+    response.setInfo(Collections.singletonMap("key", "value"));
+    response.setDatasetHandover(handovers);
+    return response;
+  }
+
+  private static List<Handover> handovers() {
+    return Arrays.asList(
+        new Handover(new HandoverType("CUSTOM", "Dataset info"), "Dataset information",
+            "https://ega-archive.org/datasets/EGAD00000000001"),
+        new Handover(new HandoverType("data:1106", "dbSNP ID"), null,
+            "https://www.ncbi.nlm.nih.gov/snp/?term=rs1é"));
+  }
+
+  @JsonSerialize(using = JsonSerializer.None.class)
+  private abstract static class DefaultSerializer {
+  }
+
+}
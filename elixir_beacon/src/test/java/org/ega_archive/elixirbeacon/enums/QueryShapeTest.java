@@ -0,0 +1,54 @@
+package org.ega_archive.elixirbeacon.enums;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.junit.Test;
+
+public class QueryShapeTest {
+
+  @Test
+  public void exact() {
+    assertThat(shape(null, 100, null, null, null, null, null, "A", "T"),
+        equalTo(QueryShape.EXACT));
+    // Any variant starting at that position
+    assertThat(shape(null, 100, null, null, null, null, null, "A", "N"),
+        equalTo(QueryShape.EXACT));
+  }
+
+  @Test
+  public void startEndExact() {
+    assertThat(shape("DEL", 100, null, null, 110, null, null, "N", null),
+        equalTo(QueryShape.START_END_EXACT));
+  }
+
+  @Test
+  public void startEndRange() {
+    assertThat(shape(null, 100, null, null, 110, null, null, "N", "N"),
+        equalTo(QueryShape.START_END_RANGE));
+  }
+
+  @Test
+  public void bracket() {
+    assertThat(shape("DUP", null, 100, 101, null, 200, 201, "T", null),
+        equalTo(QueryShape.BRACKET));
+  }
+
+  @Test
+  public void variantType() {
+    assertThat(shape("DEL", 100, null, null, null, null, null, "CGTG", null),
+        equalTo(QueryShape.VARIANT_TYPE));
+    assertThat(shape("INS", 100, null, null, null, null, null, "CGTG", "N"),
+        equalTo(QueryShape.VARIANT_TYPE));
+  }
+
+  private QueryShape shape(String variantType, Integer start, Integer startMin, Integer startMax,
+      Integer end, Integer endMin, Integer endMax, String referenceBases, String alternateBases) {
+
+    return QueryShape.of(IndexQuery.of(variantType, start, startMin, startMax, end, endMin, endMax,
+        referenceBases, alternateBases, Collections.singletonList(1)));
+  }
+
+}
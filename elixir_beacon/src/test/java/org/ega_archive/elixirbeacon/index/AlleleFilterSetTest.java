@@ -0,0 +1,99 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AlleleFilterSetTest {
+
+  private static final int ALLELES = 10000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AlleleFilterSet filters;
+
+  @Before
+  public void setUp() {
+    AlleleFilterSet.Builder builder = new AlleleFilterSet.Builder(0.01)
+        .dataVersion(7)
+        .dataset(3)
+        .expect(1, "4", 2)
+        .expect(5, "4", ALLELES)
+        .add(1, "4", 4, "C", "G")
+        .add(1, "4", 2, "TC", "TCA");
+    for (int start = 0; start < ALLELES; start++) {
+      builder.add(5, "4", start, "C", "T");
+    }
+    filters = builder.build();
+  }
+
+  @Test
+  public void addedAllelesAreAlwaysFound() {
+    assertThat(filters.mightContain(1, "4", 4, "C", "G"), equalTo(true));
+    assertThat(filters.mightContain(1, "4", 2, "tc", "tca"), equalTo(true));
+    for (int start = 0; start < ALLELES; start++) {
+      assertThat(filters.mightContain(5, "4", start, "C", "T"), equalTo(true));
+    }
+  }
+
+  @Test
+  public void fewFalsePositives() {
+    int falsePositives = 0;
+    for (int start = 0; start < ALLELES; start++) {
+      if (filters.mightContain(5, "4", start, "C", "G")) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives, lessThan(ALLELES / 20));
+  }
+
+  @Test
+  public void chromosomeWithoutVariants() {
+    assertThat(filters.mightContain(1, "X", 4, "C", "G"), equalTo(false));
+    assertThat(filters.mightContain(3, "4", 4, "C", "G"), equalTo(false));
+  }
+
+  @Test
+  public void unknownDatasetMightHaveAnything() {
+    assertThat(filters.mightContain(2, "4", 4, "C", "G"), equalTo(true));
+  }
+
+  @Test
+  public void mapWhatWasWritten() throws IOException {
+    File file = folder.newFile("alleles.filter");
+    try (OutputStream out = new FileOutputStream(file)) {
+      filters.writeTo(out);
+    }
+    AlleleFilterSet read = AlleleFilterSet.map(file.toPath(), 7);
+
+    assertThat(read.getDataVersion(), equalTo(7L));
+    assertThat(read.size(), equalTo(filters.size()));
+    assertThat(read.bitsSize(), equalTo(filters.bitsSize()));
+    assertThat(read.mightContain(1, "4", 4, "C", "G"), equalTo(true));
+    assertThat(read.mightContain(3, "4", 4, "C", "G"), equalTo(false));
+    assertThat(read.mightContain(2, "4", 4, "C", "G"), equalTo(true));
+    for (int start = 0; start < ALLELES; start++) {
+      assertThat(read.mightContain(5, "4", start, "C", "T"), equalTo(true));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void filesOfAnotherDataVersionAreRefused() throws IOException {
+    File file = folder.newFile("alleles.filter");
+    try (OutputStream out = new FileOutputStream(file)) {
+      filters.writeTo(out);
+    }
+    AlleleFilterSet.map(file.toPath(), 8);
+  }
+
+}
@@ -0,0 +1,103 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.LongConsumer;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class AlleleFilterTest {
+
+  private static final IndexQuery QUERY = IndexQuery.of(null, 100, null, null, null, null, null,
+      "C", "G", Collections.singletonList(1));
+
+  private AlleleFilter alleleFilter;
+
+  private DataVersionMonitor dataVersionMonitor;
+
+  private LongConsumer listener;
+
+  @Before
+  public void setUp() throws Exception {
+    dataVersionMonitor = mock(DataVersionMonitor.class);
+    when(dataVersionMonitor.getVersion()).thenReturn(1L);
+    when(dataVersionMonitor.readVersion()).thenReturn(1L);
+
+    // Dataset 1 exists but has no variants
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    ResultSet dataset = mock(ResultSet.class);
+    when(dataset.getInt("id")).thenReturn(1);
+    doAnswer(invocation -> {
+      if (((String) invocation.getArguments()[0]).contains("beacon_dataset_table")) {
+        ((RowCallbackHandler) invocation.getArguments()[1]).processRow(dataset);
+      }
+      return null;
+    }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+    alleleFilter = new AlleleFilter();
+    ReflectionTestUtils.setField(alleleFilter, "falsePositiveProbability", 0.01);
+    ReflectionTestUtils.setField(alleleFilter, "file", "");
+    ReflectionTestUtils.setField(alleleFilter, "jdbcTemplate", jdbcTemplate);
+    ReflectionTestUtils.setField(alleleFilter, "transactionManager",
+        mock(PlatformTransactionManager.class));
+    ReflectionTestUtils.setField(alleleFilter, "dataVersionMonitor", dataVersionMonitor);
+    ReflectionTestUtils.setField(alleleFilter, "counterService", mock(CounterService.class));
+    alleleFilter.init();
+
+    ArgumentCaptor<LongConsumer> captor = ArgumentCaptor.forClass(LongConsumer.class);
+    verify(dataVersionMonitor).addListener(captor.capture());
+    listener = captor.getValue();
+  }
+
+  @After
+  public void tearDown() {
+    alleleFilter.destroy();
+  }
+
+  @Test
+  public void filtersOfTheCurrentVersionSkipDatasets() {
+    assertThat(alleleFilter.reload(), equalTo(true));
+
+    assertThat(alleleFilter.filterDatasets("1", QUERY), empty());
+  }
+
+  @Test
+  public void newDataVersionDropsTheFilters() {
+    alleleFilter.reload();
+
+    when(dataVersionMonitor.getVersion()).thenReturn(2L);
+    assertThat(alleleFilter.filterDatasets("1", QUERY), equalTo(Arrays.asList(1)));
+
+    listener.accept(2L);
+    assertThat(alleleFilter.isReady(), equalTo(false));
+    assertThat(alleleFilter.filterDatasets("1", QUERY), equalTo(Arrays.asList(1)));
+  }
+
+  @Test
+  public void laggingReplicaIsNotBuiltFrom() {
+    when(dataVersionMonitor.getVersion()).thenReturn(2L);
+
+    assertThat(alleleFilter.reload(), equalTo(false));
+    assertThat(alleleFilter.isReady(), equalTo(false));
+  }
+
+}
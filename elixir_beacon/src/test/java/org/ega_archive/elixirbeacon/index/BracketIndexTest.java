@@ -0,0 +1,119 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BracketIndexTest {
+
+  private static final int NULL = ChromosomeIndex.NULL_VALUE;
+
+  private int[] starts;
+
+  private int[] ends;
+
+  private int[] types;
+
+  private BracketIndex index;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(42);
+    int size = 20000;
+    starts = new int[size];
+    ends = new int[size];
+    types = new int[size];
+    for (int row = 0; row < size; row++) {
+      // Few distinct positions, to have many repeated values around the medians
+      starts[row] = random.nextInt(4) == 0 ? 1000 * random.nextInt(10) : random.nextInt(1000000);
+      ends[row] = random.nextInt(10) == 0 ? NULL : starts[row] + random.nextInt(50000);
+      types[row] = random.nextInt(6) == 0 ? NULL : random.nextInt(3);
+    }
+    index = new BracketIndex(starts, ends, types);
+  }
+
+  @Test
+  public void sameRowsAsScan() {
+    Random random = new Random(7);
+    int matches = 0;
+    for (int i = 0; i < 2000; i++) {
+      int startMin = random.nextInt(1000000);
+      int startMax = startMin + random.nextInt(i % 2 == 0 ? 1000 : 200000);
+      int endMin = startMin + random.nextInt(20000);
+      int endMax = endMin + random.nextInt(40000);
+      int type = random.nextInt(5) == 0 ? NULL : random.nextInt(4);
+
+      List<Integer> expected = scan(type, startMin, startMax, endMin, endMax);
+      assertThat(search(type, startMin, startMax, endMin, endMax), equalTo(expected));
+      matches += expected.size();
+    }
+    // Not only empty results were compared
+    assertThat(matches > 10000, equalTo(true));
+  }
+
+  @Test
+  public void repeatedPositions() {
+    assertThat(search(NULL, 0, 1, 0, 50000), equalTo(scan(NULL, 0, 1, 0, 50000)));
+    assertThat(search(1, 3000, 3001, 3000, 53000), equalTo(scan(1, 3000, 3001, 3000, 53000)));
+  }
+
+  @Test
+  public void variantsWithoutEndAreNotIncluded() {
+    int withEnd = 0;
+    for (int end : ends) {
+      if (end != NULL) {
+        withEnd++;
+      }
+    }
+    assertThat(index.size(), equalTo(withEnd));
+    assertThat(search(NULL, 0, Integer.MAX_VALUE, NULL, Integer.MAX_VALUE).size(),
+        equalTo(withEnd));
+  }
+
+  @Test
+  public void emptyBrackets() {
+    assertThat(search(NULL, 5000, 5000, 0, 100000).isEmpty(), equalTo(true));
+    assertThat(search(NULL, 0, 100000, 8000, 7000).isEmpty(), equalTo(true));
+    // Unknown type
+    assertThat(search(9, 0, 100000, 0, 100000).isEmpty(), equalTo(true));
+    assertThat(new BracketIndex(new int[0], new int[0], new int[0])
+        .search(NULL, 0, 10, 0, 10, row -> true), equalTo(true));
+  }
+
+  @Test
+  public void visitorStopsTheSearch() {
+    List<Integer> visited = new ArrayList<>();
+    boolean finished = index.search(NULL, 0, 1000000, 0, 1100000, row -> {
+      visited.add(row);
+      return visited.size() < 3;
+    });
+
+    assertThat(finished, equalTo(false));
+    assertThat(visited.size(), equalTo(3));
+  }
+
+  private List<Integer> search(int type, int startMin, int startMax, int endMin, int endMax) {
+    List<Integer> rows = new ArrayList<>();
+    index.search(type, startMin, startMax, endMin, endMax, row -> rows.add(row));
+    rows.sort(null);
+    return rows;
+  }
+
+  private List<Integer> scan(int type, int startMin, int startMax, int endMin, int endMax) {
+    List<Integer> rows = new ArrayList<>();
+    for (int row = 0; row < starts.length; row++) {
+      if ((type == NULL || types[row] == type) && ends[row] != NULL
+          && starts[row] >= startMin && starts[row] < startMax
+          && ends[row] >= endMin && ends[row] < endMax) {
+        rows.add(row);
+      }
+    }
+    return rows;
+  }
+
+}
@@ -0,0 +1,197 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChromosomeIndexTest {
+
+  private static final List<Integer> ALL_DATASETS = Arrays.asList(1, 2, 3, 4, 5);
+
+  private static final int NULL = ChromosomeIndex.NULL_VALUE;
+
+  private ChromosomeIndex index;
+
+  @Before
+  public void setUp() {
+    // Same variants as chromosomes 1 and 4 of /db/beacon_data_table.sql, in a single chromosome
+    index = new ChromosomeIndex.Builder(new StringDictionary())
+        .add(1, 12665100, 12686200, "A", ".", "DUP", 1, 1, 2, new BigDecimal("0.3"))
+        .add(1, 4, 7, "CGTG", "C", "DEL", 1, 1, 1, new BigDecimal("0.5"))
+        .add(1, 2827694, 2827762, "CGTGGATGCGGGGAC", "C", "DEL", 1, 1, 1, new BigDecimal("0.4"))
+        .add(1, 321682, 321887, "T", ".", "DEL", 1, 1, 1, new BigDecimal("0.5"))
+        .add(1, 2, 3, "TC", "T", "DEL", 1, 1, 1, new BigDecimal("0.5"))
+        .add(1, 2, NULL, "TC", "TCA", "INS", 1, 1, 1, new BigDecimal("0.1"))
+        .add(1, 4, NULL, "C", "G", "SNP", 1, 1, 1, new BigDecimal("0.1"))
+        .add(5, 4, NULL, "C", "T", "SNP", 1, 1, 1, new BigDecimal("0.1"))
+        .build();
+  }
+
+  @Test
+  public void exactSnp() {
+    List<BeaconDataSummary> result = search(null, 4, null, null, null, null, null, "C", "G",
+        ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getDatasetId(), equalTo(1));
+    assertThat(result.get(0).getNumVariants(), equalTo(1));
+    assertThat(result.get(0).getFrequency(), equalTo(new BigDecimal("0.1")));
+  }
+
+  @Test
+  public void exactUnknownAllele() {
+    List<BeaconDataSummary> result = search(null, 4, null, null, null, null, null, "C", "GGG",
+        ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(0));
+  }
+
+  @Test
+  public void exactOnlyAuthorizedDatasets() {
+    List<BeaconDataSummary> result = search(null, 4, null, null, null, null, null, "C", "T",
+        Arrays.asList(1, 2, 3));
+
+    assertThat(result.size(), equalTo(0));
+  }
+
+  @Test
+  public void anyAlternateAtPosition() {
+    List<BeaconDataSummary> result = search(null, 4, null, null, null, null, null, "N", "N",
+        ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(2));
+    assertThat(result.get(0).getDatasetId(), equalTo(1));
+    assertThat(result.get(0).getNumVariants(), equalTo(2));
+    assertThat(result.get(0).getVariantCnt(), equalTo(BigInteger.valueOf(2)));
+    assertThat(result.get(0).getFrequency(), equalTo(new BigDecimal("1.00")));
+    assertThat(result.get(1).getDatasetId(), equalTo(5));
+  }
+
+  @Test
+  public void insertionPrefix() {
+    List<BeaconDataSummary> result = search("INS", 2, null, null, null, null, null, "TC", "A",
+        ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getNumVariants(), equalTo(1));
+  }
+
+  @Test
+  public void exactStartAndEnd() {
+    List<BeaconDataSummary> result = search("DEL", 4, null, null, 8, null, null, "CGTG", "C",
+        ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getNumVariants(), equalTo(1));
+  }
+
+  @Test
+  public void range() {
+    // Matches the variants starting or ending inside [3, 5)
+    List<BeaconDataSummary> result = search(null, 3, null, null, 5, null, null, null, "N",
+        ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(2));
+    assertThat(result.get(0).getDatasetId(), equalTo(1));
+    assertThat(result.get(0).getNumVariants(), equalTo(3));
+    assertThat(result.get(1).getDatasetId(), equalTo(5));
+  }
+
+  @Test
+  public void bracket() {
+    List<BeaconDataSummary> result = search("DEL", null, 2827690, 2827700, null, 2827760,
+        2827770, "N", "N", ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getFrequency(), equalTo(new BigDecimal("0.4")));
+  }
+
+  @Test
+  public void bracketOutsideOfEnd() {
+    List<BeaconDataSummary> result = search("DEL", null, 2827690, 2827700, null, 2827770,
+        2827780, "N", "N", ALL_DATASETS);
+
+    assertThat(result.size(), equalTo(0));
+  }
+
+  @Test
+  public void existsStopsAtFirstMatch() {
+    assertThat(exists(null, 4, null, null, null, null, null, "C", "G", ALL_DATASETS),
+        equalTo(true));
+    assertThat(exists(null, 4, null, null, null, null, null, "C", "GGG", ALL_DATASETS),
+        equalTo(false));
+    assertThat(exists(null, 4, null, null, null, null, null, "C", "T", Arrays.asList(1, 2, 3)),
+        equalTo(false));
+    // Range: the variant is found by its end
+    assertThat(exists(null, 3, null, null, 4, null, null, "N", "N", ALL_DATASETS),
+        equalTo(true));
+    assertThat(exists("DEL", null, 2827690, 2827700, null, 2827770, 2827780, "N", "N",
+        ALL_DATASETS), equalTo(false));
+  }
+
+  @Test
+  public void samplesOfSeveralVariantsAreCountedOnce() {
+    index = new ChromosomeIndex.Builder(new StringDictionary())
+        .add(1, 2, 3, "TC", "T", "DEL", 1, 1, 2, null, SampleBitmap.of(1, 2))
+        .add(1, 2, NULL, "TC", "TCA", "INS", 1, 1, 2, null, SampleBitmap.of(2, 3))
+        .add(1, 4, NULL, "C", "G", "SNP", 1, 1, 1, null, SampleBitmap.of(1))
+        .build();
+
+    List<BeaconDataSummary> result = search(null, 2, null, null, 5, null, null, "N", "N",
+        ALL_DATASETS);
+
+    // Not the maximum of the matching samples of each variant
+    assertThat(result.get(0).getNumVariants(), equalTo(3));
+    assertThat(result.get(0).getSampleCnt(), equalTo(BigInteger.valueOf(3)));
+
+    result = search(null, 4, null, null, null, null, null, "C", "G", ALL_DATASETS);
+    assertThat(result.get(0).getSampleCnt(), equalTo(BigInteger.ONE));
+  }
+
+  @Test
+  public void unknownSamplesUseTheMaximum() {
+    // The samples of the variants loaded without them are unknown
+    List<BeaconDataSummary> result = search(null, 2, null, null, 5, null, null, "N", "N",
+        ALL_DATASETS);
+
+    assertThat(result.get(0).getNumVariants(), equalTo(4));
+    assertThat(result.get(0).getSampleCnt(), equalTo(BigInteger.ONE));
+  }
+
+  @Test
+  public void lowerBound() {
+    int[] sorted = {1, 3, 3, 7};
+
+    assertThat(ChromosomeIndex.lowerBound(sorted, 0), equalTo(0));
+    assertThat(ChromosomeIndex.lowerBound(sorted, 3), equalTo(1));
+    assertThat(ChromosomeIndex.lowerBound(sorted, 4), equalTo(3));
+    assertThat(ChromosomeIndex.lowerBound(sorted, 8), equalTo(4));
+  }
+
+  private List<BeaconDataSummary> search(String variantType, Integer start, Integer startMin,
+      Integer startMax, Integer end, Integer endMin, Integer endMax, String referenceBases,
+      String alternateBases, List<Integer> datasetIds) {
+
+    IndexQuery query = IndexQuery.of(variantType, start, startMin, startMax, end, endMin, endMax,
+        referenceBases, alternateBases, datasetIds);
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    index.search(query, accumulator);
+    return accumulator.toSummaries();
+  }
+
+  private boolean exists(String variantType, Integer start, Integer startMin, Integer startMax,
+      Integer end, Integer endMin, Integer endMax, String referenceBases, String alternateBases,
+      List<Integer> datasetIds) {
+
+    return index.exists(IndexQuery.of(variantType, start, startMin, startMax, end, endMin,
+        endMax, referenceBases, alternateBases, datasetIds));
+  }
+
+}
@@ -0,0 +1,70 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class SampleBitmapTest {
+
+  @Test
+  public void repeatedIdsAreCountedOnce() {
+    SampleBitmap bitmap = SampleBitmap.of(7, 3, 7, 70000, 3);
+
+    assertThat(bitmap.cardinality(), equalTo(3));
+    assertThat(bitmap.contains(3), equalTo(true));
+    assertThat(bitmap.contains(70000), equalTo(true));
+    assertThat(bitmap.contains(4), equalTo(false));
+    assertThat(bitmap.contains(70000 - 65536), equalTo(false));
+    assertThat(bitmap.contains(-1), equalTo(false));
+  }
+
+  @Test
+  public void empty() {
+    SampleBitmap bitmap = SampleBitmap.of();
+
+    assertThat(bitmap.isEmpty(), equalTo(true));
+    assertThat(new SampleBitmap.Union().or(bitmap).cardinality(), equalTo(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeId() {
+    SampleBitmap.of(1, -2);
+  }
+
+  @Test
+  public void denseGroupIsBitset() {
+    int[] ids = new int[SampleBitmap.MAX_ARRAY_SIZE * 2];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = i * 2;
+    }
+    SampleBitmap bitmap = SampleBitmap.of(ids);
+
+    assertThat(bitmap.cardinality(), equalTo(ids.length));
+    assertThat(bitmap.contains(ids[ids.length - 1]), equalTo(true));
+    assertThat(bitmap.contains(ids[ids.length - 1] - 1), equalTo(false));
+  }
+
+  @Test
+  public void unionIsTheDistinctCount() {
+    Random random = new Random(42);
+    Set<Integer> expected = new HashSet<>();
+    SampleBitmap.Union union = new SampleBitmap.Union();
+    for (int i = 0; i < 200; i++) {
+      // Sparse and dense variants, some of them in a second group of ids
+      int[] ids = new int[random.nextInt(5) == 0 ? 5000 + random.nextInt(5000)
+          : random.nextInt(10)];
+      for (int j = 0; j < ids.length; j++) {
+        ids[j] = random.nextInt(random.nextBoolean() ? 10000 : 200000);
+        expected.add(ids[j]);
+      }
+      union.or(SampleBitmap.of(ids));
+    }
+
+    assertThat(union.cardinality(), equalTo(expected.size()));
+  }
+
+}
@@ -0,0 +1,176 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VariantFileTest {
+
+  private static final List<Integer> ALL_DATASETS = Arrays.asList(1, 2, 5);
+
+  private static final int NULL = ChromosomeIndex.NULL_VALUE;
+
+  private static final String[] BASES = {"A", "C", "G", "T", "TC", "TCA", "CGTG"};
+
+  private static final String[] TYPES = {"SNP", "DEL", "INS", "DUP"};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ChromosomeIndex index;
+
+  private List<VariantFile> files;
+
+  private List<Integer> starts;
+
+  private int matchingQueries;
+
+  @Before
+  public void setUp() throws IOException {
+    Random random = new Random(42);
+    ChromosomeIndex.Builder builder = new ChromosomeIndex.Builder(new StringDictionary());
+    Map<Integer, VariantFileWriter> writers = new TreeMap<>();
+    starts = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i < 5000; i++) {
+      // Small, medium and big gaps between positions, to use every width of the differences
+      int gap = random.nextInt(10);
+      start += gap < 6 ? random.nextInt(3)
+          : gap < 9 ? random.nextInt(1000) : random.nextInt(100000);
+      starts.add(start);
+      int datasetId = random.nextBoolean() ? 1 : 5;
+      int end = random.nextInt(3) == 0 ? NULL : start + random.nextInt(500);
+      String reference = BASES[random.nextInt(BASES.length)];
+      String alternate = BASES[random.nextInt(BASES.length)];
+      String type = random.nextInt(5) == 0 ? null : TYPES[random.nextInt(TYPES.length)];
+      int variantCnt = random.nextInt(4) == 0 ? NULL : random.nextInt(100);
+      BigDecimal frequency = random.nextInt(4) == 0 ? null
+          : BigDecimal.valueOf(random.nextInt(100000), random.nextInt(8));
+
+      builder.add(datasetId, start, end, reference, alternate, type, variantCnt, 200, 100,
+          frequency);
+      writers.computeIfAbsent(datasetId, VariantFileWriter::new)
+          .add("4", start, end, reference, alternate, type, variantCnt, 200, 100, frequency);
+    }
+    index = builder.build();
+
+    files = new ArrayList<>();
+    for (VariantFileWriter writer : writers.values()) {
+      Path file = folder.newFile().toPath();
+      writer.writeTo(file);
+      files.add(VariantFile.map(file));
+    }
+  }
+
+  @Test
+  public void sameResultsAsChromosomeIndex() {
+    Random random = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      // Mostly positions with variants
+      int start = starts.get(random.nextInt(starts.size())) + random.nextInt(3) - 1;
+      String reference = BASES[random.nextInt(BASES.length)];
+      String alternate = BASES[random.nextInt(BASES.length)];
+      String type = TYPES[random.nextInt(TYPES.length)];
+
+      assertSameResults(IndexQuery.of(null, start, null, null, null, null, null, reference,
+          alternate, ALL_DATASETS));
+      assertSameResults(IndexQuery.of(null, start, null, null, null, null, null, "N", "N",
+          ALL_DATASETS));
+      assertSameResults(IndexQuery.of(type, start, null, null, null, null, null, reference, null,
+          ALL_DATASETS));
+      assertSameResults(IndexQuery.of("INS", start, null, null, null, null, null, "TC", "A",
+          ALL_DATASETS));
+      assertSameResults(IndexQuery.of(null, start, null, null, start + 5000, null, null, "N",
+          "N", ALL_DATASETS));
+      assertSameResults(IndexQuery.of(type, start, null, null, start + 300, null, null,
+          reference, "N", Arrays.asList(5)));
+      assertSameResults(IndexQuery.of(type, null, start, start + 20000, null, start + 100,
+          start + 30000, null, null, ALL_DATASETS));
+    }
+    // Not only empty results were compared
+    assertThat(matchingQueries > 1000, equalTo(true));
+  }
+
+  @Test
+  public void chromosomeWithoutVariants() {
+    IndexQuery query = IndexQuery.of(null, null, null, null, null, null, null, "N", "N",
+        ALL_DATASETS);
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    files.get(0).search("X", query, accumulator);
+
+    assertThat(accumulator.isEmpty(), equalTo(true));
+    assertThat(files.get(0).exists("X", query), equalTo(false));
+    assertThat(files.get(0).getChromosomes().contains("4"), equalTo(true));
+  }
+
+  @Test
+  public void readCsv() throws IOException {
+    String csv = "datasetId;chromosome;position;variantId;reference;alternate;end;svType;"
+        + "svLength;variantCount;callCount;sampleCount;frequency;sampleMatchingCount\n"
+        + "1;Y;2655470;.;A;C;;SNP;;5;1233;1233;0.0041;5\n"
+        + "1;Y;2655179;rs11575897;G;A;;SNP;;22;1233;1233;0.0178;22\n"
+        + "2;21;9411238;rs559462325;G;A;;SNP;;1;5008;2504;;1\n";
+    Map<Integer, VariantFileWriter> writers = new TreeMap<>();
+    VariantCsvConverter.read(new BufferedReader(new StringReader(csv)), writers);
+
+    assertThat(writers.get(1).size(), equalTo(2L));
+    assertThat(writers.get(2).size(), equalTo(1L));
+
+    Path file = folder.newFile().toPath();
+    writers.get(1).writeTo(file);
+    VariantFile variantFile = VariantFile.map(file);
+    DatasetSummaryAccumulator accumulator = new DatasetSummaryAccumulator();
+    variantFile.search("y", IndexQuery.of(null, 2655179, null, null, null, null, null, "G", "A",
+        ALL_DATASETS), accumulator);
+    List<BeaconDataSummary> result = accumulator.toSummaries();
+
+    assertThat(variantFile.getDatasetId(), equalTo(1));
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getVariantCnt().intValue(), equalTo(22));
+    // Frequency of the single variant, with the scale of the CSV
+    assertThat(result.get(0).getFrequency(), equalTo(new BigDecimal("0.0178")));
+    assertThat(result.get(0).getSampleCnt().intValue(), equalTo(22));
+  }
+
+  private void assertSameResults(IndexQuery query) {
+    DatasetSummaryAccumulator expected = new DatasetSummaryAccumulator();
+    index.search(query, expected);
+    DatasetSummaryAccumulator actual = new DatasetSummaryAccumulator();
+    for (VariantFile file : files) {
+      file.search("4", query, actual);
+    }
+
+    assertThat(ids(actual.toSummaries()), equalTo(ids(expected.toSummaries())));
+    if (!expected.isEmpty()) {
+      matchingQueries++;
+    }
+    boolean exists = files.stream().anyMatch(file -> file.exists("4", query));
+    assertThat(exists, equalTo(index.exists(query)));
+  }
+
+  // The id has all the values of the summary
+  private static List<String> ids(List<BeaconDataSummary> summaries) {
+    List<String> ids = new ArrayList<>();
+    for (BeaconDataSummary summary : summaries) {
+      ids.add(summary.getDatasetId() + "|" + summary.getId());
+    }
+    return ids;
+  }
+
+}
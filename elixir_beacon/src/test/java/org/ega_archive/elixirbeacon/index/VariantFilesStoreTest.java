@@ -0,0 +1,96 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.ega_archive.elixirbeacon.store.VariantStore;
+import org.ega_archive.elixirbeacon.store.VariantStoreConformanceTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class VariantFilesStoreTest extends VariantStoreConformanceTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private VariantFiles variantFiles;
+
+  private DataVersionMonitor dataVersionMonitor;
+
+  private LongConsumer listener;
+
+  @Before
+  public void setUp() throws IOException {
+    dataVersionMonitor = mock(DataVersionMonitor.class);
+    when(dataVersionMonitor.getVersion()).thenReturn(1L);
+
+    Map<Integer, VariantFileWriter> writers = new TreeMap<>();
+    for (Variant variant : VARIANTS) {
+      writers.computeIfAbsent(variant.datasetId, VariantFileWriter::new)
+          .add(variant.chromosome, variant.start,
+              variant.end == null ? ChromosomeIndex.NULL_VALUE : variant.end, variant.reference,
+              variant.alternate, variant.type, variant.variantCnt, variant.callCnt,
+              variant.sampleCnt, variant.frequency);
+    }
+    Path directory = folder.getRoot().toPath();
+    for (Map.Entry<Integer, VariantFileWriter> entry : writers.entrySet()) {
+      entry.getValue().writeTo(directory.resolve(entry.getKey() + VariantCsvConverter.EXTENSION));
+    }
+
+    variantFiles = new VariantFiles();
+    ReflectionTestUtils.setField(variantFiles, "directory", directory.toString());
+    ReflectionTestUtils.setField(variantFiles, "dataVersionMonitor", dataVersionMonitor);
+    variantFiles.init();
+    variantFiles.reload();
+
+    ArgumentCaptor<LongConsumer> captor = ArgumentCaptor.forClass(LongConsumer.class);
+    verify(dataVersionMonitor).addListener(captor.capture());
+    listener = captor.getValue();
+  }
+
+  @After
+  public void tearDown() {
+    variantFiles.destroy();
+  }
+
+  @Override
+  protected VariantStore getStore() {
+    return variantFiles;
+  }
+
+  @Test
+  public void newDataVersionMapsTheFilesAgain() throws IOException {
+    Files.delete(folder.getRoot().toPath().resolve(5 + VariantCsvConverter.EXTENSION));
+    when(dataVersionMonitor.getVersion()).thenReturn(2L);
+    // Results of the old files would be cached under the new version
+    assertThat(variantFiles.isReady(), equalTo(false));
+
+    listener.accept(2L);
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!variantFiles.isReady() && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    assertThat(variantFiles.isReady(), equalTo(true));
+    IndexQuery query = IndexQuery.of(null, 4, null, null, null, null, null, "C", "T",
+        Collections.singletonList(5));
+    assertThat(variantFiles.exists("4", GRCH37, query), equalTo(false));
+  }
+
+}
@@ -0,0 +1,109 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import org.ega_archive.elixirbeacon.cache.DataVersionMonitor;
+import org.ega_archive.elixirbeacon.store.VariantStore;
+import org.ega_archive.elixirbeacon.store.VariantStoreConformanceTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class VariantIndexStoreTest extends VariantStoreConformanceTest {
+
+  private VariantIndex variantIndex;
+
+  private DataVersionMonitor dataVersionMonitor;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private LongConsumer listener;
+
+  @Before
+  public void setUp() {
+    dataVersionMonitor = mock(DataVersionMonitor.class);
+    when(dataVersionMonitor.getVersion()).thenReturn(1L);
+    when(dataVersionMonitor.readVersion()).thenReturn(1L);
+    jdbcTemplate = mock(JdbcTemplate.class);
+
+    variantIndex = new VariantIndex();
+    ReflectionTestUtils.setField(variantIndex, "enabled", true);
+    ReflectionTestUtils.setField(variantIndex, "jdbcTemplate", jdbcTemplate);
+    ReflectionTestUtils.setField(variantIndex, "transactionManager",
+        mock(PlatformTransactionManager.class));
+    ReflectionTestUtils.setField(variantIndex, "dataVersionMonitor", dataVersionMonitor);
+    variantIndex.init();
+
+    ArgumentCaptor<LongConsumer> captor = ArgumentCaptor.forClass(LongConsumer.class);
+    verify(dataVersionMonitor).addListener(captor.capture());
+    listener = captor.getValue();
+
+    StringDictionary dictionary = new StringDictionary();
+    Map<String, ChromosomeIndex.Builder> builders = new HashMap<>();
+    for (Variant variant : VARIANTS) {
+      builders.computeIfAbsent(VariantIndex.key(assembly(variant.datasetId), variant.chromosome),
+          key -> new ChromosomeIndex.Builder(dictionary))
+          .add(variant.datasetId, variant.start,
+              variant.end == null ? ChromosomeIndex.NULL_VALUE : variant.end, variant.reference,
+              variant.alternate, variant.type, variant.variantCnt, variant.callCnt,
+              variant.sampleCnt, variant.frequency, SampleBitmap.of(variant.samples));
+    }
+    variantIndex.load(builders, 1L);
+  }
+
+  @After
+  public void tearDown() {
+    variantIndex.destroy();
+  }
+
+  @Override
+  protected VariantStore getStore() {
+    return variantIndex;
+  }
+
+  @Test
+  public void newDataVersionReloadsTheIndex() {
+    when(dataVersionMonitor.getVersion()).thenReturn(2L);
+    when(dataVersionMonitor.readVersion()).thenReturn(2L);
+    // Results of the old index would be cached under the new version
+    assertThat(variantIndex.isReady(), equalTo(false));
+
+    listener.accept(2L);
+
+    verify(jdbcTemplate, timeout(5000)).query(any(PreparedStatementCreator.class),
+        any(RowCallbackHandler.class));
+    waitUntilReady();
+  }
+
+  @Test
+  public void laggingReplicaIsNotLoadedFrom() {
+    when(dataVersionMonitor.getVersion()).thenReturn(2L);
+
+    assertThat(variantIndex.reload(), equalTo(false));
+    assertThat(variantIndex.isReady(), equalTo(false));
+  }
+
+  private void waitUntilReady() {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!variantIndex.isReady() && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    assertThat(variantIndex.isReady(), equalTo(true));
+  }
+
+}
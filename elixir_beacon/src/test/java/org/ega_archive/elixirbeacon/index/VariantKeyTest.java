@@ -0,0 +1,57 @@
+package org.ega_archive.elixirbeacon.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import org.junit.Test;
+
+public class VariantKeyTest {
+
+  @Test
+  public void sameKeyAsTheDatabaseFunction() {
+    // Computed with the layout of beacon_variant_key(), see db_schema.sql
+    assertThat(VariantKey.of("4", 4, "C", "G"), equalTo(1152921509123053151L));
+    assertThat(VariantKey.of("Y", 2655179, "G", "A"), equalTo(6920380005309895383L));
+    assertThat(VariantKey.of("chrX", 155270560, "A", "AT"), equalTo(6796019146704441365L));
+    assertThat(VariantKey.of("GL000192.1", 100, "A", "C"), equalTo(107676069794L));
+  }
+
+  @Test
+  public void fieldsArePacked() {
+    long key = VariantKey.of("X", 123456, "A", "T");
+
+    assertThat(key >= 0, equalTo(true));
+    assertThat((int) (key >>> VariantKey.CHROMOSOME_SHIFT), equalTo(23));
+    assertThat((int) ((key >>> VariantKey.START_SHIFT) & 0xFFFFFFF), equalTo(123456));
+  }
+
+  @Test
+  public void chromosomeNamesAreNormalized() {
+    assertThat(VariantKey.chromosomeCode("1"), equalTo(1));
+    assertThat(VariantKey.chromosomeCode("chr22"), equalTo(22));
+    assertThat(VariantKey.chromosomeCode("x"), equalTo(23));
+    assertThat(VariantKey.chromosomeCode("ChrY"), equalTo(24));
+    assertThat(VariantKey.chromosomeCode("M"), equalTo(25));
+    assertThat(VariantKey.chromosomeCode("MT"), equalTo(25));
+    assertThat(VariantKey.chromosomeCode("23"), equalTo(0));
+    assertThat(VariantKey.chromosomeCode("01"), equalTo(0));
+    assertThat(VariantKey.chromosomeCode(null), equalTo(0));
+  }
+
+  @Test
+  public void basesAreCaseInsensitive() {
+    assertThat(VariantKey.of("chr1", 100, "acg", "a"),
+        equalTo(VariantKey.of("1", 100, "ACG", "A")));
+  }
+
+  @Test
+  public void referenceAndAlternateAreNotInterchangeable() {
+    // The separator keeps A>CG and AC>G apart
+    assertThat(VariantKey.of("1", 100, "A", "CG"),
+        not(equalTo(VariantKey.of("1", 100, "AC", "G"))));
+    assertThat(VariantKey.of("1", 100, "A", "C"),
+        not(equalTo(VariantKey.of("1", 100, "C", "A"))));
+  }
+
+}
@@ -0,0 +1,76 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import org.junit.Test;
+
+public class AlleleTableTest {
+
+  private static final long HASH = AlleleTable.hash("1", "Y", "2655179", "rs11575897", "G", "A",
+      "SNP");
+
+  @Test
+  public void rowsAndIdsAreKeptByHash() {
+    AlleleTable table = new AlleleTable();
+    table.addRow(HASH, 0);
+    table.addRow(HASH, 120);
+    table.addId(HASH, 42);
+
+    assertThat(table.getRows(HASH), equalTo(new long[]{0, 120}));
+    assertThat(table.getIds(HASH), equalTo(new int[]{42}));
+    assertThat(table.getRows(HASH + 1).length, equalTo(0));
+    assertThat(table.getIds(HASH + 1).length, equalTo(0));
+    assertThat(table.size(), equalTo(1));
+  }
+
+  @Test
+  public void duplicatedRowsKeepEveryId() {
+    AlleleTable table = new AlleleTable();
+    table.addId(HASH, 1);
+    table.addId(HASH, 2);
+    table.addId(HASH, 3);
+
+    assertThat(boxed(table.getIds(HASH)), arrayContainingInAnyOrder(1, 2, 3));
+    assertThat(table.size(), equalTo(1));
+  }
+
+  @Test
+  public void tableGrows() {
+    AlleleTable table = new AlleleTable();
+    for (int i = 1; i <= 100000; i++) {
+      long hash = AlleleTable.hash("1", "1", String.valueOf(i), ".", "A", "C", "SNP");
+      table.addRow(hash, (long) i << 40);
+      table.addId(hash, i);
+    }
+
+    assertThat(table.size(), equalTo(100000));
+    for (int i = 1; i <= 100000; i++) {
+      long hash = AlleleTable.hash("1", "1", String.valueOf(i), ".", "A", "C", "SNP");
+      assertThat(table.getRows(hash), equalTo(new long[]{(long) i << 40}));
+      assertThat(table.getIds(hash), equalTo(new int[]{i}));
+    }
+  }
+
+  @Test
+  public void columnsAreNotMixedUp() {
+    assertThat(AlleleTable.hash("1", "Y", "10", ".", "A", "CG", "SNP"),
+        not(equalTo(AlleleTable.hash("1", "Y", "10", ".", "AC", "G", "SNP"))));
+    assertThat(AlleleTable.hash("1", "Y", "10", ".", "A", "C", "SNP"),
+        not(equalTo(AlleleTable.hash("2", "Y", "10", ".", "A", "C", "SNP"))));
+    // Both are null in the database
+    assertThat(AlleleTable.hash("1", "Y", "10", "", "A", "C", "SNP"),
+        equalTo(AlleleTable.hash("1", "Y", "10", null, "A", "C", "SNP")));
+  }
+
+  private static Integer[] boxed(int[] values) {
+    Integer[] boxed = new Integer[values.length];
+    for (int i = 0; i < values.length; i++) {
+      boxed[i] = values[i];
+    }
+    return boxed;
+  }
+
+}
@@ -0,0 +1,72 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Split of the input files, the load itself needs a database.
+ */
+public class BeaconDataLoaderTest {
+
+  private static final String HEADER = "datasetId;chromosome;position;variantId;reference;"
+      + "alternate;end;svType;svLength;variantCount;callCount;sampleCount;frequency;"
+      + "sampleMatchingCount";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void rowsAreSplitByChromosome() throws IOException {
+    Path csv = write("1_subset.variants.csv", HEADER,
+        "1;Y;2655179;rs11575897;G;A;;SNP;;22;1233;1233;0.0178;22",
+        "1;21;9411239;rs559462325;G;A;;SNP;;1;5008;2504;0.0002;1",
+        "",
+        "1;Y;2655470;.;A;C;;SNP;;5;1233;1233;0.0041;5");
+    LoadProgress progress = new LoadProgress();
+
+    Map<String, Path> spooled = BeaconDataLoader.spool(csv, ChromosomeLoader.VARIANT_COLUMNS,
+        folder.newFolder().toPath(), progress);
+
+    assertThat(spooled.keySet(), contains("21", "Y"));
+    assertThat(Files.readAllLines(spooled.get("Y"), StandardCharsets.UTF_8), contains(
+        "1;Y;2655179;rs11575897;G;A;;SNP;;22;1233;1233;0.0178;22",
+        "1;Y;2655470;.;A;C;;SNP;;5;1233;1233;0.0041;5"));
+    assertThat(Files.readAllLines(spooled.get("21"), StandardCharsets.UTF_8), contains(
+        "1;21;9411239;rs559462325;G;A;;SNP;;1;5008;2504;0.0002;1"));
+    assertThat(progress.getRowsSpooled().get(), equalTo(3L));
+  }
+
+  @Test
+  public void rowsWithOtherColumnsAreRejected() throws IOException {
+    Path csv = write("1_subset.variants.matching.samples.csv", "header",
+        "1;Y;2655179;rs11575897;G;A;SNP;{HG00530}",
+        "1;Y;2655179;rs11575897;G;A;{HG00530}");
+
+    try {
+      BeaconDataLoader.spool(csv, ChromosomeLoader.MATCHING_SAMPLE_COLUMNS,
+          folder.newFolder().toPath(), new LoadProgress());
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage().startsWith("Invalid row at line 3"), equalTo(true));
+    }
+  }
+
+  private Path write(String name, String... lines) throws IOException {
+    Path file = folder.getRoot().toPath().resolve(name);
+    Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    return file;
+  }
+
+}
@@ -0,0 +1,77 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Rows of {@link ChromosomeLoader}, the copies need a database.
+ */
+public class ChromosomeLoaderTest {
+
+  private static final String VARIANT =
+      "1;Y;2655179;rs11575897;G;A;;SNP;;22;1233;1233;0.0178;22";
+
+  private static final String MATCHING_SAMPLES =
+      "1;Y;2655179;rs11575897;G;A;SNP;{HG00530,HG00533,NA18561}";
+
+  private LoadProgress progress;
+
+  private ChromosomeLoader loader;
+
+  @Before
+  public void setUp() {
+    Map<String, Integer> sampleIds = new HashMap<>();
+    sampleIds.put("HG00530", 1);
+    sampleIds.put("HG00533", 2);
+    progress = new LoadProgress();
+    loader = new ChromosomeLoader("Y", Collections.emptyList(), Collections.emptyList(),
+        sampleIds, () -> null, progress);
+  }
+
+  @Test
+  public void variantAndMatchingSamplesHaveTheSameHash() {
+    assertThat(ChromosomeLoader.hash(VARIANT.split(";", -1)),
+        equalTo(ChromosomeLoader.hash(MATCHING_SAMPLES.split(";", -1))));
+    assertThat(ChromosomeLoader.hash(VARIANT.replace(";SNP;", ";INDEL;").split(";", -1)),
+        equalTo(ChromosomeLoader.hash(MATCHING_SAMPLES.replace(";SNP;", ";INDEL;")
+            .split(";", -1))));
+  }
+
+  @Test
+  public void variantRowHasTheIdAndTheMatchingSamples() {
+    String[] values = VARIANT.split(";", -1);
+
+    assertThat(ChromosomeLoader.variantRow(new StringBuilder(), 7, values, new int[]{1, 2})
+        .toString(), equalTo("7;1;Y;2655179;rs11575897;G;A;;SNP;;22;1233;1233;0.0178;2;{1,2}"));
+    // Not found in the matching samples: the count of the file is kept, without sample ids
+    assertThat(ChromosomeLoader.variantRow(new StringBuilder(), 7, values, new int[0])
+        .toString(), equalTo("7;" + VARIANT + ";"));
+  }
+
+  @Test
+  public void arraysAreParsed() {
+    assertThat(ChromosomeLoader.parseArray("{HG00096,HG00101}"),
+        equalTo(new String[]{"HG00096", "HG00101"}));
+    assertThat(ChromosomeLoader.parseArray("{\"HG00096\", HG00101}"),
+        equalTo(new String[]{"HG00096", "HG00101"}));
+    assertThat(ChromosomeLoader.parseArray("{HG00096}"), equalTo(new String[]{"HG00096"}));
+    assertThat(ChromosomeLoader.parseArray("{}").length, equalTo(0));
+  }
+
+  @Test
+  public void unknownSamplesAreSkipped() {
+    assertThat(loader.resolveSamples("{HG00530,NA18561,HG00533,HG00530}", true),
+        equalTo(new int[]{1, 2}));
+    assertThat(progress.getUnknownSamples().get(), equalTo(1L));
+
+    loader.resolveSamples("{NA18561}", false);
+    assertThat(progress.getUnknownSamples().get(), equalTo(1L));
+  }
+
+}
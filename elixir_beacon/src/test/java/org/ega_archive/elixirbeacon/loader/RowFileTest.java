@@ -0,0 +1,71 @@
+package org.ega_archive.elixirbeacon.loader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RowFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void linesAreReadWithTheirOffsets() throws IOException {
+    Path file = write("1;Y;{HG00530}\r\n1;21;{NA18561}\n\n1;X;{HG00096}");
+
+    try (RowFile rowFile = new RowFile(file)) {
+      assertThat(rowFile.readLine(), equalTo("1;Y;{HG00530}"));
+      assertThat(rowFile.getLineOffset(), equalTo(0L));
+      assertThat(rowFile.readLine(), equalTo("1;21;{NA18561}"));
+      assertThat(rowFile.getLineOffset(), equalTo(15L));
+      assertThat(rowFile.readLine(), equalTo(""));
+      assertThat(rowFile.readLine(), equalTo("1;X;{HG00096}"));
+      assertThat(rowFile.getLineOffset(), equalTo(31L));
+      assertThat(rowFile.readLine(), nullValue());
+    }
+  }
+
+  @Test
+  public void linesAreReadAgainByOffset() throws IOException {
+    // Longer than the buffer, so that most lines are not buffered any more
+    List<String> lines = new ArrayList<>();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      lines.add(i + ";" + (i % 97 == 0 ? new String(new char[70000]).replace('\0', 'A') : "é"));
+      content.append(lines.get(i)).append('\n');
+    }
+    Path file = write(content.toString());
+
+    List<Long> offsets = new ArrayList<>();
+    try (RowFile rowFile = new RowFile(file)) {
+      while (rowFile.readLine() != null) {
+        offsets.add(rowFile.getLineOffset());
+      }
+      assertThat(offsets.size(), equalTo(lines.size()));
+
+      for (int i : Arrays.asList(1999, 3, 4, 0, 1400, 1401, 97)) {
+        assertThat(rowFile.readLine(offsets.get(i)), equalTo(lines.get(i)));
+      }
+      // Reads on from there
+      assertThat(rowFile.readLine(), equalTo(lines.get(98)));
+    }
+  }
+
+  private Path write(String content) throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+}
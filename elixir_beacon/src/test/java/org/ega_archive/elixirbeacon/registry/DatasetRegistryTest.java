@@ -0,0 +1,124 @@
+package org.ega_archive.elixirbeacon.registry;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.ega_archive.elixirbeacon.dto.Handover;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCode;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDatasetConsentCodePK;
+import org.ega_archive.elixirbeacon.properties.HandoverConfig.HandoverProperty;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetRegistryTest {
+
+  private DatasetRegistry registry;
+
+  @Before
+  public void setUp() {
+    List<BeaconDataset> datasets = Arrays.asList(
+        dataset(3, "EGAD00000000003", "CONTROLLED", "grch38"),
+        dataset(1, "EGAD00000000001", "PUBLIC", "grch37"),
+        dataset(2, "EGAD00000000002", "REGISTERED", "GRCh37"));
+
+    BeaconDatasetConsentCode code1 = consentCode(1, "NRES");
+    BeaconDatasetConsentCode code2 = consentCode(1, "GRU(CC)");
+
+    registry = new DatasetRegistry(7L, datasets, Arrays.asList(code1, code2),
+        Collections.singletonList(handover()));
+  }
+
+  @Test
+  public void lookups() {
+    assertThat(registry.getVersion(), equalTo(7L));
+    assertThat(registry.findById(2).getStableId(), equalTo("EGAD00000000002"));
+    assertThat(registry.findByStableId("EGAD00000000003").getId(), equalTo(3));
+    assertThat(registry.findByStableId("EGAD00000000004"), nullValue());
+    assertThat(registry.getDatasets().get(0).getId(), equalTo(1));
+  }
+
+  @Test
+  public void consentCodesAndHandovers() {
+    assertThat(registry.getConsentCodes(1).size(), equalTo(2));
+    assertThat(registry.getConsentCodes(1).get(0).getId().getCode(), equalTo("NRES"));
+    assertThat(registry.getConsentCodes(2).size(), equalTo(0));
+
+    List<Handover> handovers = registry.getHandovers("EGAD00000000001");
+    assertThat(handovers.size(), equalTo(1));
+    assertThat(handovers.get(0).getHandoverType().getId(), equalTo("CUSTOM"));
+    assertThat(registry.getHandovers("EGAD00000000002").size(), equalTo(0));
+  }
+
+  @Test
+  public void findIds() {
+    assertThat(registry.findIdsByReferenceGenomeAndAccessType("grch37", "public"), contains(1));
+    assertThat(registry.findIdsByReferenceGenomeAndAccessType("GRCH37", "REGISTERED"),
+        contains(2));
+    assertThat(registry.findIdsByStableIdInAndReferenceGenome(
+        Arrays.asList("EGAD00000000003", "EGAD00000000001", "EGAD00000000001"), "grch38"),
+        contains(3));
+  }
+
+  @Test
+  public void findByReferenceGenome() {
+    assertThat(registry.findByReferenceGenome("GRCh37").size(), equalTo(2));
+    assertThat(registry.findByReferenceGenome("grch37").get(0).getId(), equalTo(1));
+    assertThat(registry.findByReferenceGenome("grch38").get(0).getId(), equalTo(3));
+  }
+
+  @Test
+  public void contentHash() {
+    DatasetRegistry same = new DatasetRegistry(8L, Arrays.asList(
+        dataset(1, "EGAD00000000001", "PUBLIC", "grch37"),
+        dataset(2, "EGAD00000000002", "REGISTERED", "GRCh37"),
+        dataset(3, "EGAD00000000003", "CONTROLLED", "grch38")),
+        Arrays.asList(consentCode(1, "NRES"), consentCode(1, "GRU(CC)")),
+        Collections.singletonList(handover()));
+    assertThat(same.getContentHash(), equalTo(registry.getContentHash()));
+
+    DatasetRegistry changed = new DatasetRegistry(7L, Arrays.asList(
+        dataset(1, "EGAD00000000001", "PUBLIC", "grch37"),
+        dataset(2, "EGAD00000000002", "CONTROLLED", "GRCh37"),
+        dataset(3, "EGAD00000000003", "CONTROLLED", "grch38")),
+        Arrays.asList(consentCode(1, "NRES"), consentCode(1, "GRU(CC)")),
+        Collections.singletonList(handover()));
+    assertThat(changed.getContentHash(), not(equalTo(registry.getContentHash())));
+  }
+
+  private static HandoverProperty handover() {
+    HandoverProperty handover = new HandoverProperty();
+    handover.setStableId("egad00000000001");
+    handover.setId("CUSTOM");
+    handover.setLabel("Download data");
+    handover.setUrl("http://example.org");
+    return handover;
+  }
+
+  private static BeaconDataset dataset(int id, String stableId, String accessType,
+      String referenceGenome) {
+
+    BeaconDataset dataset = new BeaconDataset();
+    dataset.setId(id);
+    dataset.setStableId(stableId);
+    dataset.setAccessType(accessType);
+    dataset.setReferenceGenome(referenceGenome);
+    return dataset;
+  }
+
+  private static BeaconDatasetConsentCode consentCode(int datasetId, String code) {
+    BeaconDatasetConsentCodePK pk = new BeaconDatasetConsentCodePK();
+    pk.setDatasetId(datasetId);
+    pk.setCode(code);
+    BeaconDatasetConsentCode consentCode = new BeaconDatasetConsentCode();
+    consentCode.setId(pk);
+    return consentCode;
+  }
+
+}
@@ -0,0 +1,173 @@
+package org.ega_archive.elixirbeacon.repository.elixirbeacon;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.querydsl.core.types.Predicate;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import org.ega_archive.elixirbeacon.Application;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataset;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.QBeaconDataset;
+import org.ega_archive.elixircore.exception.PreConditionFailed;
+import org.ega_archive.elixircore.helper.CommonQuery;
+import org.ega_archive.elixircore.helper.CountMode;
+import org.ega_archive.elixircore.test.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+/**
+ * Pages of the datasets, with ids 1 to 5 and dataset 3 the only one of GRCh38, by offset and after
+ * a cursor, with each way of counting them.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = Application.class)
+@WebAppConfiguration
+@SpringBootTest("server.port:0")
+public class BeaconDatasetRepositoryTest {
+
+  private static final Predicate GRCH37 = QBeaconDataset.beaconDataset.referenceGenome
+      .eq("grch37");
+
+  @Autowired
+  private BeaconDatasetRepository beaconDatasetRepository;
+
+  @Resource(name = "elixirbeaconDataSource")
+  private DataSource dataSource;
+
+  @Before
+  public void setUp() throws SQLException {
+    TestUtils.populateDatabase(dataSource,
+        "/db/truncate_tables.sql",
+        "/db/beacon_dataset_table.sql");
+    // So that the planner statistics used by the estimates are up to date
+    new JdbcTemplate(dataSource).execute("ANALYZE public.beacon_dataset_table");
+  }
+
+  @Test
+  public void keysetPageIsCountedFromTheCursor() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(null,
+        after("1", 2, CountMode.EXACT));
+
+    assertThat(ids(page), contains(2, 3));
+    assertThat(page.hasNext(), equalTo(true));
+    assertThat(page.getTotalElements(), equalTo(4L));
+    assertThat(page.getTotalPages(), equalTo(2));
+  }
+
+  @Test
+  public void keysetPageWithPredicate() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(GRCH37,
+        after("1", 1, CountMode.EXACT));
+
+    assertThat(ids(page), contains(2));
+    assertThat(page.hasNext(), equalTo(true));
+    assertThat(page.getTotalElements(), equalTo(3L));
+  }
+
+  @Test
+  public void lastKeysetPageHasNoNext() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(null,
+        after("3", 2, CountMode.EXACT));
+
+    assertThat(ids(page), contains(4, 5));
+    assertThat(page.hasNext(), equalTo(false));
+    assertThat(page.getTotalElements(), equalTo(2L));
+    assertThat(page.getTotalPages(), equalTo(1));
+  }
+
+  @Test
+  public void keysetPageWithoutCount() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(null,
+        after("1", 2, CountMode.NONE));
+
+    assertThat(ids(page), contains(2, 3));
+    assertThat(page.hasNext(), equalTo(true));
+    // Only known to have one more
+    assertThat(page.getTotalElements(), equalTo(3L));
+  }
+
+  @Test
+  public void keysetPageIsNotEstimated() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(null,
+        after("2", 2, CountMode.ESTIMATE));
+
+    assertThat(ids(page), contains(3, 4));
+    assertThat(page.hasNext(), equalTo(true));
+    assertThat(page.getTotalElements(), equalTo(3L));
+  }
+
+  @Test(expected = PreConditionFailed.class)
+  public void invalidCursor() {
+    beaconDatasetRepository.findAll(null, after("EGAD00000000001", 2, CountMode.EXACT));
+  }
+
+  @Test
+  public void pageWithoutCount() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(null,
+        offset(0, 2, CountMode.NONE));
+
+    assertThat(ids(page), contains(1, 2));
+    assertThat(page.hasNext(), equalTo(true));
+    assertThat(page.getTotalElements(), equalTo(3L));
+
+    page = beaconDatasetRepository.findAll(null, offset(2, 2, CountMode.NONE));
+
+    assertThat(ids(page), contains(5));
+    assertThat(page.hasNext(), equalTo(false));
+    assertThat(page.getTotalElements(), equalTo(5L));
+  }
+
+  @Test
+  public void estimatedPage() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(null,
+        offset(1, 2, CountMode.ESTIMATE));
+
+    assertThat(ids(page), contains(3, 4));
+    assertThat(page.hasNext(), equalTo(true));
+    // From the statistics of the table
+    assertThat(page.getTotalElements(), equalTo(5L));
+  }
+
+  @Test
+  public void estimatedPageWithPredicateIsCounted() {
+    Page<BeaconDataset> page = beaconDatasetRepository.findAll(GRCH37,
+        offset(1, 2, CountMode.ESTIMATE));
+
+    assertThat(ids(page), contains(4, 5));
+    assertThat(page.hasNext(), equalTo(false));
+    assertThat(page.getTotalElements(), equalTo(4L));
+  }
+
+  private static CommonQuery after(String after, int limit, CountMode count) {
+    CommonQuery commonQuery = new CommonQuery(limit, 0);
+    commonQuery.setAfter(after);
+    commonQuery.setCount(count);
+    return commonQuery;
+  }
+
+  private static CommonQuery offset(int skip, int limit, CountMode count) {
+    CommonQuery commonQuery = new CommonQuery(limit, skip);
+    commonQuery.setSort(new Sort("id"));
+    commonQuery.setCount(count);
+    return commonQuery;
+  }
+
+  private static List<Integer> ids(Page<BeaconDataset> page) {
+    return page.getContent().stream().map(BeaconDataset::getId).collect(Collectors.toList());
+  }
+
+}
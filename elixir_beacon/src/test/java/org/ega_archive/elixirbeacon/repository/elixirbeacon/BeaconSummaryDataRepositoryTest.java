@@ -0,0 +1,275 @@
+package org.ega_archive.elixirbeacon.repository.elixirbeacon;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import org.ega_archive.elixirbeacon.Application;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.index.VariantKey;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixircore.test.util.TestUtils;
+import org.ega_archive.elixircore.util.StoredProcedureUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+/**
+ * Checks that the queries, which read the number of matching samples from
+ * {@code beacon_data_table.matching_sample_cnt}, return the same as the function did when it
+ * joined the sample tables.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = Application.class)
+@WebAppConfiguration
+@SpringBootTest("server.port:0")
+public class BeaconSummaryDataRepositoryTest {
+
+  private static final List<Integer> DATASET_IDS = Arrays.asList(1, 2, 4, 5);
+
+  private static final String LEGACY_QUERY = "SELECT * FROM legacy_query_data_summary_response("
+      + "CAST(? AS text), CAST(? AS integer), CAST(? AS integer), CAST(? AS integer), "
+      + "CAST(? AS integer), CAST(? AS integer), CAST(? AS integer), CAST(? AS varchar), "
+      + "CAST(? AS text), CAST(? AS text), CAST(? AS text), CAST(? AS text))";
+
+  @Autowired
+  private BeaconSummaryDataRepository beaconSummaryDataRepository;
+
+  @Resource(name = "elixirbeaconDataSource")
+  private DataSource dataSource;
+
+  private JdbcTemplate jdbcTemplate;
+
+  @Before
+  public void setUp() throws SQLException {
+    TestUtils.populateDatabase(dataSource,
+        "/db/truncate_tables.sql",
+        "/db/beacon_dataset_table.sql",
+        "/db/beacon_sample_table.sql",
+        "/db/beacon_dataset_sample_table.sql",
+        "/db/beacon_data_table.sql",
+        "/db/beacon_data_sample_table.sql",
+        "/db/beacon_data_table_sample_ids.sql");
+
+    // The body of the function contains ';'
+    ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+        new ClassPathResource("/db/legacy_query_data_summary_response.sql"));
+    populator.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      populator.populate(connection);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  @Test
+  public void sameResultsAsLegacyFunction() {
+    // SNP
+    assertSameResults(null, 4, null, null, null, null, null, "4", "C", "G");
+    // Any variant at one position
+    assertSameResults(null, 4, null, null, null, null, null, "4", "C", "N");
+    // Precise deletion
+    assertSameResults("DEL", 4, null, null, 8, null, null, "1", "CGTG", null);
+    // Any variant inside a window
+    assertSameResults(null, 2, null, null, 5, null, null, "4", "N", "N");
+    // Imprecise deletion
+    assertSameResults("DEL", null, 2827690, 2827700, null, 2827760, 2827770, "1", "N", null);
+    // Insertion
+    assertSameResults("INS", 4, null, null, null, null, null, "2", "T", "A");
+    // Variant type
+    assertSameResults("DEL", 4, null, null, null, null, null, "3", "GCG", null);
+  }
+
+  @Test
+  public void variantWithSeveralSamplesIsCountedOnce() {
+    // Variant 4 is found in 2 samples: the join of the old function counted it twice
+    List<BeaconDataSummary> legacy = legacySearch("DUP", 12665100, null, null, null, null, null,
+        "1", "A", null);
+    List<BeaconDataSummary> result = search("DUP", 12665100, null, null, null, null, null,
+        "1", "A", null);
+
+    assertThat(legacy.get(0).getVariantCnt(), equalTo(BigInteger.valueOf(2)));
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getVariantCnt(), equalTo(BigInteger.ONE));
+    assertThat(result.get(0).getFrequency(), equalTo(new BigDecimal("0.3")));
+    assertThat(result.get(0).getSampleCnt(), equalTo(legacy.get(0).getSampleCnt()));
+    assertThat(result.get(0).getNumVariants(), equalTo(1));
+  }
+
+  @Test
+  public void variantWithoutSamplesIsFound() throws SQLException {
+    jdbcTemplate.update("DELETE FROM beacon_data_sample_table WHERE data_id = 10");
+    TestUtils.populateDatabase(dataSource, "/db/beacon_data_table_sample_ids.sql");
+
+    List<BeaconDataSummary> legacy = legacySearch(null, 4, null, null, null, null, null, "4",
+        "C", "G");
+    List<BeaconDataSummary> result = search(null, 4, null, null, null, null, null, "4", "C",
+        "G");
+
+    assertThat(legacy.size(), equalTo(0));
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getDatasetId(), equalTo(1));
+  }
+
+  @Test
+  public void samplesOfSeveralVariantsAreCountedOnce() throws SQLException {
+    // Variants 8, 9 and 10 are found in sample 1, variant 9 in sample 2 too
+    jdbcTemplate.update("INSERT INTO beacon_data_sample_table (data_id, sample_id) VALUES (9, 2)");
+    // Like the loader does
+    TestUtils.populateDatabase(dataSource, "/db/beacon_data_table_sample_ids.sql");
+    assertThat(jdbcTemplate.queryForObject(
+        "SELECT array_to_string(sample_ids, ',') FROM beacon_data_table WHERE id = 9",
+        String.class), equalTo("1,2"));
+
+    List<BeaconDataSummary> result = search(null, 2, null, null, 5, null, null, "4", "N", "N");
+
+    assertThat(result.get(0).getNumVariants(), equalTo(3));
+    // Not the maximum of the matching samples of each variant
+    assertThat(result.get(0).getSampleCnt(), equalTo(BigInteger.valueOf(2)));
+  }
+
+  @Test
+  public void insertionsMatchThePrefixOfTheInsertedBases() {
+    // Variant 7 is GCG>GCGCG
+    assertThat(jdbcTemplate.queryForObject(
+        "SELECT inserted_sequence FROM beacon_data_table WHERE id = 7", String.class),
+        equalTo("CG"));
+    assertThat(jdbcTemplate.queryForObject(
+        "SELECT inserted_sequence FROM beacon_data_table WHERE id = 6", String.class),
+        nullValue());
+
+    assertSameResults("INS", 4, null, null, null, null, null, "3", "GCG", "C");
+    assertSameResults("INS", 4, null, null, null, null, null, "3", "GCG", "CG");
+    assertThat(search("INS", 4, null, null, null, null, null, "3", "GCG", "CGC").isEmpty(),
+        equalTo(true));
+    assertThat(search("INS", 4, null, null, null, null, null, "3", "GCG", "G").isEmpty(),
+        equalTo(true));
+    // Any inserted bases
+    assertSameResults("INS", 4, null, null, null, null, null, "3", "GCG", "N");
+  }
+
+  @Test
+  public void variantKeysAreTheSameInJavaAndInTheDatabase() {
+    List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+        "SELECT chromosome, start, reference, alternate, variant_key FROM beacon_data_table");
+
+    assertThat(rows.isEmpty(), equalTo(false));
+    for (Map<String, Object> row : rows) {
+      assertThat(row.toString(), row.get("variant_key"), equalTo(VariantKey.of(
+          (String) row.get("chromosome"), (Integer) row.get("start"),
+          (String) row.get("reference"), (String) row.get("alternate"))));
+    }
+  }
+
+  @Test
+  public void batchReturnsSameResultsAsSingleQueries() {
+    List<IndexQuery> queries = Arrays.asList(
+        // Resolved together
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "G", DATASET_IDS),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "GGG", DATASET_IDS),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "G", Arrays.asList(2, 4)),
+        // Resolved one by one
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "N", DATASET_IDS),
+        IndexQuery.of(null, 2, null, null, 5, null, null, "N", "N", DATASET_IDS));
+
+    List<List<BeaconDataSummary>> result = beaconSummaryDataRepository
+        .searchForVariantsBatch("4", "grch37", queries);
+
+    assertThat(result.size(), equalTo(queries.size()));
+    assertThat(result.get(0), equalTo(search(null, 4, null, null, null, null, null, "4", "C",
+        "G")));
+    assertThat(result.get(0).size(), equalTo(1));
+    assertThat(result.get(1).size(), equalTo(0));
+    assertThat(result.get(2).size(), equalTo(0));
+    assertThat(result.get(3), equalTo(search(null, 4, null, null, null, null, null, "4", "C",
+        "N")));
+    assertThat(result.get(4), equalTo(search(null, 2, null, null, 5, null, null, "4", "N",
+        "N")));
+  }
+
+  @Test
+  public void existsMatchesSearch() {
+    List<IndexQuery> queries = Arrays.asList(
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "G", DATASET_IDS),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "GGG", DATASET_IDS),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "G", Arrays.asList(2, 4)),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "N", DATASET_IDS),
+        IndexQuery.of(null, 2, null, null, 5, null, null, "N", "N", DATASET_IDS));
+
+    List<List<BeaconDataSummary>> expected = beaconSummaryDataRepository
+        .searchForVariantsBatch("4", "grch37", queries);
+    for (int i = 0; i < queries.size(); i++) {
+      assertThat(beaconSummaryDataRepository.existsVariant("4", "grch37", queries.get(i)),
+          equalTo(!expected.get(i).isEmpty()));
+    }
+  }
+
+  @Test
+  public void reversedBracketIsEmpty() {
+    // int4range() fails if its lower bound is greater than the upper one
+    List<BeaconDataSummary> legacy = legacySearch("DEL", null, 2827700, 2827690, null, 2827770,
+        2827760, "1", "N", null);
+    List<BeaconDataSummary> result = search("DEL", null, 2827700, 2827690, null, 2827770,
+        2827760, "1", "N", null);
+
+    assertThat(legacy.isEmpty(), equalTo(true));
+    assertThat(result.isEmpty(), equalTo(true));
+    assertThat(beaconSummaryDataRepository.existsVariant("1", "grch37", IndexQuery.of("DEL",
+        null, 2827700, 2827690, null, 2827770, 2827760, "N", null, DATASET_IDS)), equalTo(false));
+  }
+
+  private void assertSameResults(String variantType, Integer start, Integer startMin,
+      Integer startMax, Integer end, Integer endMin, Integer endMax, String chromosome,
+      String referenceBases, String alternateBases) {
+
+    List<BeaconDataSummary> legacy = legacySearch(variantType, start, startMin, startMax, end,
+        endMin, endMax, chromosome, referenceBases, alternateBases);
+    List<BeaconDataSummary> result = search(variantType, start, startMin, startMax, end, endMin,
+        endMax, chromosome, referenceBases, alternateBases);
+
+    assertThat(legacy.isEmpty(), equalTo(false));
+    assertThat(result, equalTo(legacy));
+  }
+
+  private List<BeaconDataSummary> search(String variantType, Integer start, Integer startMin,
+      Integer startMax, Integer end, Integer endMin, Integer endMax, String chromosome,
+      String referenceBases, String alternateBases) {
+
+    return beaconSummaryDataRepository.searchForVariants(variantType, start, startMin, startMax,
+        end, endMin, endMax, chromosome, referenceBases, alternateBases, "grch37", DATASET_IDS);
+  }
+
+  private List<BeaconDataSummary> legacySearch(String variantType, Integer start,
+      Integer startMin, Integer startMax, Integer end, Integer endMin, Integer endMax,
+      String chromosome, String referenceBases, String alternateBases) {
+
+    return jdbcTemplate.query(LEGACY_QUERY, new Object[]{variantType, start, startMin, startMax,
+            end, endMin, endMax, chromosome, referenceBases, alternateBases, "grch37",
+            StoredProcedureUtils.joinArrayOfInteger(DATASET_IDS)},
+        new BeanPropertyRowMapper<>(BeaconDataSummary.class));
+  }
+
+}
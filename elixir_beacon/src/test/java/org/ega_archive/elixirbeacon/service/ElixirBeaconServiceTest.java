@@ -9,6 +9,7 @@ import static org.hamcrest.Matchers.nullValue;
 
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Resource;
 import javax.sql.DataSource;
@@ -17,6 +18,7 @@ import org.ega_archive.elixirbeacon.Application;
 import org.ega_archive.elixirbeacon.constant.BeaconConstants;
 import org.ega_archive.elixirbeacon.dto.Beacon;
 import org.ega_archive.elixirbeacon.dto.BeaconAlleleResponse;
+import org.ega_archive.elixirbeacon.dto.BeaconRequest;
 import org.ega_archive.elixirbeacon.enums.ErrorCode;
 import org.ega_archive.elixirbeacon.enums.FilterDatasetResponse;
 import org.ega_archive.elixirbeacon.enums.VariantType;
@@ -27,6 +29,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -44,9 +47,15 @@ public class ElixirBeaconServiceTest {
   @Autowired
   private ElixirBeaconService elixirBeaconService;
 
+  @Autowired
+  private DatasetRegistryService datasetRegistryService;
+
   @Resource(name = "elixirbeaconDataSource")
   private DataSource dataSource;
 
+  @Value("${elixirbeacon.query.batch.max.size}")
+  private int maxBatchSize;
+
   @Before
   public void setUp() throws SQLException {
     TestUtils.removeUserFromContext();
@@ -60,6 +69,7 @@ public class ElixirBeaconServiceTest {
         "/db/beacon_dataset_sample_table.sql",
         "/db/beacon_data_table.sql",
         "/db/beacon_data_sample_table.sql",
+        "/db/beacon_data_table_sample_ids.sql",
         // CC
         "/db/consent_code_category_table.sql",
         "/db/consent_code_table.sql",
@@ -67,6 +77,7 @@ public class ElixirBeaconServiceTest {
         "/db/beacon_dataset_consent_code_table.sql"
     )
     ;
+    datasetRegistryService.refresh();
   }
 
   @After
@@ -128,6 +139,20 @@ public class ElixirBeaconServiceTest {
     assertThat(allowedDatasets.getDatasets().get(i).getDataUseConditions().getConsentCodedataUse().getRequirements().size(), equalTo(2));
   }
 
+  @Test
+  public void listDatasetsAfter() throws Exception {
+    CommonQuery commonQuery = CommonQuery.builder().limit(2).skip(0).after("2").build();
+    Beacon allowedDatasets = elixirBeaconService.listDatasets(commonQuery, null);
+
+    assertThat(allowedDatasets.getDatasets().size(), equalTo(2));
+    assertThat(allowedDatasets.getDatasets().get(0).getId(), equalTo("EGAD00000000003"));
+    assertThat(allowedDatasets.getDatasets().get(1).getId(), equalTo("EGAD00000000004"));
+
+    commonQuery.setAfter("5");
+    assertThat(elixirBeaconService.listDatasets(commonQuery, null).getDatasets().size(),
+        equalTo(0));
+  }
+
   @Test
   public void listDatasetsByReferenceGenome() throws Exception {
     Beacon allowedDatasets = elixirBeaconService.listDatasets(COMMON_QUERY, "grch37");
@@ -301,6 +326,32 @@ public class ElixirBeaconServiceTest {
     assertThat(result.getError(), nullValue());
   }
 
+  @Test
+  public void queryInsertionOfGivenBases() {
+    List<String> datasetStableIds = Arrays.asList("EGAD00000000001");
+    String variantType = VariantType.INS.getType();
+    String includeDatasetResponses = FilterDatasetResponse.HIT.toString();
+
+    // GCG>GCGCG inserts CG
+    for (String alternateBases : Arrays.asList("CG", "C", "N")) {
+      BeaconAlleleResponse response = elixirBeaconService.queryBeacon(datasetStableIds,
+          variantType, alternateBases, "GCG", "3", 4, null, null, null, null, null, null,
+          "grch37", includeDatasetResponses);
+
+      assertThat(alternateBases, response.getError(), nullValue());
+      assertThat(alternateBases, response.isExists(), equalTo(true));
+      assertThat(response.getDatasetAlleleResponses().get(0).getDatasetId(),
+          equalTo("EGAD00000000001"));
+    }
+
+    BeaconAlleleResponse response = elixirBeaconService.queryBeacon(datasetStableIds,
+        variantType, "CGC", "GCG", "3", 4, null, null, null, null, null, null, "grch37",
+        includeDatasetResponses);
+
+    assertThat(response.getError(), nullValue());
+    assertThat(response.isExists(), equalTo(false));
+  }
+
   @Test
   public void checkParamStartMissingWhenEndProvided() {
     BeaconAlleleResponse result = new BeaconAlleleResponse();
@@ -787,6 +838,71 @@ public class ElixirBeaconServiceTest {
     assertThat(response.getDatasetAlleleResponses(), nullValue());
   }
 
+  @Test
+  public void queryBatchKeepsInputOrder() {
+    List<BeaconRequest> requests = Arrays.asList(
+        BeaconRequest.builder().assemblyId("grch37").referenceName("4").start(4)
+            .referenceBases("C").alternateBases("G")
+            .includeDatasetResponses(FilterDatasetResponse.HIT.toString()).build(),
+        // Missing 'referenceBases'
+        BeaconRequest.builder().assemblyId("grch37").referenceName("4").start(4)
+            .alternateBases("G").build(),
+        BeaconRequest.builder().assemblyId("grch37").referenceName("1").variantType("DUP")
+            .start(12665100).end(12686201).referenceBases("A").build(),
+        BeaconRequest.builder().assemblyId("grch37").referenceName("4").start(4)
+            .referenceBases("C").alternateBases("GGG").build());
+
+    List<BeaconAlleleResponse> responses = elixirBeaconService.queryBeaconBatch(requests);
+
+    assertThat(responses.size(), equalTo(4));
+    assertThat(responses.get(0).isExists(), equalTo(true));
+    assertThat(responses.get(0).getDatasetAlleleResponses().size(), equalTo(1));
+    assertThat(responses.get(0).getDatasetAlleleResponses().get(0).getDatasetId(),
+        equalTo("EGAD00000000001"));
+    assertThat(responses.get(1).isExists(), equalTo(false));
+    assertThat(responses.get(1).getError().getErrorCode(), equalTo(ErrorCode.GENERIC_ERROR));
+    assertThat(responses.get(2).isExists(), equalTo(true));
+    assertThat(responses.get(2).getAlleleRequest().getReferenceName(), equalTo("1"));
+    assertThat(responses.get(3).isExists(), equalTo(false));
+    assertThat(responses.get(3).getError(), nullValue());
+  }
+
+  @Test
+  public void queryBatchFailsOnlyTheRequestsThatCannotBeRun() {
+    List<BeaconRequest> requests = Arrays.asList(
+        BeaconRequest.builder().assemblyId("grch37").referenceName("4").start(4)
+            .referenceBases("C").alternateBases("G").build(),
+        BeaconRequest.builder().assemblyId("grch37").referenceName("4").start(4)
+            .referenceBases("C").alternateBases("G")
+            .datasetIds(Arrays.asList("EGAD00000000999")).build(),
+        BeaconRequest.builder().assemblyId("grch37").referenceName("4").start(4)
+            .referenceBases("C").alternateBases("G").mateName("5").build(),
+        BeaconRequest.builder().assemblyId("grch37").referenceName("1").variantType("DUP")
+            .start(12665100).end(12686201).referenceBases("A").build());
+
+    List<BeaconAlleleResponse> responses = elixirBeaconService.queryBeaconBatch(requests);
+
+    assertThat(responses.size(), equalTo(4));
+    assertThat(responses.get(0).isExists(), equalTo(true));
+    assertThat(responses.get(0).getError(), nullValue());
+    assertThat(responses.get(1).isExists(), equalTo(false));
+    assertThat(responses.get(1).getError().getErrorCode(), equalTo(ErrorCode.NOT_FOUND));
+    assertThat(responses.get(1).getAlleleRequest().getDatasetIds(),
+        equalTo(Arrays.asList("EGAD00000000999")));
+    assertThat(responses.get(2).isExists(), equalTo(false));
+    assertThat(responses.get(2).getError().getErrorCode(), equalTo(ErrorCode.GENERIC_ERROR));
+    assertThat(responses.get(3).isExists(), equalTo(true));
+    assertThat(responses.get(3).getError(), nullValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queryBatchRejectsTooManyRequests() {
+    BeaconRequest request = BeaconRequest.builder().assemblyId("grch37").referenceName("4")
+        .start(4).referenceBases("C").alternateBases("G").build();
+
+    elixirBeaconService.queryBeaconBatch(Collections.nCopies(maxBatchSize + 1, request));
+  }
+
   @Test
   public void queryMultipleDatasets() {
     String variantType = null;
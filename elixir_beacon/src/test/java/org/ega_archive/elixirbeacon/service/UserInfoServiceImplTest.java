@@ -0,0 +1,155 @@
+package org.ega_archive.elixirbeacon.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.ega_archive.elixircore.exception.UnauthorizedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UserInfoServiceImplTest {
+
+  private static final String GRANTS = "{\"ga4gh\": {\"ControlledAccessGrants\": ["
+      + "{\"value\": \"https://www.ebi.ac.uk/ega/EGAD00000000003\"}]}}";
+
+  private static final String INVALID_TOKEN = "Bearer invalid";
+
+  private HttpServer server;
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  // Lets the test keep the first call in flight
+  private volatile CountDownLatch release = new CountDownLatch(0);
+
+  private UserInfoServiceImpl userInfoService;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/userinfo", exchange -> {
+      calls.incrementAndGet();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      boolean valid = !INVALID_TOKEN.equals(exchange.getRequestHeaders().getFirst("Authorization"));
+      byte[] body = (valid ? GRANTS : "{}").getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(valid ? 200 : 401, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+
+    userInfoService = new UserInfoServiceImpl();
+    ReflectionTestUtils.setField(userInfoService, "userInfoUrl",
+        "http://localhost:" + server.getAddress().getPort() + "/userinfo");
+    ReflectionTestUtils.setField(userInfoService, "cacheSize", 100L);
+    ReflectionTestUtils.setField(userInfoService, "cacheTtl", 300L);
+    ReflectionTestUtils.setField(userInfoService, "poolSize", 5);
+    ReflectionTestUtils.setField(userInfoService, "timeout", 5000);
+    ReflectionTestUtils.setField(userInfoService, "counterService",
+        Mockito.mock(CounterService.class));
+    userInfoService.init();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    userInfoService.destroy();
+    server.stop(0);
+  }
+
+  @Test
+  public void grantsAreCachedByToken() {
+    List<String> first = userInfoService.findGrantedDatasets("Bearer token1");
+    List<String> second = userInfoService.findGrantedDatasets("Bearer token1");
+    userInfoService.findGrantedDatasets("Bearer token2");
+
+    assertThat(first, contains("EGAD00000000003"));
+    assertThat(second, equalTo(first));
+    assertThat(calls.get(), equalTo(2));
+  }
+
+  @Test
+  public void concurrentMissesShareOneCall() throws Exception {
+    release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> userInfoService.findGrantedDatasets("Bearer token")));
+      }
+      // Give all the threads time to ask for the token before answering
+      Thread.sleep(200);
+      release.countDown();
+
+      for (Future<List<String>> result : results) {
+        assertThat(result.get(5, TimeUnit.SECONDS), contains("EGAD00000000003"));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(calls.get(), equalTo(1));
+  }
+
+  @Test
+  public void expiredTokenIsNotReused() {
+    String token = "Bearer " + jwt(System.currentTimeMillis() / 1000 - 60);
+
+    userInfoService.findGrantedDatasets(token);
+    userInfoService.findGrantedDatasets(token);
+
+    assertThat(calls.get(), equalTo(2));
+  }
+
+  @Test
+  public void tokenIsReusedUntilItExpires() {
+    String token = "Bearer " + jwt(System.currentTimeMillis() / 1000 + 60);
+
+    userInfoService.findGrantedDatasets(token);
+    userInfoService.findGrantedDatasets(token);
+
+    assertThat(calls.get(), equalTo(1));
+  }
+
+  @Test
+  public void errorsAreNotCached() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        userInfoService.findGrantedDatasets(INVALID_TOKEN);
+      } catch (UnauthorizedException e) {
+        // Expected
+      }
+    }
+    assertThat(calls.get(), equalTo(2));
+  }
+
+  private static String jwt(long exp) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+        + encoder.encodeToString(("{\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8))
+        + ".signature";
+  }
+
+}
@@ -0,0 +1,208 @@
+package org.ega_archive.elixirbeacon.store;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.ega_archive.elixirbeacon.cache.QueryResultCache;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException.Reason;
+import org.ega_archive.elixirbeacon.watchdog.QueryWatchdog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Sharding, merging and deadline of {@link FanOutVariantStore}, with the database mocked. The
+ * results of the real queries are checked by {@link FanOutVariantStoreTest}.
+ */
+public class FanOutVariantStoreShardTest {
+
+  private FanOutVariantStore store;
+
+  private DatabaseVariantStore databaseStore;
+
+  private QueryWatchdog queryWatchdog;
+
+  private CounterService counterService;
+
+  @Before
+  public void setUp() {
+    databaseStore = mock(DatabaseVariantStore.class);
+    queryWatchdog = new QueryWatchdog();
+    counterService = mock(CounterService.class);
+    store = newStore(1, 1000);
+
+    // One summary per dataset of the query
+    when(databaseStore.search(anyString(), anyString(), any(IndexQuery.class)))
+        .thenAnswer(invocation -> summaries(((IndexQuery) invocation.getArguments()[2])
+            .getDatasetIds()));
+  }
+
+  @After
+  public void tearDown() {
+    store.destroy();
+    queryWatchdog.unbindClient();
+  }
+
+  @Test
+  public void datasetsAreSplitInShards() {
+    store = newStore(2, 1000);
+
+    assertThat(store.shard(new int[]{5, 1, 4, 2, 3}), equalTo(Arrays.asList(
+        Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5))));
+    assertThat(store.shard(new int[0]).isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void summariesOfTheShardsAreMerged() {
+    List<BeaconDataSummary> result = store.search("1", "grch37", query(4, 2, 3, 1));
+
+    assertThat(datasetIds(result), equalTo(Arrays.asList(1, 2, 3, 4)));
+    verify(databaseStore, times(4)).search(anyString(), anyString(), any(IndexQuery.class));
+  }
+
+  @Test
+  public void singleShardIsNotHandedOver() {
+    store = newStore(10, 1000);
+    IndexQuery query = query(1, 2, 3);
+
+    store.search("1", "grch37", query);
+    verify(databaseStore).search("1", "grch37", query);
+  }
+
+  @Test
+  public void batchQueriesOnlyGetTheirDatasets() {
+    when(databaseStore.search(anyString(), anyString(), anyListOf(IndexQuery.class)))
+        .thenAnswer(invocation -> {
+          @SuppressWarnings("unchecked")
+          List<IndexQuery> queries = (List<IndexQuery>) invocation.getArguments()[2];
+          return queries.stream().map(query -> summaries(query.getDatasetIds()))
+              .collect(Collectors.toList());
+        });
+
+    List<List<BeaconDataSummary>> result = store.search("1", "grch37",
+        Arrays.asList(query(1, 2), query(3, 2), query(4)));
+
+    assertThat(result.size(), equalTo(3));
+    assertThat(datasetIds(result.get(0)), equalTo(Arrays.asList(1, 2)));
+    assertThat(datasetIds(result.get(1)), equalTo(Arrays.asList(2, 3)));
+    assertThat(datasetIds(result.get(2)), equalTo(Arrays.asList(4)));
+  }
+
+  @Test
+  public void existsIfAnyShardHasTheVariant() {
+    when(databaseStore.exists(anyString(), anyString(), any(IndexQuery.class)))
+        .thenAnswer(invocation -> ((IndexQuery) invocation.getArguments()[2])
+            .getDatasetIds()[0] == 3);
+
+    assertThat(store.exists("1", "grch37", query(1, 2, 3)), equalTo(true));
+    assertThat(store.exists("1", "grch37", query(1, 2)), equalTo(false));
+  }
+
+  @Test
+  public void slowShardsFailTheQuery() {
+    store = newStore(1, 50);
+    doAnswer(invocation -> {
+      Thread.sleep(1000);
+      return summaries(new int[]{1});
+    }).when(databaseStore).search(anyString(), anyString(), any(IndexQuery.class));
+
+    try {
+      store.search("1", "grch37", query(1, 2));
+      fail("Expected QueryCancelledException");
+    } catch (QueryCancelledException e) {
+      assertThat(e.getReason(), equalTo(Reason.TIMEOUT));
+    }
+    verify(counterService).increment(QueryWatchdog.TIMEOUT_METRIC);
+  }
+
+  @Test
+  public void failedShardFailsTheQuery() {
+    doThrow(new DataAccessResourceFailureException("down"))
+        .when(databaseStore).search(anyString(), anyString(), any(IndexQuery.class));
+
+    try {
+      store.search("1", "grch37", query(1, 2));
+      fail("Expected DataAccessResourceFailureException");
+    } catch (DataAccessResourceFailureException e) {
+      // Expected
+    }
+    verify(counterService, never()).increment(QueryWatchdog.TIMEOUT_METRIC);
+  }
+
+  @Test
+  public void shardsFollowTheClientOfTheRequest() {
+    AtomicBoolean connected = new AtomicBoolean(true);
+    queryWatchdog.bindClient(connected::get);
+    List<BooleanSupplier> clients = new ArrayList<>();
+    doAnswer(invocation -> {
+      synchronized (clients) {
+        clients.add(queryWatchdog.getClient());
+      }
+      return summaries(((IndexQuery) invocation.getArguments()[2]).getDatasetIds());
+    }).when(databaseStore).search(anyString(), anyString(), any(IndexQuery.class));
+
+    store.search("1", "grch37", query(1, 2));
+
+    assertThat(clients.size(), equalTo(2));
+    // Nobody waits for the shards once the query is over
+    assertThat(clients.get(0).getAsBoolean(), equalTo(false));
+  }
+
+  private FanOutVariantStore newStore(int shardSize, long timeout) {
+    if (store != null) {
+      store.destroy();
+    }
+    FanOutVariantStore store = new FanOutVariantStore();
+    ReflectionTestUtils.setField(store, "databaseStore", databaseStore);
+    ReflectionTestUtils.setField(store, "queryWatchdog", queryWatchdog);
+    ReflectionTestUtils.setField(store, "queryResultCache", mock(QueryResultCache.class));
+    ReflectionTestUtils.setField(store, "counterService", counterService);
+    ReflectionTestUtils.setField(store, "threads", 4);
+    ReflectionTestUtils.setField(store, "shardSize", shardSize);
+    ReflectionTestUtils.setField(store, "timeout", timeout);
+    store.init();
+    return store;
+  }
+
+  private static IndexQuery query(Integer... datasetIds) {
+    return IndexQuery.of(null, 4, null, null, null, null, null, "C", "G",
+        Arrays.asList(datasetIds));
+  }
+
+  private static List<BeaconDataSummary> summaries(int[] datasetIds) {
+    return IntStream.of(datasetIds).mapToObj(datasetId -> {
+      BeaconDataSummary summary = new BeaconDataSummary();
+      summary.setDatasetId(datasetId);
+      return summary;
+    }).collect(Collectors.toList());
+  }
+
+  private static List<Integer> datasetIds(List<BeaconDataSummary> summaries) {
+    return summaries.stream().map(BeaconDataSummary::getDatasetId).collect(Collectors.toList());
+  }
+
+}
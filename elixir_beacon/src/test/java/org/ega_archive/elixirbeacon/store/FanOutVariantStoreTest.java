@@ -0,0 +1,48 @@
+package org.ega_archive.elixirbeacon.store;
+
+import java.sql.SQLException;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import org.ega_archive.elixirbeacon.Application;
+import org.ega_archive.elixircore.test.util.TestUtils;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+/**
+ * Every dataset is a shard by default, so the queries of several datasets run concurrently.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = Application.class)
+@WebAppConfiguration
+@SpringBootTest("server.port:0")
+public class FanOutVariantStoreTest extends VariantStoreConformanceTest {
+
+  @Autowired
+  private FanOutVariantStore fanOutVariantStore;
+
+  @Resource(name = "elixirbeaconDataSource")
+  private DataSource dataSource;
+
+  @Before
+  public void setUp() throws SQLException {
+    TestUtils.populateDatabase(dataSource,
+        "/db/truncate_tables.sql",
+        "/db/beacon_dataset_table.sql",
+        "/db/beacon_sample_table.sql",
+        "/db/beacon_dataset_sample_table.sql",
+        "/db/beacon_data_table.sql",
+        "/db/beacon_data_sample_table.sql",
+        "/db/beacon_data_table_sample_ids.sql");
+  }
+
+  @Override
+  protected VariantStore getStore() {
+    return fanOutVariantStore;
+  }
+
+}
@@ -0,0 +1,210 @@
+package org.ega_archive.elixirbeacon.store;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.ega_archive.elixirbeacon.index.IndexQuery;
+import org.ega_archive.elixirbeacon.model.elixirbeacon.BeaconDataSummary;
+import org.junit.Test;
+
+/**
+ * Scenarios of {@code ElixirBeaconServiceTest}, run directly against a {@link VariantStore}. Every
+ * implementation has a subclass that loads {@link #VARIANTS} into the store.
+ */
+public abstract class VariantStoreConformanceTest {
+
+  protected static final String GRCH37 = "grch37";
+
+  protected static final String GRCH38 = "grch38";
+
+  /**
+   * Same variants as {@code /db/beacon_data_table.sql}, with the samples of
+   * {@code /db/beacon_data_sample_table.sql}.
+   */
+  protected static final List<Variant> VARIANTS = Collections.unmodifiableList(Arrays.asList(
+      new Variant(1, "1", 4, 7, "CGTG", "C", "DEL", 1, 1, 1, new BigDecimal("0.5"),
+          new int[]{1}),
+      new Variant(1, "1", 2827694, 2827762, "CGTGGATGCGGGGAC", "C", "DEL", 1, 1, 1,
+          new BigDecimal("0.4"), new int[]{1}),
+      new Variant(1, "1", 321682, 321887, "T", ".", "DEL", 1, 1, 1, new BigDecimal("0.5"),
+          new int[]{1}),
+      new Variant(1, "1", 12665100, 12686200, "A", ".", "DUP", 1, 1, 2, new BigDecimal("0.3"),
+          new int[]{1, 2}),
+      new Variant(1, "2", 4, null, "T", "TA", "INS", 1, 1, 1, new BigDecimal("0.3"),
+          new int[]{1}),
+      new Variant(1, "3", 4, 6, "GCG", "G", "DEL", 1, 1, 1, new BigDecimal("0.5"),
+          new int[]{2}),
+      new Variant(1, "3", 4, null, "GCG", "GCGCG", "INS", 1, 1, 2, new BigDecimal("0.5"),
+          new int[]{1, 2}),
+      new Variant(1, "4", 2, 3, "TC", "T", "DEL", 1, 1, 1, new BigDecimal("0.5"),
+          new int[]{1}),
+      new Variant(1, "4", 2, null, "TC", "TCA", "INS", 1, 1, 1, new BigDecimal("0.1"),
+          new int[]{1}),
+      new Variant(1, "4", 4, null, "C", "G", "SNP", 1, 1, 1, new BigDecimal("0.1"),
+          new int[]{1}),
+      new Variant(5, "4", 4, null, "C", "T", "SNP", 1, 1, 1, new BigDecimal("0.1"),
+          new int[]{1})));
+
+  /**
+   * Assembly of the datasets of {@code /db/beacon_dataset_table.sql}.
+   */
+  protected static String assembly(int datasetId) {
+    return datasetId == 3 ? GRCH38 : GRCH37;
+  }
+
+  protected abstract VariantStore getStore();
+
+  @Test
+  public void ready() {
+    assertThat(getStore().isReady(), equalTo(true));
+    assertThat(getStore().getName(), notNullValue());
+  }
+
+  @Test
+  public void queryForSNPs() {
+    IndexQuery query = IndexQuery.of(null, 4, null, null, null, null, null, "C", "G",
+        Arrays.asList(1));
+
+    List<BeaconDataSummary> result = getStore().search("4", GRCH37, query);
+    assertThat(result.size(), equalTo(1));
+    assertThat(result.get(0).getDatasetId(), equalTo(1));
+    assertThat(result.get(0).getVariantCnt().intValue(), equalTo(1));
+    assertThat(result.get(0).getCallCnt().intValue(), equalTo(1));
+    assertThat(result.get(0).getSampleCnt().intValue(), equalTo(1));
+    assertThat(result.get(0).getFrequency().compareTo(new BigDecimal("0.1")), equalTo(0));
+    assertThat(getStore().exists("4", GRCH37, query), equalTo(true));
+
+    query = IndexQuery.of(null, 4, null, null, null, null, null, "C", "T", Arrays.asList(1));
+    assertThat(getStore().search("4", GRCH37, query).isEmpty(), equalTo(true));
+    assertThat(getStore().exists("4", GRCH37, query), equalTo(false));
+  }
+
+  @Test
+  public void queryForSVExactMatch() {
+    IndexQuery query = IndexQuery.of("DUP", 12665100, null, null, 12686201, null, null, "A", null,
+        Arrays.asList(1));
+    assertThat(getStore().exists("1", GRCH37, query), equalTo(true));
+    assertThat(datasetIds(getStore().search("1", GRCH37, query)), equalTo(Arrays.asList(1)));
+
+    query = IndexQuery.of("INS", 4, null, null, null, null, null, "GCG", null, Arrays.asList(1));
+    assertThat(getStore().exists("3", GRCH37, query), equalTo(true));
+    assertThat(datasetIds(getStore().search("3", GRCH37, query)), equalTo(Arrays.asList(1)));
+  }
+
+  @Test
+  public void insertionsMatchThePrefixOfTheInsertedBases() {
+    // GCG>GCGCG inserts CG
+    for (String bases : Arrays.asList("C", "CG", "N")) {
+      IndexQuery query = IndexQuery.of("INS", 4, null, null, null, null, null, "GCG", bases,
+          Arrays.asList(1));
+      assertThat(bases, getStore().exists("3", GRCH37, query), equalTo(true));
+      assertThat(bases, datasetIds(getStore().search("3", GRCH37, query)),
+          equalTo(Arrays.asList(1)));
+    }
+    for (String bases : Arrays.asList("CGC", "G")) {
+      IndexQuery query = IndexQuery.of("INS", 4, null, null, null, null, null, "GCG", bases,
+          Arrays.asList(1));
+      assertThat(bases, getStore().exists("3", GRCH37, query), equalTo(false));
+      assertThat(bases, getStore().search("3", GRCH37, query).isEmpty(), equalTo(true));
+    }
+  }
+
+  @Test
+  public void queryForSVRangeQuery() {
+    IndexQuery query = IndexQuery.of("DUP", null, 12665100, 12665101, null, 12686200, 12686201,
+        "A", null, Arrays.asList(1));
+
+    assertThat(getStore().exists("1", GRCH37, query), equalTo(true));
+    List<BeaconDataSummary> result = getStore().search("1", GRCH37, query);
+    assertThat(datasetIds(result), equalTo(Arrays.asList(1)));
+    assertThat(result.get(0).getSampleCnt().intValue(), equalTo(2));
+  }
+
+  @Test
+  public void samplesOfSeveralVariants() {
+    IndexQuery query = IndexQuery.of(null, 4, null, null, null, null, null, "GCG", "N",
+        Arrays.asList(1));
+
+    List<BeaconDataSummary> result = getStore().search("3", GRCH37, query);
+    assertThat(result.get(0).getNumVariants(), equalTo(2));
+    assertThat(result.get(0).getSampleCnt().intValue(), equalTo(2));
+  }
+
+  @Test
+  public void queryMultipleDatasets() {
+    IndexQuery query = IndexQuery.of(null, 4, null, null, null, null, null, "C", "N",
+        Arrays.asList(1, 4, 5));
+
+    assertThat(datasetIds(getStore().search("4", GRCH37, query)), equalTo(Arrays.asList(1, 5)));
+    assertThat(getStore().exists("4", GRCH37, query), equalTo(true));
+
+    // Only the requested datasets
+    query = query.withDatasetIds(Arrays.asList(4));
+    assertThat(getStore().search("4", GRCH37, query).isEmpty(), equalTo(true));
+    assertThat(getStore().exists("4", GRCH37, query), equalTo(false));
+  }
+
+  @Test
+  public void queryBatchKeepsInputOrder() {
+    List<IndexQuery> queries = Arrays.asList(
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "G", Arrays.asList(1, 5)),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "GGG", Arrays.asList(1, 5)),
+        IndexQuery.of(null, 4, null, null, null, null, null, "C", "T", Arrays.asList(1, 5)),
+        IndexQuery.of(null, 2, null, null, null, null, null, "TC", "N", Arrays.asList(1)));
+
+    List<List<BeaconDataSummary>> result = getStore().search("4", GRCH37, queries);
+
+    assertThat(result.size(), equalTo(4));
+    assertThat(datasetIds(result.get(0)), equalTo(Arrays.asList(1)));
+    assertThat(result.get(1).isEmpty(), equalTo(true));
+    assertThat(datasetIds(result.get(2)), equalTo(Arrays.asList(5)));
+    // The deletion and the insertion of the same position are aggregated
+    assertThat(result.get(3).get(0).getNumVariants(), equalTo(2));
+    assertThat(result.get(3).get(0).getVariantCnt().intValue(), equalTo(2));
+  }
+
+  @Test
+  public void unknownChromosomeOrAssembly() {
+    IndexQuery query = IndexQuery.of(null, 4, null, null, null, null, null, "C", "G",
+        Arrays.asList(1));
+
+    assertThat(getStore().search("X", GRCH37, query).isEmpty(), equalTo(true));
+    assertThat(getStore().exists("X", GRCH37, query), equalTo(false));
+    // Dataset 1 is not a GRCh38 dataset
+    assertThat(getStore().search("4", GRCH38, query.withDatasetIds(Arrays.asList(3))).isEmpty(),
+        equalTo(true));
+  }
+
+  private static List<Integer> datasetIds(List<BeaconDataSummary> summaries) {
+    List<Integer> ids = new ArrayList<>();
+    for (BeaconDataSummary summary : summaries) {
+      ids.add(summary.getDatasetId());
+    }
+    return ids;
+  }
+
+  @AllArgsConstructor
+  protected static class Variant {
+
+    public final int datasetId;
+    public final String chromosome;
+    public final int start;
+    public final Integer end;
+    public final String reference;
+    public final String alternate;
+    public final String type;
+    public final int variantCnt;
+    public final int callCnt;
+    public final int sampleCnt;
+    public final BigDecimal frequency;
+    public final int[] samples;
+  }
+
+}
@@ -0,0 +1,201 @@
+package org.ega_archive.elixirbeacon.watchdog;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Queries of requests served by an embedded Jetty: the connections of their clients are left to
+ * Jetty, and abandoned queries are stopped by their deadline.
+ */
+public class ClientConnectionFilterTest {
+
+  private static final String SQL = "SELECT 1";
+
+  private static final String REQUEST = "GET /query HTTP/1.1\r\nHost: localhost\r\n";
+
+  private QueryWatchdog watchdog;
+
+  private CounterService counterService;
+
+  private MockEnvironment environment;
+
+  private Connection connection;
+
+  private PreparedStatement statement;
+
+  // Released when the query has started and when its statement is cancelled
+  private CountDownLatch started;
+
+  private CountDownLatch cancelled;
+
+  // How long the statement runs if it is not cancelled
+  private long queryMillis;
+
+  private Server server;
+
+  private int port;
+
+  @Before
+  public void setUp() throws Exception {
+    counterService = mock(CounterService.class);
+    environment = new MockEnvironment();
+    watchdog = new QueryWatchdog();
+    ReflectionTestUtils.setField(watchdog, "environment", environment);
+    ReflectionTestUtils.setField(watchdog, "counterService", counterService);
+    ReflectionTestUtils.setField(watchdog, "defaultTimeout", 60000L);
+    ReflectionTestUtils.setField(watchdog, "disconnectCheckInterval", 10L);
+    watchdog.init();
+
+    started = new CountDownLatch(1);
+    cancelled = new CountDownLatch(1);
+    queryMillis = 10000;
+    connection = mock(Connection.class);
+    statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(SQL)).thenReturn(statement);
+    doAnswer(invocation -> {
+      cancelled.countDown();
+      return null;
+    }).when(statement).cancel();
+
+    ClientConnectionFilter filter = new ClientConnectionFilter();
+    ReflectionTestUtils.setField(filter, "queryWatchdog", watchdog);
+    ServletContextHandler context = new ServletContextHandler();
+    context.addServlet(new ServletHolder(new QueryServlet()), "/query");
+    context.addFilter(new FilterHolder(filter), "/*", EnumSet.of(DispatcherType.REQUEST));
+    server = new Server(0);
+    server.setHandler(context);
+    server.start();
+    port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+    watchdog.destroy();
+  }
+
+  @Test
+  public void abandonedQueryIsStoppedByItsDeadline() throws Exception {
+    environment.setProperty("elixirbeacon.query.timeout.range", "300");
+
+    try (Socket socket = new Socket("localhost", port)) {
+      send(socket, REQUEST + "\r\n");
+      assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    verify(statement, timeout(5000)).cancel();
+    verify(counterService, timeout(5000)).increment(QueryWatchdog.TIMEOUT_METRIC);
+  }
+
+  @Test
+  public void connectedClientGetsTheResults() throws Exception {
+    queryMillis = 300;
+
+    String response;
+    try (Socket socket = new Socket("localhost", port)) {
+      send(socket, REQUEST + "Connection: close\r\n\r\n");
+      response = receive(socket);
+    }
+
+    assertThat(response, containsString("200 OK"));
+    assertThat(response, containsString("completed"));
+    verify(statement, never()).cancel();
+  }
+
+  @Test
+  public void pipelinedRequestsAreAllAnswered() throws Exception {
+    queryMillis = 300;
+
+    String response;
+    try (Socket socket = new Socket("localhost", port)) {
+      send(socket, REQUEST + "\r\n");
+      assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+      // Sent while the first query runs, it is still Jetty's to read
+      send(socket, REQUEST + "Connection: close\r\n\r\n");
+      response = receive(socket);
+    }
+
+    String[] responses = response.split("HTTP/1.1 ", -1);
+    assertThat(responses.length, equalTo(3));
+    assertThat(responses[1], startsWith("200 OK"));
+    assertThat(responses[1], endsWith("completed"));
+    assertThat(responses[2], startsWith("200 OK"));
+    assertThat(responses[2], endsWith("completed"));
+    verify(statement, never()).cancel();
+  }
+
+  private static void send(Socket socket, String request) throws IOException {
+    socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+    socket.getOutputStream().flush();
+  }
+
+  // Until the server closes the connection
+  private static String receive(Socket socket) throws IOException {
+    socket.setSoTimeout(5000);
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    InputStream in = socket.getInputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      response.write(buffer, 0, read);
+    }
+    return new String(response.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  private class QueryServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+
+      String result = watchdog.run("range", watch -> {
+        try {
+          watch.statement(SQL, new Object[0]).createPreparedStatement(connection);
+          started.countDown();
+          // Like a statement that runs until it is cancelled
+          return cancelled.await(queryMillis, TimeUnit.MILLISECONDS) ? "cancelled" : "completed";
+        } catch (SQLException | InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      response.getWriter().print(result);
+    }
+  }
+
+}
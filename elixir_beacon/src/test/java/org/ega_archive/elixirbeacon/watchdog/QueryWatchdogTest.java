@@ -0,0 +1,158 @@
+package org.ega_archive.elixirbeacon.watchdog;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.ega_archive.elixirbeacon.watchdog.QueryCancelledException.Reason;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class QueryWatchdogTest {
+
+  private static final String SQL = "SELECT 1";
+
+  private QueryWatchdog watchdog;
+
+  private MockEnvironment environment;
+
+  private CounterService counterService;
+
+  private Connection connection;
+
+  private PreparedStatement statement;
+
+  // Released when the statement is cancelled
+  private CountDownLatch cancelled;
+
+  @Before
+  public void setUp() throws SQLException {
+    environment = new MockEnvironment();
+    counterService = mock(CounterService.class);
+    watchdog = new QueryWatchdog();
+    ReflectionTestUtils.setField(watchdog, "environment", environment);
+    ReflectionTestUtils.setField(watchdog, "counterService", counterService);
+    ReflectionTestUtils.setField(watchdog, "defaultTimeout", 50L);
+    ReflectionTestUtils.setField(watchdog, "disconnectCheckInterval", 10L);
+    watchdog.init();
+
+    cancelled = new CountDownLatch(1);
+    connection = mock(Connection.class);
+    statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(SQL)).thenReturn(statement);
+    doAnswer(invocation -> {
+      cancelled.countDown();
+      return null;
+    }).when(statement).cancel();
+  }
+
+  @After
+  public void tearDown() {
+    watchdog.unbindClient();
+    watchdog.destroy();
+  }
+
+  @Test
+  public void queryWithinTheDeadline() throws SQLException {
+    Integer result = watchdog.run("exact", watch -> {
+      prepare(watch);
+      return 1;
+    });
+
+    assertThat(result, equalTo(1));
+    verify(statement, never()).cancel();
+    verify(counterService, never()).increment(anyString());
+  }
+
+  @Test
+  public void deadlineCancelsTheStatement() throws SQLException {
+    try {
+      watchdog.run("bracket", this::runUntilCancelled);
+      fail("The query should have been cancelled");
+    } catch (QueryCancelledException e) {
+      assertThat(e.getReason(), equalTo(Reason.TIMEOUT));
+      assertThat(e.getTimeout(), equalTo(50L));
+    }
+    verify(statement).cancel();
+    verify(counterService).increment(QueryWatchdog.TIMEOUT_METRIC);
+    // Backstop of the driver, rounded up to seconds
+    verify(statement).setQueryTimeout(1);
+  }
+
+  @Test
+  public void disconnectedClientCancelsTheStatement() throws SQLException {
+    environment.setProperty("elixirbeacon.query.timeout.bracket", "0");
+    watchdog.bindClient(() -> false);
+
+    try {
+      watchdog.run("bracket", this::runUntilCancelled);
+      fail("The query should have been cancelled");
+    } catch (QueryCancelledException e) {
+      assertThat(e.getReason(), equalTo(Reason.CLIENT_DISCONNECTED));
+    }
+    verify(counterService).increment(QueryWatchdog.CANCELLED_METRIC);
+    verify(counterService, never()).increment(QueryWatchdog.TIMEOUT_METRIC);
+  }
+
+  @Test
+  public void timeoutOfEveryShape() {
+    environment.setProperty("elixirbeacon.query.timeout.exact", "5000");
+
+    assertThat(watchdog.getTimeout("exact"), equalTo(5000L));
+    assertThat(watchdog.getTimeout("bracket"), equalTo(50L));
+  }
+
+  @Test
+  public void otherErrorsAreNotTranslated() {
+    UncategorizedSQLException error = new UncategorizedSQLException("query", SQL,
+        new SQLException("syntax error", "42601"));
+    try {
+      watchdog.run("exact", watch -> {
+        throw error;
+      });
+      fail("The error should have been thrown");
+    } catch (UncategorizedSQLException e) {
+      assertThat(e == error, equalTo(true));
+    }
+    verify(counterService, never()).increment(anyString());
+  }
+
+  private Object runUntilCancelled(QueryWatchdog.Watch watch) {
+    prepare(watch);
+    try {
+      if (!cancelled.await(5, TimeUnit.SECONDS)) {
+        return null;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // What the driver throws when the statement is cancelled
+    throw new UncategorizedSQLException("query", SQL,
+        new SQLException("canceling statement due to user request", "57014"));
+  }
+
+  private void prepare(QueryWatchdog.Watch watch) {
+    try {
+      watch.statement(SQL, new Object[]{}).createPreparedStatement(connection);
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
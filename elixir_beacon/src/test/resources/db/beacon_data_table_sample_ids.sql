@@ -0,0 +1,2 @@
+UPDATE public.beacon_data_table SET sample_ids = NULL;
+UPDATE public.beacon_data_table dt SET sample_ids = samples.sample_ids FROM (SELECT ds.data_id, array_agg(ds.sample_id ORDER BY ds.sample_id) AS sample_ids FROM public.beacon_data_sample_table ds GROUP BY ds.data_id) samples WHERE dt.id = samples.data_id;
@@ -33,6 +33,10 @@ public class ParamName {
 
   public static final String SKIP = "skip";
 
+  public static final String AFTER = "after";
+
+  public static final String COUNT = "count";
+
   public static final String LEVEL = "level";
 
   public static final String PARAMS = "params";
@@ -10,7 +10,8 @@ import lombok.Getter;
 @AllArgsConstructor
 public enum CacheTypes {
   
-  SERVICE_LOCATION("service_location");
+  SERVICE_LOCATION("service_location"),
+  QUERY_RESULT("query_result");
   
   private String name;
   
@@ -18,6 +19,8 @@ public enum CacheTypes {
     CacheTypes cacheName = null;
     if(StringUtils.equalsIgnoreCase(name, SERVICE_LOCATION.name)) {
       cacheName = SERVICE_LOCATION;
+    } else if(StringUtils.equalsIgnoreCase(name, QUERY_RESULT.name)) {
+      cacheName = QUERY_RESULT;
     } else {
       throw new NotFoundException("Cache name not valid", name);
     }
@@ -31,6 +31,11 @@ public class CommonQuery {
 
   private Sort sort = null;
 
+  // Keyset pagination: only elements whose id is greater than this one, skip is ignored
+  private String after = null;
+
+  private CountMode count = CountMode.EXACT;
+
   public CommonQuery(Integer limit, Integer skip) {
     this.limit = limit;
     this.skip = skip;
@@ -23,6 +23,12 @@ public class CommonQueryHelper {
     }
     map.add(ParamName.SKIP, commonQuery.getSkip().toString());
     map.add(ParamName.LIMIT, commonQuery.getLimit().toString());
+    if (commonQuery.getAfter() != null) {
+      map.add(ParamName.AFTER, commonQuery.getAfter());
+    }
+    if (commonQuery.getCount() != null) {
+      map.add(ParamName.COUNT, commonQuery.getCount().name().toLowerCase());
+    }
     // TODO add sort
     return map;
   }
@@ -70,9 +76,21 @@ public class CommonQueryHelper {
       commonQuery.setSkip(value);
     }
 
+    String after = params.get(ParamName.AFTER);
+    if (after != null && !after.isEmpty()) {
+      commonQuery.setAfter(after);
+    }
+
+    CountMode count = CountMode.parse(params.get(ParamName.COUNT));
+    if (count != null) {
+      commonQuery.setCount(count);
+    }
+
     if (log.getLevel() == Level.DEBUG) {
       log.debug("limit = " + commonQuery.getLimit());
       log.debug("skip = " + commonQuery.getSkip());
+      log.debug("after = " + commonQuery.getAfter());
+      log.debug("count = " + commonQuery.getCount());
       log.debug("includes = " + commonQuery.getInclude());
       log.debug("exludes = " + commonQuery.getExclude());
     }
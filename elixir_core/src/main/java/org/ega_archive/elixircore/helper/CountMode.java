@@ -0,0 +1,45 @@
+package org.ega_archive.elixircore.helper;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixircore.exception.PreConditionFailed;
+
+/**
+ * How the total number of elements of a page is computed.
+ */
+public enum CountMode {
+
+  /**
+   * Runs a count query with the same predicate.
+   */
+  EXACT,
+
+  /**
+   * Estimated from the planner statistics of the table when there is no predicate (PostgreSQL
+   * only), exact otherwise.
+   */
+  ESTIMATE,
+
+  /**
+   * No count query. The total is only known to be, at least, the elements up to the end of the page
+   * plus one if there are more.
+   */
+  NONE;
+
+  /**
+   * @return null if there is no value
+   * @throws PreConditionFailed if the value is not a count mode
+   */
+  public static CountMode parse(String value) {
+    if (StringUtils.isBlank(value)) {
+      return null;
+    }
+    for (CountMode mode : values()) {
+      if (mode.name().equalsIgnoreCase(value.trim())) {
+        return mode;
+      }
+    }
+    throw new PreConditionFailed("Invalid value of parameter 'count': " + value
+        + ", it must be one of exact, estimate or none");
+  }
+
+}
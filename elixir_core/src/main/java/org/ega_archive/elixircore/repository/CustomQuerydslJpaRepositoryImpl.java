@@ -1,12 +1,21 @@
 package org.ega_archive.elixircore.repository;
 
 import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Table;
 
+import org.apache.commons.lang3.StringUtils;
+import org.ega_archive.elixircore.exception.PreConditionFailed;
 import org.ega_archive.elixircore.helper.CommonQuery;
+import org.ega_archive.elixircore.helper.CountMode;
+import org.hibernate.Session;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
@@ -16,7 +25,9 @@ import org.springframework.data.querydsl.QPageRequest;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
 
 import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.ComparablePath;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.JPQLQuery;
 
@@ -24,6 +35,9 @@ import com.querydsl.jpa.JPQLQuery;
 public class CustomQuerydslJpaRepositoryImpl<T, ID extends Serializable>
     extends QueryDslJpaRepository<T, ID> implements CustomQuerydslJpaRepository<T, ID> {
 
+  private static final DefaultConversionService CONVERSION_SERVICE =
+      new DefaultConversionService();
+
   private final JpaEntityInformation<T, ?> entityInformation;
   private final EntityManager entityManager;
   private final EntityPath<T> path;
@@ -42,31 +56,162 @@ public class CustomQuerydslJpaRepositoryImpl<T, ID extends Serializable>
   }
 
   public Page<T> findAll(Predicate predicate, CommonQuery commonQuery) {
-    JPQLQuery countQuery = createQuery(predicate);
+    if (commonQuery.getAfter() != null) {
+      return findAllAfter(predicate, commonQuery);
+    }
+
     JPQLQuery query = null;
     QPageRequest pagination = null;
     if(commonQuery.getLimit() == 0 && commonQuery.getSkip() == 0) {
       query = createQuery(predicate);
     } else {
       pagination = new QPageRequest(commonQuery.getSkip(), commonQuery.getLimit());
-      query = querydsl.applyPagination(pagination, createQuery(predicate));  
+      query = querydsl.applyPagination(pagination, createQuery(predicate));
     }
 
     if (commonQuery.getSort() != null) {
       query = querydsl.applySorting(commonQuery.getSort(), query);
     }
 
-    Long total = countQuery.fetchCount();
-    List<T> content =
-        pagination == null || total > pagination.getOffset() ? query.fetch() : Collections
-            .<T>emptyList();
+    if (pagination == null) {
+      // All the results are fetched, they are the count
+      List<T> content = query.fetch();
+      return new PageImpl<T>(content);
+    }
+
+    CountMode countMode = getCountMode(commonQuery);
+    if (countMode == CountMode.NONE) {
+      // One more to know if there is a next page
+      query.limit(pagination.getPageSize() + 1L);
+      List<T> content = query.fetch();
+      return pageWithoutCount(content, pagination);
+    }
+
+    Long total = count(predicate, countMode);
+    // An estimate can be lower than the real count, the page is always fetched
+    List<T> content = countMode == CountMode.EXACT && total <= pagination.getOffset()
+        ? Collections.<T>emptyList() : query.fetch();
 
     return new PageImpl<T>(content, pagination, total);
   }
 
+  /**
+   * Keyset pagination: returns the first {@code limit} elements, ordered by id, whose id is greater
+   * than {@link CommonQuery#getAfter()}. Its cost does not depend on how deep the page is, unlike
+   * OFFSET.
+   * <p>
+   * The total of the page is the number of elements after the cursor: counted with
+   * {@link CountMode#EXACT}, the elements up to the end of the page plus one if there are more
+   * otherwise.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Page<T> findAllAfter(Predicate predicate, CommonQuery commonQuery) {
+    if (entityInformation.hasCompositeId()) {
+      throw new PreConditionFailed("Parameter 'after' is not supported for "
+          + entityInformation.getEntityName());
+    }
+    if (commonQuery.getSort() != null) {
+      throw new PreConditionFailed("Parameters 'after' and 'sort' cannot be used together, "
+          + "results are sorted by id");
+    }
+    Class idType = entityInformation.getIdType();
+    if (!Comparable.class.isAssignableFrom(idType)) {
+      throw new PreConditionFailed("Parameter 'after' is not supported for "
+          + entityInformation.getEntityName());
+    }
+    Comparable after;
+    try {
+      after = (Comparable) CONVERSION_SERVICE.convert(commonQuery.getAfter(), idType);
+    } catch (ConversionException e) {
+      throw new PreConditionFailed("Invalid value of parameter 'after': "
+          + commonQuery.getAfter(), e);
+    }
+
+    ComparablePath id = builder.getComparable(entityInformation.getIdAttribute().getName(),
+        idType);
+    JPQLQuery query = createQuery(ExpressionUtils.and(predicate, id.gt(after)))
+        .orderBy(id.asc());
+
+    int limit = commonQuery.getLimit();
+    if (limit == 0) {
+      // All the remaining results
+      List<T> content = query.fetch();
+      return new PageImpl<T>(content);
+    }
+
+    // The page is the first one of the elements after the cursor, so are its total and next page
+    QPageRequest pagination = new QPageRequest(0, limit);
+    query.limit(limit + 1L);
+    Page<T> page = pageWithoutCount(query.fetch(), pagination);
+    // There is no estimate of a part of the table, and the last page is its own count
+    if (getCountMode(commonQuery) != CountMode.EXACT || !page.hasNext()) {
+      return page;
+    }
+    long total = createQuery(ExpressionUtils.and(predicate, id.gt(after))).fetchCount();
+    return new PageImpl<T>(page.getContent(), pagination, total);
+  }
+
+  private static CountMode getCountMode(CommonQuery commonQuery) {
+    return commonQuery.getCount() == null ? CountMode.EXACT : commonQuery.getCount();
+  }
+
+  /**
+   * @param content the elements of the page plus, if there is a next page, its first element
+   */
+  private static <T> Page<T> pageWithoutCount(List<T> content, QPageRequest pagination) {
+    boolean hasNext = content.size() > pagination.getPageSize();
+    List<T> page = hasNext ? content.subList(0, pagination.getPageSize()) : content;
+    long total = pagination.getOffset() + page.size() + (hasNext ? 1 : 0);
+    return new PageImpl<T>(page, pagination, total);
+  }
+
+  private long count(Predicate predicate, CountMode countMode) {
+    if (countMode == CountMode.ESTIMATE && predicate == null) {
+      long estimate = estimateCount();
+      if (estimate > 0) {
+        return estimate;
+      }
+    }
+    return createQuery(predicate).fetchCount();
+  }
+
+  /**
+   * Number of rows of the table according to the statistics of the PostgreSQL planner, updated by
+   * VACUUM and ANALYZE.
+   *
+   * @return -1 if it is unknown
+   */
+  private long estimateCount() {
+    Table table = entityInformation.getJavaType().getAnnotation(Table.class);
+    final String tableName = table != null && StringUtils.isNotBlank(table.name())
+        ? table.name() : entityInformation.getEntityName();
+    final String schema = table != null ? table.schema() : null;
+
+    return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+      if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+        return -1L;
+      }
+      String sql = StringUtils.isBlank(schema)
+          ? "SELECT c.reltuples FROM pg_class c WHERE c.relname = ? AND pg_table_is_visible(c.oid)"
+          : "SELECT c.reltuples FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+              + "WHERE c.relname = ? AND n.nspname = ?";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        // Unquoted identifiers are stored in lower case
+        statement.setString(1, tableName.toLowerCase());
+        if (StringUtils.isNotBlank(schema)) {
+          statement.setString(2, schema.toLowerCase());
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          return resultSet.next() ? (long) resultSet.getFloat(1) : -1L;
+        }
+      }
+    });
+  }
+
   public Page<T> findAll(CommonQuery commonQuery) {
     Page<T> page = null;
-    if (commonQuery.getLimit() == 0 && commonQuery.getSkip() == 0) {
+    if (commonQuery.getLimit() == 0 && commonQuery.getSkip() == 0
+        && commonQuery.getAfter() == null) {
       // Return ALL results
       List<T> list = null;
       if(commonQuery.getSort() != null) {
@@ -81,4 +226,4 @@ public class CustomQuerydslJpaRepositoryImpl<T, ID extends Serializable>
     return page;
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package eu.crg.ega.microservice.helper;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ega_archive.elixircore.constant.ParamName;
+import org.ega_archive.elixircore.exception.PreConditionFailed;
+import org.ega_archive.elixircore.helper.CommonQuery;
+import org.ega_archive.elixircore.helper.CommonQueryHelper;
+import org.ega_archive.elixircore.helper.CountMode;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.util.MultiValueMap;
+
+@RunWith(JUnit4.class)
+public class CommonQueryHelperTests {
+
+  @Test
+  public void defaults() {
+    CommonQuery commonQuery = CommonQueryHelper.parseQuery(new HashMap<String, String>());
+
+    assertThat(commonQuery.getAfter(), nullValue());
+    assertThat(commonQuery.getCount(), equalTo(CountMode.EXACT));
+  }
+
+  @Test
+  public void parseAfterAndCount() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put(ParamName.LIMIT, "20");
+    params.put(ParamName.AFTER, "1234");
+    params.put(ParamName.COUNT, "None");
+
+    CommonQuery commonQuery = CommonQueryHelper.parseQuery(params);
+
+    assertThat(commonQuery.getLimit(), equalTo(20));
+    assertThat(commonQuery.getAfter(), equalTo("1234"));
+    assertThat(commonQuery.getCount(), equalTo(CountMode.NONE));
+  }
+
+  @Test(expected = PreConditionFailed.class)
+  public void unknownCountModeIsRejected() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put(ParamName.COUNT, "approximately");
+
+    CommonQueryHelper.parseQuery(params);
+  }
+
+  @Test
+  public void emptyCountModeIsTheDefault() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put(ParamName.COUNT, "");
+
+    assertThat(CommonQueryHelper.parseQuery(params).getCount(), equalTo(CountMode.EXACT));
+  }
+
+  @Test
+  public void toMap() {
+    CommonQuery commonQuery = new CommonQuery(5, 0);
+    commonQuery.setAfter("EGAD00000000003");
+    commonQuery.setCount(CountMode.ESTIMATE);
+
+    MultiValueMap<String, String> map = CommonQueryHelper.toMap(commonQuery);
+
+    assertThat(map.get(ParamName.AFTER), contains("EGAD00000000003"));
+    assertThat(map.get(ParamName.COUNT), contains("estimate"));
+  }
+
+}